@@ -12,12 +12,14 @@ import org.eclipse.swt.graphics.Image;
 
 import com.archimatetool.canvas.model.IIconic;
 import com.archimatetool.editor.model.IArchiveManager;
-import com.archimatetool.editor.ui.ImageFactory;
+import com.archimatetool.editor.ui.ArchiveImageCache;
 
 
 /**
  * Delegate class to handle drawing of iconic types
  * 
+ * Icons are shared with other figures that show the same image.
+ * 
  * @author Phillip Beauvoir
  */
 public class IconicDelegate {
@@ -34,26 +36,9 @@ public class IconicDelegate {
         
         if(fIconic.getImagePath() != null) {
             IArchiveManager archiveManager = (IArchiveManager)fIconic.getAdapter(IArchiveManager.class);
-
-            Image image = null;
-            try {
-                image = archiveManager.createImage(fIconic.getImagePath());
-            }
-            catch(Exception ex) {
-                ex.printStackTrace();
-            }
             
-            if(image != null) {
-                // If the image bounds is bigger than the maximum displayed image here then create a scaled image
-                if(image.getBounds().width > IIconic.MAX_IMAGE_SIZE || image.getBounds().height > IIconic.MAX_IMAGE_SIZE) {
-                    fImage = ImageFactory.getScaledImage(image, IIconic.MAX_IMAGE_SIZE);
-                    image.dispose();
-                }
-                // Else use original
-                else {
-                    fImage = image;
-                }
-            }
+            // If the image bounds is bigger than the maximum displayed image here then this is a scaled image, else the original
+            fImage = ArchiveImageCache.getScaledImage(archiveManager, fIconic.getImagePath(), IIconic.MAX_IMAGE_SIZE);
         }
     }
     
@@ -121,8 +106,8 @@ public class IconicDelegate {
     }
     
     private void disposeImage() {
-        if(fImage != null && !fImage.isDisposed()) {
-            fImage.dispose();
+        if(fImage != null) {
+            ArchiveImageCache.releaseImage(fImage);
             fImage = null;
         }
     }
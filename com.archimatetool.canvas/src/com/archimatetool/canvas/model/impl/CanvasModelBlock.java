@@ -32,6 +32,7 @@ import com.archimatetool.model.IProperty;
 import com.archimatetool.model.ITextContent;
 import com.archimatetool.model.ITextPosition;
 import com.archimatetool.model.impl.DiagramModelObject;
+import com.archimatetool.model.util.StringPool;
 
 
 /**
@@ -449,11 +450,11 @@ public class CanvasModelBlock extends DiagramModelObject implements ICanvasModel
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setBorderColor(String newBorderColor) {
         String oldBorderColor = borderColor;
-        borderColor = newBorderColor;
+        borderColor = StringPool.intern(newBorderColor);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, ICanvasPackage.CANVAS_MODEL_BLOCK__BORDER_COLOR, oldBorderColor, borderColor));
     }
@@ -28,6 +28,7 @@ import com.archimatetool.model.IProperty;
 import com.archimatetool.model.ITextContent;
 import com.archimatetool.model.ITextPosition;
 import com.archimatetool.model.impl.DiagramModelObject;
+import com.archimatetool.model.util.StringPool;
 
 
 /**
@@ -328,11 +329,11 @@ public class CanvasModelSticky extends DiagramModelObject implements ICanvasMode
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setBorderColor(String newBorderColor) {
         String oldBorderColor = borderColor;
-        borderColor = newBorderColor;
+        borderColor = StringPool.intern(newBorderColor);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, ICanvasPackage.CANVAS_MODEL_STICKY__BORDER_COLOR, oldBorderColor, borderColor));
     }
@@ -40,7 +40,7 @@ import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.model.commands.EObjectFeatureCommand;
 import com.archimatetool.editor.propertysections.DiagramModelImageSection;
 import com.archimatetool.editor.propertysections.ITabbedLayoutConstants;
-import com.archimatetool.editor.ui.ImageFactory;
+import com.archimatetool.editor.ui.ArchiveImageCache;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.ILockable;
 
@@ -220,25 +220,9 @@ public class IconSection extends DiagramModelImageSection {
         if(fIconic.getImagePath() != null) {
             IArchiveManager archiveManager = (IArchiveManager)fIconic.getAdapter(IArchiveManager.class);
             
-            Image image = null;
-            try {
-                image = archiveManager.createImage(fIconic.getImagePath());
-            }
-            catch(Exception ex) {
-                ex.printStackTrace();
-            }
-            
-            if(image != null) {
-                // If the image is bigger than the maximum allowed image then create a scaled image
-                if(image.getBounds().width > IIconic.MAX_IMAGE_SIZE || image.getBounds().height > IIconic.MAX_IMAGE_SIZE) {
-                    fImage = ImageFactory.getScaledImage(image, IIconic.MAX_IMAGE_SIZE);
-                    image.dispose();
-                }
-                // Else use original
-                else {
-                    fImage = image;
-                }
-            }
+            // If the image is bigger than the maximum allowed image then this is a scaled image, else the original
+            // This is the same image shown in the diagram so it's shared
+            fImage = ArchiveImageCache.getScaledImage(archiveManager, fIconic.getImagePath(), IIconic.MAX_IMAGE_SIZE);
         }
         
         fCanvas.redraw();
@@ -272,8 +256,8 @@ public class IconSection extends DiagramModelImageSection {
     }
     
     protected void disposeImage() {
-        if(fImage != null && !fImage.isDisposed()) {
-            fImage.dispose();
+        if(fImage != null) {
+            ArchiveImageCache.releaseImage(fImage);
             fImage = null;
         }
     }
@@ -13,8 +13,14 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.emf.ecore.EObject;
 
@@ -33,10 +39,31 @@ import com.archimatetool.model.IProperty;
 /**
  * CSV Exporter
  * 
+ * The model's elements, relations and properties are gathered in one traversal and then the three files are written concurrently.
+ * Rows are formatted into a reused buffer that is written out in large chunks.
+ * 
  * @author Phillip Beauvoir
  */
 public class CSVExporter implements CSVConstants {
     
+    /**
+     * Size of the buffer that rows are formatted into before being written
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * The top level folders of elements in the order in which they are written
+     */
+    private static final FolderType[] ELEMENT_FOLDER_TYPES = {
+            FolderType.STRATEGY,
+            FolderType.BUSINESS,
+            FolderType.APPLICATION,
+            FolderType.TECHNOLOGY,
+            FolderType.MOTIVATION,
+            FolderType.IMPLEMENTATION_MIGRATION,
+            FolderType.OTHER
+    };
+    
     private char fDelimiter = ',';
     private String fFilePrefix = ""; //$NON-NLS-1$
     
@@ -58,14 +85,126 @@ public class CSVExporter implements CSVConstants {
     
     private IArchimateModel fModel;
     
+    /*
+     * Snapshot of the model gathered in one traversal before writing
+     */
+    
+    // Concepts in each top level folder and its child folders, sorted
+    private Map<FolderType, List<IArchimateConcept>> fConcepts;
+    
+    // Concepts that have properties in model order
+    private List<IArchimateConcept> fConceptsWithProperties;
+    
     public CSVExporter(IArchimateModel model) {
         fModel = model;
     }
     
     void export(File folder) throws IOException {
-        writeModelAndElements(new File(folder, createElementsFileName()));
-        writeRelationships(new File(folder, createRelationsFileName()));
-        writeProperties(new File(folder, createPropertiesFileName()));
+        collectConcepts();
+        
+        final File elementsFile = new File(folder, createElementsFileName());
+        final File relationsFile = new File(folder, createRelationsFileName());
+        final File propertiesFile = new File(folder, createPropertiesFileName());
+        
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+        
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                writeModelAndElements(elementsFile);
+                return null;
+            }
+        });
+        
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                writeRelationships(relationsFile);
+                return null;
+            }
+        });
+        
+        tasks.add(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                writeProperties(propertiesFile);
+                return null;
+            }
+        });
+        
+        // Write the files concurrently
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        
+        try {
+            for(Future<Void> future : executor.invokeAll(tasks)) {
+                future.get();
+            }
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+        catch(ExecutionException ex) {
+            if(ex.getCause() instanceof IOException) {
+                throw (IOException)ex.getCause();
+            }
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+        finally {
+            executor.shutdown();
+            fConcepts = null;
+            fConceptsWithProperties = null;
+        }
+    }
+    
+    /**
+     * Gather the concepts in each top level folder and the concepts that have properties in one traversal of the model
+     */
+    void collectConcepts() {
+        fConcepts = new EnumMap<FolderType, List<IArchimateConcept>>(FolderType.class);
+        fConceptsWithProperties = new ArrayList<IArchimateConcept>();
+        
+        for(IFolder folder : fModel.getFolders()) {
+            List<IArchimateConcept> concepts = new ArrayList<IArchimateConcept>();
+            collectConcepts(folder, concepts, fConceptsWithProperties);
+            
+            // Only the first folder of each type, as with IArchimateModel#getFolder(FolderType)
+            if(!fConcepts.containsKey(folder.getType())) {
+                sort(concepts);
+                fConcepts.put(folder.getType(), concepts);
+            }
+        }
+    }
+    
+    /**
+     * Add the concepts in a folder and its child folders to concepts, and those that have properties to conceptsWithProperties
+     * Concepts are added in folder order (a folder's concepts then its child folders' concepts) and
+     * concepts with properties in model order (a folder's child folders' concepts then its concepts).
+     */
+    private void collectConcepts(IFolder folder, List<IArchimateConcept> concepts, List<IArchimateConcept> conceptsWithProperties) {
+        int start = concepts.size();
+        
+        for(EObject object : folder.getElements()) {
+            if(object instanceof IArchimateConcept) {
+                concepts.add((IArchimateConcept)object);
+            }
+        }
+        
+        int end = concepts.size();
+        
+        for(IFolder f : folder.getFolders()) {
+            collectConcepts(f, concepts, conceptsWithProperties);
+        }
+        
+        for(int i = start; i < end; i++) {
+            IArchimateConcept concept = concepts.get(i);
+            if(!concept.getProperties().isEmpty()) {
+                conceptsWithProperties.add(concept);
+            }
+        }
     }
     
     /**
@@ -103,47 +242,30 @@ public class CSVExporter implements CSVConstants {
      * Write the Model and All Elements
      */
     private void writeModelAndElements(File file) throws IOException {
-        Writer writer = createOutputStreamWriter(file);
-        
-        // Write Header
-        String header = createHeader(MODEL_ELEMENTS_HEADER);
-        writer.write(header);
-        
-        // CRLF
-        writer.write(CRLF);
-        
-        // Write Model
-        String modelRow = createModelRow();
-        writer.write(modelRow);
-        
-        // Write Elements
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.STRATEGY));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.BUSINESS));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.APPLICATION));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.TECHNOLOGY));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.MOTIVATION));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.IMPLEMENTATION_MIGRATION));
-        writeElementsInFolder(writer, fModel.getFolder(FolderType.OTHER));
-        
-        writer.close();
-    }
-    
-    /**
-     * Write all elements in a given folder and its child folders to Writer
-     */
-    private void writeElementsInFolder(Writer writer, IFolder folder) throws IOException {
-        if(folder == null) {
-            return;
-        }
-        
-        List<IArchimateConcept> concepts = getConcepts(folder);
-        sort(concepts);
-        
-        for(IArchimateConcept concept : concepts) {
-            if(concept instanceof IArchimateElement) {
-                writer.write(CRLF);
-                writer.write(createElementRow((IArchimateElement)concept));
+        try(Writer writer = createOutputStreamWriter(file)) {
+            StringBuilder sb = new StringBuilder(BUFFER_SIZE * 2);
+            
+            // Write Header
+            appendHeader(sb, MODEL_ELEMENTS_HEADER);
+            
+            // CRLF
+            sb.append(CRLF);
+            
+            // Write Model
+            appendModelRow(sb);
+            
+            // Write Elements
+            for(FolderType type : ELEMENT_FOLDER_TYPES) {
+                for(IArchimateConcept concept : getConcepts(type)) {
+                    if(concept instanceof IArchimateElement) {
+                        sb.append(CRLF);
+                        appendElementRow(sb, (IArchimateElement)concept);
+                        flush(writer, sb, false);
+                    }
+                }
             }
+            
+            flush(writer, sb, true);
         }
     }
     
@@ -151,29 +273,30 @@ public class CSVExporter implements CSVConstants {
      * Write All Relationships
      */
     private void writeRelationships(File file) throws IOException {
-        List<IArchimateConcept> concepts = getConcepts(fModel.getFolder(FolderType.RELATIONS));
-        sort(concepts);
+        List<IArchimateConcept> concepts = getConcepts(FolderType.RELATIONS);
         
         // Are there any to write?
         if(!fWriteEmptyFile && concepts.isEmpty()) {
             return;
         }
         
-        Writer writer = createOutputStreamWriter(file);
-        
-        // Write Header
-        String header = createHeader(RELATIONSHIPS_HEADER);
-        writer.write(header);
-        
-        // Write Relationships
-        for(IArchimateConcept concept : concepts) {
-            if(concept instanceof IArchimateRelationship) {
-                writer.write(CRLF);
-                writer.write(createRelationshipRow((IArchimateRelationship)concept));
+        try(Writer writer = createOutputStreamWriter(file)) {
+            StringBuilder sb = new StringBuilder(BUFFER_SIZE * 2);
+            
+            // Write Header
+            appendHeader(sb, RELATIONSHIPS_HEADER);
+            
+            // Write Relationships
+            for(IArchimateConcept concept : concepts) {
+                if(concept instanceof IArchimateRelationship) {
+                    sb.append(CRLF);
+                    appendRelationshipRow(sb, (IArchimateRelationship)concept);
+                    flush(writer, sb, false);
+                }
             }
+            
+            flush(writer, sb, true);
         }
-        
-        writer.close();
     }
     
     /**
@@ -185,143 +308,159 @@ public class CSVExporter implements CSVConstants {
             return;
         }
         
-        Writer writer = createOutputStreamWriter(file);
-        
-        // Write Header
-        String header = createHeader(PROPERTIES_HEADER);
-        writer.write(header);
-        
-        // Write Model Properties
-        for(IProperty property : fModel.getProperties()) {
-            writer.write(CRLF);
-            writer.write(createPropertyRow(fModel.getId(), property));
-        }
-        
-        // Write Element and Relationship Properties
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IArchimateConcept) {
-                IArchimateConcept concept = (IArchimateConcept)eObject;
+        try(Writer writer = createOutputStreamWriter(file)) {
+            StringBuilder sb = new StringBuilder(BUFFER_SIZE * 2);
+            
+            // Write Header
+            appendHeader(sb, PROPERTIES_HEADER);
+            
+            // Write Model Properties
+            for(IProperty property : fModel.getProperties()) {
+                sb.append(CRLF);
+                appendPropertyRow(sb, fModel.getId(), property);
+                flush(writer, sb, false);
+            }
+            
+            // Write Element and Relationship Properties
+            for(IArchimateConcept concept : getConceptsWithProperties()) {
                 for(IProperty property : concept.getProperties()) {
-                    writer.write(CRLF);
-                    writer.write(createPropertyRow(concept.getId(), property));
+                    sb.append(CRLF);
+                    appendPropertyRow(sb, concept.getId(), property);
+                    flush(writer, sb, false);
                 }
             }
+            
+            flush(writer, sb, true);
+        }
+    }
+    
+    /**
+     * Write the buffer to writer and clear it if it is full or if all is true
+     */
+    private void flush(Writer writer, StringBuilder sb, boolean all) throws IOException {
+        if(all || sb.length() >= BUFFER_SIZE) {
+            writer.write(sb.toString());
+            sb.setLength(0);
         }
-        
-        writer.close();
     }
     
     /**
      * @return true if the model has any user properties
      */
     boolean hasProperties() {
-        if(!fModel.getProperties().isEmpty()) {
-            return true;
+        return !fModel.getProperties().isEmpty() || !getConceptsWithProperties().isEmpty();
+    }
+    
+    /**
+     * @return The sorted concepts in the top level folder of type and its child folders
+     */
+    private List<IArchimateConcept> getConcepts(FolderType type) {
+        if(fConcepts == null) {
+            collectConcepts();
         }
         
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IArchimateConcept) {
-                IArchimateConcept concept = (IArchimateConcept)eObject;
-                if(!concept.getProperties().isEmpty()) {
-                    return true;
-                }
-            }
+        List<IArchimateConcept> concepts = fConcepts.get(type);
+        return concepts != null ? concepts : new ArrayList<IArchimateConcept>();
+    }
+    
+    /**
+     * @return The concepts that have properties
+     */
+    private List<IArchimateConcept> getConceptsWithProperties() {
+        if(fConceptsWithProperties == null) {
+            collectConcepts();
         }
-
-        return false;
+        return fConceptsWithProperties;
     }
 
     /**
      * Create a Header from given string elements
      */
     String createHeader(String[] elements) {
-        StringBuffer sb = new StringBuffer();
-        
+        StringBuilder sb = new StringBuilder();
+        appendHeader(sb, elements);
+        return sb.toString();
+    }
+    
+    private void appendHeader(StringBuilder sb, String[] elements) {
         for(int i = 0; i < elements.length; i++) {
-            String s = elements[i];
-            sb.append("\""); //$NON-NLS-1$
-            sb.append(s);
-            sb.append("\""); //$NON-NLS-1$
+            sb.append('"');
+            sb.append(elements[i]);
+            sb.append('"');
             if(i < elements.length - 1) {
                 sb.append(fDelimiter);
             }
         }
-        
-        return sb.toString();
     }
     
     /**
      * Create a String Row for the Archimate Model
      */
     String createModelRow() {
-        StringBuffer sb = new StringBuffer();
-        
-        String id = fModel.getId();
-        sb.append(surroundWithQuotes(id));
+        StringBuilder sb = new StringBuilder();
+        appendModelRow(sb);
+        return sb.toString();
+    }
+    
+    private void appendModelRow(StringBuilder sb) {
+        appendQuoted(sb, fModel.getId());
         sb.append(fDelimiter);
         
-        sb.append(surroundWithQuotes(ARCHIMATE_MODEL_TYPE));
+        appendQuoted(sb, ARCHIMATE_MODEL_TYPE);
         sb.append(fDelimiter);
         
-        String name = normalise(fModel.getName());
-        sb.append(surroundWithQuotes(name));
+        appendNormalisedAndQuoted(sb, fModel.getName());
         sb.append(fDelimiter);
         
-        String purpose = normalise(fModel.getPurpose());
-        sb.append(surroundWithQuotes(purpose));
-        
-        return sb.toString();
+        appendNormalisedAndQuoted(sb, fModel.getPurpose());
     }
 
     /**
      * Create a String Row for an Element
      */
     String createElementRow(IArchimateElement element) {
-        StringBuffer sb = new StringBuffer();
-        
-        String id = element.getId();
-        sb.append(surroundWithQuotes(id));
+        StringBuilder sb = new StringBuilder();
+        appendElementRow(sb, element);
+        return sb.toString();
+    }
+    
+    private void appendElementRow(StringBuilder sb, IArchimateElement element) {
+        appendQuoted(sb, element.getId());
         sb.append(fDelimiter);
         
-        sb.append(surroundWithQuotes(element.eClass().getName()));
+        appendQuoted(sb, element.eClass().getName());
         sb.append(fDelimiter);
         
-        String name = normalise(element.getName());
-        sb.append(surroundWithQuotes(name));
+        appendNormalisedAndQuoted(sb, element.getName());
         sb.append(fDelimiter);
         
-        String documentation = normalise(element.getDocumentation());
-        sb.append(surroundWithQuotes(documentation));
-        
-        return sb.toString();
+        appendNormalisedAndQuoted(sb, element.getDocumentation());
     }
     
     /**
      * Create a String Row for a Relationship
      */
     String createRelationshipRow(IArchimateRelationship relationship) {
-        StringBuffer sb = new StringBuffer();
-        
-        String id = relationship.getId();
-        sb.append(surroundWithQuotes(id));
+        StringBuilder sb = new StringBuilder();
+        appendRelationshipRow(sb, relationship);
+        return sb.toString();
+    }
+    
+    private void appendRelationshipRow(StringBuilder sb, IArchimateRelationship relationship) {
+        appendQuoted(sb, relationship.getId());
         sb.append(fDelimiter);
         
-        sb.append(surroundWithQuotes(relationship.eClass().getName()));
+        appendQuoted(sb, relationship.eClass().getName());
         sb.append(fDelimiter);
         
-        String name = normalise(relationship.getName());
-        sb.append(surroundWithQuotes(name));
+        appendNormalisedAndQuoted(sb, relationship.getName());
         sb.append(fDelimiter);
         
-        String documentation = normalise(relationship.getDocumentation());
-        sb.append(surroundWithQuotes(documentation));
+        appendNormalisedAndQuoted(sb, relationship.getDocumentation());
         sb.append(fDelimiter);
         
         if(relationship.getSource() != null) {
-            String sourceID = relationship.getSource().getId();
-            sb.append(surroundWithQuotes(sourceID));
+            appendQuoted(sb, relationship.getSource().getId());
         }
         else {
             sb.append("\"\""); //$NON-NLS-1$
@@ -329,34 +468,30 @@ public class CSVExporter implements CSVConstants {
         sb.append(fDelimiter);
         
         if(relationship.getTarget() != null) {
-            String targetID = relationship.getTarget().getId();
-            sb.append(surroundWithQuotes(targetID));
+            appendQuoted(sb, relationship.getTarget().getId());
         }
         else {
             sb.append("\"\""); //$NON-NLS-1$
         }
-        
-        return sb.toString();
     }
 
     /**
      * Create a String Row for a Property
      */
     String createPropertyRow(String elementID, IProperty property) {
-        StringBuffer sb = new StringBuffer();
-        
-        String id = elementID;
-        sb.append(surroundWithQuotes(id));
+        StringBuilder sb = new StringBuilder();
+        appendPropertyRow(sb, elementID, property);
+        return sb.toString();
+    }
+    
+    private void appendPropertyRow(StringBuilder sb, String elementID, IProperty property) {
+        appendQuoted(sb, elementID);
         sb.append(fDelimiter);
         
-        String key = normalise(property.getKey());
-        sb.append(surroundWithQuotes(key));
+        appendNormalisedAndQuoted(sb, property.getKey());
         sb.append(fDelimiter);
         
-        String value = normalise(property.getValue());
-        sb.append(surroundWithQuotes(value));
-        
-        return sb.toString();
+        appendNormalisedAndQuoted(sb, property.getValue());
     }
 
     /**
@@ -369,54 +504,81 @@ public class CSVExporter implements CSVConstants {
             return ""; //$NON-NLS-1$
         }
         
-        // Newlines (optional)
-        if(fStripNewLines) {
-            s = s.replaceAll("(\r\n|\r|\n)", " ");  //$NON-NLS-1$//$NON-NLS-2$
-        }
-        
-        // Tabs become a space
-        s = s.replace("\t", " "); //$NON-NLS-1$ //$NON-NLS-2$
-        
-        // Single quotes become double quotes
-        s = s.replace("\"", "\"\"");  //$NON-NLS-1$//$NON-NLS-2$
-        
-        return s;
+        StringBuilder sb = new StringBuilder(s.length() + 16);
+        appendNormalised(sb, s);
+        return sb.toString();
     }
     
-    String surroundWithQuotes(String s) {
-        if(needsLeadingCharHack(s)) {
-            return "\"=\"\"" + s + "\"\"\""; //$NON-NLS-1$ //$NON-NLS-2$
+    /**
+     * Append a normalised String to sb one character at a time.
+     * Newlines become a space (optional), tabs become a space and single quotes become double quotes.
+     */
+    private void appendNormalised(StringBuilder sb, String s) {
+        int length = s.length();
+        
+        for(int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            
+            if(c == '\t') {
+                sb.append(' ');
+            }
+            else if(c == '"') {
+                sb.append("\"\""); //$NON-NLS-1$
+            }
+            else if(fStripNewLines && (c == '\r' || c == '\n')) {
+                sb.append(' ');
+                // CRLF is one space
+                if(c == '\r' && i < length - 1 && s.charAt(i + 1) == '\n') {
+                    i++;
+                }
+            }
+            else {
+                sb.append(c);
+            }
         }
-        return "\"" + s + "\""; //$NON-NLS-1$ //$NON-NLS-2$
-    }
-    
-    boolean needsLeadingCharHack(String s) {
-        return s != null && fUseLeadingCharsHack && (s.startsWith(" ") || s.startsWith("0"));  //$NON-NLS-1$//$NON-NLS-2$
     }
     
     /**
-     * Return a list of all elements/relations in a given folder and its child folders
+     * Append a normalised String surrounded with quotes to sb.
+     * This is the same as surroundWithQuotes(normalise(s)) without creating the intermediate Strings.
      */
-    private List<IArchimateConcept> getConcepts(IFolder folder) {
-        List<IArchimateConcept> list = new ArrayList<IArchimateConcept>();
-        
-        if(folder == null) {
-            return list;
-        }
-        
-        for(EObject object : folder.getElements()) {
-            if(object instanceof IArchimateConcept) {
-                list.add((IArchimateConcept)object);
-            }
+    private void appendNormalisedAndQuoted(StringBuilder sb, String s) {
+        if(s == null) {
+            s = ""; //$NON-NLS-1$
         }
         
-        for(IFolder f : folder.getFolders()) {
-            list.addAll(getConcepts(f));
+        boolean hack = false;
+        if(fUseLeadingCharsHack && s.length() > 0) {
+            // The first character after normalising
+            char c = s.charAt(0);
+            hack = c == ' ' || c == '0' || c == '\t' || (fStripNewLines && (c == '\r' || c == '\n'));
         }
         
-        return list;
+        sb.append(hack ? "\"=\"\"" : "\""); //$NON-NLS-1$ //$NON-NLS-2$
+        appendNormalised(sb, s);
+        sb.append(hack ? "\"\"\"" : "\""); //$NON-NLS-1$ //$NON-NLS-2$
     }
-
+    
+    /**
+     * Append a String surrounded with quotes to sb
+     */
+    private void appendQuoted(StringBuilder sb, String s) {
+        boolean hack = needsLeadingCharHack(s);
+        sb.append(hack ? "\"=\"\"" : "\""); //$NON-NLS-1$ //$NON-NLS-2$
+        sb.append(s);
+        sb.append(hack ? "\"\"\"" : "\""); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    String surroundWithQuotes(String s) {
+        StringBuilder sb = new StringBuilder();
+        appendQuoted(sb, s);
+        return sb.toString();
+    }
+    
+    boolean needsLeadingCharHack(String s) {
+        return s != null && fUseLeadingCharsHack && (s.startsWith(" ") || s.startsWith("0"));  //$NON-NLS-1$//$NON-NLS-2$
+    }
+    
     /**
      * Sort a list of ArchimateElement/Relationship types
      * Sort by class name then element name
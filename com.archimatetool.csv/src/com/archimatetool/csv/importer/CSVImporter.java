@@ -8,12 +8,12 @@ package com.archimatetool.csv.importer;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.Reader;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
+import java.util.regex.Pattern;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
@@ -45,10 +45,40 @@ import com.archimatetool.model.util.ArchimateModelUtils;
 /**
  * CSV Importer
  * 
+ * Files are parsed one record at a time so that large files are not read into memory in one go.
+ * The delimiter is sniffed from the start of each file.
+ * 
  * @author Phillip Beauvoir
  */
 public class CSVImporter implements CSVConstants {
     
+    /**
+     * Valid characters in an ID
+     */
+    private static final Pattern ID_PATTERN = Pattern.compile("^[a-zA-Z0-9._-]+$"); //$NON-NLS-1$
+    
+    /**
+     * Newlines and Tabs
+     */
+    private static final Pattern NORMALISE_PATTERN = Pattern.compile("(\r\n|\r|\n|\t)"); //$NON-NLS-1$
+    
+    /**
+     * Delimiters that are sniffed for, in order of preference
+     */
+    private static final char[] DELIMITERS = { ',', ';', '\t' };
+    
+    /**
+     * Number of characters at the start of a file to sniff for the delimiter
+     */
+    private static final int SNIFF_SIZE = 4096;
+    
+    /**
+     * Handler for each record read from a CSV file
+     */
+    private interface IRecordHandler {
+        void handleRecord(CSVRecord csvRecord) throws CSVParseException;
+    }
+    
     private IArchimateModel fModel;
     
     // ID -> IArchimateConcept: new elements and relations added
@@ -202,32 +232,24 @@ public class CSVImporter implements CSVConstants {
      * @throws CSVParseException
      */
     void importElements(File file) throws IOException, CSVParseException {
-        List<CSVRecord> records = getRecords(file);
+        int count = readRecords(file, MODEL_ELEMENTS_HEADER, new IRecordHandler() {
+            @Override
+            public void handleRecord(CSVRecord csvRecord) throws CSVParseException {
+                // Model (this is optional)
+                if(isModelRecord(csvRecord)) {
+                    parseModelRecord(csvRecord);
+                }
+                // Element
+                else {
+                    createElementFromRecord(csvRecord);
+                }
+            }
+        });
         
         // Should have at least one record
-        if(records.isEmpty()) {
+        if(count == 0) {
             throw new CSVParseException(Messages.CSVImporter_1);
         }
-        
-        for(CSVRecord csvRecord : records) {
-            if(!isElementsRecordCorrectSize(csvRecord)) {
-                throw new CSVParseException(Messages.CSVImporter_2);
-            }
-
-            // Header
-            if(isHeaderRecord(csvRecord, MODEL_ELEMENTS_HEADER)) {
-                continue;
-            }
-
-            // Model (this is optional)
-            if(isModelRecord(csvRecord)) {
-                parseModelRecord(csvRecord);
-            }
-            // Element
-            else {
-                createElementFromRecord(csvRecord);
-            }
-        }
     }
     
     /**
@@ -252,10 +274,6 @@ public class CSVImporter implements CSVConstants {
         modelPurpose = csvRecord.get(3);
     }
 
-    private boolean isElementsRecordCorrectSize(CSVRecord csvRecord) {
-        return csvRecord.size() == MODEL_ELEMENTS_HEADER.length;
-    }
-
     /**
      * Create an Archimate Element from a given CSVRecord
      */
@@ -307,20 +325,12 @@ public class CSVImporter implements CSVConstants {
      * @throws CSVParseException
      */
     void importRelations(File file) throws IOException, CSVParseException {
-        for(CSVRecord csvRecord : getRecords(file)) {
-            if(!isRelationsRecordCorrectSize(csvRecord)) {
-                throw new CSVParseException(Messages.CSVImporter_2);
-            }
-
-            // Header
-            if(isHeaderRecord(csvRecord, RELATIONSHIPS_HEADER)) {
-                continue;
-            }
-            // Relation
-            else {
+        readRecords(file, RELATIONSHIPS_HEADER, new IRecordHandler() {
+            @Override
+            public void handleRecord(CSVRecord csvRecord) throws CSVParseException {
                 createRelationFromRecord(csvRecord);
             }
-        }
+        });
         
         // Now connect the relations
         for(Entry<String, IArchimateConcept> entry : newConcepts.entrySet()) {
@@ -342,10 +352,6 @@ public class CSVImporter implements CSVConstants {
         }
     }
     
-    private boolean isRelationsRecordCorrectSize(CSVRecord csvRecord) {
-        return csvRecord.size() == RELATIONSHIPS_HEADER.length;
-    }
-
     /**
      * Create an Archimate relationship from a given CSVRecord
      */
@@ -404,24 +410,12 @@ public class CSVImporter implements CSVConstants {
      * @throws CSVParseException
      */
     void importProperties(File file) throws IOException, CSVParseException {
-        for(CSVRecord csvRecord : getRecords(file)) {
-            if(!isPropertiesRecordCorrectSize(csvRecord)) {
-                throw new CSVParseException(Messages.CSVImporter_2);
-            }
-
-            // Header
-            if(isHeaderRecord(csvRecord, PROPERTIES_HEADER)) {
-                continue;
-            }
-            // Property
-            else {
+        readRecords(file, PROPERTIES_HEADER, new IRecordHandler() {
+            @Override
+            public void handleRecord(CSVRecord csvRecord) throws CSVParseException {
                 createPropertyFromRecord(csvRecord);
             }
-        }
-    }
-    
-    private boolean isPropertiesRecordCorrectSize(CSVRecord csvRecord) {
-        return csvRecord.size() == PROPERTIES_HEADER.length;
+        });
     }
     
     /**
@@ -443,7 +437,7 @@ public class CSVImporter implements CSVConstants {
         
         // Not found, check if it's referencing an existing element in the model
         if(propertiesObject == null) {
-            EObject eObject = ArchimateModelUtils.getObjectByID(fModel, id);
+            EObject eObject = getObjectInModel(id);
             if(eObject instanceof IProperties) {
                 propertiesObject = (IProperties)eObject;
             }
@@ -480,57 +474,117 @@ public class CSVImporter implements CSVConstants {
     // -------------------------------- Helpers --------------------------------
     
     /**
-     * Get all records for a CSV file.
-     * This is a brute-force approach to try with a comma delimiter first. If that fails then
-     * try a semicolon, and if that fails, a tab.
+     * Read the records of a CSV file one at a time.
+     * Each record must be the same size as the header fields. The header record, if present, is skipped.
      * 
      * @param file The file to open
-     * @return Records, which may be empty but never null
+     * @param fields The header fields
+     * @param handler The handler for each record that is not the header record
+     * @return The number of records read, including the header record
      * @throws IOException
+     * @throws CSVParseException
      */
-    List<CSVRecord> getRecords(File file) throws IOException {
-        List<CSVRecord> records = new ArrayList<CSVRecord>(); 
-        CSVParser parser = null;
+    private int readRecords(File file, String[] fields, IRecordHandler handler) throws IOException, CSVParseException {
+        int count = 0;
         
-        String errorMessage = "invalid char between encapsulated token and delimiter"; //$NON-NLS-1$
+        try(CSVParser parser = getParser(file)) {
+            for(CSVRecord csvRecord : parser) {
+                count++;
+                
+                if(csvRecord.size() != fields.length) {
+                    throw new CSVParseException(Messages.CSVImporter_2);
+                }
+                
+                if(!isHeaderRecord(csvRecord, fields)) {
+                    handler.handleRecord(csvRecord);
+                }
+            }
+        }
+        // The parser's iterator wraps an IOException in an IllegalStateException
+        catch(IllegalStateException ex) {
+            if(ex.getCause() instanceof IOException) {
+                throw (IOException)ex.getCause();
+            }
+            throw ex;
+        }
         
-        try {
-            parser = new CSVParser(new FileReader(file), CSVFormat.DEFAULT);
-            records = parser.getRecords();
+        return count;
+    }
+    
+    /**
+     * Get a parser for a CSV file using the delimiter sniffed from the start of the file.
+     * 
+     * @param file The file to open
+     * @return The parser which should be closed by the caller
+     * @throws IOException
+     */
+    CSVParser getParser(File file) throws IOException {
+        char delimiter = sniffDelimiter(file);
+        return new CSVParser(new FileReader(file), CSVFormat.DEFAULT.withDelimiter(delimiter));
+    }
+    
+    /**
+     * Sniff the delimiter from the start of a CSV file
+     * 
+     * @param file The file
+     * @return The delimiter, a comma by default
+     * @throws IOException
+     */
+    char sniffDelimiter(File file) throws IOException {
+        char[] buffer = new char[SNIFF_SIZE];
+        int length = 0;
+        
+        try(Reader reader = new FileReader(file)) {
+            int read;
+            while(length < buffer.length && (read = reader.read(buffer, length, buffer.length - length)) != -1) {
+                length += read;
+            }
         }
-        catch(IOException ex) {
-            if(parser != null) {
-                parser.close();
+        
+        return sniffDelimiter(buffer, length);
+    }
+    
+    /**
+     * Sniff the delimiter from the first record of some CSV text.
+     * The delimiter is the one that occurs most often outside of quotes. If there are none a comma is returned.
+     * 
+     * @param buffer The text
+     * @param length The length of the text in buffer
+     * @return The delimiter
+     */
+    char sniffDelimiter(char[] buffer, int length) {
+        int[] counts = new int[DELIMITERS.length];
+        boolean inQuotes = false;
+        
+        for(int i = 0; i < length; i++) {
+            char c = buffer[i];
+            
+            // An escaped quote is two quotes which toggles this twice
+            if(c == '"') {
+                inQuotes = !inQuotes;
             }
-            if(ex.getMessage() != null && ex.getMessage().contains(errorMessage)) {
-                try {
-                    parser = new CSVParser(new FileReader(file), CSVFormat.DEFAULT.withDelimiter(';'));
-                    records = parser.getRecords();
+            else if(!inQuotes) {
+                // End of the first record
+                if(c == '\r' || c == '\n') {
+                    break;
                 }
-                catch(IOException ex2) {
-                    if(parser != null) {
-                        parser.close();
-                    }
-                    if(ex2.getMessage() != null && ex2.getMessage().contains(errorMessage)) {
-                        parser = new CSVParser(new FileReader(file), CSVFormat.DEFAULT.withDelimiter('\t'));
-                        records = parser.getRecords();
-                    }
-                    else {
-                        throw ex2;
+                
+                for(int j = 0; j < DELIMITERS.length; j++) {
+                    if(c == DELIMITERS[j]) {
+                        counts[j]++;
                     }
                 }
             }
-            else {
-                throw ex;
-            }
         }
-        finally {
-            if(parser != null) {
-                parser.close();
+        
+        int best = 0;
+        for(int j = 1; j < DELIMITERS.length; j++) {
+            if(counts[j] > counts[best]) {
+                best = j;
             }
         }
         
-        return records;
+        return DELIMITERS[best];
     }
     
     /**
@@ -585,7 +639,7 @@ public class CSVImporter implements CSVConstants {
         }
         
         // Newlines and Tabs
-        s = s.replaceAll("(\r\n|\r|\n|\t)", " ");  //$NON-NLS-1$//$NON-NLS-2$
+        s = NORMALISE_PATTERN.matcher(s).replaceAll(" "); //$NON-NLS-1$
         
         return s;
     }
@@ -621,7 +675,7 @@ public class CSVImporter implements CSVConstants {
     }
     
     void checkIDForInvalidCharacters(String id) throws CSVParseException {
-        if(!id.matches("^[a-zA-Z0-9._-]+$")) { //$NON-NLS-1$
+        if(!ID_PATTERN.matcher(id).matches()) {
             throw new CSVParseException(Messages.CSVImporter_12 + id);
         }
     }
@@ -631,7 +685,7 @@ public class CSVImporter implements CSVConstants {
      * @throws CSVParseException 
      */
     IArchimateConcept findArchimateConceptInModel(String id, EClass eClass) throws CSVParseException {
-        EObject eObject = ArchimateModelUtils.getObjectByID(fModel, id);
+        EObject eObject = getObjectInModel(id);
         
         // Found an element with this id
         if(eObject != null) {
@@ -658,7 +712,7 @@ public class CSVImporter implements CSVConstants {
         
         // No. How about in the model?
         if(eObject == null) {
-            eObject = ArchimateModelUtils.getObjectByID(fModel, id);
+            eObject = getObjectInModel(id);
         }
         
         // Not found
@@ -674,6 +728,14 @@ public class CSVImporter implements CSVConstants {
         return (IArchimateConcept)eObject;
     }
     
+    /**
+     * Find an existing object in the model given its id. Return null if not found.
+     * This uses the model's index of IDs so is a constant time look up.
+     */
+    EObject getObjectInModel(String id) {
+        return ArchimateModelUtils.getObjectByID(fModel, id);
+    }
+    
     boolean isArchimateConceptEClass(EClass eClass) {
         return eClass != null && IArchimatePackage.eINSTANCE.getArchimateConcept().isSuperTypeOf(eClass);
     }
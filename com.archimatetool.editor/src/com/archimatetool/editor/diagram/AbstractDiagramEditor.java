@@ -13,9 +13,7 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.draw2d.PositionConstants;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Point;
-import org.eclipse.emf.common.notify.Adapter;
 import org.eclipse.emf.common.notify.Notification;
-import org.eclipse.emf.ecore.util.EContentAdapter;
 import org.eclipse.gef.DefaultEditDomain;
 import org.eclipse.gef.EditPart;
 import org.eclipse.gef.GraphicalViewer;
@@ -121,6 +119,7 @@ import com.archimatetool.editor.utils.PlatformUtils;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.util.IModelChangeListener;
 
 
 
@@ -181,12 +180,11 @@ implements IDiagramModelEditor, IContextProvider, ITabbedPropertySheetPageContri
     }
     
     /**
-     * Adapter class to respond to Archimate Model notifications.
+     * Listener to respond to Archimate Model notifications.
      */
-    protected Adapter eCoreAdapter = new EContentAdapter() {
+    protected IModelChangeListener eCoreListener = new IModelChangeListener() {
         @Override
         public void notifyChanged(Notification msg) {
-            super.notifyChanged(msg);
             eCoreModelChanged(msg);
         }
     };
@@ -212,7 +210,7 @@ implements IDiagramModelEditor, IContextProvider, ITabbedPropertySheetPageContri
         fDiagramModel = ((DiagramEditorInput)input).getDiagramModel();
         
         // Listen to its notifications
-        fDiagramModel.getArchimateModel().eAdapters().add(eCoreAdapter);
+        fDiagramModel.getArchimateModel().getChangeDispatcher().addListener(eCoreListener);
         
         // Edit Domain before init
         // Use CommandStack from Model
@@ -878,7 +876,7 @@ implements IDiagramModelEditor, IContextProvider, ITabbedPropertySheetPageContri
         Preferences.STORE.removePropertyChangeListener(appPreferencesListener);
         
         if(getModel() != null && getModel().getArchimateModel() != null) {
-            getModel().getArchimateModel().eAdapters().remove(eCoreAdapter);
+            getModel().getArchimateModel().getChangeDispatcher().removeListener(eCoreListener);
         }
     }
 }
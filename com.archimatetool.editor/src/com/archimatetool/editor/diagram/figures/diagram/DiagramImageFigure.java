@@ -16,15 +16,17 @@ import org.eclipse.swt.graphics.Image;
 
 import com.archimatetool.editor.diagram.figures.AbstractDiagramModelObjectFigure;
 import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.ui.ArchiveImageCache;
 import com.archimatetool.editor.ui.ColorFactory;
 import com.archimatetool.editor.ui.IArchiImages;
-import com.archimatetool.editor.ui.ImageFactory;
 import com.archimatetool.model.IDiagramModelImage;
 
 
 /**
  * Diagram Image Figure
  * 
+ * Images are shared with other figures that show the same image at the same size.
+ * 
  * @author Phillip Beauvoir
  */
 public class DiagramImageFigure extends AbstractDiagramModelObjectFigure {
@@ -133,22 +135,12 @@ public class DiagramImageFigure extends AbstractDiagramModelObjectFigure {
         }
     }
     
+    /**
+     * @return The shared original image. This must be released with ArchiveImageCache.releaseImage(Image)
+     */
     protected Image getOriginalImage() {
-        Image image = null;
-        
-        String imagePath = getDiagramModelObject().getImagePath();
-        
-        if(imagePath != null) {
-            IArchiveManager archiveManager = (IArchiveManager)getDiagramModelObject().getAdapter(IArchiveManager.class);
-            try {
-                image = archiveManager.createImage(imagePath);
-            }
-            catch(Exception ex) {
-                ex.printStackTrace();
-            }
-        }
-        
-        return image;
+        IArchiveManager archiveManager = (IArchiveManager)getDiagramModelObject().getAdapter(IArchiveManager.class);
+        return ArchiveImageCache.getImage(archiveManager, getDiagramModelObject().getImagePath());
     }
     
     /**
@@ -166,25 +158,22 @@ public class DiagramImageFigure extends AbstractDiagramModelObjectFigure {
         if(width != fCurrentImageSize.width || height != fCurrentImageSize.height) {
             disposeImage();
             
-            Image originalImage = getOriginalImage();
+            // The original image if it's the same size or a shared scaled image
+            IArchiveManager archiveManager = (IArchiveManager)getDiagramModelObject().getAdapter(IArchiveManager.class);
+            fImage = ArchiveImageCache.getScaledImage(archiveManager, getDiagramModelObject().getImagePath(), width, height);
             
-            // Use original image
-            if(width == originalImage.getBounds().width && height == originalImage.getBounds().height) {
-                fImage = originalImage;
-            }
-            // Scaled image
-            else {
-                fImage = ImageFactory.getScaledImage(originalImage, width, height);
-                originalImage.dispose();
+            if(fImage != null) {
+                fCurrentImageSize = new Dimension(fImage);
             }
-
-            fCurrentImageSize = new Dimension(fImage);
         }
     }
     
+    /**
+     * Release the shared image
+     */
     protected void disposeImage() {
-        if(fImage != null && !fImage.isDisposed()) {
-            fImage.dispose();
+        if(fImage != null) {
+            ArchiveImageCache.releaseImage(fImage);
             fImage = null;
         }
     }
@@ -106,8 +106,9 @@ public interface IArchiveManager {
      * Get image bytes by entryName
      * @param entryName The key path entryname
      * @return The image bytes or null if not found
+     * @throws IOException if the image bytes could not be read from the archive file that they were loaded from
      */
-    byte[] getBytesFromEntry(String entryName);
+    byte[] getBytesFromEntry(String entryName) throws IOException;
     
     /**
      * Create a new Image for this path entry
@@ -136,7 +137,8 @@ public interface IArchiveManager {
     void saveModel() throws IOException;
     
     /**
-     * Load all images for this model
+     * Load all images for this model.
+     * The image bytes may not be read from the model's file until they are first used.
      * @throws IOException
      */
     void loadImages() throws IOException;
@@ -31,10 +31,26 @@ public interface IEditorModelManager {
     String PROPERTY_MODEL_REMOVED = "IEditorModelManager.model.removed"; //$NON-NLS-1$
     String PROPERTY_MODEL_SAVED = "IEditorModelManager.model.saved"; //$NON-NLS-1$
     
+    /*
+     * Notification that a model that was loaded in the background has been registered, or could not be opened.
+     * The old value is the model's file and the new value is the model or null.
+     */
+    String PROPERTY_MODEL_LOAD_FINISHED = "IEditorModelManager.model.loadFinished"; //$NON-NLS-1$
+    
     String COMMAND_STACK_CHANGED = "IEditorModelManager.model.dirty"; //$NON-NLS-1$
 
+    /*
+     * Notification of one ECore event that was not made by a command on a model's Command Stack.
+     * The new value is the Notification.
+     */
     String PROPERTY_ECORE_EVENT = "IEditorModelManager.ecore.event"; //$NON-NLS-1$
     
+    /*
+     * Notification of all the ECore events made by a command on a model's Command Stack when it has been executed, undone or redone.
+     * The new value is a ModelChangeSet. The ECore events in it are not sent as PROPERTY_ECORE_EVENT.
+     */
+    String PROPERTY_ECORE_CHANGE_SET = "IEditorModelManager.ecore.changeSet"; //$NON-NLS-1$
+    
     /*
      *  Notification that many ECore events will be fired in succession.
      *  Listeners can choose to then ignore the events and then update when notified of end.
@@ -89,6 +105,12 @@ public interface IEditorModelManager {
      */
     IArchimateModel loadModel(File file);
     
+    /**
+     * @return The files of models that are being loaded in the background when the application starts.
+     *         These models are not in {@link #getModels()} until they have been loaded.
+     */
+    List<File> getLoadingModelFiles();
+    
     /**
      * Close a model
      * @param model
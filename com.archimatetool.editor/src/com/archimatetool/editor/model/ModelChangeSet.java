@@ -0,0 +1,159 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * The changes made to a model by one command when it is executed, undone or redone.
+ *
+ * The Editor Model Manager collects the notifications of a model while a command runs on the model's Command Stack
+ * and sends them to listeners in one {@link IEditorModelManager#PROPERTY_ECORE_CHANGE_SET} event when the command has finished.
+ *
+ * If an attribute of an object is set more than once only the last notification is kept, in the place of the first one.
+ * Touch notifications are not kept.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ModelChangeSet {
+
+    private IArchimateModel fModel;
+
+    private List<Notification> fNotifications = new ArrayList<Notification>();
+
+    /**
+     * Index of the attribute notification for a notifier and feature
+     */
+    private Map<AttributeKey, Integer> fAttributeIndexes = new HashMap<AttributeKey, Integer>();
+
+    private Set<EObject> fChangedObjects = new LinkedHashSet<EObject>();
+
+    private static class AttributeKey {
+        Object notifier, feature;
+
+        AttributeKey(Object notifier, Object feature) {
+            this.notifier = notifier;
+            this.feature = feature;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof AttributeKey)) {
+                return false;
+            }
+            AttributeKey other = (AttributeKey)obj;
+            return notifier == other.notifier && feature == other.feature;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(notifier) * 31 + System.identityHashCode(feature);
+        }
+    }
+
+    /**
+     * @param model The model that is changed
+     */
+    public ModelChangeSet(IArchimateModel model) {
+        fModel = model;
+    }
+
+    /**
+     * Add a notification to the change set
+     * @param msg The notification
+     */
+    public void add(Notification msg) {
+        if(msg.isTouch()) {
+            return;
+        }
+
+        if(msg.getNotifier() instanceof EObject) {
+            fChangedObjects.add((EObject)msg.getNotifier());
+        }
+
+        switch(msg.getEventType()) {
+            case Notification.ADD:
+            case Notification.ADD_MANY:
+                addChangedObjects(msg.getNewValue());
+                break;
+
+            case Notification.REMOVE:
+            case Notification.REMOVE_MANY:
+                addChangedObjects(msg.getOldValue());
+                break;
+
+            default:
+                break;
+        }
+
+        // Replace an earlier notification of the same attribute
+        if((msg.getEventType() == Notification.SET || msg.getEventType() == Notification.UNSET) && msg.getFeature() instanceof EAttribute) {
+            AttributeKey key = new AttributeKey(msg.getNotifier(), msg.getFeature());
+            Integer index = fAttributeIndexes.get(key);
+            if(index != null) {
+                fNotifications.set(index, msg);
+                return;
+            }
+            fAttributeIndexes.put(key, fNotifications.size());
+        }
+
+        fNotifications.add(msg);
+    }
+
+    private void addChangedObjects(Object value) {
+        if(value instanceof EObject) {
+            fChangedObjects.add((EObject)value);
+        }
+        else if(value instanceof Collection) {
+            for(Object o : (Collection<?>)value) {
+                addChangedObjects(o);
+            }
+        }
+    }
+
+    /**
+     * @return The model that is changed
+     */
+    public IArchimateModel getModel() {
+        return fModel;
+    }
+
+    /**
+     * @return The notifications in the order that they were sent
+     */
+    public List<Notification> getNotifications() {
+        return Collections.unmodifiableList(fNotifications);
+    }
+
+    /**
+     * @return The objects that were changed, added or removed
+     */
+    public Set<EObject> getChangedObjects() {
+        return Collections.unmodifiableSet(fChangedObjects);
+    }
+
+    /**
+     * @return true if there are no changes
+     */
+    public boolean isEmpty() {
+        return fNotifications.isEmpty();
+    }
+}
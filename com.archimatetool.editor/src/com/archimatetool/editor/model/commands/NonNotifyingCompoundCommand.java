@@ -14,6 +14,8 @@ import com.archimatetool.editor.model.IEditorModelManager;
 /**
  * Compound Command that will set a property to listeners to ignore notifications.
  * Used where many commands might cause excessive amounts of responses in clients listening to model changes. 
+ * When this is executed on a model's Command Stack the notifications are sent to listeners in one change set anyway
+ * (see IEditorModelManager.PROPERTY_ECORE_CHANGE_SET). This is for when it is executed directly.
  * 
  * @author Phillip Beauvoir
  */
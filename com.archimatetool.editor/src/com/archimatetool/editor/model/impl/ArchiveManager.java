@@ -12,10 +12,23 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
@@ -24,32 +37,35 @@ import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
-import org.eclipse.emf.ecore.util.EContentAdapter;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.widgets.Display;
 
+import com.archimatetool.editor.Logger;
 import com.archimatetool.editor.model.IArchiveManager;
-import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.utils.FileUtils;
-import com.archimatetool.editor.utils.ZipUtils;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IDiagramModelImageProvider;
 import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.model.util.IModelChangeListener;
 
 
 
 /**
  * Archive Manager
  * 
+ * Models are saved to a new file next to the model's file which then replaces the model's file.
+ * If saving fails the model's file is not changed.
+ * 
  * @author Phillip Beauvoir
  */
 public class ArchiveManager implements IArchiveManager {
     
     /**
-     * Raw image bytes loaded for all images in use globally in the app
+     * Raw image bytes loaded for all images in use globally in the app.
+     * Each Archive Manager holds a reference to the images that it has loaded so that they are released when the last one is disposed.
      */
     static ByteArrayStorage BYTE_ARRAY_STORAGE = new ByteArrayStorage();
     
@@ -66,34 +82,31 @@ public class ArchiveManager implements IArchiveManager {
     /**
      * Paths of images loaded
      */
-    private List<String> fLoadedImagePaths = new ArrayList<String>();
+    private Set<String> fLoadedImagePaths = new LinkedHashSet<String>();
+    
+    /**
+     * Archive files that images have been loaded from or saved to and which they can be read from until this is disposed
+     */
+    private Set<File> fArchiveFiles = new HashSet<File>();
     
     /**
-     * Adapter monitors added image components added by user (copy & paste, DND, image set, etc)
+     * Listener monitors added image components added by user (copy & paste, DND, image set, etc)
      * since images were loaded from archive file.
      */
-    private EContentAdapter fModelAdapter = new EContentAdapter() {
+    private IModelChangeListener fModelListener = new IModelChangeListener() {
         @Override
         public void notifyChanged(Notification msg) {
-            super.notifyChanged(msg);
-
             // IDiagramModelImageProvider added
             if(msg.getEventType() == Notification.ADD) {
                 if(msg.getNewValue() instanceof IDiagramModelImageProvider) {
                     IDiagramModelImageProvider imageProvider = (IDiagramModelImageProvider)msg.getNewValue();
-                    String imagePath = imageProvider.getImagePath();
-                    if(imagePath != null && !fLoadedImagePaths.contains(imagePath)) {
-                        fLoadedImagePaths.add(imagePath);
-                    }
+                    addLoadedImagePath(imageProvider.getImagePath());
                 }
             }
             // Image path set
             else if(msg.getEventType() == Notification.SET) {
                 if(msg.getFeature() == IArchimatePackage.Literals.DIAGRAM_MODEL_IMAGE_PROVIDER__IMAGE_PATH) {
-                    String imagePath = (String)msg.getNewValue();
-                    if(imagePath != null && !fLoadedImagePaths.contains(imagePath)) {
-                        fLoadedImagePaths.add(imagePath);
-                    }
+                    addLoadedImagePath((String)msg.getNewValue());
                 }
             }
         }
@@ -104,7 +117,8 @@ public class ArchiveManager implements IArchiveManager {
      */
     public ArchiveManager(IArchimateModel model) {
         fModel = model;
-        fModel.eAdapters().add(fModelAdapter);
+        fModel.getChangeDispatcher().addListener(fModelListener, IArchimatePackage.Literals.DIAGRAM_MODEL_CONTAINER__CHILDREN,
+                IArchimatePackage.Literals.DIAGRAM_MODEL_IMAGE_PROVIDER__IMAGE_PATH);
     }
 
     @Override
@@ -124,7 +138,7 @@ public class ArchiveManager implements IArchiveManager {
         // Once the imagepath has been returned, the caller should call
         // IDiagramModelImageProvider.setImagePath(imagepath)
         // And this in turn will add the image path to fLoadededImagePaths via
-        // the EContentAdapter
+        // the model listener
 
         return addByteContentEntry(entryName, bytes);
     }
@@ -154,19 +168,19 @@ public class ArchiveManager implements IArchiveManager {
     
     @Override
     public List<String> getImagePaths() {
-        List<String> list = new ArrayList<String>();
+        Set<String> paths = new LinkedHashSet<String>();
         
         for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
             EObject element = iter.next();
             if(element instanceof IDiagramModelImageProvider) {
                 String imagePath = ((IDiagramModelImageProvider)element).getImagePath();
-                if(imagePath != null && !list.contains(imagePath)) {
-                    list.add(imagePath);
+                if(imagePath != null) {
+                    paths.add(imagePath);
                 }
             }
         }
         
-        return list;
+        return new ArrayList<String>(paths);
     }
     
     @Override
@@ -175,41 +189,55 @@ public class ArchiveManager implements IArchiveManager {
     }
     
     /**
-     * Load images from model's archive file
+     * Load images from model's archive file.
+     * Only the image entries are registered here, the image bytes are read from the archive file when they are first used.
      */
     @Override
     public void loadImages() throws IOException {
-        if(!fImagesLoaded && loadImagesFromModelFile(fModel.getFile())) {
+        if(!fImagesLoaded && loadImagesFromModelFile(fModel.getFile(), true)) {
             fImagesLoaded = true;
         }
     }
     
+    /**
+     * The images are read now as the file might not be there later
+     */
     @Override
     public boolean loadImagesFromModelFile(File file) throws IOException {
+        return loadImagesFromModelFile(file, false);
+    }
+    
+    /**
+     * @param lazy If true only register the image entries so that the bytes are read from the file when they are first used
+     */
+    private boolean loadImagesFromModelFile(File file, boolean lazy) throws IOException {
         if(file == null || !file.exists() || !FACTORY.isArchiveFile(file)) {
             return false;
         }
         
-        ZipFile zipFile = new ZipFile(file);
-        
-        for(Enumeration<? extends ZipEntry> enm = zipFile.entries(); enm.hasMoreElements();) {
-            ZipEntry zipEntry = enm.nextElement();
-            String entryName = zipEntry.getName();
-            if(entryName.startsWith("images/")) { //$NON-NLS-1$
-                // Add to ByteArrayStorage
-                if(!BYTE_ARRAY_STORAGE.hasEntry(entryName)) {
-                    InputStream in = zipFile.getInputStream(zipEntry);
-                    BYTE_ARRAY_STORAGE.addStreamEntry(entryName, in);
-                }
-                
-                // Add to list
-                if(!fLoadedImagePaths.contains(entryName)) {
-                    fLoadedImagePaths.add(entryName);
+        try(ZipFile zipFile = new ZipFile(file)) {
+            for(Enumeration<? extends ZipEntry> enm = zipFile.entries(); enm.hasMoreElements();) {
+                ZipEntry zipEntry = enm.nextElement();
+                String entryName = zipEntry.getName();
+                if(entryName.startsWith("images/")) { //$NON-NLS-1$
+                    // Add to ByteArrayStorage
+                    if(lazy) {
+                        BYTE_ARRAY_STORAGE.addArchiveEntry(entryName, file, zipEntry.getSize(), zipEntry.getCrc());
+                    }
+                    else if(!BYTE_ARRAY_STORAGE.hasEntry(entryName)) {
+                        InputStream in = zipFile.getInputStream(zipEntry);
+                        BYTE_ARRAY_STORAGE.addStreamEntry(entryName, in);
+                    }
+                    
+                    // Add to list
+                    addLoadedImagePath(entryName);
                 }
             }
         }
         
-        zipFile.close();
+        if(lazy) {
+            addArchiveFile(file);
+        }
         
         return true;
     }
@@ -229,7 +257,7 @@ public class ArchiveManager implements IArchiveManager {
     }
 
     @Override
-    public byte[] getBytesFromEntry(String entryName) {
+    public byte[] getBytesFromEntry(String entryName) throws IOException {
         return BYTE_ARRAY_STORAGE.getEntry(entryName);
     }
 
@@ -271,49 +299,71 @@ public class ArchiveManager implements IArchiveManager {
      * Save the model to XML File format
      */
     private void saveModelToXMLFile(File file) throws IOException {
-        // For safety, save to temp file first and then copy across
-        File tmpFile = File.createTempFile("archi-", null); //$NON-NLS-1$
-        tmpFile.deleteOnExit();
+        File targetFile = getTargetFile(file);
+        File tmpFile = createSaveFile(targetFile);
         
-        try {
-            saveResource(tmpFile);
-            FileUtils.copyFile(tmpFile, file, false);
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(tmpFile))) {
+            saveResource(file, out);
         }
-        finally {
+        catch(IOException ex) {
             tmpFile.delete();
+            throw ex;
         }
+        
+        replaceFile(tmpFile, targetFile);
     }
     
     /**
      * Save the model to Archive File format
      */
     private void saveModelToArchiveFile(File file) throws IOException {
-        // Temp file for xml model file
-        File tmpFile = File.createTempFile("archi-", null); //$NON-NLS-1$
-        tmpFile.deleteOnExit();
-        saveResource(tmpFile);
+        File targetFile = getTargetFile(file);
+        File tmpFile = createSaveFile(targetFile);
         
-        // Create Zip File output stream to model's file
-        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-        ZipOutputStream zOut = new ZipOutputStream(out);
+        // Saved image paths and their zip entries
+        Map<String, ZipEntry> images = new LinkedHashMap<String, ZipEntry>();
         
-        try {
+        try(ZipOutputStream zOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
             // Add the model xml file
-            ZipUtils.addFileToZip(tmpFile, "model.xml", zOut); //$NON-NLS-1$
+            zOut.putNextEntry(new ZipEntry("model.xml")); //$NON-NLS-1$
+            saveResource(file, zOut);
+            zOut.closeEntry();
             
             // Add any images
-            saveImages(zOut);
+            saveImages(zOut, images);
         }
-        finally {
+        catch(IOException ex) {
             tmpFile.delete();
-            zOut.close();
+            throw ex;
+        }
+        
+        synchronized(BYTE_ARRAY_STORAGE) {
+            // Images that can only be read from the model's file and were not saved to it are read in before it is replaced
+            try {
+                BYTE_ARRAY_STORAGE.readArchiveEntries(file, images.keySet());
+            }
+            catch(IOException ex) {
+                tmpFile.delete();
+                throw ex;
+            }
+            
+            replaceFile(tmpFile, targetFile);
+            
+            // The images can now be read again from the saved file
+            for(Entry<String, ZipEntry> entry : images.entrySet()) {
+                BYTE_ARRAY_STORAGE.addArchiveEntry(entry.getKey(), file, entry.getValue().getSize(), entry.getValue().getCrc());
+            }
         }
+        
+        addArchiveFile(file);
     }
     
     /**
      * Save the model to Resource
+     * @param file The model's file
+     * @param out The stream to save the model to
      */
-    private void saveResource(File file) throws IOException {
+    private void saveResource(File file, OutputStream out) throws IOException {
         Resource resource = fModel.eResource();
         
         // No parent Resource set, so create a new one
@@ -328,33 +378,144 @@ public class ArchiveManager implements IArchiveManager {
         
         // Catch *all* exceptions in case of XML errors
         try {
-            resource.save(null);
+            resource.save(out, null);
         }
         catch(Exception ex) {
             throw new IOException(ex);
         }
     }
     
-    private void saveImages(ZipOutputStream zOut) throws IOException {
-        List<String> added = new ArrayList<String>();
+    /**
+     * @return The file that saving replaces. If the model's file is a link this is the file that it links to.
+     */
+    private File getTargetFile(File file) throws IOException {
+        Path path = file.toPath();
+        return Files.isSymbolicLink(path) ? path.toRealPath().toFile() : file;
+    }
+    
+    /**
+     * @return A new file in the same folder as the target file to save to, so that it can be moved to the target file
+     */
+    private File createSaveFile(File targetFile) throws IOException {
+        File folder = targetFile.getAbsoluteFile().getParentFile();
+        folder.mkdirs();
+        return File.createTempFile("archi-", ".tmp", folder); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    /**
+     * Replace the target file with the saved file. This is an atomic move where the file system supports it.
+     */
+    private void replaceFile(File tmpFile, File targetFile) throws IOException {
+        Path target = targetFile.toPath();
         
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IDiagramModelImageProvider) {
-                IDiagramModelImageProvider imageProvider = (IDiagramModelImageProvider)eObject;
-                String imagePath = imageProvider.getImagePath();
-                if(imagePath != null && !added.contains(imagePath)) {
+        try {
+            Files.move(tmpFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException ex) {
+            Files.move(tmpFile.toPath(), target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch(IOException ex) {
+            tmpFile.delete();
+            throw ex;
+        }
+    }
+    
+    /**
+     * Save the images used in the model.
+     * Images that are not held in memory are copied from the archive file that they were loaded from,
+     * which might be the model's file as that is not replaced until saving has finished.
+     * @param images The saved image paths and their zip entries are added to this
+     * @throws IOException if an image is not found, so that the model's file is not replaced without it
+     */
+    private void saveImages(ZipOutputStream zOut, Map<String, ZipEntry> images) throws IOException {
+        Map<File, ZipFile> zipFiles = new HashMap<File, ZipFile>();
+        
+        try {
+            for(String imagePath : getImagePaths()) {
+                ZipEntry zipEntry = null;
+                
+                File archiveFile = BYTE_ARRAY_STORAGE.getArchiveFile(imagePath);
+                if(archiveFile != null) {
+                    ZipFile zipFile = zipFiles.get(archiveFile);
+                    if(zipFile == null) {
+                        zipFile = new ZipFile(archiveFile);
+                        zipFiles.put(archiveFile, zipFile);
+                    }
+                    zipEntry = copyImage(zipFile, imagePath, zOut);
+                }
+                
+                // Image is held in memory or could not be copied from its archive file
+                if(zipEntry == null) {
                     byte[] bytes = BYTE_ARRAY_STORAGE.getEntry(imagePath);
-                    if(bytes != null) {
-                        ZipEntry zipEntry = new ZipEntry(imagePath);
-                        zOut.putNextEntry(zipEntry);
-                        zOut.write(bytes);
-                        zOut.closeEntry();
-                        added.add(imagePath);
+                    if(bytes == null) {
+                        throw new IOException("Image not found: " + imagePath); //$NON-NLS-1$
                     }
+                    
+                    CRC32 crc = new CRC32();
+                    crc.update(bytes);
+                    zipEntry = createImageZipEntry(imagePath, bytes.length, crc.getValue());
+                    zOut.putNextEntry(zipEntry);
+                    zOut.write(bytes);
+                    zOut.closeEntry();
                 }
+                
+                // The zip entry's size and CRC are set when it is closed
+                images.put(imagePath, zipEntry);
+            }
+        }
+        finally {
+            for(ZipFile zipFile : zipFiles.values()) {
+                zipFile.close();
+            }
+        }
+    }
+    
+    /**
+     * Copy an image from another archive file
+     * @return The new zip entry or null if the archive file does not contain the image
+     */
+    private ZipEntry copyImage(ZipFile zipFile, String imagePath, ZipOutputStream zOut) throws IOException {
+        ZipEntry zipEntry = zipFile.getEntry(imagePath);
+        if(zipEntry == null) {
+            return null;
+        }
+        
+        ZipEntry newZipEntry = createImageZipEntry(imagePath, zipEntry.getSize(), zipEntry.getCrc());
+        zOut.putNextEntry(newZipEntry);
+        
+        try(InputStream in = zipFile.getInputStream(zipEntry)) {
+            byte[] buf = new byte[8192];
+            int size;
+            while((size = in.read(buf)) != -1) {
+                zOut.write(buf, 0, size);
             }
         }
+        
+        zOut.closeEntry();
+        
+        return newZipEntry;
+    }
+    
+    /**
+     * Images in compressed formats are stored as they are.
+     * Compressing them again saves little space and means that they have to be compressed every time the model is saved.
+     * @param size The size of the image or -1 if not known
+     * @param crc The CRC-32 of the image or -1 if not known
+     */
+    private ZipEntry createImageZipEntry(String imagePath, long size, long crc) {
+        ZipEntry zipEntry = new ZipEntry(imagePath);
+        
+        String path = imagePath.toLowerCase();
+        boolean isCompressed = path.endsWith(".png") || path.endsWith(".jpg") || path.endsWith(".jpeg") || path.endsWith(".gif"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+        
+        if(isCompressed && size != -1 && crc != -1) {
+            zipEntry.setMethod(ZipEntry.STORED);
+            zipEntry.setSize(size);
+            zipEntry.setCompressedSize(size);
+            zipEntry.setCrc(crc);
+        }
+        
+        return zipEntry;
     }
     
     private String createArchiveImagePathname(File file) {
@@ -370,41 +531,57 @@ public class ArchiveManager implements IArchiveManager {
         return path;
     }
     
+    /**
+     * Add an image path that this model uses and reference its image data
+     */
+    private void addLoadedImagePath(String imagePath) {
+        if(imagePath != null && fLoadedImagePaths.add(imagePath)) {
+            BYTE_ARRAY_STORAGE.addReference(imagePath);
+        }
+    }
+    
+    /**
+     * Add an archive file that images can be read from until this is disposed
+     */
+    private void addArchiveFile(File file) {
+        if(fArchiveFiles.add(file.getAbsoluteFile())) {
+            BYTE_ARRAY_STORAGE.addArchiveFileUser(file);
+        }
+    }
+    
     @Override
     public void dispose() {
-        fModel.eAdapters().remove(fModelAdapter);
+        fModel.getChangeDispatcher().removeListener(fModelListener);
         
-        if(!fLoadedImagePaths.isEmpty()) {
-            unloadUnusedImages();
-        }
+        unloadUnusedImages();
+        releaseArchiveFiles();
         
         fLoadedImagePaths.clear();
         fModel = null;
     }
     
     /**
-     * Unload any images not in use in other models
+     * Release this model's archive files. Images still used in other models that can only be read from them are read in now.
      */
-    private void unloadUnusedImages() {
-        // Gather all image paths that are in use in other models
-        List<String> allPathsInUse = new ArrayList<String>();
-        
-        for(IArchimateModel model : IEditorModelManager.INSTANCE.getModels()) {
-            if(model != fModel) { // don't bother with this model as we no longer use any images
-                ArchiveManager archiveManager = (ArchiveManager)model.getAdapter(IArchiveManager.class);
-                for(String imagePath : archiveManager.fLoadedImagePaths) {
-                    if(!allPathsInUse.contains(imagePath)) {
-                        allPathsInUse.add(imagePath);
-                    }
-                }
+    private void releaseArchiveFiles() {
+        for(File file : fArchiveFiles) {
+            try {
+                BYTE_ARRAY_STORAGE.removeArchiveFileUser(file);
+            }
+            catch(IOException ex) {
+                Logger.logError("Could not read images from " + file, ex); //$NON-NLS-1$
             }
         }
         
-        // Release all unused image data and cached images that are not in image paths
+        fArchiveFiles.clear();
+    }
+    
+    /**
+     * Release the references to this model's images. Image data that is not used in other models is removed.
+     */
+    private void unloadUnusedImages() {
         for(String imagePath : fLoadedImagePaths) {
-            if(!allPathsInUse.contains(imagePath)) {
-                BYTE_ARRAY_STORAGE.removeEntry(imagePath);
-            }
+            BYTE_ARRAY_STORAGE.removeReference(imagePath);
         }
     }
 }
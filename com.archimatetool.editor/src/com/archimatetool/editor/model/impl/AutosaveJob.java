@@ -0,0 +1,89 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.ui.PlatformUI;
+
+import com.archimatetool.editor.Logger;
+import com.archimatetool.editor.preferences.IPreferenceConstants;
+import com.archimatetool.editor.preferences.Preferences;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Job that periodically saves snapshots of modified models to recovery files so that they can be recovered
+ * if the application does not close properly.
+ *
+ * @author Phillip Beauvoir
+ */
+class AutosaveJob extends Job {
+
+    private EditorModelManager fEditorModelManager;
+
+    AutosaveJob(EditorModelManager editorModelManager) {
+        super(Messages.EditorModelManager_16);
+        fEditorModelManager = editorModelManager;
+        setSystem(true);
+    }
+
+    /**
+     * Schedule the next autosave if autosave is set in Preferences
+     */
+    void scheduleNext() {
+        if(Preferences.STORE.getBoolean(IPreferenceConstants.AUTOSAVE)) {
+            schedule(Preferences.STORE.getInt(IPreferenceConstants.AUTOSAVE_INTERVAL) * 60000L);
+        }
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        if(!PlatformUI.isWorkbenchRunning()) {
+            return Status.CANCEL_STATUS;
+        }
+
+        final List<IArchimateModel> snapshots = new ArrayList<IArchimateModel>();
+
+        // Snapshots are taken in the UI thread
+        Display display = PlatformUI.getWorkbench().getDisplay();
+        if(!display.isDisposed()) {
+            display.syncExec(new Runnable() {
+                @Override
+                public void run() {
+                    snapshots.addAll(fEditorModelManager.createRecoverySnapshots());
+                }
+            });
+        }
+
+        for(IArchimateModel snapshot : snapshots) {
+            if(monitor.isCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+
+            try {
+                SaveModelJob.saveSnapshot(snapshot);
+            }
+            catch(IOException ex) {
+                Logger.logError("Could not save recovery file", ex); //$NON-NLS-1$
+            }
+        }
+
+        if(!monitor.isCanceled()) {
+            scheduleNext();
+        }
+
+        return Status.OK_STATUS;
+    }
+}
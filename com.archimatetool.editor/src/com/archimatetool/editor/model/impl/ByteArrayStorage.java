@@ -11,23 +11,128 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Byte Array Storage Unit
  * 
+ * Entries with the same content share the same bytes. Entries are indexed by a digest of their content so that
+ * duplicates are found without comparing the bytes of every entry.
+ * 
+ * Entries can be reference counted by their users and are removed when the last reference is removed.
+ * 
+ * Entries can also be backed by archive files. Only the entry's name and the archive files that contain it are stored
+ * until the bytes are first requested. The bytes of archive entries are then kept in a cache of limited size and
+ * read again from the archive if they have been removed from the cache.
+ * 
+ * An archive file is only read from if it has the same modification time and length as when the entry was added.
+ * Before the last archive file that an entry can be read from is replaced or is no longer used the entry's bytes are
+ * read into memory. An archive entry that can't be read from any of its archive files is an error.
+ * 
  * @author Phillip Beauvoir
  */
 public class ByteArrayStorage {
     
+    /**
+     * Default maximum size of the bytes of archive entries held in memory
+     */
+    static final long DEFAULT_ARCHIVE_CACHE_LIMIT = 64 * 1024 * 1024;
+    
     private Map<String, byte[]> fdataTable = new HashMap<String, byte[]>();
     
-    InputStream getInputStream(String entryName) {
+    /**
+     * Entry name -> archive files that contain the entry, the most recent first
+     */
+    private Map<String, ArchiveEntry> fArchiveEntries = new HashMap<String, ArchiveEntry>();
+    
+    /**
+     * CRC-32 of archive entries -> names of archive entries with that CRC
+     */
+    private Map<Long, List<String>> fArchiveCrcTable = new HashMap<Long, List<String>>();
+    
+    /**
+     * Archive file -> number of users
+     */
+    private Map<File, Integer> fArchiveFileUsers = new HashMap<File, Integer>();
+    
+    /**
+     * Bytes of archive entries in least recently used order
+     */
+    private LinkedHashMap<String, byte[]> fArchiveCache = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    
+    private long fArchiveCacheSize;
+    private long fArchiveCacheLimit = DEFAULT_ARCHIVE_CACHE_LIMIT;
+    
+    private static class ArchiveEntry {
+        List<ArchiveSource> sources = new ArrayList<ArchiveSource>();
+        long size = -1;
+        long crc = -1;
+        
+        ArchiveSource getSource(File archiveFile) {
+            for(ArchiveSource source : sources) {
+                if(source.file.equals(archiveFile)) {
+                    return source;
+                }
+            }
+            return null;
+        }
+    }
+    
+    /**
+     * An archive file that contains an entry and the archive file's modification time and length when the entry was added
+     */
+    private static class ArchiveSource {
+        File file;
+        long lastModified;
+        long length;
+        
+        ArchiveSource(File file) {
+            this.file = file;
+            lastModified = file.lastModified();
+            length = file.length();
+        }
+        
+        /**
+         * @return true if the archive file is still there and has not been changed since the entry was added
+         */
+        boolean isUnchanged() {
+            return file.exists() && file.lastModified() == lastModified && file.length() == length;
+        }
+    }
+    
+    /**
+     * Content digest -> names of entries with that content
+     */
+    private Map<String, List<String>> fDigestTable = new HashMap<String, List<String>>();
+    
+    /**
+     * Entry name -> content digest
+     */
+    private Map<String, String> fEntryDigests = new HashMap<String, String>();
+    
+    /**
+     * Entry name -> number of references
+     */
+    private Map<String, Integer> fReferenceCounts = new HashMap<String, Integer>();
+    
+    synchronized InputStream getInputStream(String entryName) throws IOException {
         if(entryName != null) {
-            byte[] bytes = fdataTable.get(entryName);
+            byte[] bytes = getEntry(entryName);
             if(bytes != null) {
                 return new ByteArrayInputStream(bytes);
             }
@@ -35,20 +140,50 @@ public class ByteArrayStorage {
         return null;
     }
 
-    String getKey(byte[] bytes) {
-        for(Entry<String, byte[]> entry : fdataTable.entrySet()) {
-            byte[] entryBytes = entry.getValue();
-            if(isEqual(bytes, entryBytes)) {
-                return entry.getKey();
+    synchronized String getKey(byte[] bytes) {
+        if(bytes == null) {
+            return null;
+        }
+        
+        List<String> entryNames = fDigestTable.get(getDigest(bytes));
+        if(entryNames != null) {
+            // All entries with this digest share the same bytes, check them in case of a digest collision
+            String entryName = entryNames.get(0);
+            if(Arrays.equals(bytes, fdataTable.get(entryName))) {
+                return entryName;
+            }
+        }
+        
+        // Archive entries are only read and compared if they have the same size and CRC
+        if(!fArchiveCrcTable.isEmpty()) {
+            List<String> archiveEntryNames = fArchiveCrcTable.get(getCrc(bytes));
+            if(archiveEntryNames != null) {
+                for(String entryName : new ArrayList<String>(archiveEntryNames)) {
+                    if(fArchiveEntries.get(entryName).size == bytes.length) {
+                        try {
+                            if(Arrays.equals(bytes, getArchiveEntry(entryName))) {
+                                return entryName;
+                            }
+                        }
+                        catch(IOException ex) {
+                            // Can't be read so the bytes can't be shared
+                        }
+                    }
+                }
             }
         }
         
         return null;
     }
     
-    long getEntrySize(String entryName) {
+    synchronized long getEntrySize(String entryName) throws IOException {
         if(entryName != null) {
-            byte[] bytes = fdataTable.get(entryName);
+            ArchiveEntry archiveEntry = fArchiveEntries.get(entryName);
+            if(archiveEntry != null && archiveEntry.size != -1 && !fdataTable.containsKey(entryName)) {
+                return archiveEntry.size;
+            }
+            
+            byte[] bytes = getEntry(entryName);
             if(bytes != null) {
                 return bytes.length;
             }
@@ -60,20 +195,321 @@ public class ByteArrayStorage {
         return fdataTable.entrySet();
     }
 
-    boolean hasEntries() {
-        return !fdataTable.isEmpty();
+    synchronized boolean hasEntries() {
+        return !fdataTable.isEmpty() || !fArchiveEntries.isEmpty();
     }
     
-    boolean hasEntry(String entryName) {
-        return fdataTable.containsKey(entryName);
+    synchronized boolean hasEntry(String entryName) {
+        return fdataTable.containsKey(entryName) || fArchiveEntries.containsKey(entryName);
     }
     
-    void removeEntry(String entryName) {
+    synchronized void removeEntry(String entryName) {
         fdataTable.remove(entryName);
+        fReferenceCounts.remove(entryName);
+        removeArchiveEntry(entryName);
+        
+        String digest = fEntryDigests.remove(entryName);
+        if(digest != null) {
+            List<String> entryNames = fDigestTable.get(digest);
+            entryNames.remove(entryName);
+            if(entryNames.isEmpty()) {
+                fDigestTable.remove(digest);
+            }
+        }
+    }
+    
+    /**
+     * @return The entry's bytes or null if there is no such entry
+     * @throws IOException if the entry is an archive entry that can't be read from any of its archive files
+     */
+    synchronized byte[] getEntry(String entryName) throws IOException {
+        byte[] bytes = fdataTable.get(entryName);
+        if(bytes == null && entryName != null) {
+            bytes = getArchiveEntry(entryName);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Add an entry that is read from an archive file when it is first requested.
+     * If the entry has already been added from another archive file then this archive file is tried first.
+     * The archive file's modification time and length are recorded now and it is not read from if they change.
+     * @param entryName The entry name, which is also the name of the entry in the archive file
+     * @param archiveFile The archive file
+     * @param size The size of the entry or -1 if not known
+     * @param crc The CRC-32 of the entry or -1 if not known
+     */
+    synchronized void addArchiveEntry(String entryName, File archiveFile, long size, long crc) {
+        // Already have the bytes
+        if(fdataTable.containsKey(entryName)) {
+            return;
+        }
+        
+        ArchiveEntry archiveEntry = fArchiveEntries.get(entryName);
+        if(archiveEntry == null) {
+            archiveEntry = new ArchiveEntry();
+            fArchiveEntries.put(entryName, archiveEntry);
+        }
+        
+        archiveFile = archiveFile.getAbsoluteFile();
+        archiveEntry.sources.remove(archiveEntry.getSource(archiveFile));
+        archiveEntry.sources.add(0, new ArchiveSource(archiveFile));
+        
+        if(size != -1) {
+            archiveEntry.size = size;
+        }
+        
+        if(crc != -1 && crc != archiveEntry.crc) {
+            removeArchiveCrc(entryName, archiveEntry);
+            archiveEntry.crc = crc;
+            List<String> entryNames = fArchiveCrcTable.get(crc);
+            if(entryNames == null) {
+                entryNames = new ArrayList<String>();
+                fArchiveCrcTable.put(crc, entryNames);
+            }
+            entryNames.add(entryName);
+        }
+    }
+    
+    /**
+     * Add a user of an archive file. While an archive file has users the entries added from it can be read from it.
+     */
+    synchronized void addArchiveFileUser(File archiveFile) {
+        archiveFile = archiveFile.getAbsoluteFile();
+        Integer count = fArchiveFileUsers.get(archiveFile);
+        fArchiveFileUsers.put(archiveFile, count == null ? 1 : count + 1);
+    }
+    
+    /**
+     * Remove a user of an archive file. If this is the last user the bytes of entries that can only be read from
+     * the archive file are read into memory and the archive file is not read from again.
+     * @throws IOException if the bytes of an entry could not be read from the archive file
+     */
+    synchronized void removeArchiveFileUser(File archiveFile) throws IOException {
+        archiveFile = archiveFile.getAbsoluteFile();
+        Integer count = fArchiveFileUsers.get(archiveFile);
+        if(count == null) {
+            return;
+        }
+        
+        if(count > 1) {
+            fArchiveFileUsers.put(archiveFile, count - 1);
+            return;
+        }
+        
+        fArchiveFileUsers.remove(archiveFile);
+        
+        try {
+            readArchiveEntries(archiveFile, Collections.<String>emptySet());
+        }
+        finally {
+            for(ArchiveEntry archiveEntry : fArchiveEntries.values()) {
+                archiveEntry.sources.remove(archiveEntry.getSource(archiveFile));
+            }
+        }
+    }
+    
+    synchronized int getArchiveFileUserCount(File archiveFile) {
+        Integer count = fArchiveFileUsers.get(archiveFile.getAbsoluteFile());
+        return count == null ? 0 : count;
+    }
+    
+    /**
+     * Read the bytes of the entries that can only be read from an archive file into memory.
+     * This is done before the archive file is replaced or is no longer used.
+     * @param except Names of entries that are not read because they will be added again from the archive file
+     * @throws IOException if the bytes of an entry could not be read from the archive file
+     */
+    synchronized void readArchiveEntries(File archiveFile, Collection<String> except) throws IOException {
+        archiveFile = archiveFile.getAbsoluteFile();
+        
+        for(Entry<String, ArchiveEntry> entry : new ArrayList<Entry<String, ArchiveEntry>>(fArchiveEntries.entrySet())) {
+            String entryName = entry.getKey();
+            ArchiveEntry archiveEntry = entry.getValue();
+            
+            if(except.contains(entryName) || !isOnlyArchiveSource(archiveEntry, archiveFile)) {
+                continue;
+            }
+            
+            byte[] bytes = getArchiveEntry(entryName);
+            
+            Integer count = fReferenceCounts.get(entryName);
+            removeEntry(entryName);
+            if(count != null) {
+                fReferenceCounts.put(entryName, count);
+            }
+            
+            addBytes(entryName, bytes);
+        }
+    }
+    
+    /**
+     * @return true if the archive file is unchanged and the entry can't be read from any other archive file
+     */
+    private boolean isOnlyArchiveSource(ArchiveEntry archiveEntry, File archiveFile) {
+        ArchiveSource archiveSource = archiveEntry.getSource(archiveFile);
+        if(archiveSource == null || !archiveSource.isUnchanged()) {
+            return false;
+        }
+        
+        for(ArchiveSource source : archiveEntry.sources) {
+            if(source != archiveSource && source.isUnchanged()) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * @return The archive file that the entry would be read from, or null if the entry's bytes are held in memory
+     *         or it is not an archive entry
+     */
+    synchronized File getArchiveFile(String entryName) {
+        if(fdataTable.containsKey(entryName) || fArchiveCache.containsKey(entryName)) {
+            return null;
+        }
+        
+        ArchiveEntry archiveEntry = fArchiveEntries.get(entryName);
+        if(archiveEntry != null) {
+            for(ArchiveSource source : archiveEntry.sources) {
+                if(source.isUnchanged()) {
+                    return source.file;
+                }
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Set the maximum size of the bytes of archive entries held in memory
+     */
+    synchronized void setArchiveCacheLimit(long limit) {
+        fArchiveCacheLimit = limit;
+        trimArchiveCache();
+    }
+    
+    synchronized long getArchiveCacheSize() {
+        return fArchiveCacheSize;
+    }
+    
+    private byte[] getArchiveEntry(String entryName) throws IOException {
+        byte[] bytes = fArchiveCache.get(entryName);
+        if(bytes != null) {
+            return bytes;
+        }
+        
+        ArchiveEntry archiveEntry = fArchiveEntries.get(entryName);
+        if(archiveEntry == null) {
+            return null;
+        }
+        
+        IOException readException = null;
+        
+        for(Iterator<ArchiveSource> iter = archiveEntry.sources.iterator(); iter.hasNext() && bytes == null;) {
+            ArchiveSource source = iter.next();
+            
+            // The archive file has been deleted or changed so don't try it again
+            if(!source.isUnchanged()) {
+                iter.remove();
+                continue;
+            }
+            
+            try {
+                bytes = readArchiveEntry(source.file, entryName);
+            }
+            catch(IOException ex) {
+                readException = ex;
+                continue;
+            }
+            
+            // The archive file doesn't contain the entry that was added
+            if(bytes == null || (archiveEntry.crc != -1 && getCrc(bytes) != archiveEntry.crc)) {
+                bytes = null;
+                iter.remove();
+            }
+        }
+        
+        if(bytes == null) {
+            throw new IOException("Could not read " + entryName + " from its archive files", readException); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        
+        archiveEntry.size = bytes.length;
+        fArchiveCache.put(entryName, bytes);
+        fArchiveCacheSize += bytes.length;
+        trimArchiveCache();
+        
+        return bytes;
+    }
+    
+    private byte[] readArchiveEntry(File archiveFile, String entryName) throws IOException {
+        try(ZipFile zipFile = new ZipFile(archiveFile)) {
+            ZipEntry zipEntry = zipFile.getEntry(entryName);
+            return zipEntry != null ? getBytesFromStream(zipFile.getInputStream(zipEntry)) : null;
+        }
+    }
+    
+    private void removeArchiveEntry(String entryName) {
+        ArchiveEntry archiveEntry = fArchiveEntries.remove(entryName);
+        if(archiveEntry != null) {
+            removeArchiveCrc(entryName, archiveEntry);
+        }
+        
+        byte[] bytes = fArchiveCache.remove(entryName);
+        if(bytes != null) {
+            fArchiveCacheSize -= bytes.length;
+        }
+    }
+    
+    private void removeArchiveCrc(String entryName, ArchiveEntry archiveEntry) {
+        List<String> entryNames = fArchiveCrcTable.get(archiveEntry.crc);
+        if(entryNames != null) {
+            entryNames.remove(entryName);
+            if(entryNames.isEmpty()) {
+                fArchiveCrcTable.remove(archiveEntry.crc);
+            }
+        }
+    }
+    
+    /**
+     * Remove the least recently used bytes from the cache until it is within the limit
+     */
+    private void trimArchiveCache() {
+        for(Iterator<byte[]> iter = fArchiveCache.values().iterator(); iter.hasNext() && fArchiveCacheSize > fArchiveCacheLimit;) {
+            fArchiveCacheSize -= iter.next().length;
+            iter.remove();
+        }
     }
     
-    byte[] getEntry(String entryName) {
-        return fdataTable.get(entryName);
+    /**
+     * Add a reference to an entry. The entry does not have to have been added yet.
+     */
+    synchronized void addReference(String entryName) {
+        if(entryName != null) {
+            Integer count = fReferenceCounts.get(entryName);
+            fReferenceCounts.put(entryName, count == null ? 1 : count + 1);
+        }
+    }
+    
+    /**
+     * Remove a reference to an entry. If this is the last reference the entry is removed.
+     */
+    synchronized void removeReference(String entryName) {
+        Integer count = fReferenceCounts.get(entryName);
+        if(count != null) {
+            if(count > 1) {
+                fReferenceCounts.put(entryName, count - 1);
+            }
+            else {
+                removeEntry(entryName);
+            }
+        }
+    }
+    
+    synchronized int getReferenceCount(String entryName) {
+        Integer count = fReferenceCounts.get(entryName);
+        return count == null ? 0 : count;
     }
     
     void addFileContentEntry(String entryName, File file) throws IOException {
@@ -85,18 +521,42 @@ public class ByteArrayStorage {
         addByteContentEntry(entryName, bytes);
     }
 
-    void addByteContentEntry(String entryName, byte[] bytes) {
+    synchronized void addByteContentEntry(String entryName, byte[] bytes) {
+        // Replacing an entry
+        if(hasEntry(entryName)) {
+            Integer count = fReferenceCounts.get(entryName);
+            removeEntry(entryName);
+            if(count != null) {
+                fReferenceCounts.put(entryName, count);
+            }
+        }
+        
+        addBytes(entryName, bytes);
+    }
+    
+    private void addBytes(String entryName, byte[] bytes) {
         // Check if we have these bytes already. If we do then re-reference them
         // We might be adding the same set of bytes but from a different file
-        String key = getKey(bytes);
+        String digest = getDigest(bytes);
+        List<String> entryNames = fDigestTable.get(digest);
         
         // Yes we have them, so re-use the bytes
-        if(key != null) {
-            fdataTable.put(entryName, getEntry(key));
+        if(entryNames != null && Arrays.equals(bytes, fdataTable.get(entryNames.get(0)))) {
+            fdataTable.put(entryName, fdataTable.get(entryNames.get(0)));
+            entryNames.add(entryName);
+            fEntryDigests.put(entryName, digest);
         }
         // No, so add the bytes
         else {
             fdataTable.put(entryName, bytes);
+            
+            // Index the bytes unless this is a digest collision in which case they can only be found by entry name
+            if(entryNames == null) {
+                entryNames = new ArrayList<String>();
+                entryNames.add(entryName);
+                fDigestTable.put(digest, entryNames);
+                fEntryDigests.put(entryName, digest);
+            }
         }
     }
     
@@ -109,30 +569,37 @@ public class ByteArrayStorage {
         return null;
     }
     
-    private boolean isEqual(byte[] b1, byte[] b2) {
-        if(b1 == null || b2 == null) {
-            return false;
+    /**
+     * @return A digest of the bytes as a hex string
+     */
+    private String getDigest(byte[] bytes) {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
         }
-        
-        if(b1.length == b2.length) {
-            int i = 0;
-            int j = 0;
-            int n = b1.length;
-            while(n-- != 0) {
-                if(b1[i++] != b2[j++]) {
-                    return false;
-                }
-            }
-            return true;
+        catch(NoSuchAlgorithmException ex) {
+            // Every Java platform supports SHA-1
+            throw new RuntimeException(ex);
         }
         
-        return false;
+        StringBuilder sb = new StringBuilder();
+        for(byte b : md.digest(bytes)) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+    
+    private long getCrc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
     }
     
     /**
      * Read in a stream and return its contents as a byte array
      */
-    private byte[] getBytesFromStream(InputStream in) throws IOException {
+    byte[] getBytesFromStream(InputStream in) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         byte[] buf = new byte[8192];
         try {
@@ -11,18 +11,27 @@ import java.beans.PropertyChangeSupport;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.eclipse.emf.common.notify.Notification;
-import org.eclipse.emf.common.util.URI;
-import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource.Diagnostic;
-import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.gef.commands.Command;
 import org.eclipse.gef.commands.CommandStack;
 import org.eclipse.gef.commands.CommandStackEvent;
 import org.eclipse.gef.commands.CommandStackEventListener;
 import org.eclipse.jface.dialogs.IDialogConstants;
 import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Display;
@@ -40,10 +49,8 @@ import com.archimatetool.editor.Logger;
 import com.archimatetool.editor.diagram.util.AnimationUtil;
 import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.model.IEditorModelManager;
+import com.archimatetool.editor.model.ModelChangeSet;
 import com.archimatetool.editor.model.ModelChecker;
-import com.archimatetool.editor.model.compatibility.CompatibilityHandlerException;
-import com.archimatetool.editor.model.compatibility.IncompatibleModelException;
-import com.archimatetool.editor.model.compatibility.ModelCompatibility;
 import com.archimatetool.editor.preferences.IPreferenceConstants;
 import com.archimatetool.editor.preferences.Preferences;
 import com.archimatetool.editor.ui.services.EditorManager;
@@ -54,7 +61,7 @@ import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.ModelVersion;
-import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.model.util.IModelChangeListener;
 
 
 
@@ -65,7 +72,9 @@ import com.archimatetool.model.util.ArchimateResourceFactory;
  * so that clients only have to register here once rather than for each model.<p>
  * Also can pass on arbitrary PropertyChangeEvents to registered listeners.<br>
  * Also manages CommandStacks for models.<br>
- * Also handles persistence of models.
+ * Also handles persistence of models.<br>
+ * Models can be saved in the background and are periodically saved to recovery files so that they can be
+ * recovered if the application does not close properly.
  * 
  * @author Phillip Beauvoir
  */
@@ -87,16 +96,73 @@ implements IEditorModelManager {
      */
     private File backingFile = new File(ArchiPlugin.INSTANCE.getUserDataFolder(), "models.xml"); //$NON-NLS-1$
     
+    /**
+     * Models being saved in the background
+     */
+    private Map<IArchimateModel, SaveModelJob> fSaveJobs = new HashMap<IArchimateModel, SaveModelJob>();
+    
+    /**
+     * Folder of the recovery files saved by autosave. Files are left here if the application does not close properly.
+     */
+    private File fRecoveryFolder = new File(ArchiPlugin.INSTANCE.getUserDataFolder(), "recovery"); //$NON-NLS-1$
+    
+    /**
+     * Recovery files of models
+     */
+    private Map<IArchimateModel, File> fRecoveryFiles = new HashMap<IArchimateModel, File>();
+    
+    /**
+     * The models' undo commands when they were last saved to their recovery files
+     */
+    private Map<IArchimateModel, Command> fRecoveryPoints = new HashMap<IArchimateModel, Command>();
+    
+    /**
+     * Models opened from recovery files that have not been saved yet
+     */
+    private Set<IArchimateModel> fRecoveredModels = new HashSet<IArchimateModel>();
+    
+    private AutosaveJob fAutosaveJob;
+    
+    /**
+     * Models that are being loaded in the background when the application starts, in the order they were opened
+     */
+    private Map<File, LoadModelJob> fLoadJobs = new LinkedHashMap<File, LoadModelJob>();
+    
+    /**
+     * Forwards the changes of all open models to our listeners
+     */
+    private ECoreListener fECoreListener = new ECoreListener();
+    
+    /**
+     * The changes of models that have a command running on their Command Stack
+     */
+    private Map<IArchimateModel, ModelChangeSet> fChangeSets = new HashMap<IArchimateModel, ModelChangeSet>();
+    
     /**
      * Listen to the App closing so we can ask to save
      */
     private IWorkbenchListener workBenchListener = new IWorkbenchListener() {
         public void postShutdown(IWorkbench workbench) {
+            if(fAutosaveJob != null) {
+                fAutosaveJob.cancel();
+            }
+            
+            // Closed properly so recovery files are not needed
+            File[] files = fRecoveryFolder.listFiles();
+            if(files != null) {
+                for(File file : files) {
+                    file.delete();
+                }
+            }
         }
 
         public boolean preShutdown(IWorkbench  workbench, boolean forced) {
             // Handle modified models
             if(fModels != null) { // Dont call getModels() - we don't want to call loadState();
+                for(IArchimateModel model : fModels) {
+                    waitForSave(model);
+                }
+                
                 for(IArchimateModel model : fModels) {
                     if(isModelDirty(model)) {
                         try {
@@ -116,9 +182,26 @@ implements IEditorModelManager {
         }
     };
     
+    /**
+     * Listen to Autosave Preferences
+     */
+    private IPropertyChangeListener prefsListener = new IPropertyChangeListener() {
+        @Override
+        public void propertyChange(org.eclipse.jface.util.PropertyChangeEvent event) {
+            if(IPreferenceConstants.AUTOSAVE.equals(event.getProperty()) || IPreferenceConstants.AUTOSAVE_INTERVAL.equals(event.getProperty())) {
+                fAutosaveJob.cancel();
+                fAutosaveJob.scheduleNext();
+            }
+        }
+    };
+    
     public EditorModelManager() {
         if(PlatformUI.isWorkbenchRunning()) {
             PlatformUI.getWorkbench().addWorkbenchListener(workBenchListener);
+            
+            fAutosaveJob = new AutosaveJob(this);
+            fAutosaveJob.scheduleNext();
+            Preferences.STORE.addPropertyChangeListener(prefsListener);
         }
     }
     
@@ -133,6 +216,11 @@ implements IEditorModelManager {
             catch(Exception ex) {
                 ex.printStackTrace();
             }
+            
+            // Models that were not saved when the application last closed
+            if(PlatformUI.isWorkbenchRunning()) {
+                recoverModels();
+            }
         }
         
         return fModels;
@@ -167,7 +255,7 @@ implements IEditorModelManager {
         createNewArchiveManager(model);
         
         firePropertyChange(this, PROPERTY_MODEL_CREATED, null, model);
-        model.eAdapters().add(new ECoreAdapter());
+        model.getChangeDispatcher().addListener(fECoreListener);
     }
     
     @Override
@@ -212,7 +300,7 @@ implements IEditorModelManager {
         // New Archive Manager
         createNewArchiveManager(model);
         
-        model.eAdapters().add(new ECoreAdapter());
+        model.getChangeDispatcher().addListener(fECoreListener);
 
         firePropertyChange(this, PROPERTY_MODEL_OPENED, null, model);
     }
@@ -229,41 +317,110 @@ implements IEditorModelManager {
             return model;
         }
         
-        // Ascertain if this is an archive file
-        boolean useArchiveFormat = IArchiveManager.FACTORY.isArchiveFile(file);
+        // Wait for it if it is being loaded in the background
+        if(fLoadJobs.containsKey(file)) {
+            return waitForLoad(file);
+        }
         
-        // Create the Resource
-        Resource resource = ArchimateResourceFactory.createNewResource(useArchiveFormat ?
-                                                       IArchiveManager.FACTORY.createArchiveModelURI(file) :
-                                                       URI.createFileURI(file.getAbsolutePath()));
-
-        // Check model compatibility
-        ModelCompatibility modelCompatibility = new ModelCompatibility(resource);
+        LoadModelJob job = new LoadModelJob(file, Preferences.STORE.getBoolean(IPreferenceConstants.MODEL_CACHE));
+        job.load();
         
-        // Load the model file
-        try {
-            resource.load(null);
+        model = confirmLoad(job);
+        if(model != null) {
+            registerLoadedModel(model);
         }
-        catch(IOException ex) {
-            // Error occured loading model. 
+        
+        return model;
+    }
+    
+    /**
+     * Load a model in a background job. The model is registered in the UI thread when the job is done.
+     */
+    private void loadModelInBackground(File file) {
+        final LoadModelJob job = new LoadModelJob(file, Preferences.STORE.getBoolean(IPreferenceConstants.MODEL_CACHE));
+        fLoadJobs.put(file, job);
+        
+        job.addJobChangeListener(new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                Display display = PlatformUI.getWorkbench().getDisplay();
+                if(!display.isDisposed()) {
+                    display.asyncExec(new Runnable() {
+                        @Override
+                        public void run() {
+                            finishLoad(job);
+                        }
+                    });
+                }
+            }
+        });
+        
+        job.schedule();
+    }
+    
+    /**
+     * Wait for a model that is being loaded in the background and register it
+     * @return The model or null if it could not be opened or the user chose not to open it
+     */
+    IArchimateModel waitForLoad(File file) {
+        LoadModelJob job = fLoadJobs.get(file);
+        if(job != null) {
             try {
-                modelCompatibility.checkErrors();
+                job.join();
+                finishLoad(job);
             }
-            catch(IncompatibleModelException ex1) {
-                // Was it a disaster?
-                MessageDialog.openError(Display.getCurrent().getActiveShell(),
-                        Messages.EditorModelManager_2,
-                        NLS.bind(Messages.EditorModelManager_3, file)
-                        + "\n" + ex1.getMessage()); //$NON-NLS-1$
-                return null;
+            catch(InterruptedException ex) {
+                ex.printStackTrace();
             }
         }
         
-        model = (IArchimateModel)resource.getContents().get(0);
+        return locateLoadedModel(file);
+    }
+    
+    /**
+     * Register a model that was loaded in the background in the UI thread
+     */
+    private void finishLoad(LoadModelJob job) {
+        File file = job.getFile();
+        
+        // Already registered
+        if(fLoadJobs.get(file) != job) {
+            return;
+        }
+        
+        fLoadJobs.remove(file);
+        
+        IArchimateModel model = confirmLoad(job);
+        if(model != null) {
+            registerLoadedModel(model);
+        }
+        
+        firePropertyChange(this, PROPERTY_MODEL_LOAD_FINISHED, file, model);
+    }
+    
+    /**
+     * Report errors loading a model and ask the user whether to open a model that is a later version or has unknown features
+     * @return The model or null if it could not be opened or the user chose not to open it
+     */
+    private IArchimateModel confirmLoad(LoadModelJob job) {
+        File file = job.getFile();
+        
+        // Was it a disaster?
+        if(job.getException() != null) {
+            MessageDialog.openError(Display.getCurrent().getActiveShell(),
+                    Messages.EditorModelManager_2,
+                    NLS.bind(Messages.EditorModelManager_3, file)
+                    + "\n" + job.getException().getMessage()); //$NON-NLS-1$
+            return null;
+        }
+        
+        IArchimateModel model = job.getModel();
+        if(model == null) {
+            return null;
+        }
 
-        // Once loaded - check for later model version
-        boolean isLaterModelVersion = modelCompatibility.isLaterModelVersion(ModelVersion.VERSION);
-        if(isLaterModelVersion) {
+        // Check for later model version
+        if(job.isLaterModelVersion()) {
             boolean answer = MessageDialog.openQuestion(Display.getCurrent().getActiveShell(),
                     Messages.EditorModelManager_4,
                     NLS.bind(Messages.EditorModelManager_5,
@@ -274,7 +431,7 @@ implements IEditorModelManager {
         }
         // Check for unknown model features which might be OK to load
         else {
-            List<Diagnostic> exceptions = modelCompatibility.getAcceptableExceptions();
+            List<Diagnostic> exceptions = job.getAcceptableExceptions();
             if(!exceptions.isEmpty()) {
                 String message = ""; //$NON-NLS-1$
                 for(int i = 0; i < exceptions.size(); i++) {
@@ -294,18 +451,16 @@ implements IEditorModelManager {
                 }
             }
         }
-
-        // And then fix any backward compatibility issues
-        try {
-            modelCompatibility.fixCompatibility();
-        }
-        catch(CompatibilityHandlerException ex) {
-        }
-
-        model.setFile(file);
-        model.setDefaults();
+        
+        return model;
+    }
+    
+    /**
+     * Add a loaded model to the models and give it a Command Stack and Archive Manager
+     */
+    private void registerLoadedModel(IArchimateModel model) {
         getModels().add(model);
-        model.eAdapters().add(new ECoreAdapter());
+        model.getChangeDispatcher().addListener(fECoreListener);
 
         // New Command Stack
         createNewCommandStack(model);
@@ -318,12 +473,18 @@ implements IEditorModelManager {
 
         // This last
         firePropertyChange(this, PROPERTY_MODEL_LOADED, null, model);
-        
-        return model;
+    }
+    
+    @Override
+    public List<File> getLoadingModelFiles() {
+        return new ArrayList<File>(fLoadJobs.keySet());
     }
     
     @Override
     public boolean closeModel(IArchimateModel model) throws IOException {
+        // Wait for the model to be saved in the background
+        waitForSave(model);
+        
         // Check if model needs saving
         if(isModelDirty(model)) {
             boolean result = askSaveModel(model);
@@ -336,9 +497,15 @@ implements IEditorModelManager {
         EditorManager.closeDiagramEditors(model);
         
         getModels().remove(model);
+        model.getChangeDispatcher().removeListener(fECoreListener);
+        fChangeSets.remove(model);
         model.eAdapters().clear();
         firePropertyChange(this, PROPERTY_MODEL_REMOVED, null, model);
         
+        // Changes were saved or discarded
+        fRecoveredModels.remove(model);
+        deleteRecoveryFile(model);
+        
         // Delete the CommandStack *LAST* because GEF Editor(s) will still reference it!
         deleteCommandStack(model);
         
@@ -371,7 +538,8 @@ implements IEditorModelManager {
         
         // Yes
         if(result == 0) {
-            return saveModel(model);
+            // Not in the background as the model is about to be closed
+            return saveModel(model, false);
         }
         // No
         if(result == 1) {
@@ -383,13 +551,26 @@ implements IEditorModelManager {
 
     @Override
     public boolean saveModel(IArchimateModel model) throws IOException {
-        // Check integrity
-        ModelChecker checker = new ModelChecker(model);
-        if(!checker.checkAll()) {
-            if(PlatformUI.isWorkbenchRunning()) {
-                checker.showErrorDialog(PlatformUI.getWorkbench().getActiveWorkbenchWindow().getShell());
+        return saveModel(model, Preferences.STORE.getBoolean(IPreferenceConstants.BACKGROUND_SAVE) && PlatformUI.isWorkbenchRunning());
+    }
+    
+    /**
+     * @param inBackground If true check and save a snapshot of the model in a background job.
+     *                     Errors are then reported when the job has finished.
+     */
+    private boolean saveModel(IArchimateModel model, boolean inBackground) throws IOException {
+        // Wait for an earlier save of this model to finish
+        waitForSave(model);
+        
+        // Check integrity (this is done on the snapshot if saving in the background)
+        if(!inBackground) {
+            ModelChecker checker = new ModelChecker(model);
+            if(!checker.checkAll()) {
+                if(PlatformUI.isWorkbenchRunning()) {
+                    checker.showErrorDialog(PlatformUI.getWorkbench().getActiveWorkbenchWindow().getShell());
+                }
+                return false;
             }
-            return false;
         }
         
         // First time to save...
@@ -403,21 +584,119 @@ implements IEditorModelManager {
         
         File file = model.getFile();
         
+        // Set model version
+        model.setVersion(ModelVersion.VERSION);
+        
+        boolean backup = Preferences.STORE.getBoolean(IPreferenceConstants.BACKUP_ON_SAVE);
+        boolean cache = Preferences.STORE.getBoolean(IPreferenceConstants.MODEL_CACHE);
+        
+        if(inBackground) {
+            saveModelInBackground(model, backup, cache);
+            return true;
+        }
+        
         // Save backup (if set in Preferences)
-        if(Preferences.STORE.getBoolean(IPreferenceConstants.BACKUP_ON_SAVE) && file.exists()) {
+        if(backup && file.exists()) {
             FileUtils.copyFile(file, new File(model.getFile().getAbsolutePath() + ".bak"), false); //$NON-NLS-1$
         }
         
-        // Set model version
-        model.setVersion(ModelVersion.VERSION);
-        
         // Use Archive Manager to save contents
         IArchiveManager archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
         archiveManager.saveModel();
         
-        // Set CommandStack Save point
+        // So that the model is not loaded from the file next time it's opened
+        if(cache) {
+            ModelCache.saveInBackground(model, file);
+        }
+        
         CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
-        stack.markSaveLocation();
+        modelSaved(model, stack.getUndoCommand());
+        
+        return true;
+    }
+    
+    /**
+     * Take a snapshot of the model and check and save it in a background job
+     */
+    private void saveModelInBackground(IArchimateModel model, boolean backup, boolean cache) {
+        final SaveModelJob job = new SaveModelJob(model, backup, cache);
+        fSaveJobs.put(model, job);
+        
+        job.addJobChangeListener(new JobChangeAdapter() {
+            @Override
+            public void done(IJobChangeEvent event) {
+                Display display = PlatformUI.getWorkbench().getDisplay();
+                if(!display.isDisposed()) {
+                    display.asyncExec(new Runnable() {
+                        @Override
+                        public void run() {
+                            finishSave(job);
+                        }
+                    });
+                }
+            }
+        });
+        
+        job.schedule();
+    }
+    
+    /**
+     * Wait for a background save of the model to finish and report the result
+     */
+    void waitForSave(IArchimateModel model) {
+        SaveModelJob job = fSaveJobs.get(model);
+        if(job != null) {
+            try {
+                job.join();
+                finishSave(job);
+            }
+            catch(InterruptedException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Report the result of a background save in the UI thread
+     */
+    private void finishSave(SaveModelJob job) {
+        IArchimateModel model = job.getModel();
+        
+        // Already reported
+        if(fSaveJobs.get(model) != job) {
+            return;
+        }
+        
+        fSaveJobs.remove(model);
+        
+        if(job.isSaved()) {
+            modelSaved(model, job.getSavePoint());
+        }
+        else if(job.getException() != null) {
+            job.getException().printStackTrace();
+            MessageDialog.openError(Display.getCurrent().getActiveShell(),
+                    Messages.EditorModelManager_15,
+                    job.getException().getMessage());
+        }
+        else {
+            job.getChecker().showErrorDialog(Display.getCurrent().getActiveShell());
+        }
+    }
+    
+    /**
+     * Mark the model as saved
+     * @param savePoint The model's undo command when it was saved
+     */
+    private void modelSaved(IArchimateModel model, Command savePoint) {
+        fRecoveredModels.remove(model);
+        
+        // Set CommandStack Save point unless the model was changed while it was saved in the background
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        if(stack.getUndoCommand() == savePoint) {
+            stack.markSaveLocation();
+            deleteRecoveryFile(model);
+        }
+        
         // Send notification to Tree
         firePropertyChange(model, COMMAND_STACK_CHANGED, true, false);
         
@@ -425,8 +704,6 @@ implements IEditorModelManager {
         markDiagramModelsAsSaved(model);
         
         firePropertyChange(this, PROPERTY_MODEL_SAVED, null, model);
-        
-        return true;
     }
     
     @Override
@@ -466,6 +743,11 @@ implements IEditorModelManager {
             return false;
         }
         
+        // Models opened from recovery files have to be saved
+        if(fRecoveredModels.contains(model)) {
+            return true;
+        }
+        
         CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
         return stack != null && stack.isDirty();
     }
@@ -526,6 +808,17 @@ implements IEditorModelManager {
         // Forward on CommandStack Event to Tree
         cmdStack.addCommandStackEventListener(new CommandStackEventListener() {
             public void stackChanged(CommandStackEvent event) {
+                // Collect the changes made by the command and send them in one event
+                if(event.isPreChangeEvent()) {
+                    fChangeSets.put(model, new ModelChangeSet(model));
+                }
+                else if(event.isPostChangeEvent()) {
+                    ModelChangeSet changeSet = fChangeSets.remove(model);
+                    if(changeSet != null && !changeSet.isEmpty()) {
+                        firePropertyChange(EditorModelManager.this, PROPERTY_ECORE_CHANGE_SET, null, changeSet);
+                    }
+                }
+                
                 // Send notification to Tree
                 firePropertyChange(model, COMMAND_STACK_CHANGED, false, true);
             }
@@ -592,33 +885,136 @@ implements IEditorModelManager {
         Document doc = new Document();
         Element rootElement = new Element("models"); //$NON-NLS-1$
         doc.setRootElement(rootElement);
+        List<File> files = new ArrayList<File>();
         for(IArchimateModel model : getModels()) {
             File file = model.getFile(); // has been saved
             if(file != null) {
-                Element modelElement = new Element("model"); //$NON-NLS-1$
-                modelElement.setAttribute("file", file.getAbsolutePath()); //$NON-NLS-1$
-                rootElement.addContent(modelElement);
+                files.add(file);
             }
         }
+        
+        // Models that have not finished loading
+        files.addAll(fLoadJobs.keySet());
+        
+        for(File file : files) {
+            Element modelElement = new Element("model"); //$NON-NLS-1$
+            modelElement.setAttribute("file", file.getAbsolutePath()); //$NON-NLS-1$
+            rootElement.addContent(modelElement);
+        }
         JDOMUtils.write2XMLFile(doc, backingFile);
     }
     
+    /**
+     * Load the models that were open when the application was closed.
+     * If this is called in the UI thread the models are loaded in parallel in background jobs.
+     */
     private void loadState() throws IOException, JDOMException {
         if(backingFile.exists()) {
             Document doc = JDOMUtils.readXMLFile(backingFile);
             if(doc.hasRootElement()) {
+                boolean inBackground = PlatformUI.isWorkbenchRunning() && Display.getCurrent() != null;
+                
                 Element rootElement = doc.getRootElement();
                 for(Object e : rootElement.getChildren("model")) { //$NON-NLS-1$
                     Element modelElement = (Element)e;
                     String filePath = modelElement.getAttributeValue("file"); //$NON-NLS-1$
                     if(filePath != null) {
-                        loadModel(new File(filePath));
+                        File file = new File(filePath);
+                        if(!file.exists() || fLoadJobs.containsKey(file)) {
+                            continue;
+                        }
+                        
+                        if(inBackground) {
+                            loadModelInBackground(file);
+                        }
+                        else {
+                            loadModel(file);
+                        }
                     }
                 }
             }
         }
     }
     
+    //========================== Recovery files  ==========================
+    
+    /**
+     * Take snapshots of the models that have been changed since they were last saved to their recovery files.
+     * This is called by the autosave job in the UI thread.
+     * @return The snapshots. The file of each snapshot is the model's recovery file.
+     */
+    List<IArchimateModel> createRecoverySnapshots() {
+        List<IArchimateModel> snapshots = new ArrayList<IArchimateModel>();
+        
+        if(fModels == null) { // Dont call getModels() - we don't want to call loadState();
+            return snapshots;
+        }
+        
+        for(IArchimateModel model : fModels) {
+            CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+            if(stack == null || !isModelDirty(model) || fSaveJobs.containsKey(model)) {
+                continue;
+            }
+            
+            // Not changed since it was last saved for recovery
+            Command recoveryPoint = stack.getUndoCommand();
+            File file = fRecoveryFiles.get(model);
+            if(file != null && file.exists() && fRecoveryPoints.containsKey(model) && fRecoveryPoints.get(model) == recoveryPoint) {
+                continue;
+            }
+            
+            if(file == null) {
+                file = new File(fRecoveryFolder, UUID.randomUUID().toString() + ARCHIMATE_FILE_EXTENSION);
+                fRecoveryFiles.put(model, file);
+            }
+            
+            fRecoveryPoints.put(model, recoveryPoint);
+            snapshots.add(SaveModelJob.createSnapshot(model, file));
+        }
+        
+        return snapshots;
+    }
+    
+    private void deleteRecoveryFile(IArchimateModel model) {
+        fRecoveryPoints.remove(model);
+        
+        File file = fRecoveryFiles.remove(model);
+        if(file != null) {
+            file.delete();
+        }
+    }
+    
+    /**
+     * Ask to open the models in recovery files left when the application did not close properly.
+     * Recovered models have to be saved to a new file.
+     */
+    private void recoverModels() {
+        File[] files = fRecoveryFolder.listFiles();
+        if(files == null || files.length == 0 || Display.getCurrent() == null) {
+            return;
+        }
+        
+        boolean answer = MessageDialog.openQuestion(Display.getCurrent().getActiveShell(),
+                Messages.EditorModelManager_17,
+                NLS.bind(Messages.EditorModelManager_19, files.length));
+        
+        for(File file : files) {
+            IArchimateModel model = answer ? loadModel(file) : null;
+            
+            // Images are read from the recovery file so this is kept until the model is saved or closed
+            if(model != null) {
+                model.setFile(null);
+                fRecoveredModels.add(model);
+                fRecoveryFiles.put(model, file);
+                fRecoveryPoints.put(model, null);
+                firePropertyChange(model, COMMAND_STACK_CHANGED, false, true);
+            }
+            else {
+                file.delete();
+            }
+        }
+    }
+    
     //========================== Model Listener events  ==========================
 
     public void addPropertyChangeListener(PropertyChangeListener listener) {
@@ -633,16 +1029,25 @@ implements IEditorModelManager {
         fListeners.firePropertyChange(new PropertyChangeEvent(source, prop, oldValue, newValue));
     }
     
-    // ======================= ECore Adapter =========================================
+    // ======================= ECore Listener =========================================
     
     /**
-     * Adapter listener class.
-     * Forwards on messages so that listeners don't have to adapt to ECore objects
+     * Model change listener class.
+     * Forwards on messages so that listeners don't have to adapt to ECore objects.
+     * One instance is added to the change dispatcher of each open model.
+     * Messages from a model that has a command running on its Command Stack are added to the model's change set.
      */
-    private class ECoreAdapter extends EContentAdapter {
+    private class ECoreListener implements IModelChangeListener {
         @Override
         public void notifyChanged(Notification msg) {
-            super.notifyChanged(msg);
+            if(!fChangeSets.isEmpty() && msg.getNotifier() instanceof EObject) {
+                ModelChangeSet changeSet = fChangeSets.get(EcoreUtil.getRootContainer((EObject)msg.getNotifier()));
+                if(changeSet != null) {
+                    changeSet.add(msg);
+                    return;
+                }
+            }
+            
             // Forward on to listeners...
             firePropertyChange(this, PROPERTY_ECORE_EVENT, null, msg);
         }
@@ -0,0 +1,165 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.Resource.Diagnostic;
+import org.eclipse.osgi.util.NLS;
+
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.model.compatibility.CompatibilityHandlerException;
+import com.archimatetool.editor.model.compatibility.IncompatibleModelException;
+import com.archimatetool.editor.model.compatibility.ModelCompatibility;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.ModelVersion;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+
+
+
+/**
+ * Job to load a model from its file and fix any compatibility issues.
+ *
+ * This does not use the UI so models can be loaded in parallel. The model is not registered with the
+ * Editor Model Manager and the user is not asked anything. This is done by the Editor Model Manager in the UI thread
+ * when the job is done.
+ *
+ * @author Phillip Beauvoir
+ */
+class LoadModelJob extends Job {
+
+    private File fFile;
+    private boolean fUseCache;
+
+    private IArchimateModel fModel;
+    private IncompatibleModelException fException;
+    private boolean fLaterModelVersion;
+    private List<Diagnostic> fAcceptableExceptions = new ArrayList<Diagnostic>();
+
+    /**
+     * @param file The model file
+     * @param useCache If true load the model from the binary cache if it is there, and save it to the cache if not
+     */
+    LoadModelJob(File file, boolean useCache) {
+        super(NLS.bind(Messages.EditorModelManager_21, file.getName()));
+        fFile = file;
+        fUseCache = useCache;
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        load();
+        return Status.OK_STATUS;
+    }
+
+    /**
+     * Load the model in the calling thread
+     */
+    void load() {
+        // Load from the binary cache if the model file has not changed since it was cached
+        if(fUseCache) {
+            fModel = ModelCache.load(fFile);
+        }
+
+        if(fModel == null) {
+            loadFromFile();
+        }
+
+        if(fModel != null) {
+            fModel.setFile(fFile);
+            fModel.setDefaults();
+        }
+    }
+
+    private void loadFromFile() {
+        // Ascertain if this is an archive file
+        boolean useArchiveFormat = IArchiveManager.FACTORY.isArchiveFile(fFile);
+
+        // Create the Resource
+        Resource resource = ArchimateResourceFactory.createNewResource(useArchiveFormat ?
+                IArchiveManager.FACTORY.createArchiveModelURI(fFile) :
+                URI.createFileURI(fFile.getAbsolutePath()));
+
+        // Check model compatibility
+        ModelCompatibility modelCompatibility = new ModelCompatibility(resource);
+
+        // Load the model file
+        try {
+            resource.load(null);
+        }
+        catch(IOException ex) {
+            // Error occured loading model.
+            try {
+                modelCompatibility.checkErrors();
+            }
+            catch(IncompatibleModelException ex1) {
+                fException = ex1;
+                return;
+            }
+        }
+
+        fModel = (IArchimateModel)resource.getContents().get(0);
+
+        // Check for later model version or unknown model features which might be OK to load
+        fLaterModelVersion = modelCompatibility.isLaterModelVersion(ModelVersion.VERSION);
+        if(!fLaterModelVersion) {
+            fAcceptableExceptions = modelCompatibility.getAcceptableExceptions();
+        }
+
+        // And then fix any backward compatibility issues
+        try {
+            modelCompatibility.fixCompatibility();
+        }
+        catch(CompatibilityHandlerException ex) {
+        }
+
+        // Cache the model unless the user will be asked to open it
+        if(fUseCache && !fLaterModelVersion && fAcceptableExceptions.isEmpty()) {
+            ModelCache.saveInBackground(fModel, fFile);
+        }
+    }
+
+    File getFile() {
+        return fFile;
+    }
+
+    /**
+     * @return The model or null if it could not be loaded
+     */
+    IArchimateModel getModel() {
+        return fModel;
+    }
+
+    /**
+     * @return The exception if the model is incompatible, or null
+     */
+    IncompatibleModelException getException() {
+        return fException;
+    }
+
+    /**
+     * @return true if the model is a later version. The user is asked whether to open it.
+     */
+    boolean isLaterModelVersion() {
+        return fLaterModelVersion;
+    }
+
+    /**
+     * @return Unknown model features that might be OK to load. The user is asked whether to open the model if there are any.
+     */
+    List<Diagnostic> getAcceptableExceptions() {
+        return fAcceptableExceptions;
+    }
+}
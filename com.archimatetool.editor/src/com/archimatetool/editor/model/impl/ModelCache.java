@@ -0,0 +1,165 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+
+import com.archimatetool.editor.ArchiPlugin;
+import com.archimatetool.editor.Logger;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.ModelVersion;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+
+
+
+/**
+ * Cache of models in EMF binary format so that models that have not changed since they were last opened or saved
+ * are opened without parsing the XML and fixing compatibility issues.
+ *
+ * Each cache file starts with a key made from the model file's path, size and modification time, the model version
+ * and the plug-in version. A cache file is used only if its key matches the model file.
+ * The model file remains the only format that is used to save and exchange models.
+ *
+ * @author Phillip Beauvoir
+ */
+class ModelCache {
+
+    static File CACHE_FOLDER = new File(ArchiPlugin.INSTANCE.getUserDataFolder(), "model-cache"); //$NON-NLS-1$
+
+    /**
+     * @return The key of the model file's current state
+     */
+    static String getKey(File file) {
+        return file.getAbsolutePath() + "|" + file.length() + "|" + file.lastModified() //$NON-NLS-1$ //$NON-NLS-2$
+                + "|" + ModelVersion.VERSION + "|" + ArchiPlugin.INSTANCE.getBundle().getVersion(); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    /**
+     * @return The cache file for a model file
+     */
+    static File getCacheFile(File file) {
+        String name = UUID.nameUUIDFromBytes(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8)).toString();
+        return new File(CACHE_FOLDER, name + ".bin"); //$NON-NLS-1$
+    }
+
+    /**
+     * Load a model from the cache
+     * @param file The model file
+     * @return The model or null if there is no cache file for the model file or the model file has changed
+     */
+    static IArchimateModel load(File file) {
+        File cacheFile = getCacheFile(file);
+        if(!cacheFile.exists()) {
+            return null;
+        }
+
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if(!getKey(file).equals(in.readUTF())) {
+                return null;
+            }
+
+            Resource binaryResource = new BinaryResourceImpl(URI.createFileURI(cacheFile.getAbsolutePath()));
+            binaryResource.load(in, null);
+            IArchimateModel model = (IArchimateModel)binaryResource.getContents().get(0);
+
+            // Move the model to a Resource for the model file so that it is saved in XML format
+            Resource resource = ArchimateResourceFactory.createNewResource(IArchiveManager.FACTORY.isArchiveFile(file) ?
+                    IArchiveManager.FACTORY.createArchiveModelURI(file) :
+                    URI.createFileURI(file.getAbsolutePath()));
+            resource.getContents().add(model);
+
+            // IDs are not registered while loading
+            model.getIDAdapter().registerIDs(model);
+
+            return model;
+        }
+        catch(Exception ex) {
+            Logger.logError("Could not load model from cache", ex); //$NON-NLS-1$
+            cacheFile.delete();
+            return null;
+        }
+    }
+
+    /**
+     * Save a snapshot of a model to the cache
+     * @param snapshot A copy of the model that is not used for anything else
+     * @param file The model file
+     * @param key The key of the model file when the snapshot was saved to it or loaded from it
+     */
+    static void save(IArchimateModel snapshot, File file, String key) throws IOException {
+        File cacheFile = getCacheFile(file);
+        CACHE_FOLDER.mkdirs();
+
+        // Save to a new file and replace the cache file so that it is not read when it is incomplete
+        File tmpFile = File.createTempFile("cache-", ".tmp", CACHE_FOLDER); //$NON-NLS-1$ //$NON-NLS-2$
+
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+            out.writeUTF(key);
+
+            Resource resource = new BinaryResourceImpl(URI.createFileURI(cacheFile.getAbsolutePath()));
+            resource.getContents().add(snapshot);
+            resource.save(out, null);
+        }
+        catch(IOException ex) {
+            tmpFile.delete();
+            throw ex;
+        }
+
+        try {
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException ex) {
+            Files.move(tmpFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Save a model to the cache in a background job. This has to be called in the thread that changes the model.
+     * @param model The model that has just been loaded from or saved to its file
+     * @param file The model file
+     */
+    static void saveInBackground(IArchimateModel model, final File file) {
+        final String key = getKey(file);
+        final IArchimateModel snapshot = SaveModelJob.createSnapshot(model, file);
+
+        Job job = new Job(Messages.EditorModelManager_20) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                try {
+                    save(snapshot, file, key);
+                }
+                catch(IOException ex) {
+                    Logger.logError("Could not save model to cache", ex); //$NON-NLS-1$
+                }
+                return Status.OK_STATUS;
+            }
+        };
+
+        job.setSystem(true);
+        job.schedule();
+    }
+}
@@ -0,0 +1,165 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.gef.commands.Command;
+import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.osgi.util.NLS;
+
+import com.archimatetool.editor.Logger;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.model.ModelChecker;
+import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Job to check and save a model in the background.
+ *
+ * A snapshot of the model is taken when the job is created. The snapshot is a copy of the model so that the model
+ * can be changed in the UI thread while the snapshot is checked and saved.
+ *
+ * The result is reported by the Editor Model Manager when the job is done.
+ *
+ * @author Phillip Beauvoir
+ */
+class SaveModelJob extends Job {
+
+    private IArchimateModel fModel;
+    private IArchimateModel fSnapshot;
+    private boolean fBackup;
+    private boolean fCache;
+
+    /**
+     * The model's undo command when the snapshot was taken
+     */
+    private Command fSavePoint;
+
+    private ModelChecker fChecker;
+    private boolean fSaved;
+    private IOException fException;
+
+    /**
+     * Create the job. This has to be called in the UI thread.
+     * @param model The model
+     * @param backup If true create a backup of the model's file before saving
+     * @param cache If true save the snapshot to the binary model cache after saving
+     */
+    SaveModelJob(IArchimateModel model, boolean backup, boolean cache) {
+        super(NLS.bind(Messages.EditorModelManager_14, model.getName()));
+
+        fModel = model;
+        fBackup = backup;
+        fCache = cache;
+
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        if(stack != null) {
+            fSavePoint = stack.getUndoCommand();
+        }
+
+        fSnapshot = createSnapshot(model, model.getFile());
+        fChecker = new ModelChecker(fSnapshot);
+    }
+
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        try {
+            // Check integrity
+            if(!fChecker.checkAll()) {
+                return Status.OK_STATUS;
+            }
+
+            File file = fSnapshot.getFile();
+
+            // Save backup
+            if(fBackup && file.exists()) {
+                FileUtils.copyFile(file, new File(file.getAbsolutePath() + ".bak"), false); //$NON-NLS-1$
+            }
+
+            saveSnapshot(fSnapshot);
+            fSaved = true;
+            
+            // The snapshot is not used after this
+            if(fCache) {
+                try {
+                    ModelCache.save(fSnapshot, file, ModelCache.getKey(file));
+                }
+                catch(IOException ex) {
+                    Logger.logError("Could not save model to cache", ex); //$NON-NLS-1$
+                }
+            }
+        }
+        catch(IOException ex) {
+            fException = ex;
+        }
+
+        // Errors are reported by the Editor Model Manager
+        return Status.OK_STATUS;
+    }
+
+    IArchimateModel getModel() {
+        return fModel;
+    }
+
+    Command getSavePoint() {
+        return fSavePoint;
+    }
+
+    /**
+     * @return The model checker which has errors if the model was not valid
+     */
+    ModelChecker getChecker() {
+        return fChecker;
+    }
+
+    /**
+     * @return true if the model was saved
+     */
+    boolean isSaved() {
+        return fSaved;
+    }
+
+    /**
+     * @return The exception if the model could not be saved, or null
+     */
+    IOException getException() {
+        return fException;
+    }
+
+    /**
+     * Copy a model. This has to be called in the UI thread.
+     * @param model The model
+     * @param file The file that the copy will be saved to
+     * @return The copy
+     */
+    static IArchimateModel createSnapshot(IArchimateModel model, File file) {
+        IArchimateModel snapshot = EcoreUtil.copy(model);
+        snapshot.setFile(file);
+        return snapshot;
+    }
+
+    /**
+     * Save a snapshot to its file. The image data is shared with the model that the snapshot was copied from.
+     */
+    static void saveSnapshot(IArchimateModel snapshot) throws IOException {
+        IArchiveManager archiveManager = IArchiveManager.FACTORY.createArchiveManager(snapshot);
+        try {
+            archiveManager.saveModel();
+        }
+        finally {
+            archiveManager.dispose();
+        }
+    }
+}
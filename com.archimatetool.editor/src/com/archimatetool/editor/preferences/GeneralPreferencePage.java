@@ -22,6 +22,8 @@ import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Button;
@@ -51,6 +53,10 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     
     private Button fOpenDiagramsOnLoadButton;
     private Button fBackupOnSaveButton;
+    private Button fBackgroundSaveButton;
+    private Button fAutosaveButton;
+    private Spinner fAutosaveIntervalSpinner;
+    private Button fModelCacheButton;
     
     private Spinner fMRUSizeSpinner;
     private Button fAnimateVisualiserNodesButton;
@@ -98,6 +104,34 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
         gd.horizontalSpan = 2;
         fBackupOnSaveButton.setLayoutData(gd);
         
+        // Save in background
+        fBackgroundSaveButton = new Button(fileGroup, SWT.CHECK);
+        fBackgroundSaveButton.setText(Messages.GeneralPreferencePage_12);
+        gd = new GridData(GridData.FILL_HORIZONTAL);
+        gd.horizontalSpan = 2;
+        fBackgroundSaveButton.setLayoutData(gd);
+        
+        // Autosave for recovery
+        fAutosaveButton = new Button(fileGroup, SWT.CHECK);
+        fAutosaveButton.setText(Messages.GeneralPreferencePage_13);
+        fAutosaveButton.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                fAutosaveIntervalSpinner.setEnabled(fAutosaveButton.getSelection());
+            }
+        });
+        
+        fAutosaveIntervalSpinner = new Spinner(fileGroup, SWT.BORDER);
+        fAutosaveIntervalSpinner.setMinimum(1);
+        fAutosaveIntervalSpinner.setMaximum(60);
+        
+        // Binary model cache
+        fModelCacheButton = new Button(fileGroup, SWT.CHECK);
+        fModelCacheButton.setText(Messages.GeneralPreferencePage_14);
+        gd = new GridData(GridData.FILL_HORIZONTAL);
+        gd.horizontalSpan = 2;
+        fModelCacheButton.setLayoutData(gd);
+        
         // Size of recently opened file list
         Label label = new Label(fileGroup, SWT.NULL);
         label.setText(Messages.GeneralPreferencePage_2);
@@ -194,6 +228,10 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     private void setValues() {
         setSpinnerValues();
         fBackupOnSaveButton.setSelection(getPreferenceStore().getBoolean(BACKUP_ON_SAVE));
+        fBackgroundSaveButton.setSelection(getPreferenceStore().getBoolean(BACKGROUND_SAVE));
+        fAutosaveButton.setSelection(getPreferenceStore().getBoolean(AUTOSAVE));
+        fAutosaveIntervalSpinner.setEnabled(fAutosaveButton.getSelection());
+        fModelCacheButton.setSelection(getPreferenceStore().getBoolean(MODEL_CACHE));
         fOpenDiagramsOnLoadButton.setSelection(getPreferenceStore().getBoolean(OPEN_DIAGRAMS_ON_LOAD));
         fAnimateVisualiserNodesButton.setSelection(getPreferenceStore().getBoolean(ANIMATE_VISUALISER_NODES));
         fShowStatusLineButton.setSelection(getPreferenceStore().getBoolean(SHOW_STATUS_LINE));
@@ -210,11 +248,16 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     
     private void setSpinnerValues() {
         fMRUSizeSpinner.setSelection(getPreferenceStore().getInt(MRU_MAX));
+        fAutosaveIntervalSpinner.setSelection(getPreferenceStore().getInt(AUTOSAVE_INTERVAL));
     }
     
     @Override
     public boolean performOk() {
         getPreferenceStore().setValue(BACKUP_ON_SAVE, fBackupOnSaveButton.getSelection());
+        getPreferenceStore().setValue(BACKGROUND_SAVE, fBackgroundSaveButton.getSelection());
+        getPreferenceStore().setValue(AUTOSAVE, fAutosaveButton.getSelection());
+        getPreferenceStore().setValue(AUTOSAVE_INTERVAL, fAutosaveIntervalSpinner.getSelection());
+        getPreferenceStore().setValue(MODEL_CACHE, fModelCacheButton.getSelection());
         getPreferenceStore().setValue(OPEN_DIAGRAMS_ON_LOAD, fOpenDiagramsOnLoadButton.getSelection());
         getPreferenceStore().setValue(MRU_MAX, fMRUSizeSpinner.getSelection());
         getPreferenceStore().setValue(ANIMATE_VISUALISER_NODES, fAnimateVisualiserNodesButton.getSelection());
@@ -233,6 +276,11 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     @Override
     protected void performDefaults() {
         fBackupOnSaveButton.setSelection(getPreferenceStore().getDefaultBoolean(BACKUP_ON_SAVE));
+        fBackgroundSaveButton.setSelection(getPreferenceStore().getDefaultBoolean(BACKGROUND_SAVE));
+        fAutosaveButton.setSelection(getPreferenceStore().getDefaultBoolean(AUTOSAVE));
+        fAutosaveIntervalSpinner.setSelection(getPreferenceStore().getDefaultInt(AUTOSAVE_INTERVAL));
+        fAutosaveIntervalSpinner.setEnabled(fAutosaveButton.getSelection());
+        fModelCacheButton.setSelection(getPreferenceStore().getDefaultBoolean(MODEL_CACHE));
         fOpenDiagramsOnLoadButton.setSelection(getPreferenceStore().getDefaultBoolean(OPEN_DIAGRAMS_ON_LOAD));
         fMRUSizeSpinner.setSelection(getPreferenceStore().getDefaultInt(MRU_MAX));
         fAnimateVisualiserNodesButton.setSelection(getPreferenceStore().getDefaultBoolean(ANIMATE_VISUALISER_NODES));
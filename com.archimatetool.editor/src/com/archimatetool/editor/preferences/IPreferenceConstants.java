@@ -27,6 +27,10 @@ public interface IPreferenceConstants {
     
     String OPEN_DIAGRAMS_ON_LOAD = "openDiagramsOnLoad"; //$NON-NLS-1$
     String BACKUP_ON_SAVE = "backupOnSave"; //$NON-NLS-1$
+    String BACKGROUND_SAVE = "backgroundSave"; //$NON-NLS-1$
+    String AUTOSAVE = "autosave"; //$NON-NLS-1$
+    String AUTOSAVE_INTERVAL = "autosaveInterval"; //$NON-NLS-1$
+    String MODEL_CACHE = "modelCache"; //$NON-NLS-1$
     
     String ANIMATE = "animate"; //$NON-NLS-1$
     String ANIMATION_SPEED = "animationSpeed"; //$NON-NLS-1$
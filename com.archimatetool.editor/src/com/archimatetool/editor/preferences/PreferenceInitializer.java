@@ -46,6 +46,10 @@ implements IPreferenceConstants {
         
         store.setDefault(OPEN_DIAGRAMS_ON_LOAD, false);
         store.setDefault(BACKUP_ON_SAVE, true);
+        store.setDefault(BACKGROUND_SAVE, true);
+        store.setDefault(AUTOSAVE, true);
+        store.setDefault(AUTOSAVE_INTERVAL, 5);
+        store.setDefault(MODEL_CACHE, true);
         
         store.setDefault(SKETCH_DEFAULT_BACKGROUND, 1);
         
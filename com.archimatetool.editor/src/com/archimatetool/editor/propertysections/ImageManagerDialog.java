@@ -56,8 +56,8 @@ import org.eclipse.ui.PlatformUI;
 import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.ui.ArchiLabelProvider;
+import com.archimatetool.editor.ui.ArchiveImageCache;
 import com.archimatetool.editor.ui.IArchiImages;
-import com.archimatetool.editor.ui.ImageFactory;
 import com.archimatetool.editor.ui.components.ExtendedTitleAreaDialog;
 import com.archimatetool.editor.utils.PlatformUtils;
 import com.archimatetool.model.IArchimateModel;
@@ -315,17 +315,9 @@ public class ImageManagerDialog extends ExtendedTitleAreaDialog {
                 for(String path : archiveManager.getImagePaths()) {
                     Image thumbnail = fImageCache.get(path);
                     if(thumbnail == null) {
-                        try {
-                            Image image = archiveManager.createImage(path);
-                            if(image != null) {
-                                thumbnail = ImageFactory.getScaledImage(image, MAX_GALLERY_ITEM_SIZE);
-                                image.dispose();
-                                fImageCache.put(path, thumbnail);
-                            }
-                        }
-                        catch(Exception ex) {
-                            ex.printStackTrace();
-                            continue;
+                        thumbnail = ArchiveImageCache.getScaledImage(archiveManager, path, MAX_GALLERY_ITEM_SIZE);
+                        if(thumbnail != null) {
+                            fImageCache.put(path, thumbnail);
                         }
                     }
                     
@@ -367,8 +359,8 @@ public class ImageManagerDialog extends ExtendedTitleAreaDialog {
     protected void disposeImages() {
         for(Entry<String, Image> entry : fImageCache.entrySet()) {
             Image image = entry.getValue();
-            if(image != null && !image.isDisposed()) {
-                image.dispose();
+            if(image != null) {
+                ArchiveImageCache.releaseImage(image);
             }
         }
     }
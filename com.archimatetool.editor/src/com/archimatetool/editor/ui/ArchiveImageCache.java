@@ -0,0 +1,205 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+
+import com.archimatetool.editor.model.IArchiveManager;
+
+
+
+/**
+ * Shared cache of the images used in models, and scaled variants of them.
+ *
+ * Images are keyed by image path and size so that figures showing the same image at the same size share one image.
+ * Images are reference counted. Each image returned from this cache has to be released with {@link #releaseImage(Image)}
+ * and not disposed. An image is disposed when its last user releases it.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ArchiveImageCache {
+
+    private static Map<ImageKey, CachedImage> Images = new HashMap<ImageKey, CachedImage>();
+
+    private static Map<Image, CachedImage> CachedImages = new IdentityHashMap<Image, CachedImage>();
+
+    private static class ImageKey {
+        String imagePath;
+        int width, height;
+
+        ImageKey(String imagePath, int width, int height) {
+            this.imagePath = imagePath;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof ImageKey)) {
+                return false;
+            }
+            ImageKey other = (ImageKey)obj;
+            return imagePath.equals(other.imagePath) && width == other.width && height == other.height;
+        }
+
+        @Override
+        public int hashCode() {
+            return (imagePath.hashCode() * 31 + width) * 31 + height;
+        }
+    }
+
+    private static class CachedImage {
+        ImageKey key;
+        Image image;
+        int count;
+    }
+
+    /**
+     * Get an image at its original size
+     * @param archiveManager The Archive Manager of the model that uses the image
+     * @param imagePath The image path
+     * @return The image or null if it could not be created. This must be released with {@link #releaseImage(Image)}
+     */
+    public static synchronized Image getImage(IArchiveManager archiveManager, String imagePath) {
+        if(imagePath == null) {
+            return null;
+        }
+
+        ImageKey key = new ImageKey(imagePath, -1, -1);
+
+        CachedImage cachedImage = Images.get(key);
+        if(cachedImage == null) {
+            Image image = null;
+            try {
+                image = archiveManager.createImage(imagePath);
+            }
+            catch(Exception ex) {
+                ex.printStackTrace();
+            }
+
+            if(image == null) {
+                return null;
+            }
+
+            cachedImage = put(key, image);
+        }
+
+        cachedImage.count++;
+        return cachedImage.image;
+    }
+
+    /**
+     * Get an image scaled to a given size
+     * @param archiveManager The Archive Manager of the model that uses the image
+     * @param imagePath The image path
+     * @param width The width of the image
+     * @param height The height of the image
+     * @return The image or null if it could not be created. This must be released with {@link #releaseImage(Image)}
+     */
+    public static synchronized Image getScaledImage(IArchiveManager archiveManager, String imagePath, int width, int height) {
+        if(imagePath == null) {
+            return null;
+        }
+
+        ImageKey key = new ImageKey(imagePath, width, height);
+
+        CachedImage cachedImage = Images.get(key);
+        if(cachedImage != null) {
+            cachedImage.count++;
+            return cachedImage.image;
+        }
+
+        Image originalImage = getImage(archiveManager, imagePath);
+        if(originalImage == null) {
+            return null;
+        }
+
+        // Same size as the original
+        Rectangle bounds = originalImage.getBounds();
+        if(bounds.width == width && bounds.height == height) {
+            return originalImage;
+        }
+
+        cachedImage = put(key, ImageFactory.getScaledImage(originalImage, width, height));
+        cachedImage.count++;
+
+        // The original image is disposed now if it is not used elsewhere
+        releaseImage(originalImage);
+
+        return cachedImage.image;
+    }
+
+    /**
+     * Get an image scaled to fit a maximum width and height. If the image is smaller it is not scaled.
+     * @param archiveManager The Archive Manager of the model that uses the image
+     * @param imagePath The image path
+     * @param maxSize The maximum width and height of the image
+     * @return The image or null if it could not be created. This must be released with {@link #releaseImage(Image)}
+     */
+    public static synchronized Image getScaledImage(IArchiveManager archiveManager, String imagePath, int maxSize) {
+        Image originalImage = getImage(archiveManager, imagePath);
+        if(originalImage == null) {
+            return null;
+        }
+
+        Rectangle bounds = originalImage.getBounds();
+        if(bounds.width <= maxSize && bounds.height <= maxSize) {
+            return originalImage;
+        }
+
+        // Same calculation as ImageFactory.getScaledImage(Image, int)
+        int width = bounds.width;
+        int height = bounds.height;
+
+        if(height > maxSize) {
+            width *= ((float)maxSize / height);
+            height = maxSize;
+        }
+        if(width > maxSize) {
+            height *= ((float)maxSize / width);
+            width = maxSize;
+        }
+
+        Image image = getScaledImage(archiveManager, imagePath, width, height);
+        releaseImage(originalImage);
+        return image;
+    }
+
+    /**
+     * Release an image that was returned from this cache. If this is the last user of the image it is disposed.
+     * @param image The image
+     */
+    public static synchronized void releaseImage(Image image) {
+        CachedImage cachedImage = CachedImages.get(image);
+        if(cachedImage != null && --cachedImage.count <= 0) {
+            Images.remove(cachedImage.key);
+            CachedImages.remove(image);
+            image.dispose();
+        }
+    }
+
+    /**
+     * @return The number of users of a cached image or 0 if the image is not in the cache
+     */
+    static synchronized int getUseCount(Image image) {
+        CachedImage cachedImage = CachedImages.get(image);
+        return cachedImage == null ? 0 : cachedImage.count;
+    }
+
+    private static CachedImage put(ImageKey key, Image image) {
+        CachedImage cachedImage = new CachedImage();
+        cachedImage.key = key;
+        cachedImage.image = image;
+        Images.put(key, cachedImage);
+        CachedImages.put(image, cachedImage);
+        return cachedImage;
+    }
+}
@@ -5,6 +5,10 @@
  */
 package com.archimatetool.editor.ui;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import org.eclipse.draw2d.ColorConstants;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
@@ -23,6 +27,7 @@ import com.archimatetool.model.IDiagramModelArchimateComponent;
 import com.archimatetool.model.IDiagramModelComponent;
 import com.archimatetool.model.IDiagramModelObject;
 import com.archimatetool.model.ILineObject;
+import com.archimatetool.model.util.StringPool;
 
 
 
@@ -38,13 +43,36 @@ public class ColorFactory {
      */
     private static ColorRegistry ColorRegistry = new ColorRegistry();
     
+    /**
+     * Colors keyed by the shared instance of their String value as set on model objects, so that colors are found
+     * by identity when figures are painted
+     */
+    private static Map<String, Color> ColorCache = new IdentityHashMap<String, Color>();
+    
+    /**
+     * Colors keyed by RGB so that the RGB is not converted to a String each time
+     */
+    private static Map<RGB, Color> RGBColorCache = new HashMap<RGB, Color>();
+    
     public static Color get(int red, int green, int blue) {
         return get(new RGB(red, green, blue));
     }
     
     public static Color get(RGB rgb) {
-        String rgbValue = convertRGBToString(rgb);
-        return get(rgbValue);
+        if(rgb == null) {
+            return null;
+        }
+        
+        Color color = RGBColorCache.get(rgb);
+        if(color == null) {
+            color = get(convertRGBToString(rgb));
+            if(color != null) {
+                // Copy the RGB as it could be changed
+                RGBColorCache.put(new RGB(rgb.red, rgb.green, rgb.blue), color);
+            }
+        }
+        
+        return color;
     }
     
     public static Color get(String rgbValue) {
@@ -52,6 +80,11 @@ public class ColorFactory {
             return null;
         }
         
+        Color color = ColorCache.get(rgbValue);
+        if(color != null) {
+            return color;
+        }
+        
         if(!ColorRegistry.hasValueFor(rgbValue)) {
             RGB rgb = convertStringToRGB(rgbValue);
             if(rgb != null) {
@@ -59,7 +92,14 @@ public class ColorFactory {
             }
         }
         
-        return ColorRegistry.get(rgbValue);
+        color = ColorRegistry.get(rgbValue);
+        
+        // Only the shared instance is used as a key so that there is one entry for each value
+        if(color != null) {
+            ColorCache.put(StringPool.intern(rgbValue), color);
+        }
+        
+        return color;
     }
     
     /**
@@ -5,6 +5,9 @@
  */
 package com.archimatetool.editor.ui;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 import org.eclipse.jface.resource.FontRegistry;
 import org.eclipse.jface.resource.JFaceResources;
 import org.eclipse.swt.SWT;
@@ -14,6 +17,7 @@ import org.eclipse.swt.graphics.FontData;
 import com.archimatetool.editor.preferences.Preferences;
 import com.archimatetool.editor.utils.PlatformUtils;
 import com.archimatetool.editor.utils.StringUtils;
+import com.archimatetool.model.util.StringPool;
 
 
 
@@ -31,6 +35,12 @@ public final class FontFactory {
      * Font Registry
      */
     private static FontRegistry FontRegistry = new FontRegistry();
+    
+    /**
+     * Fonts keyed by the shared instance of their String value as set on model objects, so that fonts are found
+     * by identity when figures are created
+     */
+    private static Map<String, Font> FontCache = new IdentityHashMap<String, Font>();
 
     /**
      * Temporary Font Registry to hold adjusted size fonts on Windows
@@ -50,6 +60,11 @@ public final class FontFactory {
             return getDefaultUserViewFont();
         }
         
+        Font font = FontCache.get(fontName);
+        if(font != null) {
+            return font;
+        }
+        
         if(!FontRegistry.hasValueFor(fontName)) {
             try {
                 FontData fd = new FontData(fontName);
@@ -61,7 +76,12 @@ public final class FontFactory {
             }
         }
         
-        return FontRegistry.get(fontName);
+        font = FontRegistry.get(fontName);
+        
+        // Only the shared instance is used as a key so that there is one entry for each value
+        FontCache.put(StringPool.intern(fontName), font);
+        
+        return font;
     }
 
     public static Font getDefaultUserViewFont() {
@@ -31,6 +31,7 @@ import org.eclipse.ui.views.properties.tabbed.TabbedPropertySheetPage;
 
 import com.archimatetool.editor.ArchiPlugin;
 import com.archimatetool.editor.model.IEditorModelManager;
+import com.archimatetool.editor.model.ModelChangeSet;
 import com.archimatetool.editor.ui.ArchiLabelProvider;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModel;
@@ -187,7 +188,23 @@ implements IContextProvider, PropertyChangeListener, ITabbedPropertySheetPageCon
         }
         // End: Refresh Viewer with buffered notifications
         else if(propertyName == IEditorModelManager.PROPERTY_ECORE_EVENTS_END) {
-            doRefreshFromNotifications(fNotificationBuffer);
+            // Nothing buffered because the notifications will come in a change set when the command has finished
+            if(fNotificationBuffer == null || fNotificationBuffer.isEmpty()) {
+                fAddingToBuffer = false;
+                fNotificationBuffer = null;
+            }
+            else {
+                doRefreshFromNotifications(fNotificationBuffer);
+            }
+        }
+        // All ECore model events of a command
+        else if(propertyName == IEditorModelManager.PROPERTY_ECORE_CHANGE_SET) {
+            if(!fAddingToBuffer) {
+                eCoreChanged((ModelChangeSet)newValue);
+            }
+            else {
+                fNotificationBuffer.addAll(((ModelChangeSet)newValue).getNotifications());
+            }
         }
         // ECore model event
         else if(propertyName == IEditorModelManager.PROPERTY_ECORE_EVENT) {
@@ -232,6 +249,21 @@ implements IContextProvider, PropertyChangeListener, ITabbedPropertySheetPageCon
         }
     }
     
+    /**
+     * React to all the ECore Model Changes made by a command to refresh the view.
+     * One change is handled as a single notification, more changes are handled as buffered notifications.
+     */
+    protected void eCoreChanged(ModelChangeSet changeSet) {
+        List<Notification> notifications = changeSet.getNotifications();
+        
+        if(notifications.size() == 1) {
+            eCoreChanged(notifications.get(0));
+        }
+        else {
+            doRefreshFromNotifications(notifications);
+        }
+    }
+    
     /**
      * Refresh any tree elements from buffered notifications
      * Overriders should call super after doing their thing
@@ -49,6 +49,7 @@ import com.archimatetool.editor.actions.ArchiActionFactory;
 import com.archimatetool.editor.actions.NewArchimateModelAction;
 import com.archimatetool.editor.actions.OpenModelAction;
 import com.archimatetool.editor.model.IEditorModelManager;
+import com.archimatetool.editor.model.ModelChangeSet;
 import com.archimatetool.editor.preferences.IPreferenceConstants;
 import com.archimatetool.editor.preferences.Preferences;
 import com.archimatetool.editor.ui.IArchiImages;
@@ -135,7 +136,8 @@ implements ITreeModelView, IUIRequestListener {
         layout.verticalSpacing = 0;
         parent.setLayout(layout);
         
-        fTreeViewer = new TreeModelViewer(parent, SWT.NULL);
+        // Lazy tree so that large folders are quick to expand
+        fTreeViewer = new TreeModelViewer(parent, SWT.VIRTUAL);
         fTreeViewer.getControl().setLayoutData(new GridData(GridData.FILL_BOTH));
         
         fTreeViewer.setInput(IEditorModelManager.INSTANCE);
@@ -261,7 +263,7 @@ implements ITreeModelView, IUIRequestListener {
     
     @Override
     protected void selectAll() {
-        fTreeViewer.getTree().selectAll();
+        fTreeViewer.selectAll();
     }
     
     /**
@@ -565,6 +567,11 @@ implements ITreeModelView, IUIRequestListener {
         // Remove UI Request Listener
         UIRequestManager.INSTANCE.removeListener(this);
         
+        // Stop searching
+        if(fSearchFilter != null) {
+            fSearchFilter.dispose();
+        }
+        
         // Save Editor Model List
         try {
             IEditorModelManager.INSTANCE.saveState();
@@ -601,6 +608,16 @@ implements ITreeModelView, IUIRequestListener {
             getViewer().refresh();
         }
         
+        // Model loaded in the background replaces its placeholder
+        else if(propertyName == IEditorModelManager.PROPERTY_MODEL_LOAD_FINISHED) {
+            getViewer().refresh();
+            
+            IArchimateModel model = (IArchimateModel)evt.getNewValue();
+            if(model != null) {
+                TreeStateHelper.INSTANCE.restoreExpandedTreeElements(model);
+            }
+        }
+        
         // Model dirty state, so update Actions and modified state of source (asterisk on model node)
         else if(propertyName == IEditorModelManager.COMMAND_STACK_CHANGED) {
             updateActions();
@@ -675,6 +692,24 @@ implements ITreeModelView, IUIRequestListener {
         }
     }
     
+    @Override
+    protected void eCoreChanged(ModelChangeSet changeSet) {
+        List<Notification> notifications = new ArrayList<Notification>();
+        
+        for(Notification msg : changeSet.getNotifications()) {
+            // Viewpoint changed
+            if(msg.getFeature() == IArchimatePackage.Literals.ARCHIMATE_DIAGRAM_MODEL__VIEWPOINT) {
+                eCoreChanged(msg);
+            }
+            else {
+                notifications.add(msg);
+            }
+        }
+        
+        // Refresh now and not later so that new tree nodes can be selected when the command has finished
+        refreshFromNotifications(notifications);
+    }
+    
     @Override
     protected void doRefreshFromNotifications(final List<Notification> notifications) {
         Display.getCurrent().asyncExec(new Runnable() {
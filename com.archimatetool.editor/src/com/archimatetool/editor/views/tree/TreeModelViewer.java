@@ -5,20 +5,30 @@
  */
 package com.archimatetool.editor.views.tree;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.jface.util.IPropertyChangeListener;
 import org.eclipse.jface.util.PropertyChangeEvent;
 import org.eclipse.jface.viewers.IColorProvider;
 import org.eclipse.jface.viewers.IFontProvider;
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
 import org.eclipse.jface.viewers.ITreeContentProvider;
 import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TreePath;
 import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.jface.viewers.ViewerFilter;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
@@ -40,6 +50,7 @@ import com.archimatetool.editor.views.tree.search.SearchFilter;
 import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
 import com.archimatetool.model.IFolder;
 
@@ -49,12 +60,23 @@ import com.archimatetool.model.IFolder;
 /**
  * Tree Viewer for Model Tree View
  * 
+ * The filtered and sorted children of each parent node are cached until the parent node is refreshed
+ * so that a large folder is sorted once and not each time that its nodes are created or counted.
+ * 
+ * If the viewer is created with the SWT.VIRTUAL style the tree is lazy. Tree items are only created and labelled
+ * when they are shown, so expanding a folder with many thousands of objects does not create an item for each object.
+ * 
  * @author Phillip Beauvoir
  */
 public class TreeModelViewer extends TreeViewer {
     
     private TreeCellEditor fCellEditor;
     
+    /**
+     * Filtered and sorted children of parent nodes
+     */
+    private Map<Object, Object[]> fSortedChildren = new HashMap<Object, Object[]>();
+    
     /**
      * Show elements as grey if not in Viewpoint
      */
@@ -75,52 +97,20 @@ public class TreeModelViewer extends TreeViewer {
     public TreeModelViewer(Composite parent, int style) {
         super(parent, style | SWT.MULTI);
         
-        setContentProvider(new ModelTreeViewerContentProvider());
+        // Lazy tree
+        if((style & SWT.VIRTUAL) != 0) {
+            setContentProvider(new ModelTreeViewerLazyContentProvider());
+        }
+        else {
+            setContentProvider(new ModelTreeViewerContentProvider());
+        }
+        
         setLabelProvider(new ModelTreeViewerLabelProvider());
         
         setUseHashlookup(true);
         
         // Sort
-        setComparator(new ViewerComparator() {
-            @Override
-            public int compare(Viewer viewer, Object e1, Object e2) {
-                int cat1 = category(e1);
-                int cat2 = category(e2);
-
-                if(cat1 != cat2) {
-                    return cat1 - cat2;
-                }
-                
-                // Only user folders are sorted
-                if((e1 instanceof IFolder && e2 instanceof IFolder) && (((IFolder)e1).getType() != FolderType.USER 
-                        || ((IFolder)e2).getType() != FolderType.USER)) {
-                    return 0;
-                }
-                
-                String name1 = ArchiLabelProvider.INSTANCE.getLabel(e1);
-                String name2 = ArchiLabelProvider.INSTANCE.getLabel(e2);
-                
-                if(name1 == null) {
-                    name1 = "";//$NON-NLS-1$
-                }
-                if(name2 == null) {
-                    name2 = "";//$NON-NLS-1$
-                }
-                
-                return getComparator().compare(name1, name2);
-            }
-            
-            @Override
-            public int category(Object element) {
-                if(element instanceof IFolder) {
-                    return 0;
-                }
-                if(element instanceof EObject) {
-                    return 1;
-                }
-                return 0;
-            }
-        });
+        setComparator(new ModelTreeViewerComparator());
         
         // Cell Editor
         fCellEditor = new TreeCellEditor(getTree());
@@ -165,6 +155,36 @@ public class TreeModelViewer extends TreeViewer {
         super.refresh(element, updateLabels);
     }
     
+    @Override
+    protected void inputChanged(Object input, Object oldInput) {
+        fSortedChildren.clear();
+        super.inputChanged(input, oldInput);
+    }
+    
+    @Override
+    protected void internalRefresh(Object element, boolean updateLabels) {
+        clearSortedChildren(element);
+        super.internalRefresh(element, updateLabels);
+    }
+    
+    /**
+     * Remove the cached children of an element and of the elements that it contains
+     * @param element The element or null or the input for all elements
+     */
+    private void clearSortedChildren(Object element) {
+        if(element == null || element == getInput() || !(element instanceof EObject)) {
+            fSortedChildren.clear();
+            return;
+        }
+        
+        for(Iterator<Object> iter = fSortedChildren.keySet().iterator(); iter.hasNext();) {
+            Object parent = iter.next();
+            if(parent instanceof EObject && EcoreUtil.isAncestor((EObject)element, (EObject)parent)) {
+                iter.remove();
+            }
+        }
+    }
+    
     boolean isEditing() {
         return fCellEditor != null && fCellEditor.isEditing();
     }
@@ -189,6 +209,26 @@ public class TreeModelViewer extends TreeViewer {
         });
     }
     
+    /**
+     * Select all the items in expanded nodes.
+     * Items of a lazy tree that have not been shown yet are created first so that their elements are selected.
+     */
+    void selectAll() {
+        if((getTree().getStyle() & SWT.VIRTUAL) != 0) {
+            createItems(getTree().getItems());
+        }
+        getTree().selectAll();
+    }
+    
+    private void createItems(TreeItem[] items) {
+        for(TreeItem item : items) {
+            item.getText(); // This creates the item if it has not been created
+            if(item.getExpanded()) {
+                createItems(item.getItems());
+            }
+        }
+    }
+    
     /**
      * Finds the widget which represents the given element.
      * @param element the element
@@ -215,7 +255,40 @@ public class TreeModelViewer extends TreeViewer {
     // Need package access to this method
     @Override
     protected Object[] getSortedChildren(Object parentElementOrTreePath) {
-        return super.getSortedChildren(parentElementOrTreePath);
+        Object parent = parentElementOrTreePath instanceof TreePath ? ((TreePath)parentElementOrTreePath).getLastSegment()
+                : parentElementOrTreePath;
+        return getCachedSortedChildren(parent).clone();
+    }
+    
+    /**
+     * @return The filtered and sorted children of a parent element from the cache. This array must not be changed.
+     */
+    private Object[] getCachedSortedChildren(Object parent) {
+        Object[] children = fSortedChildren.get(parent);
+        
+        if(children == null) {
+            children = getFilteredChildrenOf(parent);
+            if(getComparator() != null) {
+                getComparator().sort(this, children);
+            }
+            fSortedChildren.put(parent, children);
+        }
+        
+        return children;
+    }
+    
+    /**
+     * @return The filtered children of a parent element. These are got from the content provider and filters here
+     *         because a lazy TreeViewer does not get the children of elements.
+     */
+    private Object[] getFilteredChildrenOf(Object parent) {
+        Object[] children = ((ModelTreeViewerContentProvider)getContentProvider()).getChildren(parent);
+        
+        for(ViewerFilter filter : getFilters()) {
+            children = filter.filter(this, parent, children);
+        }
+        
+        return children;
     }
     
     // ========================= Model Provoders =====================================
@@ -237,7 +310,14 @@ public class TreeModelViewer extends TreeViewer {
 
         public Object[] getChildren(Object parentElement) {
             if(parentElement instanceof IEditorModelManager) {
-            	return ((IEditorModelManager)parentElement).getModels().toArray();
+                List<Object> list = new ArrayList<Object>();
+                
+                // Models
+                list.addAll(((IEditorModelManager)parentElement).getModels());
+                // Files of models being loaded as placeholders until the models are loaded
+                list.addAll(((IEditorModelManager)parentElement).getLoadingModelFiles());
+                
+                return list.toArray();
             }
             
             if(parentElement instanceof IArchimateModel) {
@@ -266,7 +346,100 @@ public class TreeModelViewer extends TreeViewer {
         }
 
         public boolean hasChildren(Object element) {
-        	return getFilteredChildren(element).length > 0;
+        	return getFilteredChildrenOf(element).length > 0;
+        }
+    }
+    
+    /**
+     * Content Provider for the lazy tree.
+     * The tree asks for the element at each index of a parent node when the item at that index is shown.
+     */
+    class ModelTreeViewerLazyContentProvider extends ModelTreeViewerContentProvider implements ILazyTreeContentProvider {
+        
+        public void updateElement(Object parent, int index) {
+            Object[] children = getCachedSortedChildren(parent);
+            
+            if(index < children.length) {
+                Object element = children[index];
+                replace(parent, index, element);
+                updateChildCount(element, -1);
+            }
+        }
+        
+        public void updateChildCount(Object element, int currentChildCount) {
+            // Count without sorting. The children are sorted when they are shown.
+            int count = fSortedChildren.containsKey(element) ? fSortedChildren.get(element).length : getFilteredChildrenOf(element).length;
+            
+            if(count != currentChildCount) {
+                setChildCount(element, count);
+            }
+        }
+    }
+    
+    /**
+     * Sorter
+     */
+    class ModelTreeViewerComparator extends ViewerComparator {
+        
+        @Override
+        public int compare(Viewer viewer, Object e1, Object e2) {
+            return compare(e1, e2, getSortKey(e1), getSortKey(e2));
+        }
+        
+        /**
+         * Get the label of each element once and not for each comparison
+         */
+        @Override
+        public void sort(Viewer viewer, Object[] elements) {
+            final Map<Object, String> sortKeys = new HashMap<Object, String>();
+            
+            for(Object element : elements) {
+                sortKeys.put(element, getSortKey(element));
+            }
+            
+            Arrays.sort(elements, new Comparator<Object>() {
+                @Override
+                public int compare(Object e1, Object e2) {
+                    return ModelTreeViewerComparator.this.compare(e1, e2, sortKeys.get(e1), sortKeys.get(e2));
+                }
+            });
+        }
+        
+        private int compare(Object e1, Object e2, String name1, String name2) {
+            int cat1 = category(e1);
+            int cat2 = category(e2);
+
+            if(cat1 != cat2) {
+                return cat1 - cat2;
+            }
+            
+            // Only user folders are sorted
+            if((e1 instanceof IFolder && e2 instanceof IFolder) && (((IFolder)e1).getType() != FolderType.USER 
+                    || ((IFolder)e2).getType() != FolderType.USER)) {
+                return 0;
+            }
+            
+            return getComparator().compare(name1, name2);
+        }
+        
+        private String getSortKey(Object element) {
+            String name = ArchiLabelProvider.INSTANCE.getLabel(element);
+            return name == null ? "" : name; //$NON-NLS-1$
+        }
+        
+        @Override
+        public int category(Object element) {
+            if(element instanceof IFolder) {
+                return 0;
+            }
+            if(element instanceof EObject) {
+                return 1;
+            }
+            // Models being loaded are shown after loaded models
+            if(element instanceof File) {
+                return 2;
+            }
+            return 0;
         }
     }
     
@@ -289,6 +462,11 @@ public class TreeModelViewer extends TreeViewer {
         
         @Override
         public String getText(Object element) {
+            // Placeholder for a model being loaded
+            if(element instanceof File) {
+                return NLS.bind(Messages.TreeModelViewer_0, ((File)element).getName());
+            }
+            
             String name = ArchiLabelProvider.INSTANCE.getLabel(element);
             
             // If a dirty model show asterisk
@@ -313,11 +491,21 @@ public class TreeModelViewer extends TreeViewer {
         
         @Override
         public Image getImage(Object element) {
+            // Placeholder for a model being loaded
+            if(element instanceof File) {
+                return ArchiLabelProvider.INSTANCE.getImage(IArchimatePackage.eINSTANCE.getArchimateModel());
+            }
+            
             return ArchiLabelProvider.INSTANCE.getImage(element);
         }
         
         @Override
         public Font getFont(Object element) {
+            // Placeholder for a model being loaded
+            if(element instanceof File) {
+                return fontItalic;
+            }
+            
             SearchFilter filter = getSearchFilter();
             if(filter != null && filter.isFiltering() && filter.matchesFilter(element)) {
                 return fontBold;
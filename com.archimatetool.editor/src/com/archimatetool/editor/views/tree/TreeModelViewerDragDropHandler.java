@@ -149,6 +149,10 @@ public class TreeModelViewerDragDropHandler {
         IArchimateModel model = null;
         
         for(Object object : selection.toArray()) {
+            // Can only drag model objects and not the files of models being loaded
+            if(!(object instanceof IArchimateModelObject)) {
+                return false;
+            }
             // Can't drag Models
             if(object instanceof IArchimateModel) {
                 return false;
@@ -158,13 +162,11 @@ public class TreeModelViewerDragDropHandler {
                 return false;
             }
             // Don't allow mixed parent models
-            if(object instanceof IArchimateModelObject) {
-                IArchimateModel m = ((IArchimateModelObject)object).getArchimateModel();
-                if(model != null && m != model) {
-                    return false;
-                }
-                model = m;
+            IArchimateModel m = ((IArchimateModelObject)object).getArchimateModel();
+            if(model != null && m != model) {
+                return false;
             }
+            model = m;
         }
         
         return true;
@@ -282,7 +284,7 @@ public class TreeModelViewerDragDropHandler {
             IStructuredSelection selection = (IStructuredSelection)LocalSelectionTransfer.getTransfer().getSelection();
             for(Object object : selection.toList()) {
                 // must have the same top folder type - a restriction which one day we should not enforce!
-                if(!hasCommonAncestorFolder(targetfolder, (EObject)object)) {
+                if(!(object instanceof EObject) || !hasCommonAncestorFolder(targetfolder, (EObject)object)) {
                     return false;
                 }
                 if(!canDropObject(object, (TreeItem)event.item)) {
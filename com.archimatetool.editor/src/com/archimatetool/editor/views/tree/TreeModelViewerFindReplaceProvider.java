@@ -6,11 +6,17 @@
 package com.archimatetool.editor.views.tree;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
 
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.StructuredSelection;
 
+import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.ui.findreplace.AbstractFindReplaceProvider;
 import com.archimatetool.editor.utils.StringUtils;
 import com.archimatetool.editor.views.tree.commands.RenameCommandHandler;
@@ -19,6 +25,7 @@ import com.archimatetool.model.IArchimateModelObject;
 import com.archimatetool.model.IArchimateRelationship;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.INameable;
+import com.archimatetool.model.util.ModelTextIndex;
 
 
 
@@ -26,6 +33,9 @@ import com.archimatetool.model.INameable;
 /**
  * Find/Replace Provider for Model Tree Viewer
  * 
+ * Only the parts of the tree that contain objects whose names contain the text to find are searched.
+ * These are found in the models' {@link ModelTextIndex}.
+ * 
  * @author Phillip Beauvoir
  */
 public class TreeModelViewerFindReplaceProvider extends AbstractFindReplaceProvider {
@@ -159,21 +169,30 @@ public class TreeModelViewerFindReplaceProvider extends AbstractFindReplaceProvi
      */
     List<INameable> getAllMatchingElements(String toFind) {
         if(isAllModels()) {
-            return getMatchingElements(fTreeModelViewer.getInput(), toFind);
+            return getMatchingElements(fTreeModelViewer.getInput(), toFind,
+                    getCandidates(IEditorModelManager.INSTANCE.getModels(), toFind));
         }
         else {
-            return getMatchingElements(getModelInScope(), toFind);
+            IArchimateModel model = getModelInScope();
+            return getMatchingElements(model, toFind,
+                    model == null ? null : getCandidates(Collections.singletonList(model), toFind));
         }
     }
     
     /**
      * @param element The element to start searching from.
      * @param toFind The string to find a match on. If this is null, then collect all elements in the tree viewer.
+     * @param candidates If not null only these elements are searched
      * @return A list of all matching elements in the viewer model as sorted and filtered by the TreeViewer model
      */
-    private List<INameable> getMatchingElements(Object element, String toFind) {
+    private List<INameable> getMatchingElements(Object element, String toFind, Set<EObject> candidates) {
         List<INameable> list = new ArrayList<INameable>();
         
+        // Not a candidate, and nor is anything that it contains
+        if(candidates != null && element instanceof EObject && !candidates.contains(element)) {
+            return list;
+        }
+        
         if(element != null) {
             if(toFind == null && element instanceof INameable) { // collect all
                 list.add((INameable)element);
@@ -183,13 +202,36 @@ public class TreeModelViewerFindReplaceProvider extends AbstractFindReplaceProvi
             }
             
             for(Object object : fTreeModelViewer.getSortedChildren(element)) {
-                list.addAll(getMatchingElements(object, toFind));
+                list.addAll(getMatchingElements(object, toFind, candidates));
             }
         }
         
         return list;
     }
     
+    /**
+     * @return The objects in the models whose names contain toFind ignoring case, and the folders and models
+     *         that contain them, from the models' text indexes. Or null if toFind is not set.
+     */
+    private Set<EObject> getCandidates(List<IArchimateModel> models, String toFind) {
+        if(!StringUtils.isSet(toFind)) {
+            return null;
+        }
+        
+        Set<EObject> candidates = new HashSet<EObject>();
+        ModelTextIndex.Query query = new ModelTextIndex.Query(toFind, ModelTextIndex.Match.CONTAINS, ModelTextIndex.NAME);
+        
+        for(IArchimateModel model : models) {
+            for(EObject eObject : ModelTextIndex.getIndex(model).search(query)) {
+                while(eObject != null && candidates.add(eObject)) {
+                    eObject = eObject.eContainer();
+                }
+            }
+        }
+        
+        return candidates;
+    }
+    
     /**
      * @return *all* elements in the TreeViewer of type INameable, in sorted and filtered order
      */
@@ -100,27 +100,51 @@ public class TreeStateHelper {
             
             // String ids
             if(o instanceof FileMap) {
-                try {
-                    File file = ((FileMap)o).file;
-                    String[] elements = ((FileMap)o).elements;
-                    for(IArchimateModel model : IEditorModelManager.INSTANCE.getModels()) {
-                        if(file.equals(model.getFile())) {
-                            for(String id : elements) {
-                                EObject element = ArchimateModelUtils.getObjectByID(model, id);
-                                if(element != null) {
-                                    fTreeViewer.expandToLevel(element, 1);
-                                }
-                            }
-                            break; // found model
-                        }
+                for(IArchimateModel model : IEditorModelManager.INSTANCE.getModels()) {
+                    if(restoreExpandedTreeElements((FileMap)o, model)) {
+                        break; // found model
                     }
                 }
-                catch(Exception ex) {
-                    // We don't want to fail just for some stupid string operation
-                    ex.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Restore expanded elements of a model that was loaded in the background after the TreeView was created
+     */
+    void restoreExpandedTreeElements(IArchimateModel model) {
+        if(fTreeViewer == null) {
+            return;
+        }
+        
+        for(Object o : fExpandedElements) {
+            if(o instanceof FileMap && restoreExpandedTreeElements((FileMap)o, model)) {
+                break;
+            }
+        }
+    }
+    
+    /**
+     * @return true if the FileMap is for the model
+     */
+    private boolean restoreExpandedTreeElements(FileMap fm, IArchimateModel model) {
+        try {
+            if(fm.file.equals(model.getFile())) {
+                for(String id : fm.elements) {
+                    EObject element = ArchimateModelUtils.getObjectByID(model, id);
+                    if(element != null) {
+                        fTreeViewer.expandToLevel(element, 1);
+                    }
                 }
+                return true;
             }
         }
+        catch(Exception ex) {
+            // We don't want to fail just for some stupid string operation
+            ex.printStackTrace();
+        }
+        
+        return false;
     }
     
     /**
@@ -165,6 +189,14 @@ public class TreeStateHelper {
             }
         }
         
+        // Models that have not finished loading keep their expanded elements from the last session
+        List<File> loadingFiles = IEditorModelManager.INSTANCE.getLoadingModelFiles();
+        for(Object o : fExpandedElements) {
+            if(o instanceof FileMap && loadingFiles.contains(((FileMap)o).file)) {
+                map.put(((FileMap)o).file, String.join(ELEMENT_SEP_CHAR, ((FileMap)o).elements));
+            }
+        }
+        
         for(File file : map.keySet()) {
             IMemento elementMem = expandedMem.createChild(MEMENTO_MODEL);
             elementMem.putString(MEMENTO_FILE, file.getAbsolutePath());
@@ -11,6 +11,8 @@ public class Messages extends NLS {
 
     private static final String BUNDLE_NAME = "com.archimatetool.editor.views.tree.search.messages"; //$NON-NLS-1$
 
+    public static String SearchFilter_0;
+
     public static String SearchWidget_0;
 
     public static String SearchWidget_1;
@@ -5,9 +5,18 @@
  */
 package com.archimatetool.editor.views.tree.search;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.jface.viewers.IStructuredSelection;
@@ -17,21 +26,35 @@ import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.widgets.Display;
 
+import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.utils.StringUtils;
+import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDocumentable;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.IFolderContainer;
 import com.archimatetool.model.INameable;
 import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.ModelTextIndex;
 
 
 /**
  * Search Filter
  * 
+ * Search text and property keys are looked up in the models' {@link ModelTextIndex} in a background job
+ * when the filter or the models change. When the job has finished the matches are filtered by type and the folders
+ * and models that contain them are found in the UI thread, and the tree is refreshed.
+ * Typing in the search text is debounced and a search that is still running is cancelled when a new one starts.
+ * 
  * @author Phillip Beauvoir
  */
 public class SearchFilter extends ViewerFilter {
+    
+    /**
+     * Delay in milliseconds before searching so that the search is not repeated for each key typed or model change
+     */
+    static final long SEARCH_DELAY = 300;
+    
     private TreeViewer fViewer;
     private String fSearchText = ""; //$NON-NLS-1$
     private TreePath[] fExpanded;
@@ -43,9 +66,37 @@ public class SearchFilter extends ViewerFilter {
     private List<String> fPropertiesFilter = new ArrayList<String>();
 
     private boolean fShowAllFolders = false;
+    
+    /**
+     * The result of the last search, or null if there is none yet
+     */
+    private SearchResult fResult;
+    
+    private SearchJob fSearchJob;
+    
+    /**
+     * Search again when the models change
+     */
+    private PropertyChangeListener fModelListener = new PropertyChangeListener() {
+        @Override
+        public void propertyChange(PropertyChangeEvent evt) {
+            String propertyName = evt.getPropertyName();
+            
+            if(isFiltering() && (propertyName == IEditorModelManager.PROPERTY_ECORE_EVENT
+                    || propertyName == IEditorModelManager.PROPERTY_ECORE_CHANGE_SET
+                    || propertyName == IEditorModelManager.PROPERTY_MODEL_CREATED
+                    || propertyName == IEditorModelManager.PROPERTY_MODEL_OPENED
+                    || propertyName == IEditorModelManager.PROPERTY_MODEL_LOADED
+                    || propertyName == IEditorModelManager.PROPERTY_MODEL_REMOVED
+                    || propertyName == IEditorModelManager.PROPERTY_MODEL_LOAD_FINISHED)) {
+                search(SEARCH_DELAY, false);
+            }
+        }
+    };
 
     public SearchFilter(TreeViewer viewer) {
         fViewer = viewer;
+        IEditorModelManager.INSTANCE.addPropertyChangeListener(fModelListener);
     }
 
     void setSearchText(String text) {
@@ -55,32 +106,102 @@ public class SearchFilter extends ViewerFilter {
         }
 
         fSearchText = text;
-        refresh();
+        refresh(SEARCH_DELAY);
     }
 
     private void refresh() {
+        refresh(0);
+    }
+    
+    /**
+     * Search and then refresh the tree, or restore the tree if not filtering
+     * @param delay Delay in milliseconds before searching
+     */
+    private void refresh(long delay) {
+        if(isFiltering()) {
+            search(delay, true);
+            return;
+        }
+        
+        cancelSearch();
+        fResult = null;
+        
         Display.getCurrent().asyncExec(new Runnable() {
             @Override
             public void run() {
-                fViewer.getTree().setRedraw(false);
-
-                try {
-                    fViewer.refresh(); // This has to be first
-                    
-                    // Something to show
-                    if(isFiltering()) {
-                        fViewer.expandAll();
-                    }
-                    else {
-                        restoreState();
-                    }
-                }
-                finally {
-                    fViewer.getTree().setRedraw(true);
+                if(!fViewer.getControl().isDisposed()) {
+                    refreshViewer(false);
                 }
             }
         });
     }
+    
+    /**
+     * Start a new search with the current filter, cancelling any search that is running
+     * @param delay Delay in milliseconds before searching
+     * @param expand If true expand the tree when the search has finished
+     */
+    private void search(long delay, boolean expand) {
+        // Keep expanding if a search that was to expand the tree is replaced
+        if(fSearchJob != null) {
+            expand |= fSearchJob.expand;
+        }
+        
+        cancelSearch();
+        
+        List<IArchimateModel> models = new ArrayList<IArchimateModel>(IEditorModelManager.INSTANCE.getModels());
+        
+        // The text indexes have to be created in the UI thread
+        List<ModelTextIndex> indexes = new ArrayList<ModelTextIndex>();
+        for(IArchimateModel model : models) {
+            indexes.add(ModelTextIndex.getIndex(model));
+        }
+        
+        fSearchJob = new SearchJob(new SearchQuery(this), models, indexes, expand);
+        fSearchJob.schedule(delay);
+    }
+    
+    private void cancelSearch() {
+        if(fSearchJob != null) {
+            fSearchJob.cancel();
+            fSearchJob = null;
+        }
+    }
+    
+    /**
+     * The text indexes have been searched. This is called in the UI thread.
+     */
+    private void searchFinished(SearchJob job, Set<EObject> indexMatches) {
+        // Replaced by a new search or not filtering any more
+        if(job != fSearchJob || fViewer.getControl().isDisposed()) {
+            return;
+        }
+        
+        fSearchJob = null;
+        fResult = createResult(job.query, job.models, indexMatches);
+        refreshViewer(job.expand);
+    }
+    
+    private void refreshViewer(boolean expand) {
+        fViewer.getTree().setRedraw(false);
+
+        try {
+            fViewer.refresh(); // This has to be first
+            
+            // Something to show
+            if(isFiltering()) {
+                if(expand) {
+                    fViewer.expandAll();
+                }
+            }
+            else {
+                restoreState();
+            }
+        }
+        finally {
+            fViewer.getTree().setRedraw(true);
+        }
+    }
 
     public void clear() {
         if(isFiltering()) {
@@ -101,104 +222,32 @@ public class SearchFilter extends ViewerFilter {
         fObjectFilter.clear();
         fPropertiesFilter.clear();
     }
+    
+    /**
+     * Stop searching and stop listening to model changes
+     */
+    public void dispose() {
+        cancelSearch();
+        IEditorModelManager.INSTANCE.removePropertyChangeListener(fModelListener);
+    }
 
     @Override
     public boolean select(Viewer viewer, Object parentElement, Object element) {
-        if(!isFiltering()) {
+        // Show everything until the first search has finished
+        if(!isFiltering() || fResult == null) {
             return true;
         }
 
-        return isElementVisible(parentElement, element);
+        return fResult.visible.contains(element);
     }
 
-    /**
-     * Query whether element is to be shown (or any children) when filtering
-     * This will also query child elements of element if it's a container
-     * @param element Any element including containers
-     * @return
-     */
-    private boolean isElementVisible(Object parentElement, Object element) {
-        if(element instanceof IFolderContainer) {
-            for(IFolder folder : ((IFolderContainer)element).getFolders()) {
-                if(isElementVisible(parentElement, folder)) {
-                    return true;
-                }
-            }
-        }
-
-        if(element instanceof IFolder) {
-            for(Object o : ((IFolder)element).getElements()) {
-                if(isElementVisible(parentElement, o)) {
-                    return true;
-                }
-            }
-
-            if(isShowAllFolders()) {
-                return true;
-            }
-        }
-        
-        return matchesFilter(element);
-    }
-    
     /**
      * Query whether element matches filter criteria when filtering on node/leaf elements
      * @param element Any element, children will not be queried.
-     * @return
+     * @return true if the element matched the filter when the last search was done
      */
     public boolean matchesFilter(Object element) {
-        // EObject Type filter - do this first as the master filter
-        if(isObjectFiltered(element)) {
-            return false;
-        }
-
-        boolean textSearchResult = false;
-        boolean propertyKeyResult = false;
-
-        // Properties Key filter
-        if(isFilteringPropertyKeys() && element instanceof IProperties) {
-            for(IProperty property : ((IProperties)element).getProperties()) {
-                if(fPropertiesFilter.contains(property.getKey())) {
-                    propertyKeyResult = true;
-                    if(hasSearchText() && property.getValue().toLowerCase().contains(fSearchText.toLowerCase())) {
-                        textSearchResult = true;
-                    }
-                }
-            }
-        }
-
-        // If has search Text and no text found yet
-        if(hasSearchText()) {
-            // Name...
-            if(fFilterName && !textSearchResult && element instanceof INameable) {
-                String name = StringUtils.safeString(((INameable)element).getName());
-                if(name.toLowerCase().contains(fSearchText.toLowerCase())) {
-                    textSearchResult = true;
-                }
-            }
-
-            // Then Documentation
-            if(fFilterDocumentation && !textSearchResult && element instanceof IDocumentable) {
-                String text = StringUtils.safeString(((IDocumentable)element).getDocumentation());
-                if(text.toLowerCase().contains(fSearchText.toLowerCase())) {
-                    textSearchResult = true;
-                }
-            }
-        }
-
-        if((hasSearchText())) {
-            return textSearchResult;
-        }
-
-        if(isFilteringPropertyKeys()) {
-            return propertyKeyResult;
-        }
-
-        return !isObjectFiltered(element);
-    }
-
-    private boolean isObjectFiltered(Object element) {
-        return !fObjectFilter.isEmpty() && !fObjectFilter.contains(((EObject)element).eClass());
+        return fResult != null && fResult.matches.contains(element);
     }
 
     public boolean isFiltering() {
@@ -209,10 +258,6 @@ public class SearchFilter extends ViewerFilter {
         return fSearchText.length() > 0;
     }
 
-    private boolean isFilteringPropertyKeys() {
-        return !fPropertiesFilter.isEmpty();
-    }
-
     void setFilterOnName(boolean set) {
         if(fFilterName != set) {
             fFilterName = set;
@@ -281,4 +326,302 @@ public class SearchFilter extends ViewerFilter {
         }
         fViewer.setSelection(selection, true);
     }
-}
\ No newline at end of file
+    
+    // ========================= Search =====================================
+    
+    /**
+     * A copy of the filter criteria so that they can be used in a background job
+     */
+    static class SearchQuery {
+        String searchText;
+        boolean filterName;
+        boolean filterDocumentation;
+        Set<EClass> objectFilter;
+        Set<String> propertiesFilter;
+        boolean showAllFolders;
+        
+        SearchQuery(String searchText, boolean filterName, boolean filterDocumentation, Set<EClass> objectFilter,
+                Set<String> propertiesFilter, boolean showAllFolders) {
+            this.searchText = searchText.toLowerCase();
+            this.filterName = filterName;
+            this.filterDocumentation = filterDocumentation;
+            this.objectFilter = objectFilter;
+            this.propertiesFilter = propertiesFilter;
+            this.showAllFolders = showAllFolders;
+        }
+        
+        SearchQuery(SearchFilter filter) {
+            this(filter.fSearchText, filter.fFilterName, filter.fFilterDocumentation, new HashSet<EClass>(filter.fObjectFilter),
+                    new HashSet<String>(filter.fPropertiesFilter), filter.fShowAllFolders);
+        }
+        
+        /**
+         * @return true if the object itself matches the criteria. Child objects are not queried.
+         */
+        boolean matches(Object element) {
+            // EObject Type filter - do this first as the master filter
+            if(isObjectFiltered(element)) {
+                return false;
+            }
+
+            boolean textSearchResult = false;
+            boolean propertyKeyResult = false;
+
+            // Properties Key filter
+            if(isFilteringPropertyKeys() && element instanceof IProperties) {
+                for(IProperty property : ((IProperties)element).getProperties()) {
+                    if(propertiesFilter.contains(property.getKey())) {
+                        propertyKeyResult = true;
+                        if(hasSearchText() && StringUtils.safeString(property.getValue()).toLowerCase().contains(searchText)) {
+                            textSearchResult = true;
+                        }
+                    }
+                }
+            }
+
+            // If has search Text and no text found yet
+            if(hasSearchText()) {
+                // Name...
+                if(filterName && !textSearchResult && element instanceof INameable) {
+                    String name = StringUtils.safeString(((INameable)element).getName());
+                    if(name.toLowerCase().contains(searchText)) {
+                        textSearchResult = true;
+                    }
+                }
+
+                // Then Documentation
+                if(filterDocumentation && !textSearchResult && element instanceof IDocumentable) {
+                    String text = StringUtils.safeString(((IDocumentable)element).getDocumentation());
+                    if(text.toLowerCase().contains(searchText)) {
+                        textSearchResult = true;
+                    }
+                }
+            }
+
+            if(hasSearchText()) {
+                return textSearchResult;
+            }
+
+            if(isFilteringPropertyKeys()) {
+                return propertyKeyResult;
+            }
+
+            return true;
+        }
+        
+        private boolean isObjectFiltered(Object element) {
+            return !objectFilter.isEmpty() && !(element instanceof EObject && objectFilter.contains(((EObject)element).eClass()));
+        }
+        
+        /**
+         * @return true if the objects that match the text and property keys can be found in the models' text indexes
+         */
+        boolean isIndexed() {
+            return hasSearchText() || isFilteringPropertyKeys();
+        }
+        
+        /**
+         * @return The text index query that finds the objects that match the text and property keys
+         */
+        ModelTextIndex.Query createIndexQuery() {
+            int fields = 0;
+            
+            if(filterName) {
+                fields |= ModelTextIndex.NAME;
+            }
+            if(filterDocumentation) {
+                fields |= ModelTextIndex.DOCUMENTATION;
+            }
+            if(isFilteringPropertyKeys()) {
+                fields |= ModelTextIndex.PROPERTY_VALUES;
+            }
+            
+            return new ModelTextIndex.Query(searchText, ModelTextIndex.Match.CONTAINS, fields, propertiesFilter);
+        }
+        
+        private boolean hasSearchText() {
+            return searchText.length() > 0;
+        }
+        
+        private boolean isFilteringPropertyKeys() {
+            return !propertiesFilter.isEmpty();
+        }
+    }
+    
+    /**
+     * The objects that match a query, and the objects to show in the tree.
+     * These are the matching objects and the folders and models that contain them.
+     */
+    static class SearchResult {
+        Set<Object> matches = new HashSet<Object>();
+        Set<Object> visible = new HashSet<Object>();
+    }
+    
+    /**
+     * Search the models' text indexes. This can be called in any thread as it does not read the models.
+     * @param query The query
+     * @param indexes The text indexes of the models to search
+     * @param monitor The progress monitor, checked for cancellation
+     * @return The objects that match the query's text and property keys, or null if the query has neither
+     * @throws OperationCanceledException if the monitor is cancelled
+     */
+    static Set<EObject> searchIndexes(SearchQuery query, List<ModelTextIndex> indexes, IProgressMonitor monitor) {
+        if(!query.isIndexed()) {
+            return null;
+        }
+        
+        ModelTextIndex.Query indexQuery = query.createIndexQuery();
+        Set<EObject> indexMatches = new HashSet<EObject>();
+        
+        for(ModelTextIndex index : indexes) {
+            if(monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            indexMatches.addAll(index.search(indexQuery));
+        }
+        
+        return indexMatches;
+    }
+    
+    /**
+     * Find the objects that match the query and the folders and models that contain them.
+     * This reads the models so it has to be called in the UI thread.
+     * @param query The query
+     * @param models The models to search
+     * @param indexMatches The objects found by {@link #searchIndexes}. If this is null each object is queried once.
+     * @return The result
+     */
+    static SearchResult createResult(SearchQuery query, List<IArchimateModel> models, Set<EObject> indexMatches) {
+        SearchResult result = new SearchResult();
+        
+        if(indexMatches != null) {
+            addIndexMatches(query, models, indexMatches, result);
+            return result;
+        }
+        
+        for(IArchimateModel model : models) {
+            boolean visible = false;
+            
+            for(IFolder folder : model.getFolders()) {
+                visible |= findMatches(query, folder, result);
+            }
+            
+            if(query.matches(model)) {
+                result.matches.add(model);
+                visible = true;
+            }
+            
+            if(visible) {
+                result.visible.add(model);
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Add the objects found in the text indexes that are not filtered out by type, and show them and the folders that contain them
+     */
+    private static void addIndexMatches(SearchQuery query, List<IArchimateModel> models, Set<EObject> indexMatches, SearchResult result) {
+        for(EObject element : indexMatches) {
+            if(!query.isObjectFiltered(element)) {
+                result.matches.add(element);
+                
+                // Show the folders and model that contain it. Stop at a folder that is already shown as its parents are too.
+                EObject eObject = element;
+                while(eObject != null && result.visible.add(eObject)) {
+                    eObject = eObject.eContainer();
+                }
+            }
+        }
+        
+        if(query.showAllFolders) {
+            for(IArchimateModel model : models) {
+                addAllFolders(model, result);
+            }
+        }
+    }
+    
+    private static void addAllFolders(IFolderContainer folderContainer, SearchResult result) {
+        result.visible.add(folderContainer);
+        
+        for(IFolder folder : folderContainer.getFolders()) {
+            addAllFolders(folder, result);
+        }
+    }
+    
+    /**
+     * @return true if the folder is to be shown
+     */
+    private static boolean findMatches(SearchQuery query, IFolder folder, SearchResult result) {
+        boolean visible = query.showAllFolders;
+        
+        for(IFolder childFolder : folder.getFolders()) {
+            visible |= findMatches(query, childFolder, result);
+        }
+        
+        for(EObject element : folder.getElements()) {
+            if(query.matches(element)) {
+                result.matches.add(element);
+                result.visible.add(element);
+                visible = true;
+            }
+        }
+        
+        if(query.matches(folder)) {
+            result.matches.add(folder);
+            visible = true;
+        }
+        
+        if(visible) {
+            result.visible.add(folder);
+        }
+        
+        return visible;
+    }
+    
+    /**
+     * Job to search the models' text indexes in the background.
+     * The models themselves are only read in the UI thread when the job has finished.
+     */
+    private class SearchJob extends Job {
+        SearchQuery query;
+        List<IArchimateModel> models;
+        List<ModelTextIndex> indexes;
+        boolean expand;
+        Display display;
+        
+        SearchJob(SearchQuery query, List<IArchimateModel> models, List<ModelTextIndex> indexes, boolean expand) {
+            super(Messages.SearchFilter_0);
+            this.query = query;
+            this.models = models;
+            this.indexes = indexes;
+            this.expand = expand;
+            display = Display.getCurrent();
+            setSystem(true);
+        }
+        
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            final Set<EObject> indexMatches;
+            
+            try {
+                indexMatches = searchIndexes(query, indexes, monitor);
+            }
+            catch(OperationCanceledException ex) {
+                return Status.CANCEL_STATUS;
+            }
+            
+            if(display != null && !display.isDisposed()) {
+                display.asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        searchFinished(SearchJob.this, indexMatches);
+                    }
+                });
+            }
+            
+            return Status.OK_STATUS;
+        }
+    }
+}
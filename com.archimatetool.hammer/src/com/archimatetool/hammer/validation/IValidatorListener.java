@@ -0,0 +1,28 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.hammer.validation;
+
+import java.util.List;
+
+import com.archimatetool.hammer.validation.checkers.IChecker;
+import com.archimatetool.hammer.validation.issues.IIssue;
+
+
+
+/**
+ * Listener for Validator results as each checker finishes
+ * 
+ * @author Phillip Beauvoir
+ */
+public interface IValidatorListener {
+    
+    /**
+     * A checker has finished. This is called from a background thread.
+     * @param checker The checker
+     * @param issues The issues found by the checker
+     */
+    void checkerFinished(IChecker checker, List<IIssue> issues);
+}
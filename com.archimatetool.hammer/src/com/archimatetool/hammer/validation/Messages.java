@@ -0,0 +1,17 @@
+package com.archimatetool.hammer.validation;
+
+import org.eclipse.osgi.util.NLS;
+
+public class Messages extends NLS {
+
+    private static final String BUNDLE_NAME = "com.archimatetool.hammer.validation.messages"; //$NON-NLS-1$
+
+    public static String Validator_0;
+    static {
+        // initialize resource bundle
+        NLS.initializeMessages(BUNDLE_NAME, Messages.class);
+    }
+
+    private Messages() {
+    }
+}
@@ -6,12 +6,33 @@
 package com.archimatetool.hammer.validation;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.util.TreeIterator;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.jface.preference.IPreferenceStore;
 
+import com.archimatetool.editor.model.DiagramModelUtils;
 import com.archimatetool.hammer.ArchiHammerPlugin;
 import com.archimatetool.hammer.preferences.IPreferenceConstants;
 import com.archimatetool.hammer.validation.checkers.DuplicateElementChecker;
@@ -32,148 +53,576 @@ import com.archimatetool.hammer.validation.issues.IIssueCategory;
 import com.archimatetool.hammer.validation.issues.OKType;
 import com.archimatetool.hammer.validation.issues.WarningType;
 import com.archimatetool.hammer.validation.issues.WarningsCategory;
+import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateDiagramModel;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelArchimateComponent;
+import com.archimatetool.model.IDiagramModelComponent;
+import com.archimatetool.model.util.IModelChangeListener;
 
 
 /**
  * Validator
  * 
+ * The model is copied when it is validated, in the thread that validates it, and the copy is validated so that the model
+ * can be changed while validating. The copy is taken again if the model was changed while it was copied. Changes made
+ * after the copy was taken have to be re-validated with {@link #revalidate(Set)}.
+ * The copy is walked once to collect elements, relations and views and then the enabled checkers are run concurrently
+ * on a pool of worker threads. The issues are then given the model's objects in place of the copy's.
+ * Results can be streamed to a listener as each checker finishes.
+ * 
+ * After a full validation the issues of each checker are kept so that the model can be re-validated
+ * incrementally with {@link #revalidate(Set)}, re-running the checkers only on the objects that have changed.
+ * 
  * @author Phillip Beauvoir
  */
 public class Validator {
     
+    /**
+     * The number of times to copy the model if it is changed while it is copied
+     */
+    private static final int SNAPSHOT_ATTEMPTS = 3;
+    
     private IArchimateModel fModel;
     
-    private List<IArchimateElement> fElements;
-    private List<IArchimateRelationship> fRelations;
-    private List<IArchimateDiagramModel> fViews;
+    private Set<IArchimateElement> fElements;
+    private Set<IArchimateRelationship> fRelations;
+    private Set<IArchimateDiagramModel> fViews;
     
-    private List<ErrorType> fErrorList;
-    private List<WarningType> fWarningList;
-    private List<AdviceType> fAdviceList;
-
+    /**
+     * The issues found by each type of checker in the last validation, in checker order, or null if not validated
+     */
+    private Map<Class<?>, List<IIssue>> fIssues;
     
     public Validator(IArchimateModel model) {
         fModel = model;
     }
+    
+    /**
+     * Copy the model so that the copy can be validated while the model is changed.
+     * If the model is changed while it is copied the copy is taken again, up to SNAPSHOT_ATTEMPTS times.
+     * @param originals The model's objects are added to this mapped from their copies
+     * @return The copy of the model
+     */
+    private IArchimateModel createSnapshot(Map<EObject, EObject> originals) {
+        final AtomicInteger changes = new AtomicInteger();
+        
+        IModelChangeListener listener = new IModelChangeListener() {
+            @Override
+            public void notifyChanged(Notification msg) {
+                if(!msg.isTouch()) {
+                    changes.incrementAndGet();
+                }
+            }
+        };
+        
+        fModel.getChangeDispatcher().addListener(listener);
+        
+        try {
+            for(int attempt = 1;; attempt++) {
+                int count = changes.get();
+                
+                try {
+                    EcoreUtil.Copier copier = new EcoreUtil.Copier();
+                    IArchimateModel snapshot = copyModel(copier);
+                    
+                    // Use this copy if the model was not changed, or if it keeps changing, in which case the changes are re-validated
+                    if(changes.get() == count || attempt == SNAPSHOT_ATTEMPTS) {
+                        originals.clear();
+                        for(Map.Entry<EObject, EObject> entry : copier.entrySet()) {
+                            originals.put(entry.getValue(), entry.getKey());
+                        }
+                        return snapshot;
+                    }
+                }
+                // The model was changed while it was copied
+                catch(RuntimeException ex) {
+                    if(changes.get() == count || attempt == SNAPSHOT_ATTEMPTS) {
+                        throw ex;
+                    }
+                }
+            }
+        }
+        finally {
+            fModel.getChangeDispatcher().removeListener(listener);
+        }
+    }
+    
+    /**
+     * @return A copy of the model made with copier
+     */
+    IArchimateModel copyModel(EcoreUtil.Copier copier) {
+        IArchimateModel snapshot = (IArchimateModel)copier.copy(fModel);
+        copier.copyReferences();
+        return snapshot;
+    }
+    
+    /**
+     * @return The model's object for an object of the snapshot, or the object itself if it is not in the snapshot
+     */
+    private static Object getOriginal(Object object, Map<EObject, EObject> originals) {
+        Object original = originals.get(object);
+        return original != null ? original : object;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T extends EObject> Set<T> getOriginals(Set<T> objects, Map<EObject, EObject> originals) {
+        Set<T> result = new LinkedHashSet<T>();
+        for(T eObject : objects) {
+            result.add((T)getOriginal(eObject, originals));
+        }
+        return result;
+    }
 
     /**
      * @return The list of Issue Categories and Issues
      */
     public List<Object> validate() {
+        return validate(null, null);
+    }
+    
+    /**
+     * Validate the model running the enabled checkers concurrently.
+     * A copy of the model is taken and validated, so this can be called in a background thread while the model is changed.
+     * @param monitor Progress monitor, may be null
+     * @param listener Listener to be notified as each checker finishes, may be null
+     * @return The list of Issue Categories and Issues, or null if cancelled
+     */
+    public List<Object> validate(IProgressMonitor monitor, IValidatorListener listener) {
         if(fModel == null) {
             return null;
         }
         
+        if(monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        
+        final Map<EObject, EObject> originals = new HashMap<EObject, EObject>();
+        IArchimateModel snapshot = createSnapshot(originals);
+        
         // Collect interesting objects
-        fElements = new ArrayList<IArchimateElement>();
-        fRelations = new ArrayList<IArchimateRelationship>();
-        fViews = new ArrayList<IArchimateDiagramModel>();
+        fElements = new LinkedHashSet<IArchimateElement>();
+        fRelations = new LinkedHashSet<IArchimateRelationship>();
+        fViews = new LinkedHashSet<IArchimateDiagramModel>();
+        fIssues = null;
         
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
+        for(TreeIterator<EObject> iter = snapshot.eAllContents(); iter.hasNext();) {
             EObject eObject = iter.next();
             
             if(eObject instanceof IArchimateRelationship) {
                 fRelations.add((IArchimateRelationship)eObject);
+                iter.prune();
             }
             else if(eObject instanceof IArchimateElement) {
                 fElements.add((IArchimateElement)eObject);
+                iter.prune();
             }
             else if(eObject instanceof IArchimateDiagramModel) {
                 fViews.add((IArchimateDiagramModel)eObject);
+                iter.prune(); // Don't walk the diagram's children
+            }
+            else if(eObject instanceof IDiagramModel) {
+                iter.prune();
             }
         }
         
         // Analyse
-        List<Object> result = new ArrayList<Object>();
+        List<IChecker> checkers = createCheckers(getArchimateElements(), getArchimateRelationships(), getArchimateViews());
+        List<List<IIssue>> results = runCheckers(checkers, originals, monitor, listener);
+        if(results == null) {
+            return null; // cancelled
+        }
+        
+        // The model's objects so that they can be re-validated
+        fElements = getOriginals(fElements, originals);
+        fRelations = getOriginals(fRelations, originals);
+        fViews = getOriginals(fViews, originals);
+        
+        // Keep the issues in checker order so that the result is the same however long each checker took
+        Map<Class<?>, List<IIssue>> issues = new LinkedHashMap<Class<?>, List<IIssue>>();
+        for(int i = 0; i < checkers.size(); i++) {
+            issues.put(checkers.get(i).getClass(), results.get(i));
+        }
+        fIssues = issues;
+        
+        return createIssueCategories(getIssues(), true);
+    }
+    
+    /**
+     * Re-validate the objects that have changed since the last validation keeping the issues found for all other objects.
+     * The checkers are run only on the changed elements, relations and views, except for checkers that compare
+     * all elements with each other which are run on all elements if any element has changed.
+     * If the model has not been validated yet then a full validation is performed.
+     * 
+     * @param changedObjects The objects that have been added, removed or changed as collected by {@link #collectChangedObjects(Notification, Set)}
+     * @return The list of Issue Categories and Issues
+     */
+    public List<Object> revalidate(Set<EObject> changedObjects) {
+        if(fModel == null) {
+            return null;
+        }
+        
+        if(fIssues == null) {
+            return validate();
+        }
+        
+        // Update the collected objects and find the changed ones that are still in the model
+        List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        List<IArchimateRelationship> relations = new ArrayList<IArchimateRelationship>();
+        List<IArchimateDiagramModel> views = new ArrayList<IArchimateDiagramModel>();
+        boolean elementsChanged = false;
+        
+        for(EObject eObject : changedObjects) {
+            boolean inModel = isInModel(eObject);
+            
+            if(eObject instanceof IArchimateRelationship) {
+                update(fRelations, relations, (IArchimateRelationship)eObject, inModel);
+            }
+            else if(eObject instanceof IArchimateElement) {
+                update(fElements, elements, (IArchimateElement)eObject, inModel);
+                elementsChanged = true;
+            }
+            else if(eObject instanceof IArchimateDiagramModel) {
+                update(fViews, views, (IArchimateDiagramModel)eObject, inModel);
+            }
+        }
+        
+        // Re-run the checkers on the changed objects
+        for(IChecker checker : createCheckers(elements, relations, views)) {
+            boolean global = isGlobalChecker(checker);
+            if(global && !elementsChanged) {
+                continue;
+            }
+            
+            List<IIssue> issues = new ArrayList<IIssue>();
+            
+            // Keep the previous issues of objects that have not changed and are still in the model
+            List<IIssue> oldIssues = fIssues.get(checker.getClass());
+            if(oldIssues != null && !global) {
+                for(IIssue issue : oldIssues) {
+                    EObject owner = getIssueOwner(issue);
+                    if(owner != null && !changedObjects.contains(owner) && isInModel(owner)) {
+                        issues.add(issue);
+                    }
+                }
+            }
+            
+            issues.addAll(checker.getIssues());
+            fIssues.put(checker.getClass(), issues);
+        }
+        
+        return createIssueCategories(getIssues(), true);
+    }
+    
+    /**
+     * Add the objects affected by a model change notification to changedObjects.
+     * These are the notifier, any added or removed objects and their children, the concepts referenced by diagram components,
+     * the views of diagram components and concepts, and the source and target of relations.
+     * 
+     * @param msg The notification
+     * @param changedObjects The set of changed objects to add to
+     */
+    public static void collectChangedObjects(Notification msg, Set<EObject> changedObjects) {
+        if(msg.isTouch()) {
+            return;
+        }
+        
+        if(msg.getNotifier() instanceof EObject) {
+            addChangedObject((EObject)msg.getNotifier(), changedObjects);
+        }
+        
+        addChangedValue(msg.getOldValue(), changedObjects);
+        addChangedValue(msg.getNewValue(), changedObjects);
+    }
+    
+    private static void addChangedValue(Object value, Set<EObject> changedObjects) {
+        if(value instanceof Collection) {
+            for(Object o : (Collection<?>)value) {
+                addChangedValue(o, changedObjects);
+            }
+        }
+        else if(value instanceof EObject) {
+            EObject eObject = (EObject)value;
+            addChangedObject(eObject, changedObjects);
+            for(TreeIterator<EObject> iter = eObject.eAllContents(); iter.hasNext();) {
+                addChangedObject(iter.next(), changedObjects);
+            }
+        }
+    }
+    
+    private static void addChangedObject(EObject eObject, Set<EObject> changedObjects) {
+        if(!changedObjects.add(eObject)) {
+            return;
+        }
         
-        fErrorList = new ArrayList<ErrorType>();
-        fWarningList = new ArrayList<WarningType>();
-        fAdviceList = new ArrayList<AdviceType>();
+        // The diagram component's concept and view
+        if(eObject instanceof IDiagramModelArchimateComponent) {
+            IArchimateConcept concept = ((IDiagramModelArchimateComponent)eObject).getArchimateConcept();
+            if(concept != null) {
+                addChangedObject(concept, changedObjects);
+            }
+        }
+        
+        if(eObject instanceof IDiagramModelComponent && !(eObject instanceof IDiagramModel)) {
+            IDiagramModel dm = ((IDiagramModelComponent)eObject).getDiagramModel();
+            if(dm != null) {
+                changedObjects.add(dm);
+            }
+        }
+        
+        // The views that show the concept
+        if(eObject instanceof IArchimateConcept) {
+            changedObjects.addAll(DiagramModelUtils.findReferencedDiagramsForArchimateConcept((IArchimateConcept)eObject));
+        }
         
-        // ------------------ Checkers -----------------------------
+        // A relation's source and target
+        if(eObject instanceof IArchimateRelationship) {
+            IArchimateRelationship relation = (IArchimateRelationship)eObject;
+            if(relation.getSource() != null) {
+                addChangedObject(relation.getSource(), changedObjects);
+            }
+            if(relation.getTarget() != null) {
+                addChangedObject(relation.getTarget(), changedObjects);
+            }
+        }
+    }
+    
+    private <T extends EObject> void update(Set<T> all, List<T> changed, T eObject, boolean inModel) {
+        if(inModel) {
+            all.add(eObject);
+            changed.add(eObject);
+        }
+        else {
+            all.remove(eObject);
+        }
+    }
+    
+    /**
+     * @return true if eObject is contained in the model
+     */
+    private boolean isInModel(EObject eObject) {
+        while(eObject.eContainer() != null) {
+            eObject = eObject.eContainer();
+        }
+        return eObject == fModel;
+    }
+    
+    /**
+     * @return The element, relation or view that an issue belongs to, or null
+     */
+    private EObject getIssueOwner(IIssue issue) {
+        Object object = issue.getObject();
+        
+        // Issues for diagram components belong to their view
+        if(object instanceof IDiagramModelComponent && !(object instanceof IDiagramModel)) {
+            return ((IDiagramModelComponent)object).getDiagramModel();
+        }
+        
+        return object instanceof EObject ? (EObject)object : null;
+    }
+    
+    /**
+     * @return true if the checker compares all elements with each other and so must always be run on all elements.
+     * Sub-classes can over-ride this for their own checkers.
+     */
+    protected boolean isGlobalChecker(IChecker checker) {
+        return checker instanceof DuplicateElementChecker;
+    }
+    
+    /**
+     * @return All issues found in the last validation, in checker order
+     */
+    List<IIssue> getIssues() {
+        List<IIssue> issues = new ArrayList<IIssue>();
+        if(fIssues != null) {
+            for(List<IIssue> checkerIssues : fIssues.values()) {
+                issues.addAll(checkerIssues);
+            }
+        }
+        return issues;
+    }
+    
+    /**
+     * @param elements The elements to check
+     * @param relations The relations to check
+     * @param views The views to check
+     * @return The enabled checkers. Sub-classes can over-ride this to add their own checkers.
+     */
+    protected List<IChecker> createCheckers(List<IArchimateElement> elements, List<IArchimateRelationship> relations,
+            List<IArchimateDiagramModel> views) {
+        List<IChecker> checkers = new ArrayList<IChecker>();
         
         IPreferenceStore store = ArchiHammerPlugin.INSTANCE.getPreferenceStore();
         
         // Invalid Relations
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_INVALID_RELATIONS)) {
-            collectIssues(new InvalidRelationsChecker(getArchimateRelationships()));
+            checkers.add(new InvalidRelationsChecker(relations));
         }
         
         // Unused Elements
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_UNUSED_ELEMENTS)) {
-            collectIssues(new UnusedElementsChecker(getArchimateElements()));
+            checkers.add(new UnusedElementsChecker(elements));
         }
         
         // Unused Relations
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_UNUSED_RELATIONS)) {
-            collectIssues(new UnusedRelationsChecker(getArchimateRelationships()));
+            checkers.add(new UnusedRelationsChecker(relations));
         }
         
         // Empty Views
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_EMPTY_VIEWS)) {
-            collectIssues(new EmptyViewsChecker(getArchimateViews()));
+            checkers.add(new EmptyViewsChecker(views));
         }
         
         // Components in wrong Viewpoints
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_VIEWPOINT)) {
-            collectIssues(new ViewpointChecker(getArchimateViews()));
+            checkers.add(new ViewpointChecker(views));
         }
         
         // Nested elements
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_NESTING)) {
-            collectIssues(new NestedElementsChecker(getArchimateViews()));
+            checkers.add(new NestedElementsChecker(views));
         }
 
         // Possible Duplicates
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_DUPLICATE_ELEMENTS)) {
-            collectIssues(new DuplicateElementChecker(getArchimateElements()));
+            checkers.add(new DuplicateElementChecker(getArchimateElements())); // always all elements
         }
         
         // Junctions
         if(store.getBoolean(IPreferenceConstants.PREFS_HAMMER_CHECK_JUNCTIONS)) {
-            collectIssues(new JunctionsChecker(getArchimateElements()));
+            checkers.add(new JunctionsChecker(elements));
         }
-
-        // ----------------------------------------------------------
-
-        if(!fErrorList.isEmpty()) {
-            IIssueCategory category = new ErrorsCategory(fErrorList);
-            result.add(category);
+        
+        return checkers;
+    }
+    
+    /**
+     * Run the checkers concurrently on a pool of worker threads
+     * @param originals The model's objects mapped from their copies in the snapshot. The issues are given the model's objects.
+     * @return The issues of each checker in the same order as the checkers, or null if cancelled
+     */
+    List<List<IIssue>> runCheckers(List<IChecker> checkers, final Map<EObject, EObject> originals, IProgressMonitor monitor,
+            IValidatorListener listener) {
+        monitor.beginTask(Messages.Validator_0, checkers.size());
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(checkers.size(), Runtime.getRuntime().availableProcessors())));
+        
+        CompletionService<List<IIssue>> completionService = new ExecutorCompletionService<List<IIssue>>(executor);
+        List<Future<List<IIssue>>> futures = new ArrayList<Future<List<IIssue>>>();
+        
+        for(final IChecker checker : checkers) {
+            futures.add(completionService.submit(new Callable<List<IIssue>>() {
+                @Override
+                public List<IIssue> call() throws Exception {
+                    List<IIssue> issues = checker.getIssues();
+                    for(IIssue issue : issues) {
+                        issue.setObject(getOriginal(issue.getObject(), originals));
+                    }
+                    return issues;
+                }
+            }));
         }
-
-        if(!fWarningList.isEmpty()) {
-            IIssueCategory category = new WarningsCategory(fWarningList);
-            result.add(category);
+        
+        List<List<IIssue>> results = new ArrayList<List<IIssue>>();
+        for(int i = 0; i < checkers.size(); i++) {
+            results.add(null);
         }
         
-        if(!fAdviceList.isEmpty()) {
-            IIssueCategory category = new AdviceCategory(fAdviceList);
-            result.add(category);
+        try {
+            for(int done = 0; done < checkers.size();) {
+                if(monitor.isCanceled()) {
+                    for(Future<List<IIssue>> future : futures) {
+                        future.cancel(false);
+                    }
+                    return null;
+                }
+                
+                // Wake up regularly to check for cancellation
+                Future<List<IIssue>> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                if(future == null) {
+                    continue;
+                }
+                
+                int index = futures.indexOf(future);
+                List<IIssue> issues = future.get();
+                results.set(index, issues);
+                
+                if(listener != null) {
+                    listener.checkerFinished(checkers.get(index), issues);
+                }
+                
+                monitor.worked(1);
+                done++;
+            }
         }
-
-        if(result.isEmpty()) {
-            result.add(new OKType());
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        catch(ExecutionException ex) {
+            // Re-throw the checker's exception
+            if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+            monitor.done();
         }
         
-        return result;
+        return results;
     }
     
-    void collectIssues(IChecker checker) {
-        for(IIssue issue : checker.getIssues()) {
+    /**
+     * Sort issues into Issue Categories
+     * @param issues The issues
+     * @param addOK If true and there are no issues an OKType is added
+     * @return The list of Issue Categories
+     */
+    public static List<Object> createIssueCategories(List<? extends IIssue> issues, boolean addOK) {
+        List<Object> result = new ArrayList<Object>();
+        
+        List<ErrorType> errorList = new ArrayList<ErrorType>();
+        List<WarningType> warningList = new ArrayList<WarningType>();
+        List<AdviceType> adviceList = new ArrayList<AdviceType>();
+        
+        for(IIssue issue : issues) {
             if(issue instanceof ErrorType) {
-                fErrorList.add((ErrorType)issue);
+                errorList.add((ErrorType)issue);
             }
             if(issue instanceof WarningType) {
-                fWarningList.add((WarningType)issue);
+                warningList.add((WarningType)issue);
             }
             if(issue instanceof AdviceType) {
-                fAdviceList.add((AdviceType)issue);
+                adviceList.add((AdviceType)issue);
             }
         }
+        
+        if(!errorList.isEmpty()) {
+            IIssueCategory category = new ErrorsCategory(errorList);
+            result.add(category);
+        }
+
+        if(!warningList.isEmpty()) {
+            IIssueCategory category = new WarningsCategory(warningList);
+            result.add(category);
+        }
+        
+        if(!adviceList.isEmpty()) {
+            IIssueCategory category = new AdviceCategory(adviceList);
+            result.add(category);
+        }
+
+        if(result.isEmpty() && addOK) {
+            result.add(new OKType());
+        }
+        
+        return result;
     }
     
     public IArchimateModel getModel() {
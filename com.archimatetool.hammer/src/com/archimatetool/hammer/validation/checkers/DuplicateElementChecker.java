@@ -6,10 +6,11 @@
 package com.archimatetool.hammer.validation.checkers;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.osgi.util.NLS;
 
 import com.archimatetool.editor.ui.ArchiLabelProvider;
@@ -22,6 +23,8 @@ import com.archimatetool.model.IArchimateElement;
 /**
  * Checks for possible duplicates of elements of the same type
  * 
+ * Elements are grouped in one pass by a key of their type and name so this is linear on the number of elements.
+ * 
  * @author Phillip Beauvoir
  */
 public class DuplicateElementChecker implements IChecker {
@@ -43,34 +46,58 @@ public class DuplicateElementChecker implements IChecker {
     List<IIssue> findDuplicateNamesElements() {
         List<IIssue> issues = new ArrayList<IIssue>();
         
-        Set<IArchimateElement> dupes = new LinkedHashSet<IArchimateElement>();
+        // Group elements by type and name keeping the order in which they were first found
+        Map<ElementKey, List<IArchimateElement>> groups = new LinkedHashMap<ElementKey, List<IArchimateElement>>();
         
-        for(int i = 0; i < fArchimateElements.size(); i++) {
-            for(int j = i + 1; j < fArchimateElements.size(); j++) {
-                IArchimateElement element1 = fArchimateElements.get(i);
-                IArchimateElement element2 = fArchimateElements.get(j);
-                if(isDuplicate(element1, element2)) {
-                    dupes.add(element1);
-                    dupes.add(element2);
-                }
+        for(IArchimateElement element : fArchimateElements) {
+            ElementKey key = new ElementKey(element);
+            List<IArchimateElement> group = groups.get(key);
+            if(group == null) {
+                group = new ArrayList<IArchimateElement>(1);
+                groups.put(key, group);
             }
+            group.add(element);
         }
         
-        for(IArchimateElement element : dupes) {
-            String description = NLS.bind(DESCRIPTION, new Object[] { element.getName(),
-                    ArchiLabelProvider.INSTANCE.getDefaultName(element.eClass()) });
+        for(List<IArchimateElement> group : groups.values()) {
+            if(group.size() > 1) {
+                for(IArchimateElement element : group) {
+                    String description = NLS.bind(DESCRIPTION, new Object[] { element.getName(),
+                            ArchiLabelProvider.INSTANCE.getDefaultName(element.eClass()) });
 
-            IIssue issue = new WarningType(NAME, description, EXPLANATION, element);
-            issues.add(issue);
+                    IIssue issue = new WarningType(NAME, description, EXPLANATION, element);
+                    issues.add(issue);
+                }
+            }
         }
         
         return issues;
     }
     
-    private boolean isDuplicate(IArchimateElement element1, IArchimateElement element2) {
-        String name1 = StringUtils.safeString(element1.getName());
-        String name2 = StringUtils.safeString(element2.getName());
+    /**
+     * Key of an element's type and name. A null name is the same as an empty name.
+     */
+    private static class ElementKey {
+        private EClass eClass;
+        private String name;
+        
+        ElementKey(IArchimateElement element) {
+            eClass = element.eClass();
+            name = StringUtils.safeString(element.getName());
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * eClass.hashCode() + name.hashCode();
+        }
         
-        return name1.equals(name2) && (element1.eClass() == element2.eClass());
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof ElementKey)) {
+                return false;
+            }
+            ElementKey other = (ElementKey)obj;
+            return eClass == other.eClass && name.equals(other.name);
+        }
     }
 }
@@ -8,8 +8,17 @@ package com.archimatetool.hammer.view;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.help.HelpSystem;
 import org.eclipse.help.IContext;
 import org.eclipse.help.IContextProvider;
@@ -31,7 +40,6 @@ import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.custom.BusyIndicator;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Display;
@@ -44,6 +52,7 @@ import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.dialogs.PreferencesUtil;
 import org.eclipse.ui.part.ViewPart;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
+import org.eclipse.ui.progress.IWorkbenchSiteProgressService;
 import org.eclipse.ui.views.properties.IPropertySheetPage;
 import org.eclipse.ui.views.properties.tabbed.ITabbedPropertySheetPageContributor;
 import org.eclipse.ui.views.properties.tabbed.TabbedPropertySheetPage;
@@ -52,13 +61,17 @@ import com.archimatetool.editor.ArchiPlugin;
 import com.archimatetool.editor.diagram.IArchimateDiagramEditor;
 import com.archimatetool.editor.diagram.IDiagramModelEditor;
 import com.archimatetool.editor.model.IEditorModelManager;
+import com.archimatetool.editor.model.ModelChangeSet;
 import com.archimatetool.editor.ui.ArchiLabelProvider;
 import com.archimatetool.editor.ui.services.EditorManager;
 import com.archimatetool.editor.ui.services.ViewManager;
 import com.archimatetool.editor.utils.PlatformUtils;
 import com.archimatetool.editor.views.tree.ITreeModelView;
+import com.archimatetool.hammer.ArchiHammerPlugin;
 import com.archimatetool.hammer.IHammerImages;
+import com.archimatetool.hammer.validation.IValidatorListener;
 import com.archimatetool.hammer.validation.Validator;
+import com.archimatetool.hammer.validation.checkers.IChecker;
 import com.archimatetool.hammer.validation.issues.IIssue;
 import com.archimatetool.help.hints.IHintsView;
 import com.archimatetool.model.IArchimateConcept;
@@ -84,6 +97,31 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
     
     private IArchimateModel fModel;
     
+    /**
+     * The current validation job, if any
+     */
+    private Job fValidationJob;
+    
+    /**
+     * The Validator of the last validation of the model, kept for incremental re-validation
+     */
+    private Validator fValidator;
+    
+    /**
+     * Objects changed in the model since the last validation or re-validation
+     */
+    private Set<EObject> fChangedObjects = new HashSet<EObject>();
+    
+    /**
+     * Whether a re-validation has been scheduled
+     */
+    private boolean fRevalidateScheduled;
+    
+    /**
+     * Delay in milliseconds to wait for more model changes before re-validating
+     */
+    private static final int REVALIDATE_DELAY = 300;
+    
     public ValidatorView() {
     }
 
@@ -339,17 +377,161 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
     }
     
     public void validateModel() {
-        BusyIndicator.showWhile(null, new Runnable() {
+        // Cancel any validation in progress
+        cancelValidation();
+        
+        updateStatusBar();
+        
+        if(fModel == null) {
+            fViewer.setInput(null);
+            return;
+        }
+        
+        final Validator validator = new Validator(fModel);
+        
+        // Model changes are collected from now on and applied when the validation has finished
+        fValidator = validator;
+        fChangedObjects.clear();
+        
+        // Issues received so far, only accessed in the UI thread
+        final List<IIssue> issues = new ArrayList<IIssue>();
+        fViewer.setInput(new ArrayList<Object>());
+        
+        fValidationJob = new Job(Messages.ValidatorView_5) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                final Job job = this;
+                
+                try {
+                    // Stream each checker's results into the viewer as it finishes
+                    final List<Object> result = validator.validate(monitor, new IValidatorListener() {
+                        @Override
+                        public void checkerFinished(IChecker checker, final List<IIssue> checkerIssues) {
+                            updateViewer(job, new Runnable() {
+                                @Override
+                                public void run() {
+                                    issues.addAll(checkerIssues);
+                                    fViewer.setInput(Validator.createIssueCategories(issues, false));
+                                    fViewer.expandAll();
+                                }
+                            });
+                        }
+                    });
+                    
+                    if(result == null) {
+                        return Status.CANCEL_STATUS;
+                    }
+                    
+                    // Final result
+                    updateViewer(job, new Runnable() {
+                        @Override
+                        public void run() {
+                            fValidationJob = null;
+                            fViewer.setInput(result);
+                            fViewer.expandAll();
+                            
+                            // The model was changed while validating
+                            if(!fChangedObjects.isEmpty()) {
+                                scheduleRevalidate();
+                            }
+                        }
+                    });
+                }
+                // A checker failed
+                catch(RuntimeException ex) {
+                    updateViewer(job, new Runnable() {
+                        @Override
+                        public void run() {
+                            // Can't re-validate incrementally without a complete validation
+                            cancelValidation();
+                        }
+                    });
+                    return new Status(IStatus.ERROR, ArchiHammerPlugin.PLUGIN_ID, ex.getMessage(), ex);
+                }
+                
+                return Status.OK_STATUS;
+            }
+        };
+        
+        fValidationJob.setUser(false);
+        
+        IWorkbenchSiteProgressService service = getSite().getService(IWorkbenchSiteProgressService.class);
+        if(service != null) {
+            service.schedule(fValidationJob);
+        }
+        else {
+            fValidationJob.schedule();
+        }
+    }
+    
+    /**
+     * Update the viewer in the UI thread if job is still the current validation job
+     */
+    private void updateViewer(final Job job, final Runnable runnable) {
+        Display display = getSite().getShell().getDisplay();
+        if(display.isDisposed()) {
+            return;
+        }
+        
+        display.asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                if(job == fValidationJob && !fViewer.getControl().isDisposed()) {
+                    runnable.run();
+                }
+            }
+        });
+    }
+    
+    private void cancelValidation() {
+        if(fValidationJob != null) {
+            fValidationJob.cancel();
+            fValidationJob = null;
+        }
+        
+        fValidator = null;
+        fChangedObjects.clear();
+    }
+    
+    /**
+     * Model changes arrive in bursts so wait for a short time before re-validating the changed objects
+     */
+    private void scheduleRevalidate() {
+        if(fRevalidateScheduled) {
+            return;
+        }
+        
+        fRevalidateScheduled = true;
+        
+        getSite().getShell().getDisplay().timerExec(REVALIDATE_DELAY, new Runnable() {
+            @Override
             public void run() {
-                updateStatusBar();
-                Validator validator = new Validator(fModel);
-                List<Object> result = validator.validate();
-                fViewer.setInput(result);
-                fViewer.expandAll();
+                fRevalidateScheduled = false;
+                revalidateModel();
             }
         });
     }
     
+    /**
+     * Re-validate only the objects that have changed since the last validation
+     */
+    private void revalidateModel() {
+        // Still validating, or no longer validating this model
+        if(fValidationJob != null || fValidator == null || fChangedObjects.isEmpty() || fViewer.getControl().isDisposed()) {
+            return;
+        }
+        
+        Set<EObject> changedObjects = fChangedObjects;
+        fChangedObjects = new HashSet<EObject>();
+        
+        List<Object> result = fValidator.revalidate(changedObjects);
+        
+        fViewer.getControl().setRedraw(false);
+        fViewer.setInput(result);
+        fViewer.expandAll();
+        fViewer.getControl().setRedraw(true);
+    }
+    
     private void updateStatusBar() {
         if(fModel != null) {
             getViewSite().getActionBars().getStatusLineManager().setMessage(ArchiLabelProvider.INSTANCE.getImage(fModel),
@@ -414,17 +596,46 @@ implements IValidatorView, ISelectionListener, IContextProvider, ITabbedProperty
         // Model Closed
         if(propertyName == IEditorModelManager.PROPERTY_MODEL_REMOVED) {
             if(fModel == newValue) {
+                cancelValidation();
                 fModel = null;
                 fViewer.setInput(null);
                 fActionValidate.setEnabled(false);
             }
         }
+        
+        // Model changed so re-validate the changed objects
+        else if(propertyName == IEditorModelManager.PROPERTY_ECORE_EVENT) {
+            Notification msg = (Notification)newValue;
+            if(fValidator != null && msg.getNotifier() instanceof EObject
+                    && EcoreUtil.getRootContainer((EObject)msg.getNotifier()) == fValidator.getModel()) {
+                Validator.collectChangedObjects(msg, fChangedObjects);
+                if(fValidationJob == null && !fChangedObjects.isEmpty()) {
+                    scheduleRevalidate();
+                }
+            }
+        }
+        
+        // Model changed by a command so re-validate the changed objects
+        else if(propertyName == IEditorModelManager.PROPERTY_ECORE_CHANGE_SET) {
+            ModelChangeSet changeSet = (ModelChangeSet)newValue;
+            if(fValidator != null && changeSet.getModel() == fValidator.getModel()) {
+                for(Notification msg : changeSet.getNotifications()) {
+                    Validator.collectChangedObjects(msg, fChangedObjects);
+                }
+                if(fValidationJob == null && !fChangedObjects.isEmpty()) {
+                    scheduleRevalidate();
+                }
+            }
+        }
     }
 
     @Override
     public void dispose() {
         super.dispose();
         
+        // Stop any validation in progress
+        cancelValidation();
+        
         // Unregister selection listener
         getSite().getWorkbenchWindow().getSelectionService().removeSelectionListener(this);
         
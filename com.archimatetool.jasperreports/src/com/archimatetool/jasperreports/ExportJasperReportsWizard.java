@@ -15,6 +15,7 @@ import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.jface.wizard.Wizard;
 import org.eclipse.swt.widgets.Display;
 
+import com.archimatetool.jasperreports.preferences.IJasperPreferenceConstants;
 import com.archimatetool.model.IArchimateModel;
 
 
@@ -83,6 +84,7 @@ public class ExportJasperReportsWizard extends Wizard {
                             try {
                                 JasperReportsExporter exporter = new JasperReportsExporter(fModel, exportFolder, exportFileName, mainTemplateFile,
                                         reportTitle, exportOptions);
+                                exporter.setUseVirtualizer(JasperReportsPlugin.INSTANCE.getPreferenceStore().getBoolean(IJasperPreferenceConstants.JASPER_USE_VIRTUALIZER));
                                 exporter.export(monitor);
                             }
                             catch(Exception ex) {
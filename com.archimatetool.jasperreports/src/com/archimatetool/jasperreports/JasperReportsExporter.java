@@ -7,11 +7,24 @@ package com.archimatetool.jasperreports;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import net.sf.jasperreports.engine.DefaultJasperReportsContext;
 import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JasperCompileManager;
 import net.sf.jasperreports.engine.JasperExportManager;
 import net.sf.jasperreports.engine.JasperFillManager;
@@ -21,6 +34,10 @@ import net.sf.jasperreports.engine.export.JRRtfExporter;
 import net.sf.jasperreports.engine.export.oasis.JROdtExporter;
 import net.sf.jasperreports.engine.export.ooxml.JRDocxExporter;
 import net.sf.jasperreports.engine.export.ooxml.JRPptxExporter;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.engine.util.JRSaver;
+import net.sf.jasperreports.engine.util.JRSwapFile;
 import net.sf.jasperreports.export.SimpleExporterInput;
 import net.sf.jasperreports.export.SimpleOutputStreamExporterOutput;
 import net.sf.jasperreports.export.SimpleWriterExporterOutput;
@@ -41,6 +58,9 @@ import com.archimatetool.model.IDiagramModel;
 /**
  * Exporter for Jasper Reports
  * 
+ * Compiled templates are cached on disk and only compiled again when the template file changes.
+ * Once the Jasper Print has been filled the selected formats are exported concurrently.
+ * 
  * @author Phillip Beauvoir
  */
 public class JasperReportsExporter {
@@ -57,12 +77,22 @@ public class JasperReportsExporter {
     
     private boolean DELETE_TEMP_FILES = true;
     
+    /*
+     * Virtualizer settings. Pages over this number are written to a swap file in the temp folder.
+     */
+    private static final int VIRTUALIZER_MAX_PAGES = 50;
+    private static final int SWAP_FILE_BLOCK_SIZE = 4096;
+    private static final int SWAP_FILE_MIN_GROW_COUNT = 100;
+    
     private IArchimateModel fModel;
     private File fExportFolder;
     private String fExportFileName;
     private File fMainTemplateFile;
     private String fReportTitle;
     private int fExportOptions;
+    private boolean fUseVirtualizer;
+    
+    private JRSwapFileVirtualizer fVirtualizer;
 
     /**
      * Export model to one or more Jasper Reports
@@ -86,6 +116,13 @@ public class JasperReportsExporter {
         System.setProperty("org.apache.commons.logging.Log", "org.apache.commons.logging.impl.NoOpLog");  //$NON-NLS-1$//$NON-NLS-2$
     }
     
+    /**
+     * @param useVirtualizer If true the report is filled using a swap file so that large models don't use too much memory
+     */
+    public void setUseVirtualizer(boolean useVirtualizer) {
+        fUseVirtualizer = useVirtualizer;
+    }
+    
     /** 
      * Export the model to Jasper Reports
      * @param monitor       Progress Monitor. Can be null
@@ -103,93 +140,194 @@ public class JasperReportsExporter {
         
         //System.out.println("Exporting: " + fModel.getName());
 
-        if(monitor != null) {
-            monitor.subTask(Messages.JasperReportsExporter_1);
+        try {
+            if(monitor != null) {
+                monitor.subTask(Messages.JasperReportsExporter_1);
+            }
+            writeDiagrams(tmpFolder);
+            if(monitor != null) {
+                monitor.worked(1);
+            }
+            
+            if(monitor != null) {
+                monitor.subTask(Messages.JasperReportsExporter_2);
+            }
+            JasperPrint jasperPrint = createJasperPrint(monitor, tmpFolder);
+            if(monitor != null) {
+                monitor.worked(1);
+            }
+            
+            exportFormats(jasperPrint, monitor);
         }
-        writeDiagrams(tmpFolder);
-        if(monitor != null) {
-            monitor.worked(1);
+        finally {
+            // The virtualizer's swap file is used until all formats have been exported
+            if(fVirtualizer != null) {
+                fVirtualizer.cleanup();
+                fVirtualizer = null;
+            }
+            
+            if(DELETE_TEMP_FILES) {
+                if(monitor != null) {
+                    monitor.subTask(Messages.JasperReportsExporter_9);
+                }
+                FileUtils.deleteFolder(tmpFolder);
+            }
+            if(monitor != null) {
+                monitor.worked(1);
+            }
         }
         
-        if(monitor != null) {
-            monitor.subTask(Messages.JasperReportsExporter_2);
-        }
-        JasperPrint jasperPrint = createJasperPrint(monitor, tmpFolder);
-        if(monitor != null) {
-            monitor.worked(1);
-        }
+        //System.out.println("Finished");
+    }
+    
+    /**
+     * Export the selected formats concurrently
+     */
+    void exportFormats(final JasperPrint jasperPrint, IProgressMonitor monitor) throws IOException, JRException {
+        List<ExportTask> tasks = new ArrayList<ExportTask>();
         
         if((fExportOptions & EXPORT_HTML) != 0) {
-            if(monitor != null) {
-                monitor.subTask(Messages.JasperReportsExporter_3);
-            }
-            exportHTML(jasperPrint, new File(fExportFolder, fExportFileName + ".html")); //$NON-NLS-1$
-        }
-        if(monitor != null) {
-            monitor.worked(1);
+            tasks.add(new ExportTask(Messages.JasperReportsExporter_3) {
+                @Override
+                public Void call() throws JRException {
+                    exportHTML(jasperPrint, new File(fExportFolder, fExportFileName + ".html")); //$NON-NLS-1$
+                    return null;
+                }
+            });
         }
 
         if((fExportOptions & EXPORT_PDF) != 0) {
-            if(monitor != null) {
-                monitor.subTask(Messages.JasperReportsExporter_4);
-            }
-            exportPDF(jasperPrint, new File(fExportFolder, fExportFileName + ".pdf")); //$NON-NLS-1$
-        }
-        if(monitor != null) {
-            monitor.worked(1);
+            tasks.add(new ExportTask(Messages.JasperReportsExporter_4) {
+                @Override
+                public Void call() throws JRException {
+                    exportPDF(jasperPrint, new File(fExportFolder, fExportFileName + ".pdf")); //$NON-NLS-1$
+                    return null;
+                }
+            });
         }
 
         if((fExportOptions & EXPORT_DOCX) != 0) {
-            if(monitor != null) {
-                monitor.subTask(Messages.JasperReportsExporter_5);
-            }
-            exportDOCX(jasperPrint, new File(fExportFolder, fExportFileName + ".docx")); //$NON-NLS-1$
-        }
-        if(monitor != null) {
-            monitor.worked(1);
+            tasks.add(new ExportTask(Messages.JasperReportsExporter_5) {
+                @Override
+                public Void call() throws JRException {
+                    exportDOCX(jasperPrint, new File(fExportFolder, fExportFileName + ".docx")); //$NON-NLS-1$
+                    return null;
+                }
+            });
         }
         
         if((fExportOptions & EXPORT_PPT) != 0) {
-            if(monitor != null) {
-                monitor.subTask(Messages.JasperReportsExporter_6);
-            }
-            exportPPT(jasperPrint, new File(fExportFolder, fExportFileName + ".pptx")); //$NON-NLS-1$
-        }
-        if(monitor != null) {
-            monitor.worked(1);
+            tasks.add(new ExportTask(Messages.JasperReportsExporter_6) {
+                @Override
+                public Void call() throws JRException {
+                    exportPPT(jasperPrint, new File(fExportFolder, fExportFileName + ".pptx")); //$NON-NLS-1$
+                    return null;
+                }
+            });
         }
         
         if((fExportOptions & EXPORT_RTF) != 0) {
-            if(monitor != null) {
-                monitor.subTask(Messages.JasperReportsExporter_7);
-            }
-            exportRTF(jasperPrint, new File(fExportFolder, fExportFileName + ".rtf")); //$NON-NLS-1$
-        }
-        if(monitor != null) {
-            monitor.worked(1);
+            tasks.add(new ExportTask(Messages.JasperReportsExporter_7) {
+                @Override
+                public Void call() throws JRException {
+                    exportRTF(jasperPrint, new File(fExportFolder, fExportFileName + ".rtf")); //$NON-NLS-1$
+                    return null;
+                }
+            });
         }
         
         if((fExportOptions & EXPORT_ODT) != 0) {
-            if(monitor != null) {
-                monitor.subTask(Messages.JasperReportsExporter_8);
-            }
-            exportODT(jasperPrint, new File(fExportFolder, fExportFileName + ".odt")); //$NON-NLS-1$
+            tasks.add(new ExportTask(Messages.JasperReportsExporter_8) {
+                @Override
+                public Void call() throws JRException {
+                    exportODT(jasperPrint, new File(fExportFolder, fExportFileName + ".odt")); //$NON-NLS-1$
+                    return null;
+                }
+            });
         }
+        
+        // Formats not selected
         if(monitor != null) {
-            monitor.worked(1);
+            monitor.worked(6 - tasks.size());
         }
         
-        if(DELETE_TEMP_FILES) {
-            if(monitor != null) {
-                monitor.subTask(Messages.JasperReportsExporter_9);
+        if(tasks.isEmpty()) {
+            return;
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(tasks.size(), Runtime.getRuntime().availableProcessors()));
+        
+        try {
+            for(ExportTask task : tasks) {
+                task.future = executor.submit(task);
+            }
+            
+            // Wait for the tasks in order and report progress in this thread
+            for(ExportTask task : tasks) {
+                if(monitor != null) {
+                    monitor.subTask(task.message);
+                }
+                
+                waitFor(task.future, monitor);
+                
+                if(monitor != null) {
+                    monitor.worked(1);
+                }
             }
-            FileUtils.deleteFolder(tmpFolder);
         }
-        if(monitor != null) {
-            monitor.worked(1);
+        finally {
+            executor.shutdownNow();
         }
+    }
+    
+    /**
+     * Export of one format
+     */
+    private static abstract class ExportTask implements Callable<Void> {
+        String message;
+        Future<Void> future;
         
-        //System.out.println("Finished");
+        ExportTask(String message) {
+            this.message = message;
+        }
+    }
+    
+    /**
+     * Wait for a task to complete and re-throw its exception
+     */
+    private void waitFor(Future<Void> future, IProgressMonitor monitor) throws IOException, JRException {
+        try {
+            while(true) {
+                if(monitor != null && monitor.isCanceled()) {
+                    throw new InterruptedIOException("User cancelled."); //$NON-NLS-1$
+                }
+                
+                try {
+                    // Wake up regularly to check for cancellation
+                    future.get(100, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                catch(TimeoutException ex) {
+                }
+            }
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if(cause instanceof JRException) {
+                throw (JRException)cause;
+            }
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
     }
     
     /**
@@ -238,14 +376,14 @@ public class JasperReportsExporter {
         if(monitor != null) {
             monitor.subTask(Messages.JasperReportsExporter_10);
         }
-        JasperReport mainReport = JasperCompileManager.compileReport(fMainTemplateFile.getPath());
+        JasperReport mainReport = compileReport(fMainTemplateFile);
         
         // Compile sub-reports
         File folder = fMainTemplateFile.getParentFile();
         for(File file : folder.listFiles()) {
             if(!file.equals(fMainTemplateFile) && file.getName().endsWith(".jrxml")) { //$NON-NLS-1$
                 //System.out.println("Compiling Sub-Report: " + file);
-                JasperReport jr = JasperCompileManager.compileReport(file.getPath());
+                JasperReport jr = compileReport(file);
                 params.put(jr.getName(), jr);
             }
         }
@@ -260,7 +398,74 @@ public class JasperReportsExporter {
             monitor.subTask(Messages.JasperReportsExporter_11);
         }
         
-        return JasperFillManager.fillReport(mainReport, params, new ArchimateModelDataSource(fModel));
+        // Use a swap file for the filled pages
+        if(fUseVirtualizer) {
+            JRSwapFile swapFile = new JRSwapFile(tmpFolder.getPath(), SWAP_FILE_BLOCK_SIZE, SWAP_FILE_MIN_GROW_COUNT);
+            fVirtualizer = new JRSwapFileVirtualizer(VIRTUALIZER_MAX_PAGES, swapFile, true);
+            params.put(JRParameter.REPORT_VIRTUALIZER, fVirtualizer);
+        }
+        
+        JasperPrint jasperPrint = JasperFillManager.fillReport(mainReport, params, new ArchimateModelDataSource(fModel));
+        
+        // Pages are only read from now on and can be shared by the exporters
+        if(fVirtualizer != null) {
+            fVirtualizer.setReadOnly(true);
+        }
+        
+        return jasperPrint;
+    }
+    
+    /**
+     * Compile a template or load it from the cache if it was compiled before and has not changed since
+     */
+    JasperReport compileReport(File templateFile) throws JRException {
+        File compiledFile = getCompiledReportFile(templateFile);
+        
+        if(compiledFile.exists()) {
+            try {
+                return (JasperReport)JRLoader.loadObject(compiledFile);
+            }
+            // Compiled by a different version of Jasper Reports so compile it again
+            catch(JRException | ClassCastException ex) {
+                compiledFile.delete();
+            }
+        }
+        
+        JasperReport report = JasperCompileManager.compileReport(templateFile.getPath());
+        
+        // Delete older compiled versions of the template
+        final String prefix = getCompiledReportPrefix(templateFile);
+        File[] oldFiles = compiledFile.getParentFile().listFiles();
+        if(oldFiles != null) {
+            for(File file : oldFiles) {
+                if(file.getName().startsWith(prefix)) {
+                    file.delete();
+                }
+            }
+        }
+        
+        // Save to a temp file first in case another export is loading it
+        compiledFile.getParentFile().mkdirs();
+        File tmpFile = new File(compiledFile.getPath() + "." + UUID.randomUUID() + ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+        JRSaver.saveObject(report, tmpFile);
+        if(!tmpFile.renameTo(compiledFile)) {
+            tmpFile.delete();
+        }
+        
+        return report;
+    }
+    
+    /**
+     * @return The cache file of a compiled template keyed by the template's path and modification time
+     */
+    File getCompiledReportFile(File templateFile) {
+        String name = getCompiledReportPrefix(templateFile) + templateFile.lastModified() + ".jasper"; //$NON-NLS-1$
+        return new File(JasperReportsPlugin.INSTANCE.getCompiledReportsFolder(), name);
+    }
+    
+    private String getCompiledReportPrefix(File templateFile) {
+        String path = templateFile.getAbsolutePath();
+        return UUID.nameUUIDFromBytes(path.getBytes(StandardCharsets.UTF_8)) + "_"; //$NON-NLS-1$
     }
     
     void exportHTML(JasperPrint jasperPrint, File file) throws JRException {
@@ -75,6 +75,13 @@ public class JasperReportsPlugin extends AbstractUIPlugin {
         return folder;
     }
 
+    /**
+     * @return The folder where compiled report templates are cached
+     */
+    public File getCompiledReportsFolder() {
+        return new File(getStateLocation().toFile(), "compiled-reports"); //$NON-NLS-1$
+    }
+
     /**
      * @return The Jasper Reports folder
      */
@@ -17,4 +17,6 @@ public interface IJasperPreferenceConstants {
     
     String JASPER_USER_REPORTS_FOLDER = "JRUserReportsFolder"; //$NON-NLS-1$
     
+    String JASPER_USE_VIRTUALIZER = "JRUseVirtualizer"; //$NON-NLS-1$
+    
 }
@@ -41,6 +41,7 @@ implements IWorkbenchPreferencePage, IJasperPreferenceConstants {
     private static String HELP_ID = "com.archimatetool.help.prefsJasper"; //$NON-NLS-1$
     
     private Text fUserReportsFolderTextField;
+    private Button fUseVirtualizerButton;
     
 	public JasperReportsPreferencesPage() {
 		setPreferenceStore(JasperReportsPlugin.INSTANCE.getPreferenceStore());
@@ -82,6 +83,12 @@ implements IWorkbenchPreferencePage, IJasperPreferenceConstants {
             }
         });
         
+        fUseVirtualizerButton = new Button(settingsGroup, SWT.CHECK);
+        fUseVirtualizerButton.setText(Messages.JasperReportsPreferencesPage_5);
+        gd = new GridData(GridData.FILL_HORIZONTAL);
+        gd.horizontalSpan = 3;
+        fUseVirtualizerButton.setLayoutData(gd);
+        
         setValues();
         
         return client;
@@ -100,17 +107,20 @@ implements IWorkbenchPreferencePage, IJasperPreferenceConstants {
 
     private void setValues() {
         fUserReportsFolderTextField.setText(JasperReportsPlugin.INSTANCE.getUserTemplatesFolder().getAbsolutePath());
+        fUseVirtualizerButton.setSelection(getPreferenceStore().getBoolean(JASPER_USE_VIRTUALIZER));
     }
     
     @Override
     public boolean performOk() {
         getPreferenceStore().setValue(JASPER_USER_REPORTS_FOLDER, fUserReportsFolderTextField.getText());
+        getPreferenceStore().setValue(JASPER_USE_VIRTUALIZER, fUseVirtualizerButton.getSelection());
         return true;
     }
     
     @Override
     protected void performDefaults() {
         fUserReportsFolderTextField.setText(JasperReportsPlugin.INSTANCE.getDefaultUserTemplatesFolder().getAbsolutePath());
+        fUseVirtualizerButton.setSelection(getPreferenceStore().getDefaultBoolean(JASPER_USE_VIRTUALIZER));
         super.performDefaults();
     }
     
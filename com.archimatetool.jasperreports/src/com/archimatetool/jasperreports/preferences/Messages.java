@@ -15,6 +15,8 @@ public class Messages extends NLS {
     public static String JasperReportsPreferencesPage_3;
 
     public static String JasperReportsPreferencesPage_4;
+
+    public static String JasperReportsPreferencesPage_5;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
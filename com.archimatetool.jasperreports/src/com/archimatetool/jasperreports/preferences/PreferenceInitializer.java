@@ -26,5 +26,6 @@ implements IPreferenceConstants, IJasperPreferenceConstants {
 		IPreferenceStore store = JasperReportsPlugin.INSTANCE.getPreferenceStore();
         
 		store.setDefault(JASPER_USER_REPORTS_FOLDER, JasperReportsPlugin.INSTANCE.getDefaultUserTemplatesFolder().getAbsolutePath());
+		store.setDefault(JASPER_USE_VIRTUALIZER, false);
     }
 }
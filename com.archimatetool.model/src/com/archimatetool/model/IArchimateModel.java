@@ -11,6 +11,7 @@ import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
 
 import com.archimatetool.model.util.IDAdapter;
+import com.archimatetool.model.util.ModelChangeDispatcher;
 
 /**
  * <!-- begin-user-doc -->
@@ -180,7 +181,12 @@ public interface IArchimateModel extends IFolderContainer, IArchimateModelObject
     IFolder getFolder(FolderType type);
 
     /**
-     * @return The ID adapter for registering new child object IDs
+     * @return The ID adapter for registering new child object IDs and looking up objects by their ID
      */
     IDAdapter getIDAdapter();
+
+    /**
+     * @return The one content adapter of the model. Add a listener to this to be notified of changes to the model and its child objects.
+     */
+    ModelChangeDispatcher getChangeDispatcher();
 } // IArchimateModel
@@ -17,7 +17,7 @@ import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
-import org.eclipse.emf.ecore.impl.EObjectImpl;
+import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
 import org.eclipse.emf.ecore.util.EObjectContainmentEList;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.InternalEList;
@@ -51,7 +51,7 @@ import com.archimatetool.model.IProperty;
  *
  * @generated
  */
-public abstract class ArchimateConcept extends EObjectImpl implements IArchimateConcept {
+public abstract class ArchimateConcept extends MinimalEObjectImpl.Container implements IArchimateConcept {
     /**
      * The default value of the '{@link #getName() <em>Name</em>}' attribute.
      * <!-- begin-user-doc -->
@@ -123,9 +123,9 @@ public abstract class ArchimateConcept extends EObjectImpl implements IArchimate
     protected EList<IProperty> properties;
 
     /**
-     * Adapter Map for arbitrary objects
+     * Adapter Map for arbitrary objects. Most objects don't have adapters so this is created when the first one is set.
      */
-    private Map<Object, Object> fAdapterMap = new HashMap<Object, Object>();
+    private Map<Object, Object> fAdapterMap;
 
     /**
      * Stored references to connected relationships
@@ -271,11 +271,11 @@ public abstract class ArchimateConcept extends EObjectImpl implements IArchimate
      * @generated NOT
      */
     public Object getAdapter(Object adapter) {
-        if(!fAdapterMap.containsKey(adapter) && eContainer() instanceof IAdapter) {
+        if((fAdapterMap == null || !fAdapterMap.containsKey(adapter)) && eContainer() instanceof IAdapter) {
             return ((IAdapter)eContainer()).getAdapter(adapter);
         }
         
-        return fAdapterMap.get(adapter);
+        return fAdapterMap == null ? null : fAdapterMap.get(adapter);
     }
 
     /**
@@ -284,6 +284,9 @@ public abstract class ArchimateConcept extends EObjectImpl implements IArchimate
      * @generated NOT
      */
     public void setAdapter(Object adapter, Object object) {
+        if(fAdapterMap == null) {
+            fAdapterMap = new HashMap<Object, Object>();
+        }
         fAdapterMap.put(adapter, object);
     }
 
@@ -7,21 +7,21 @@ package com.archimatetool.model.impl;
 
 import java.io.File;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
 
 import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.notify.NotificationChain;
 import org.eclipse.emf.common.util.BasicEList;
+import org.eclipse.emf.common.util.ECollections;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
-import org.eclipse.emf.ecore.impl.EObjectImpl;
+import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
 import org.eclipse.emf.ecore.util.EObjectContainmentEList;
-import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.InternalEList;
 
 import com.archimatetool.model.FolderType;
@@ -49,6 +49,8 @@ import com.archimatetool.model.IProperty;
 import com.archimatetool.model.IStrategyElement;
 import com.archimatetool.model.ITechnologyElement;
 import com.archimatetool.model.util.IDAdapter;
+import com.archimatetool.model.util.IModelChangeListener;
+import com.archimatetool.model.util.ModelChangeDispatcher;
 
 
 /**
@@ -71,7 +73,7 @@ import com.archimatetool.model.util.IDAdapter;
  *
  * @generated
  */
-public class ArchimateModel extends EObjectImpl implements IArchimateModel {
+public class ArchimateModel extends MinimalEObjectImpl.Container implements IArchimateModel {
     /**
      * The cached value of the '{@link #getFolders() <em>Folders</em>}' containment reference list.
      * <!-- begin-user-doc -->
@@ -200,6 +202,44 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
      * ID Adapter
      */
     private IDAdapter fIDAdapter = new IDAdapter();
+    
+    /**
+     * Cache of the first folder of each folder type, or null if not built
+     */
+    private Map<FolderType, IFolder> fFolderCache;
+    
+    /**
+     * Cache of the diagram models in the Views folder, or null if not built
+     */
+    private EList<IDiagramModel> fDiagramModelsCache;
+    
+    /**
+     * The one content adapter attached to the model and its child objects.
+     * Changes are dispatched from this to the ID Adapter and other listeners.
+     */
+    private ModelChangeDispatcher fChangeDispatcher = new ModelChangeDispatcher() {
+        @Override
+        protected void unsetTarget(EObject target) {
+            super.unsetTarget(target);
+            
+            // Removed from the model
+            if(target == ArchimateModel.this) {
+                invalidateCaches();
+            }
+        }
+    };
+    
+    /**
+     * Listener to invalidate the folder and diagram model caches when folders are added, removed or moved, or their contents or type change
+     */
+    private IModelChangeListener fFoldersListener = new IModelChangeListener() {
+        @Override
+        public void notifyChanged(Notification msg) {
+            if(!msg.isTouch()) {
+                invalidateCaches();
+            }
+        }
+    };
 
 
     /**
@@ -209,13 +249,22 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
      */
     protected ArchimateModel() {
         super();
-        eAdapters().add(fIDAdapter);
+        eAdapters().add(fChangeDispatcher);
+        
+        // The ID Adapter first so that new objects have IDs when other listeners are notified
+        fChangeDispatcher.addListener(fIDAdapter);
+        fChangeDispatcher.addListener(fFoldersListener, IArchimatePackage.Literals.FOLDER_CONTAINER__FOLDERS,
+                IArchimatePackage.Literals.FOLDER__ELEMENTS, IArchimatePackage.Literals.FOLDER__TYPE);
     }
     
     public IDAdapter getIDAdapter() {
         return fIDAdapter;
     }
     
+    public ModelChangeDispatcher getChangeDispatcher() {
+        return fChangeDispatcher;
+    }
+    
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
@@ -304,16 +353,35 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
      * @generated NOT
      */
     public IFolder getFolder(FolderType type) {
-        for(Iterator<EObject> iter =  EcoreUtil.getAllContents(getFolders()); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IFolder) {
-                if(((IFolder)eObject).getType() == type) {
-                    return (IFolder)eObject;
-                }
+        Map<FolderType, IFolder> cache = fFolderCache;
+        
+        if(cache == null) {
+            cache = new EnumMap<FolderType, IFolder>(FolderType.class);
+            for(IFolder folder : getFolders()) {
+                addToFolderCache(folder, cache);
+            }
+            
+            // Only keep the cache if we will be notified of changes to it
+            if(isCaching()) {
+                fFolderCache = cache;
             }
         }
         
-        return null;
+        return cache.get(type);
+    }
+    
+    /**
+     * Add folder and its sub-folders to the cache in the same order as iterating through all model contents
+     * so that the first folder of a given type is the one that is used
+     */
+    private void addToFolderCache(IFolder folder, Map<FolderType, IFolder> cache) {
+        if(!cache.containsKey(folder.getType())) {
+            cache.put(folder.getType(), folder);
+        }
+        
+        for(IFolder childFolder : folder.getFolders()) {
+            addToFolderCache(childFolder, cache);
+        }
     }
 
     /**
@@ -351,27 +419,62 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
 
     /**
      * <!-- begin-user-doc -->
-     * Return the Diagram Models - could be empty list
+     * Return the Diagram Models - could be empty list.
+     * The list is unmodifiable and is not changed when diagram models are added or removed
+     * so it is safe to iterate through it while making changes to the model.
      * <!-- end-user-doc -->
      * @generated NOT
      */
     public EList<IDiagramModel> getDiagramModels() {
-        EList<IDiagramModel> list = new BasicEList<IDiagramModel>();
+        EList<IDiagramModel> list = fDiagramModelsCache;
         
-        IFolder folder = getFolder(FolderType.DIAGRAMS);
-        if(folder != null) {
-            for(Iterator<EObject> iter = folder.eAllContents(); iter.hasNext();) {
-                EObject eObject = iter.next();
-                if(eObject instanceof IDiagramModel) {
-                    list.add((IDiagramModel)eObject);
-                }
+        if(list == null) {
+            EList<IDiagramModel> diagramModels = new BasicEList<IDiagramModel>();
+            
+            IFolder folder = getFolder(FolderType.DIAGRAMS);
+            if(folder != null) {
+                addDiagramModels(folder, diagramModels);
+            }
+            
+            list = ECollections.unmodifiableEList(diagramModels);
+            
+            // Only keep the cache if we will be notified of changes to it
+            if(isCaching()) {
+                fDiagramModelsCache = list;
             }
-
         }
         
         return list;
     }
     
+    /**
+     * Add diagram models in folder and its sub-folders in the same order as iterating through all folder contents
+     */
+    private void addDiagramModels(IFolder folder, EList<IDiagramModel> list) {
+        for(IFolder childFolder : folder.getFolders()) {
+            addDiagramModels(childFolder, list);
+        }
+        
+        for(EObject eObject : folder.getElements()) {
+            if(eObject instanceof IDiagramModel) {
+                list.add((IDiagramModel)eObject);
+            }
+        }
+    }
+    
+    /**
+     * @return true if the folder and diagram model caches can be used.
+     *         Clients may remove all adapters from the model in which case we are no longer notified of changes.
+     */
+    private boolean isCaching() {
+        return eAdapters().contains(fChangeDispatcher);
+    }
+    
+    private void invalidateCaches() {
+        fFolderCache = null;
+        fDiagramModelsCache = null;
+    }
+    
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
@@ -8,7 +8,7 @@ package com.archimatetool.model.impl;
 import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
-import org.eclipse.emf.ecore.impl.EObjectImpl;
+import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 
 import com.archimatetool.model.IArchimatePackage;
@@ -31,7 +31,7 @@ import com.archimatetool.model.IBounds;
  *
  * @generated
  */
-public class Bounds extends EObjectImpl implements IBounds {
+public class Bounds extends MinimalEObjectImpl.Container implements IBounds {
     /**
      * The default value of the '{@link #getX() <em>X</em>}' attribute.
      * <!-- begin-user-doc -->
@@ -17,7 +17,7 @@ import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
-import org.eclipse.emf.ecore.impl.EObjectImpl;
+import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
 import org.eclipse.emf.ecore.util.EObjectContainmentEList;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.InternalEList;
@@ -56,7 +56,7 @@ import com.archimatetool.model.IProperty;
  *
  * @generated
  */
-public abstract class DiagramModel extends EObjectImpl implements IDiagramModel {
+public abstract class DiagramModel extends MinimalEObjectImpl.Container implements IDiagramModel {
     /**
      * The default value of the '{@link #getName() <em>Name</em>}' attribute.
      * <!-- begin-user-doc -->
@@ -158,9 +158,9 @@ public abstract class DiagramModel extends EObjectImpl implements IDiagramModel
     protected int connectionRouterType = CONNECTION_ROUTER_TYPE_EDEFAULT;
 
     /**
-     * Adapter Map for arbitrary objects
+     * Adapter Map for arbitrary objects. Most objects don't have adapters so this is created when the first one is set.
      */
-    private Map<Object, Object> fAdapterMap = new HashMap<Object, Object>();
+    private Map<Object, Object> fAdapterMap;
 
     /**
      * <!-- begin-user-doc -->
@@ -316,11 +316,11 @@ public abstract class DiagramModel extends EObjectImpl implements IDiagramModel
      * @generated NOT
      */
     public Object getAdapter(Object adapter) {
-        if(!fAdapterMap.containsKey(adapter) && eContainer() instanceof IAdapter) {
+        if((fAdapterMap == null || !fAdapterMap.containsKey(adapter)) && eContainer() instanceof IAdapter) {
             return ((IAdapter)eContainer()).getAdapter(adapter);
         }
         
-        return fAdapterMap.get(adapter);
+        return fAdapterMap == null ? null : fAdapterMap.get(adapter);
     }
 
     /**
@@ -329,6 +329,9 @@ public abstract class DiagramModel extends EObjectImpl implements IDiagramModel
      * @generated NOT
      */
     public void setAdapter(Object adapter, Object object) {
+        if(fAdapterMap == null) {
+            fAdapterMap = new HashMap<Object, Object>();
+        }
         fAdapterMap.put(adapter, object);
     }
 
@@ -12,7 +12,7 @@ import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
-import org.eclipse.emf.ecore.impl.EObjectImpl;
+import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 
 import com.archimatetool.model.IAdapter;
@@ -37,7 +37,7 @@ import com.archimatetool.model.INameable;
  *
  * @generated
  */
-public abstract class DiagramModelComponent extends EObjectImpl implements IDiagramModelComponent {
+public abstract class DiagramModelComponent extends MinimalEObjectImpl.Container implements IDiagramModelComponent {
     /**
      * The default value of the '{@link #getId() <em>Id</em>}' attribute.
      * <!-- begin-user-doc -->
@@ -79,9 +79,9 @@ public abstract class DiagramModelComponent extends EObjectImpl implements IDiag
     protected String name = NAME_EDEFAULT;
 
     /**
-     * Adapter Map for arbitrary objects
+     * Adapter Map for arbitrary objects. Most objects don't have adapters so this is created when the first one is set.
      */
-    private Map<Object, Object> fAdapterMap = new HashMap<Object, Object>();
+    private Map<Object, Object> fAdapterMap;
 
     /**
      * <!-- begin-user-doc -->
@@ -162,11 +162,11 @@ public abstract class DiagramModelComponent extends EObjectImpl implements IDiag
      * @generated NOT
      */
     public Object getAdapter(Object adapter) {
-        if(!fAdapterMap.containsKey(adapter) && eContainer() instanceof IAdapter) {
+        if((fAdapterMap == null || !fAdapterMap.containsKey(adapter)) && eContainer() instanceof IAdapter) {
             return ((IAdapter)eContainer()).getAdapter(adapter);
         }
         
-        return fAdapterMap.get(adapter);
+        return fAdapterMap == null ? null : fAdapterMap.get(adapter);
     }
 
     /**
@@ -175,6 +175,9 @@ public abstract class DiagramModelComponent extends EObjectImpl implements IDiag
      * @generated NOT
      */
     public void setAdapter(Object adapter, Object object) {
+        if(fAdapterMap == null) {
+            fAdapterMap = new HashMap<Object, Object>();
+        }
         fAdapterMap.put(adapter, object);
     }
 
@@ -26,6 +26,7 @@ import com.archimatetool.model.IFontAttribute;
 import com.archimatetool.model.ILineObject;
 import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.StringPool;
 
 
 /**
@@ -284,11 +285,11 @@ public class DiagramModelConnection extends Connectable implements IDiagramModel
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setFont(String newFont) {
         String oldFont = font;
-        font = newFont;
+        font = StringPool.intern(newFont);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.DIAGRAM_MODEL_CONNECTION__FONT, oldFont, font));
     }
@@ -305,11 +306,11 @@ public class DiagramModelConnection extends Connectable implements IDiagramModel
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setFontColor(String newFontColor) {
         String oldFontColor = fontColor;
-        fontColor = newFontColor;
+        fontColor = StringPool.intern(newFontColor);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.DIAGRAM_MODEL_CONNECTION__FONT_COLOR, oldFontColor, fontColor));
     }
@@ -457,11 +458,11 @@ public class DiagramModelConnection extends Connectable implements IDiagramModel
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setLineColor(String newLineColor) {
         String oldLineColor = lineColor;
-        lineColor = newLineColor;
+        lineColor = StringPool.intern(newLineColor);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.DIAGRAM_MODEL_CONNECTION__LINE_COLOR, oldLineColor, lineColor));
     }
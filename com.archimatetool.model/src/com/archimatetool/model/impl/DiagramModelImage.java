@@ -13,6 +13,7 @@ import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IBorderObject;
 import com.archimatetool.model.IDiagramModelImage;
 import com.archimatetool.model.IDiagramModelImageProvider;
+import com.archimatetool.model.util.StringPool;
 
 
 /**
@@ -101,11 +102,11 @@ public class DiagramModelImage extends DiagramModelObject implements IDiagramMod
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setBorderColor(String newBorderColor) {
         String oldBorderColor = borderColor;
-        borderColor = newBorderColor;
+        borderColor = StringPool.intern(newBorderColor);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.DIAGRAM_MODEL_IMAGE__BORDER_COLOR, oldBorderColor, borderColor));
     }
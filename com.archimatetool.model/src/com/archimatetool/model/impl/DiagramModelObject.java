@@ -19,6 +19,7 @@ import com.archimatetool.model.IDiagramModelObject;
 import com.archimatetool.model.IFontAttribute;
 import com.archimatetool.model.ILineObject;
 import com.archimatetool.model.ITextAlignment;
+import com.archimatetool.model.util.StringPool;
 
 
 /**
@@ -255,11 +256,11 @@ public abstract class DiagramModelObject extends Connectable implements IDiagram
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setFillColor(String newFillColor) {
         String oldFillColor = fillColor;
-        fillColor = newFillColor;
+        fillColor = StringPool.intern(newFillColor);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.DIAGRAM_MODEL_OBJECT__FILL_COLOR, oldFillColor, fillColor));
     }
@@ -276,11 +277,11 @@ public abstract class DiagramModelObject extends Connectable implements IDiagram
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setFont(String newFont) {
         String oldFont = font;
-        font = newFont;
+        font = StringPool.intern(newFont);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.DIAGRAM_MODEL_OBJECT__FONT, oldFont, font));
     }
@@ -297,11 +298,11 @@ public abstract class DiagramModelObject extends Connectable implements IDiagram
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setFontColor(String newFontColor) {
         String oldFontColor = fontColor;
-        fontColor = newFontColor;
+        fontColor = StringPool.intern(newFontColor);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.DIAGRAM_MODEL_OBJECT__FONT_COLOR, oldFontColor, fontColor));
     }
@@ -360,11 +361,11 @@ public abstract class DiagramModelObject extends Connectable implements IDiagram
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setLineColor(String newLineColor) {
         String oldLineColor = lineColor;
-        lineColor = newLineColor;
+        lineColor = StringPool.intern(newLineColor);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.DIAGRAM_MODEL_OBJECT__LINE_COLOR, oldLineColor, lineColor));
     }
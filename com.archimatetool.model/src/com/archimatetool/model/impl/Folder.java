@@ -16,7 +16,7 @@ import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.InternalEObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
-import org.eclipse.emf.ecore.impl.EObjectImpl;
+import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
 import org.eclipse.emf.ecore.util.EObjectContainmentEList;
 import org.eclipse.emf.ecore.util.InternalEList;
 
@@ -53,7 +53,7 @@ import com.archimatetool.model.IProperty;
  *
  * @generated
  */
-public class Folder extends EObjectImpl implements IFolder {
+public class Folder extends MinimalEObjectImpl.Container implements IFolder {
     /**
      * The default value of the '{@link #getName() <em>Name</em>}' attribute.
      * <!-- begin-user-doc -->
@@ -156,9 +156,9 @@ public class Folder extends EObjectImpl implements IFolder {
     protected FolderType type = TYPE_EDEFAULT;
     
     /**
-     * Adapter Map for arbitrary objects
+     * Adapter Map for arbitrary objects. Most objects don't have adapters so this is created when the first one is set.
      */
-    private Map<Object, Object> fAdapterMap = new HashMap<Object, Object>();
+    private Map<Object, Object> fAdapterMap;
 
     /**
      * <!-- begin-user-doc -->
@@ -293,11 +293,11 @@ public class Folder extends EObjectImpl implements IFolder {
      * @generated NOT
      */
     public Object getAdapter(Object adapter) {
-        if(!fAdapterMap.containsKey(adapter) && eContainer() instanceof IAdapter) {
+        if((fAdapterMap == null || !fAdapterMap.containsKey(adapter)) && eContainer() instanceof IAdapter) {
             return ((IAdapter)eContainer()).getAdapter(adapter);
         }
         
-        return fAdapterMap.get(adapter);
+        return fAdapterMap == null ? null : fAdapterMap.get(adapter);
     }
 
     /**
@@ -306,6 +306,9 @@ public class Folder extends EObjectImpl implements IFolder {
      * @generated NOT
      */
     public void setAdapter(Object adapter, Object object) {
+        if(fAdapterMap == null) {
+            fAdapterMap = new HashMap<Object, Object>();
+        }
         fAdapterMap.put(adapter, object);
     }
 
@@ -8,10 +8,11 @@ package com.archimatetool.model.impl;
 import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
-import org.eclipse.emf.ecore.impl.EObjectImpl;
+import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
 
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.StringPool;
 
 
 /**
@@ -28,7 +29,7 @@ import com.archimatetool.model.IProperty;
  *
  * @generated
  */
-public class Property extends EObjectImpl implements IProperty {
+public class Property extends MinimalEObjectImpl.Container implements IProperty {
     /**
      * The default value of the '{@link #getKey() <em>Key</em>}' attribute.
      * <!-- begin-user-doc -->
@@ -186,11 +187,11 @@ public class Property extends EObjectImpl implements IProperty {
     /**
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public void setKey(String newKey) {
         String oldKey = key;
-        key = newKey;
+        key = StringPool.intern(newKey);
         if (eNotificationRequired())
             eNotify(new ENotificationImpl(this, Notification.SET, IArchimatePackage.PROPERTY__KEY, oldKey, key));
     }
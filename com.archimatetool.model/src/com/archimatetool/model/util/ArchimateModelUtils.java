@@ -7,7 +7,6 @@ package com.archimatetool.model.util;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.emf.ecore.EClass;
@@ -17,7 +16,7 @@ import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
-import com.archimatetool.model.IIdentifier;
+import com.archimatetool.model.IDiagramModelComponent;
 
 
 
@@ -152,15 +151,30 @@ public class ArchimateModelUtils {
             return model;
         }
         
-        // This is an expensive iteration!
-        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IIdentifier && id.equals(((IIdentifier)element).getId())) {
-                return element;
-            }
-        }
+        // Look up the ID in the model's ID index rather than iterating through the model
+        return model.getIDAdapter().getObject(id);
+    }
 
-        return null;
+    /**
+     * Get an Archimate concept in an Archimate Model given its String ID
+     * @param model The owning Archimate Model
+     * @param id The ID of the concept to search for
+     * @return The matching concept in the model given its ID or null if not found or the object is not a concept
+     */
+    public static IArchimateConcept getConceptByID(IArchimateModel model, String id) {
+        EObject eObject = getObjectByID(model, id);
+        return eObject instanceof IArchimateConcept ? (IArchimateConcept)eObject : null;
+    }
+
+    /**
+     * Get a diagram model component (diagram model, diagram object or connection) in an Archimate Model given its String ID
+     * @param model The owning Archimate Model
+     * @param id The ID of the component to search for
+     * @return The matching component in the model given its ID or null if not found or the object is not a diagram model component
+     */
+    public static IDiagramModelComponent getDiagramComponentByID(IArchimateModel model, String id) {
+        EObject eObject = getObjectByID(model, id);
+        return eObject instanceof IDiagramModelComponent ? (IDiagramModelComponent)eObject : null;
     }
 
     
@@ -5,9 +5,17 @@
  */
 package com.archimatetool.model.util;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
 
+import com.archimatetool.model.IArchimateModel;
+
 /**
  * <!-- begin-user-doc -->
  * The <b>Resource </b> associated with the package.
@@ -21,10 +29,37 @@ public class ArchimateResource extends XMLResourceImpl {
      * <!-- begin-user-doc -->
      * <!-- end-user-doc -->
      * @param uri the URI of the new resource.
-     * @generated
+     * @generated NOT
      */
     public ArchimateResource(URI uri) {
         super(uri);
     }
 
+    /**
+     * <!-- begin-user-doc -->
+     * Register all IDs with the model's IDAdapter in one pass once the model has been de-serialised.
+     * This is done even if there was an error loading so that the IDs of partially loaded models are tracked.
+     * While loading, the IDs found when resolving ID references are kept in a map so that the model is searched only once.
+     * The map is cleared afterwards so that the IDAdapter is the only index of IDs.
+     * <!-- end-user-doc -->
+     * @generated NOT
+     */
+    @Override
+    public void doLoad(InputStream inputStream, Map<?, ?> options) throws IOException {
+        setIntrinsicIDToEObjectMap(new HashMap<String, EObject>());
+        
+        try {
+            super.doLoad(inputStream, options);
+        }
+        finally {
+            setIntrinsicIDToEObjectMap(null);
+            
+            for(EObject eObject : getContents()) {
+                if(eObject instanceof IArchimateModel) {
+                    ((IArchimateModel)eObject).getIDAdapter().registerIDs(eObject);
+                }
+            }
+        }
+    }
+
 } //ArchimateResource
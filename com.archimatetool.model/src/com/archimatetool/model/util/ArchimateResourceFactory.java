@@ -6,6 +6,10 @@
 package com.archimatetool.model.util;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
@@ -13,7 +17,9 @@ import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceFactoryImpl;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.util.ExtendedMetaData;
+import org.eclipse.emf.ecore.xmi.XMLParserPool;
 import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
 
 
 /**
@@ -25,6 +31,17 @@ import org.eclipse.emf.ecore.xmi.XMLResource;
  */
 public class ArchimateResourceFactory extends ResourceFactoryImpl {
     
+    /**
+     * SAX parsers shared by all loads so that a new parser is not created for each model
+     */
+    private static final XMLParserPool PARSER_POOL = new XMLParserPoolImpl();
+    
+    /**
+     * Map of XML names to features shared by all loads so that features are not looked up by name for each element.
+     * Models can be loaded in more than one thread so this is synchronized.
+     */
+    private static final Map<Object, Object> NAME_TO_FEATURE_MAP = Collections.synchronizedMap(new HashMap<Object, Object>());
+    
     /**
      * Creates an instance of the resource factory.
      * <!-- begin-user-doc -->
@@ -88,6 +105,9 @@ public class ArchimateResourceFactory extends ResourceFactoryImpl {
         result.getDefaultSaveOptions().put(XMLResource.OPTION_ENCODING, "UTF-8"); //$NON-NLS-1$
         result.getDefaultLoadOptions().put(XMLResource.OPTION_ENCODING, "UTF-8"); //$NON-NLS-1$
         
+        setLoadPerformanceOptions(result.getDefaultLoadOptions());
+        setSavePerformanceOptions(result.getDefaultSaveOptions());
+        
         // Not sure about this
         // result.getDefaultSaveOptions().put(XMLResource.OPTION_SCHEMA_LOCATION, Boolean.TRUE);
 
@@ -100,5 +120,28 @@ public class ArchimateResourceFactory extends ResourceFactoryImpl {
         
         return result;
     }
+    
+    /**
+     * Set the options that make loading faster
+     * @generated NOT
+     */
+    static void setLoadPerformanceOptions(Map<Object, Object> options) {
+        options.put(XMLResource.OPTION_USE_PARSER_POOL, PARSER_POOL);
+        options.put(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP, NAME_TO_FEATURE_MAP);
+        options.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.FALSE);
+        
+        // Resolve ID references when the document has been read rather than looking each one up when it is read
+        options.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+    }
+    
+    /**
+     * Set the options that make saving faster
+     * @generated NOT
+     */
+    static void setSavePerformanceOptions(Map<Object, Object> options) {
+        // Cache the formatted output configuration and the lookup tables between saves of the Resource
+        options.put(XMLResource.OPTION_CONFIGURATION_CACHE, Boolean.TRUE);
+        options.put(XMLResource.OPTION_USE_CACHED_LOOKUP_TABLE, new ArrayList<Object>());
+    }
 
 } //ArchimateResourceFactory
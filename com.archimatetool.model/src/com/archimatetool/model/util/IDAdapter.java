@@ -5,63 +5,132 @@
  */
 package com.archimatetool.model.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.UUID;
 
 import org.eclipse.emf.common.notify.Notification;
-import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
 
+import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IIdentifier;
 
 
 /**
- * Adapter to allocate and/or store unique IDs for child objects of an Archimate model as they are added or de-serialised.
+ * Listener to allocate and/or store unique IDs for child objects of an Archimate model as they are added or de-serialised.
  *
  * IDs in IIdentifier need to be unique for the model so we need a system to allocate and track them.
- * This adapter will listen for child elements added to the model, both when deserialising from file
- * and when the user creates a child element. The IDs are cached to check for duplicates.
- * 
- * In order for this to work a model object should be added to the main ArchimateModel first *before* any of its
- * child objects are added (would be orphaned otherwise).
- * 
- * IDs are not removed from the cache if an element is deleted in case the user performs an Undo operation.
- * 
+ * This listener is added to the model's ModelChangeDispatcher and is notified of child elements added to the model
+ * when the user creates a child element.
+ * The IDs are cached in a hash map to check for duplicates. The map also serves as an index of IDs to objects
+ * so that objects can be found by their ID without iterating through the model.
+ *
+ * When de-serialising from file the ADD notifications are ignored because IDs are set only after an object has been added
+ * to its parent. Instead, ArchimateResource registers all IDs in one pass when loading has finished.
+ *
+ * IDs are removed from the cache if an element is deleted and registered again if the user performs an Undo operation.
+ *
  * @author Phillip Beauvoir
  */
-public class IDAdapter extends EContentAdapter {
+public class IDAdapter implements IModelChangeListener {
 
     /**
-     * Keep track of unique IDs. An element's ID has to be unique.
+     * Keep track of unique IDs and the objects that use them. An element's ID has to be unique.
+     * An ID maps to null if it has been allocated or registered but not yet set on an object in the model.
      */
-    private List<String> fUsedIDs = new ArrayList<String>();
+    private Map<String, IIdentifier> fUsedIDs = new HashMap<String, IIdentifier>();
 
     @Override
     public void notifyChanged(Notification msg) {
-        super.notifyChanged(msg);
-
-        if(msg.getEventType() == Notification.ADD) {
-            if(msg.getNewValue() instanceof IIdentifier) {
-                IIdentifier element = (IIdentifier)msg.getNewValue();
-                String id = element.getId();
-                // Element has no ID so allocate one
-                if(id == null) {
-                    element.setId(getNewID());
+        // IDs are set after objects are added when de-serialising so these are registered when loading has finished
+        if(isLoading(msg)) {
+            return;
+        }
+
+        // ID was changed
+        if(msg.getFeature() == IArchimatePackage.Literals.IDENTIFIER__ID) {
+            if(msg.getEventType() == Notification.SET && msg.getNotifier() instanceof IIdentifier) {
+                IIdentifier element = (IIdentifier)msg.getNotifier();
+                unregister(msg.getOldStringValue(), element);
+                register(msg.getNewStringValue(), element);
+            }
+            return;
+        }
+
+        // Only child objects added to or removed from the model, not references such as diagram target connections
+        if(!isContainment(msg.getFeature())) {
+            return;
+        }
+
+        switch(msg.getEventType()) {
+            case Notification.ADD:
+                registerIDs(msg.getNewValue());
+                break;
+
+            case Notification.ADD_MANY:
+                for(Object o : (Collection<?>)msg.getNewValue()) {
+                    registerIDs(o);
                 }
-                // Register the ID to the list when loading in from file
-                else {
-                    registerID(id);
+                break;
+
+            case Notification.REMOVE:
+                unregisterIDs(msg.getOldValue());
+                break;
+
+            case Notification.REMOVE_MANY:
+                for(Object o : (Collection<?>)msg.getOldValue()) {
+                    unregisterIDs(o);
                 }
-            }
+                break;
+
+            case Notification.SET:
+                unregisterIDs(msg.getOldValue());
+                registerIDs(msg.getNewValue());
+                break;
+
+            default:
+                break;
         }
     }
 
     public void registerID(String id) {
-        if(id != null && !fUsedIDs.contains(id)) {
-            fUsedIDs.add(id); 
+        if(id != null && !fUsedIDs.containsKey(id)) {
+            fUsedIDs.put(id, null);
+        }
+    }
+
+    public void unregisterID(String id) {
+        if(id != null) {
+            fUsedIDs.remove(id);
         }
     }
-    
+
+    /**
+     * @param id The ID of the object
+     * @return The object in the model that has the given ID, or null if not found
+     */
+    public IIdentifier getObject(String id) {
+        return id == null ? null : fUsedIDs.get(id);
+    }
+
+    /**
+     * Register the IDs of eObject and all of its child objects in one pass.
+     * If an object has no ID then one is allocated.
+     * This is used for bulk registration after a model has been de-serialised.
+     * @param eObject The root object
+     */
+    public void registerIDs(EObject eObject) {
+        registerOrAllocateID(eObject);
+
+        for(Iterator<EObject> iter = eObject.eAllContents(); iter.hasNext();) {
+            registerOrAllocateID(iter.next());
+        }
+    }
+
     /**
      * @return A new unique ID to be used for objects in the model
      */
@@ -70,10 +139,75 @@ public class IDAdapter extends EContentAdapter {
         do {
             id = UUID.randomUUID().toString();
         }
-        while(fUsedIDs.contains(id));
-        
-        registerID(id); 
-        
+        while(fUsedIDs.containsKey(id));
+
+        registerID(id);
+
         return id;
     }
-}
\ No newline at end of file
+
+    private void registerIDs(Object object) {
+        if(object instanceof EObject) {
+            registerIDs((EObject)object);
+        }
+    }
+
+    private void registerOrAllocateID(EObject eObject) {
+        if(eObject instanceof IIdentifier) {
+            IIdentifier element = (IIdentifier)eObject;
+            String id = element.getId();
+            // Element has no ID so allocate one
+            if(id == null) {
+                id = getNewID();
+                element.setId(id);
+            }
+            register(id, element);
+        }
+    }
+
+    private void unregisterIDs(Object object) {
+        if(object instanceof EObject) {
+            EObject eObject = (EObject)object;
+
+            if(eObject instanceof IIdentifier) {
+                unregister(((IIdentifier)eObject).getId(), (IIdentifier)eObject);
+            }
+
+            for(Iterator<EObject> iter = eObject.eAllContents(); iter.hasNext();) {
+                EObject child = iter.next();
+                if(child instanceof IIdentifier) {
+                    unregister(((IIdentifier)child).getId(), (IIdentifier)child);
+                }
+            }
+        }
+    }
+
+    private void register(String id, IIdentifier element) {
+        if(id != null) {
+            // If the ID is already used by another object (a duplicate) keep the first one
+            IIdentifier existing = fUsedIDs.get(id);
+            if(existing == null || existing == element) {
+                fUsedIDs.put(id, element);
+            }
+        }
+    }
+
+    private void unregister(String id, IIdentifier element) {
+        // Only remove the ID if it is not used by another object (a duplicate)
+        if(id != null && fUsedIDs.get(id) == element) {
+            fUsedIDs.remove(id);
+        }
+    }
+
+    private boolean isContainment(Object feature) {
+        return feature instanceof EReference && ((EReference)feature).isContainment();
+    }
+
+    private boolean isLoading(Notification msg) {
+        if(msg.getNotifier() instanceof EObject) {
+            Resource resource = ((EObject)msg.getNotifier()).eResource();
+            return resource instanceof Resource.Internal && ((Resource.Internal)resource).isLoading();
+        }
+        return false;
+    }
+}
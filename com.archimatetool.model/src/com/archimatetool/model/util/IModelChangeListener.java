@@ -0,0 +1,24 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import org.eclipse.emf.common.notify.Notification;
+
+
+/**
+ * Listener for changes to an Archimate model and its child objects.
+ * Listeners are added to a model's {@link ModelChangeDispatcher} rather than to the objects in the model.
+ *
+ * @author Phillip Beauvoir
+ */
+public interface IModelChangeListener {
+
+    /**
+     * A model object has changed
+     * @param msg The notification from the model object
+     */
+    void notifyChanged(Notification msg);
+}
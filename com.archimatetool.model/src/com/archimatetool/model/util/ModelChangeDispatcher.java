@@ -0,0 +1,110 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+
+/**
+ * The one content adapter of an Archimate model that is attached to the model and all of its child objects.
+ *
+ * Services that need to know about changes anywhere in a model (the ID registry, the images used by the model,
+ * the events forwarded to the UI) add a listener to this dispatcher instead of adding their own EContentAdapter
+ * to the model. So each object in the model carries one adapter and newly added child objects are adapted once.
+ *
+ * A listener can be added for a set of features so that it is only notified of changes to those features.
+ * Listeners are notified in the order that they were added.
+ * Notifications that an adapter is being removed are not forwarded to listeners.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ModelChangeDispatcher extends EContentAdapter {
+
+    private static class ListenerEntry {
+        IModelChangeListener listener;
+        EStructuralFeature[] features;
+
+        ListenerEntry(IModelChangeListener listener, EStructuralFeature[] features) {
+            this.listener = listener;
+            this.features = features;
+        }
+
+        boolean accepts(Object feature) {
+            if(features.length == 0) {
+                return true;
+            }
+            for(EStructuralFeature f : features) {
+                if(f == feature) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Listeners are added and removed much less often than notifications are dispatched, and they can be removed
+     * while a notification is dispatched
+     */
+    private List<ListenerEntry> fListeners = new CopyOnWriteArrayList<ListenerEntry>();
+
+    /**
+     * Add a listener. If the listener has already been added it is not added again.
+     * @param listener The listener
+     * @param features The features that the listener is notified of. If none are given the listener is notified of all changes.
+     */
+    public void addListener(IModelChangeListener listener, EStructuralFeature... features) {
+        if(listener != null && !hasListener(listener)) {
+            fListeners.add(new ListenerEntry(listener, features));
+        }
+    }
+
+    /**
+     * Remove a listener
+     * @param listener The listener
+     */
+    public void removeListener(IModelChangeListener listener) {
+        for(ListenerEntry entry : fListeners) {
+            if(entry.listener == listener) {
+                fListeners.remove(entry);
+            }
+        }
+    }
+
+    /**
+     * @return true if the listener has been added
+     */
+    public boolean hasListener(IModelChangeListener listener) {
+        for(ListenerEntry entry : fListeners) {
+            if(entry.listener == listener) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void notifyChanged(Notification msg) {
+        super.notifyChanged(msg);
+
+        if(msg.getEventType() == Notification.REMOVING_ADAPTER) {
+            return;
+        }
+
+        Object feature = msg.getFeature();
+
+        for(ListenerEntry entry : fListeners) {
+            if(entry.accepts(feature)) {
+                entry.listener.notifyChanged(msg);
+            }
+        }
+    }
+}
@@ -0,0 +1,599 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDocumentable;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IFolderContainer;
+import com.archimatetool.model.INameable;
+import com.archimatetool.model.IProperties;
+import com.archimatetool.model.IProperty;
+
+
+/**
+ * Inverted index of the text of the objects in a model's folders, so that they can be searched without visiting
+ * each object in the model.
+ *
+ * The model, its folders and the objects in its folders are indexed. Names, documentation and property values
+ * are split into lower case words of letters and digits, and each word maps to the objects that contain it.
+ * The property keys of each object are also indexed.
+ *
+ * The index is built when it is created and is then kept up to date from the model's {@link ModelChangeDispatcher},
+ * both in the thread that changes the model. It can be searched in any thread.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ModelTextIndex implements IModelChangeListener {
+
+    /**
+     * Search in names
+     */
+    public static final int NAME = 1;
+
+    /**
+     * Search in documentation
+     */
+    public static final int DOCUMENTATION = 2;
+
+    /**
+     * Search in property values
+     */
+    public static final int PROPERTY_VALUES = 4;
+
+    /**
+     * How the text of a query is matched
+     */
+    public enum Match {
+        /**
+         * The text occurs anywhere, ignoring case
+         */
+        CONTAINS,
+
+        /**
+         * Each word of the text is the start of a word
+         */
+        PREFIX,
+
+        /**
+         * The words of the text occur as whole words in the same order
+         */
+        PHRASE
+    }
+
+    /**
+     * A query of the index
+     */
+    public static class Query {
+        String text;
+        String[] words;
+        Match match;
+        int fields;
+        Set<String> propertyKeys;
+
+        /**
+         * @param text The text to search for. Case is ignored.
+         * @param match How the text is matched
+         * @param fields The fields to search, any of {@link #NAME}, {@link #DOCUMENTATION} and {@link #PROPERTY_VALUES}
+         * @param propertyKeys If this is not null or empty property values are only searched in properties with these keys.
+         *        Names and documentation are searched whatever the object's properties.
+         *        If the query has no text the objects that have a property with one of these keys match.
+         */
+        public Query(String text, Match match, int fields, Collection<String> propertyKeys) {
+            this.text = text == null ? "" : text.toLowerCase(); //$NON-NLS-1$
+            this.words = tokenize(this.text);
+            this.match = match;
+            this.fields = fields;
+            this.propertyKeys = propertyKeys == null ? Collections.<String>emptySet() : new HashSet<String>(propertyKeys);
+        }
+
+        public Query(String text, Match match, int fields) {
+            this(text, match, fields, null);
+        }
+
+        boolean hasText() {
+            return text.length() > 0;
+        }
+
+        boolean isFilteringPropertyKeys() {
+            return !propertyKeys.isEmpty();
+        }
+
+        boolean isSearching(int field) {
+            return (fields & field) != 0;
+        }
+
+        /**
+         * @return true if a lower case text matches this query
+         */
+        boolean matches(Text value) {
+            if(value == null) {
+                return false;
+            }
+
+            switch(match) {
+                case PREFIX:
+                    for(String word : words) {
+                        if(!hasPrefixedWord(value.words, word)) {
+                            return false;
+                        }
+                    }
+                    return words.length > 0;
+
+                case PHRASE:
+                    return hasPhrase(value.words, words);
+
+                default:
+                    return value.text.contains(text);
+            }
+        }
+
+        private static boolean hasPrefixedWord(String[] words, String prefix) {
+            for(String word : words) {
+                if(word.startsWith(prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean hasPhrase(String[] words, String[] phrase) {
+            if(phrase.length == 0) {
+                return false;
+            }
+
+            for(int i = 0; i <= words.length - phrase.length; i++) {
+                int j = 0;
+                while(j < phrase.length && words[i + j].equals(phrase[j])) {
+                    j++;
+                }
+                if(j == phrase.length) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Lower case text and its words
+     */
+    private static class Text {
+        String text;
+        String[] words;
+
+        Text(String text) {
+            this.text = text.toLowerCase();
+            words = tokenize(this.text);
+        }
+    }
+
+    /**
+     * The indexed text of an object
+     */
+    private static class Entry {
+        Text name;
+        Text documentation;
+        List<String> propertyKeys = new ArrayList<String>();
+        List<Text> propertyValues = new ArrayList<Text>();
+    }
+
+    /**
+     * Get the index of a model, creating and building it if it does not exist.
+     * The index has to be created in the thread that changes the model.
+     * @param model The model
+     * @return The index
+     */
+    public static synchronized ModelTextIndex getIndex(IArchimateModel model) {
+        ModelTextIndex index = (ModelTextIndex)model.getAdapter(ModelTextIndex.class);
+
+        if(index == null) {
+            index = new ModelTextIndex(model);
+            model.setAdapter(ModelTextIndex.class, index);
+        }
+
+        return index;
+    }
+
+    private Map<EObject, Entry> fEntries = new HashMap<EObject, Entry>();
+
+    private TreeMap<String, Set<EObject>> fNameWords = new TreeMap<String, Set<EObject>>();
+    private TreeMap<String, Set<EObject>> fDocumentationWords = new TreeMap<String, Set<EObject>>();
+    private TreeMap<String, Set<EObject>> fPropertyValueWords = new TreeMap<String, Set<EObject>>();
+    private Map<String, Set<EObject>> fPropertyKeys = new HashMap<String, Set<EObject>>();
+
+    private ModelTextIndex(IArchimateModel model) {
+        model.getChangeDispatcher().addListener(this,
+                IArchimatePackage.Literals.FOLDER_CONTAINER__FOLDERS,
+                IArchimatePackage.Literals.FOLDER__ELEMENTS,
+                IArchimatePackage.Literals.NAMEABLE__NAME,
+                IArchimatePackage.Literals.DOCUMENTABLE__DOCUMENTATION,
+                IArchimatePackage.Literals.PROPERTIES__PROPERTIES,
+                IArchimatePackage.Literals.PROPERTY__KEY,
+                IArchimatePackage.Literals.PROPERTY__VALUE);
+
+        add(model);
+    }
+
+    /**
+     * Search the index
+     * @param query The query
+     * @return The objects that match the query. If the query has no text and no property keys this is empty.
+     */
+    public synchronized Set<EObject> search(Query query) {
+        Set<EObject> result = new HashSet<EObject>();
+
+        // Objects that have one of the property keys
+        Set<EObject> withKeys = null;
+        if(query.isFilteringPropertyKeys()) {
+            withKeys = new HashSet<EObject>();
+            for(String key : query.propertyKeys) {
+                Set<EObject> objects = fPropertyKeys.get(key);
+                if(objects != null) {
+                    withKeys.addAll(objects);
+                }
+            }
+        }
+
+        if(!query.hasText()) {
+            if(withKeys != null) {
+                result.addAll(withKeys);
+            }
+            return result;
+        }
+
+        if(query.isSearching(NAME)) {
+            addMatches(query, NAME, fNameWords, result);
+        }
+
+        if(query.isSearching(DOCUMENTATION)) {
+            addMatches(query, DOCUMENTATION, fDocumentationWords, result);
+        }
+
+        if(query.isSearching(PROPERTY_VALUES)) {
+            addMatches(query, PROPERTY_VALUES, fPropertyValueWords, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Add the objects that match a query in one field
+     */
+    private void addMatches(Query query, int field, TreeMap<String, Set<EObject>> words, Set<EObject> result) {
+        for(EObject object : getCandidates(query, words)) {
+            if(!result.contains(object) && matches(query, field, fEntries.get(object))) {
+                result.add(object);
+            }
+        }
+    }
+
+    /**
+     * @return The objects that might match a query in a field. These are the objects that have a matching word
+     *         for each word of the query. If the query has no words this is all objects.
+     */
+    private Collection<EObject> getCandidates(Query query, TreeMap<String, Set<EObject>> words) {
+        if(query.words.length == 0) {
+            return fEntries.keySet();
+        }
+
+        Set<EObject> candidates = null;
+
+        for(String word : query.words) {
+            Set<EObject> objects = new HashSet<EObject>();
+
+            switch(query.match) {
+                case PREFIX:
+                    for(Set<EObject> set : prefixMap(words, word).values()) {
+                        objects.addAll(set);
+                    }
+                    break;
+
+                case PHRASE:
+                    Set<EObject> set = words.get(word);
+                    if(set != null) {
+                        objects.addAll(set);
+                    }
+                    break;
+
+                default:
+                    // A word of the text contains each word of the query
+                    for(Map.Entry<String, Set<EObject>> mapEntry : words.entrySet()) {
+                        if(mapEntry.getKey().contains(word)) {
+                            objects.addAll(mapEntry.getValue());
+                        }
+                    }
+                    break;
+            }
+
+            if(candidates == null) {
+                candidates = objects;
+            }
+            else {
+                candidates.retainAll(objects);
+            }
+
+            if(candidates.isEmpty()) {
+                break;
+            }
+        }
+
+        return candidates;
+    }
+
+    private static SortedMap<String, Set<EObject>> prefixMap(TreeMap<String, Set<EObject>> words, String prefix) {
+        return words.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private boolean matches(Query query, int field, Entry entry) {
+        if(entry == null) {
+            return false;
+        }
+
+        switch(field) {
+            case NAME:
+                return query.matches(entry.name);
+
+            case DOCUMENTATION:
+                return query.matches(entry.documentation);
+
+            default:
+                for(int i = 0; i < entry.propertyValues.size(); i++) {
+                    if((!query.isFilteringPropertyKeys() || query.propertyKeys.contains(entry.propertyKeys.get(i)))
+                            && query.matches(entry.propertyValues.get(i))) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+    /**
+     * @return The number of indexed objects
+     */
+    synchronized int size() {
+        return fEntries.size();
+    }
+
+    @Override
+    public synchronized void notifyChanged(Notification msg) {
+        Object feature = msg.getFeature();
+        Object notifier = msg.getNotifier();
+
+        // Folders and folder elements added or removed
+        if(feature == IArchimatePackage.Literals.FOLDER_CONTAINER__FOLDERS || feature == IArchimatePackage.Literals.FOLDER__ELEMENTS) {
+            if(!fEntries.containsKey(notifier)) {
+                return;
+            }
+
+            switch(msg.getEventType()) {
+                case Notification.ADD:
+                    add((EObject)msg.getNewValue());
+                    break;
+
+                case Notification.ADD_MANY:
+                    for(Object o : (Collection<?>)msg.getNewValue()) {
+                        add((EObject)o);
+                    }
+                    break;
+
+                case Notification.REMOVE:
+                    remove((EObject)msg.getOldValue());
+                    break;
+
+                case Notification.REMOVE_MANY:
+                    for(Object o : (Collection<?>)msg.getOldValue()) {
+                        remove((EObject)o);
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+
+        // A property of an object was changed
+        else if(notifier instanceof IProperty) {
+            update(((IProperty)notifier).eContainer());
+        }
+
+        // Name, documentation or properties of an object
+        else {
+            update((EObject)notifier);
+        }
+    }
+
+    /**
+     * Index an object and its folders and folder elements
+     */
+    private void add(EObject object) {
+        if(object == null) {
+            return;
+        }
+
+        index(object);
+
+        if(object instanceof IFolderContainer) {
+            for(IFolder folder : ((IFolderContainer)object).getFolders()) {
+                add(folder);
+            }
+        }
+
+        if(object instanceof IFolder) {
+            for(EObject element : ((IFolder)object).getElements()) {
+                add(element);
+            }
+        }
+    }
+
+    /**
+     * Remove an object and its folders and folder elements from the index
+     */
+    private void remove(EObject object) {
+        if(object == null) {
+            return;
+        }
+
+        unindex(object);
+
+        if(object instanceof IFolderContainer) {
+            for(IFolder folder : ((IFolderContainer)object).getFolders()) {
+                remove(folder);
+            }
+        }
+
+        if(object instanceof IFolder) {
+            for(EObject element : ((IFolder)object).getElements()) {
+                remove(element);
+            }
+        }
+    }
+
+    /**
+     * Index an object again if it is indexed
+     */
+    private void update(EObject object) {
+        if(fEntries.containsKey(object)) {
+            index(object);
+        }
+    }
+
+    private void index(EObject object) {
+        unindex(object);
+
+        Entry entry = new Entry();
+
+        if(object instanceof INameable) {
+            entry.name = new Text(safeString(((INameable)object).getName()));
+            addWords(fNameWords, entry.name, object);
+        }
+
+        if(object instanceof IDocumentable) {
+            entry.documentation = new Text(safeString(((IDocumentable)object).getDocumentation()));
+            addWords(fDocumentationWords, entry.documentation, object);
+        }
+
+        if(object instanceof IProperties) {
+            for(IProperty property : ((IProperties)object).getProperties()) {
+                String key = property.getKey();
+                Text value = new Text(safeString(property.getValue()));
+
+                entry.propertyKeys.add(key);
+                entry.propertyValues.add(value);
+
+                addWords(fPropertyValueWords, value, object);
+
+                if(key != null) {
+                    Set<EObject> objects = fPropertyKeys.get(key);
+                    if(objects == null) {
+                        objects = new HashSet<EObject>();
+                        fPropertyKeys.put(key, objects);
+                    }
+                    objects.add(object);
+                }
+            }
+        }
+
+        fEntries.put(object, entry);
+    }
+
+    private void unindex(EObject object) {
+        Entry entry = fEntries.remove(object);
+        if(entry == null) {
+            return;
+        }
+
+        removeWords(fNameWords, entry.name, object);
+        removeWords(fDocumentationWords, entry.documentation, object);
+
+        for(Text value : entry.propertyValues) {
+            removeWords(fPropertyValueWords, value, object);
+        }
+
+        for(String key : entry.propertyKeys) {
+            Set<EObject> objects = fPropertyKeys.get(key);
+            if(objects != null) {
+                objects.remove(object);
+                if(objects.isEmpty()) {
+                    fPropertyKeys.remove(key);
+                }
+            }
+        }
+    }
+
+    private static void addWords(Map<String, Set<EObject>> map, Text text, EObject object) {
+        for(String word : text.words) {
+            Set<EObject> objects = map.get(word);
+            if(objects == null) {
+                objects = new HashSet<EObject>();
+                map.put(word, objects);
+            }
+            objects.add(object);
+        }
+    }
+
+    private static void removeWords(Map<String, Set<EObject>> map, Text text, EObject object) {
+        if(text == null) {
+            return;
+        }
+
+        for(String word : text.words) {
+            Set<EObject> objects = map.get(word);
+            if(objects != null) {
+                objects.remove(object);
+                if(objects.isEmpty()) {
+                    map.remove(word);
+                }
+            }
+        }
+    }
+
+    /**
+     * Split lower case text into words of letters and digits
+     */
+    static String[] tokenize(String text) {
+        List<String> words = new ArrayList<String>();
+
+        int start = -1;
+        for(int i = 0; i < text.length(); i++) {
+            if(Character.isLetterOrDigit(text.charAt(i))) {
+                if(start == -1) {
+                    start = i;
+                }
+            }
+            else if(start != -1) {
+                words.add(text.substring(start, i));
+                start = -1;
+            }
+        }
+
+        if(start != -1) {
+            words.add(text.substring(start));
+        }
+
+        return words.toArray(new String[words.size()]);
+    }
+
+    private static String safeString(String s) {
+        return s == null ? "" : s; //$NON-NLS-1$
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+
+
+/**
+ * Pool of shared String instances for attribute values that are repeated many times in a model,
+ * such as colours, fonts and property keys.
+ * 
+ * Equal values set on model objects share one String instance so that each value is held once in memory,
+ * and the value can be used as an identity key in caches.
+ * Values are weakly referenced and are removed from the pool when they are no longer used.
+ * 
+ * @author Phillip Beauvoir
+ */
+public final class StringPool {
+    
+    private static final Map<String, WeakReference<String>> POOL = new WeakHashMap<String, WeakReference<String>>();
+    
+    private StringPool() {
+    }
+    
+    /**
+     * @param value A value or null
+     * @return The shared instance of value, or null if value is null
+     */
+    public static String intern(String value) {
+        if(value == null) {
+            return null;
+        }
+        
+        synchronized(POOL) {
+            WeakReference<String> ref = POOL.get(value);
+            String shared = ref == null ? null : ref.get();
+            
+            if(shared == null) {
+                shared = value;
+                POOL.put(shared, new WeakReference<String>(shared));
+            }
+            
+            return shared;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.reports.html;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.swt.widgets.Display;
+
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.model.compatibility.CompatibilityHandlerException;
+import com.archimatetool.editor.model.compatibility.ModelCompatibility;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+
+
+
+/**
+ * Headless application to create an HTML report from a model file without starting the Workbench.
+ *
+ * Usage: Archi -application com.archimatetool.reports.htmlReport -nosplash -consoleLog [model file] [report folder] [-incremental]
+ *
+ * With the -incremental option only the pages and images that have changed since the report was last created in the folder are written.
+ *
+ * A Display is still needed to create the diagram images.
+ *
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+public class HTMLReportApplication implements IApplication {
+
+    static final String USAGE = "Usage: -application com.archimatetool.reports.htmlReport [model file] [report folder] [-incremental]";
+
+    @Override
+    public Object start(IApplicationContext context) throws Exception {
+        String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+        if(args == null || args.length < 2) {
+            System.err.println(USAGE);
+            return Integer.valueOf(1);
+        }
+
+        File modelFile = new File(args[0]);
+        if(!modelFile.exists()) {
+            System.err.println("Model file does not exist: " + modelFile);
+            return Integer.valueOf(1);
+        }
+
+        File targetFolder = new File(args[1]);
+        targetFolder.mkdirs();
+
+        // This thread is the display thread so diagram images are created here while pages are written on worker threads
+        Display display = Display.getDefault();
+
+        try {
+            IArchimateModel model = loadModel(modelFile);
+
+            HTMLReportExporter exporter = new HTMLReportExporter(model);
+            exporter.setIncremental(args.length > 2 && "-incremental".equals(args[2]));
+            File indexFile = exporter.createReport(targetFolder, "index.html", new NullProgressMonitor());
+
+            System.out.println("Report created: " + indexFile);
+
+            return EXIT_OK;
+        }
+        catch(IOException ex) {
+            System.err.println("Error creating report: " + ex.getMessage());
+            ex.printStackTrace();
+            return Integer.valueOf(1);
+        }
+        finally {
+            display.dispose();
+        }
+    }
+
+    @Override
+    public void stop() {
+    }
+
+    /**
+     * Load a model and its images without the Editor Model Manager, which requires the Workbench
+     */
+    IArchimateModel loadModel(File file) throws IOException {
+        // Ascertain if this is an archive file
+        boolean useArchiveFormat = IArchiveManager.FACTORY.isArchiveFile(file);
+
+        Resource resource = ArchimateResourceFactory.createNewResource(useArchiveFormat ?
+                IArchiveManager.FACTORY.createArchiveModelURI(file) :
+                URI.createFileURI(file.getAbsolutePath()));
+
+        resource.load(null);
+
+        // Fix any backward compatibility issues
+        try {
+            new ModelCompatibility(resource).fixCompatibility();
+        }
+        catch(CompatibilityHandlerException ex) {
+        }
+
+        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
+        model.setFile(file);
+        model.setDefaults();
+
+        // Images
+        IArchiveManager archiveManager = IArchiveManager.FACTORY.createArchiveManager(model);
+        model.setAdapter(IArchiveManager.class, archiveManager);
+        archiveManager.loadImages();
+
+        return model;
+    }
+}
@@ -5,23 +5,43 @@
  */
 package com.archimatetool.reports.html;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.URL;
-import java.util.Hashtable;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
-import org.eclipse.swt.custom.BusyIndicator;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.ImageLoader;
@@ -34,6 +54,7 @@ import org.eclipse.ui.browser.IWebBrowser;
 import org.eclipse.ui.browser.IWorkbenchBrowserSupport;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.Bundle;
+import org.stringtemplate.v4.AutoIndentWriter;
 import org.stringtemplate.v4.ST;
 import org.stringtemplate.v4.STGroupFile;
 
@@ -42,6 +63,7 @@ import com.archimatetool.editor.browser.BrowserEditorInput;
 import com.archimatetool.editor.browser.IBrowserEditor;
 import com.archimatetool.editor.diagram.util.DiagramUtils;
 import com.archimatetool.editor.diagram.util.ModelReferencedImage;
+import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.ui.services.EditorManager;
 import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.editor.utils.StringUtils;
@@ -54,13 +76,18 @@ import com.archimatetool.model.IDiagramModelContainer;
 import com.archimatetool.model.IDiagramModelGroup;
 import com.archimatetool.model.IDiagramModelObject;
 import com.archimatetool.model.IFolder;
-import com.archimatetool.model.IIdentifier;
 import com.archimatetool.reports.ArchiReportsPlugin;
 
 
 /**
  * Export model to HTML report
  * 
+ * The report is created as a pipeline. Element and view pages are rendered and written on worker threads, each thread
+ * having its own StringTemplate instances, while diagram images are created on the display thread.
+ * 
+ * A manifest of the content hashes of the objects that each page and image was created from is saved in the report folder.
+ * In incremental mode only the pages and images whose objects have changed since the last report are written.
+ * 
  * @author Jean-Baptiste Sarrodie
  * @author Quentin Varquet
  * @author Phillip Beauvoir
@@ -71,36 +98,58 @@ public class HTMLReportExporter extends AbstractUIPlugin {
     
     private IArchimateModel fModel;
     
+    private boolean fIncremental;
+    
+    /**
+     * Each thread has its own template group as StringTemplate groups and instances are not thread safe
+     */
+    private ThreadLocal<STGroupFile> fGroupFile = new ThreadLocal<STGroupFile>() {
+        @Override
+        protected STGroupFile initialValue() {
+            File mainFile = new File(ArchiReportsPlugin.INSTANCE.getTemplatesFolder(), "st/main.stg"); //$NON-NLS-1$
+            return new STGroupFile(mainFile.getAbsolutePath(), '^', '^');
+        }
+    };
+    
     public HTMLReportExporter(IArchimateModel model) {
         fModel = model;
     }
     
-    public void export() throws IOException {
+    /**
+     * @param incremental If true only write the pages and images that have changed since the report was last created in the target folder
+     */
+    public void setIncremental(boolean incremental) {
+        fIncremental = incremental;
+    }
+    
+    public void export() {
         File targetFolder = askSaveFolder();
         if(targetFolder == null) {
             return;
         }
         
-        File file = createReport(targetFolder, "index.html"); //$NON-NLS-1$
-        
-        // Open it in external Browser
-        IWorkbenchBrowserSupport support = PlatformUI.getWorkbench().getBrowserSupport();
-        try {
-            IWebBrowser browser = support.getExternalBrowser();
-            browser.openURL(file.toURI().toURL());
-        }
-        catch(PartInitException ex) {
-            ex.printStackTrace();
-        }
+        new ReportJob(targetFolder, "index.html") { //$NON-NLS-1$
+            @Override
+            void reportCreated(File file) {
+                // Open it in external Browser
+                IWorkbenchBrowserSupport support = PlatformUI.getWorkbench().getBrowserSupport();
+                try {
+                    IWebBrowser browser = support.getExternalBrowser();
+                    browser.openURL(file.toURI().toURL());
+                }
+                catch(PartInitException | IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        }.schedule();
     }
     
     public void preview() {
         PREVIEW_FOLDER.mkdirs();
         
-        BusyIndicator.showWhile(Display.getCurrent(), () -> {
-            try {
-                File file = createReport(PREVIEW_FOLDER, "preview-" + fModel.getId() + ".html");  //$NON-NLS-1$//$NON-NLS-2$
-                
+        new ReportJob(PREVIEW_FOLDER, "preview-" + fModel.getId() + ".html") { //$NON-NLS-1$ //$NON-NLS-2$
+            @Override
+            void reportCreated(File file) {
                 // Open it in Internal Browser
                 BrowserEditorInput input = new BrowserEditorInput(file.getPath(), fModel.getName()) {
                     @Override
@@ -117,11 +166,74 @@ public class HTMLReportExporter extends AbstractUIPlugin {
                 IBrowserEditor editor = (IBrowserEditor)EditorManager.openEditor(input, IBrowserEditor.ID);
                 editor.getBrowser().refresh();
             }
-            catch(IOException ex) {
-                MessageDialog.openError(Display.getCurrent().getActiveShell(), Messages.HTMLReportAction_0, ex.getMessage());
+        }.schedule();
+    }
+    
+    /**
+     * Job to create the report in the background and then show it in the UI thread.
+     * The report is created from a copy of the model taken in the UI thread so that the model can be edited in the meantime.
+     */
+    private abstract class ReportJob extends Job {
+        private File targetFolder;
+        private String indexFileName;
+        private Display display;
+        private HTMLReportExporter snapshotExporter;
+        
+        ReportJob(File targetFolder, String indexFileName) {
+            super(Messages.HTMLReportExporter_6);
+            this.targetFolder = targetFolder;
+            this.indexFileName = indexFileName;
+            display = Display.getCurrent();
+            setUser(true);
+            
+            snapshotExporter = new HTMLReportExporter(createSnapshot(fModel));
+            snapshotExporter.setIncremental(fIncremental);
+        }
+        
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            try {
+                final File file = snapshotExporter.createReport(targetFolder, indexFileName, monitor);
+                if(file == null) {
+                    return Status.CANCEL_STATUS;
+                }
+                
+                display.asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        reportCreated(file);
+                    }
+                });
+            }
+            catch(final IOException ex) {
                 ex.printStackTrace();
+                
+                display.asyncExec(new Runnable() {
+                    @Override
+                    public void run() {
+                        MessageDialog.openError(display.getActiveShell(), Messages.HTMLReportAction_0, ex.getMessage());
+                    }
+                });
             }
-        });
+            
+            return Status.OK_STATUS;
+        }
+        
+        /**
+         * The report was created. This is called in the UI thread.
+         */
+        abstract void reportCreated(File file);
+    }
+    
+    /**
+     * Copy a model to create a report from. This has to be called in the UI thread.
+     * The copy has the same IDs and shares the images of the model.
+     */
+    static IArchimateModel createSnapshot(IArchimateModel model) {
+        IArchimateModel snapshot = EcoreUtil.copy(model);
+        snapshot.setFile(model.getFile());
+        snapshot.setAdapter(IArchiveManager.class, model.getAdapter(IArchiveManager.class));
+        return snapshot;
     }
     
     /**
@@ -133,57 +245,293 @@ public class HTMLReportExporter extends AbstractUIPlugin {
     }
 
     File createReport(File targetFolder, String indexFileName) throws IOException {
-        // Copy HTML skeleton to target
-        copyHTMLSkeleton(targetFolder);
+        return createReport(targetFolder, indexFileName, null);
+    }
+    
+    /**
+     * Create the report.
+     * This can be called from any thread. Diagram images are created in the display thread.
+     * The model must not change while the report is created, so a model that is open in the UI should be copied with createSnapshot() first.
+     * 
+     * @param targetFolder The folder in which to create the report
+     * @param indexFileName The file name of the root html file
+     * @param monitor Progress monitor, may be null
+     * @return The root html file or null if cancelled
+     * @throws IOException
+     */
+    public File createReport(File targetFolder, String indexFileName, IProgressMonitor monitor) throws IOException {
+        if(monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
         
-        // Copy hints files from the help plug-in
-        copyHintsFiles(targetFolder);
+        List<IArchimateConcept> concepts = new ArrayList<IArchimateConcept>();
+        getConcepts(fModel.getFolders(), concepts);
         
-        // Create sub-folders
-        File elementsFolder = new File(targetFolder, fModel.getId() + "/elements"); //$NON-NLS-1$
-        elementsFolder.mkdirs(); // Make dir
+        List<IDiagramModel> diagramModels = fModel.getDiagramModels();
         
-        File viewsFolder = new File(targetFolder, fModel.getId() + "/views"); //$NON-NLS-1$
-        viewsFolder.mkdirs(); // Make dir
+        // Skeleton, model page, concept pages, images and view pages, index
+        monitor.beginTask(Messages.HTMLReportExporter_6, 1 + 1 + concepts.size() + (diagramModels.size() * 2) + 1);
         
-        File imagesFolder = new File(targetFolder, fModel.getId() + "/images"); //$NON-NLS-1$
-        imagesFolder.mkdirs(); // Make dir
-             
-        // Instantiate templates files
-        File mainFile = new File(ArchiReportsPlugin.INSTANCE.getTemplatesFolder(), "st/main.stg"); //$NON-NLS-1$
-        STGroupFile groupFile = new STGroupFile(mainFile.getAbsolutePath(), '^', '^');
-        ST stFrame = groupFile.getInstanceOf("frame"); //$NON-NLS-1$
+        try {
+            // Copy HTML skeleton to target
+            copyHTMLSkeleton(targetFolder);
+            
+            // Copy hints files from the help plug-in
+            copyHintsFiles(targetFolder);
+            
+            // Create sub-folders
+            File modelFolder = new File(targetFolder, fModel.getId());
+            
+            File elementsFolder = new File(modelFolder, "elements"); //$NON-NLS-1$
+            elementsFolder.mkdirs(); // Make dir
+            
+            File viewsFolder = new File(modelFolder, "views"); //$NON-NLS-1$
+            viewsFolder.mkdirs(); // Make dir
+            
+            File imagesFolder = new File(modelFolder, "images"); //$NON-NLS-1$
+            imagesFolder.mkdirs(); // Make dir
+            
+            ReportManifest manifest = new ReportManifest(modelFolder, getGeneratorHash());
+            
+            monitor.worked(1);
+            
+            if(!writePages(elementsFolder, viewsFolder, imagesFolder, concepts, diagramModels, manifest, monitor)) {
+                return null; // cancelled
+            }
+            
+            // Delete pages and images of objects that are no longer in the model
+            manifest.deleteRemovedFiles();
+            
+            // Write root model.html frame
+            File indexFile = new File(targetFolder, indexFileName);
+            
+            ST stModel = fGroupFile.get().getInstanceOf("modelreport"); //$NON-NLS-1$
+    
+            stModel.add("model", fModel); //$NON-NLS-1$
+            stModel.add("strategyFolder", fModel.getFolder(FolderType.STRATEGY)); //$NON-NLS-1$
+            stModel.add("businessFolder", fModel.getFolder(FolderType.BUSINESS)); //$NON-NLS-1$
+            stModel.add("applicationFolder", fModel.getFolder(FolderType.APPLICATION)); //$NON-NLS-1$
+            stModel.add("technologyFolder", fModel.getFolder(FolderType.TECHNOLOGY)); //$NON-NLS-1$
+            stModel.add("motivationFolder", fModel.getFolder(FolderType.MOTIVATION)); //$NON-NLS-1$
+            stModel.add("implementationFolder", fModel.getFolder(FolderType.IMPLEMENTATION_MIGRATION)); //$NON-NLS-1$
+            stModel.add("otherFolder", fModel.getFolder(FolderType.OTHER)); //$NON-NLS-1$
+            stModel.add("relationsFolder", fModel.getFolder(FolderType.RELATIONS)); //$NON-NLS-1$
+            stModel.add("viewsFolder", fModel.getFolder(FolderType.DIAGRAMS)); //$NON-NLS-1$
+            
+            writeTemplate(indexFile, stModel);
+            
+            manifest.save();
+            
+            monitor.worked(1);
+            
+            return indexFile;
+        }
+        finally {
+            monitor.done();
+        }
+    }
+    
+    /**
+     * Write the model, element and view pages and the diagram images.
+     * Pages are written on a pool of worker threads while the images are created on the display thread.
+     * In incremental mode pages and images are only written if their objects have changed.
+     * @return false if cancelled
+     */
+    private boolean writePages(File elementsFolder, final File viewsFolder, File imagesFolder, List<IArchimateConcept> concepts,
+            List<IDiagramModel> diagramModels, ReportManifest manifest, IProgressMonitor monitor) throws IOException {
         
-        // Write model purpose and properties html
-        writeElement(new File(elementsFolder, "model.html"), stFrame, fModel); //$NON-NLS-1$
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        ReportTasks tasks = new ReportTasks(executor, monitor);
         
-        // Write all folders
-        writeFolders(elementsFolder, stFrame, fModel.getFolders());
+        try {
+            // Write model purpose and properties html
+            if(isChanged(manifest, "elements/model.html", fModel)) { //$NON-NLS-1$
+                tasks.submit(createWriteElementTask(new File(elementsFolder, "model.html"), fModel)); //$NON-NLS-1$
+            }
+            else {
+                monitor.worked(1);
+            }
+            
+            // Write all concepts
+            for(IArchimateConcept concept : concepts) {
+                String fileName = concept.getId() + ".html"; //$NON-NLS-1$
+                if(isChanged(manifest, "elements/" + fileName, concept)) { //$NON-NLS-1$
+                    tasks.submit(createWriteElementTask(new File(elementsFolder, fileName), concept));
+                }
+                else {
+                    monitor.worked(1);
+                }
+            }
+            
+            // Create the diagram images while the pages are being written
+            Set<String> imageNames = new HashSet<String>();
+            int i = 1;
+            
+            for(final IDiagramModel dm : diagramModels) {
+                if(!tasks.update()) {
+                    return false;
+                }
+                
+                String diagramName = dm.getId();
+                if(StringUtils.isSet(diagramName)) {
+                    // removed this because ids can have hyphens in them (when imported from TOG format)
+                    // Let's hope that ids are filename friendly...
+                    //diagramName = FileUtils.getValidFileName(diagramName);
+                    
+                    int j = 2;
+                    String s = diagramName + ".png";  //$NON-NLS-1$
+                    while(imageNames.contains(s)) {
+                        s = diagramName + "_" + j++ + ".png"; //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                    diagramName = s;
+                }
+                else {
+                    diagramName = Messages.HTMLReportExporter_1 + " " + i++ + ".png";  //$NON-NLS-1$//$NON-NLS-2$
+                }
+                
+                imageNames.add(diagramName);
+                
+                // The image and the view page are created from the same objects
+                boolean imageChanged = isChanged(manifest, "images/" + diagramName, dm); //$NON-NLS-1$
+                boolean pageChanged = isChanged(manifest, "views/" + dm.getId() + ".html", dm); //$NON-NLS-1$ //$NON-NLS-2$
+                if(!imageChanged && !pageChanged) {
+                    monitor.worked(2);
+                    continue;
+                }
+                
+                final DiagramImage diagramImage = createDiagramImage(dm);
+                monitor.worked(1);
+                
+                // Save the image
+                final File imageFile = new File(imagesFolder, diagramName);
+                tasks.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        saveImage(diagramImage.imageData, imageFile);
+                        return null;
+                    }
+                });
+                
+                // Write the view page
+                tasks.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        writeDiagram(viewsFolder, dm, diagramImage.offset);
+                        return null;
+                    }
+                });
+            }
+            
+            return tasks.waitForAll();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    /**
+     * Update the manifest entry for a file
+     * @param path The path of the file relative to the model's report folder
+     * @param source The object that the file is created from
+     * @return true if the file should be written
+     */
+    private boolean isChanged(ReportManifest manifest, String path, EObject source) {
+        boolean changed = manifest.update(path, ReportManifest.getHash(source));
+        return changed || !fIncremental;
+    }
+    
+    /**
+     * @return A hash of the templates and the plug-in versions so that a report created by a different version is written in full
+     */
+    private String getGeneratorHash() throws IOException {
+        File[] templateFiles = new File(ArchiReportsPlugin.INSTANCE.getTemplatesFolder(), "st").listFiles(); //$NON-NLS-1$
+        String version = ArchiReportsPlugin.INSTANCE.getBundle().getVersion() + "/" + ArchiPlugin.INSTANCE.getBundle().getVersion(); //$NON-NLS-1$
+        return ReportManifest.getHash(templateFiles, version);
+    }
+    
+    /**
+     * Tasks to write pages and images, run on a pool of worker threads.
+     * Progress and errors are reported in the calling thread.
+     */
+    private static class ReportTasks {
+        private CompletionService<Void> completionService;
+        private IProgressMonitor monitor;
+        private int pending;
         
-        // Write Diagrams and images
-        writeDiagrams(imagesFolder, viewsFolder, stFrame);
+        ReportTasks(ExecutorService executor, IProgressMonitor monitor) {
+            completionService = new ExecutorCompletionService<Void>(executor);
+            this.monitor = monitor;
+        }
         
-        // Write root model.html frame
-        File indexFile = new File(targetFolder, indexFileName);
-        OutputStreamWriter writer = new OutputStreamWriter(new FileOutputStream(indexFile), "UTF8"); //$NON-NLS-1$
+        void submit(Callable<Void> task) {
+            completionService.submit(task);
+            pending++;
+        }
         
-        ST stModel = groupFile.getInstanceOf("modelreport"); //$NON-NLS-1$
-
-        stModel.add("model", fModel); //$NON-NLS-1$
-        stModel.add("strategyFolder", fModel.getFolder(FolderType.STRATEGY)); //$NON-NLS-1$
-        stModel.add("businessFolder", fModel.getFolder(FolderType.BUSINESS)); //$NON-NLS-1$
-        stModel.add("applicationFolder", fModel.getFolder(FolderType.APPLICATION)); //$NON-NLS-1$
-        stModel.add("technologyFolder", fModel.getFolder(FolderType.TECHNOLOGY)); //$NON-NLS-1$
-        stModel.add("motivationFolder", fModel.getFolder(FolderType.MOTIVATION)); //$NON-NLS-1$
-        stModel.add("implementationFolder", fModel.getFolder(FolderType.IMPLEMENTATION_MIGRATION)); //$NON-NLS-1$
-        stModel.add("otherFolder", fModel.getFolder(FolderType.OTHER)); //$NON-NLS-1$
-        stModel.add("relationsFolder", fModel.getFolder(FolderType.RELATIONS)); //$NON-NLS-1$
-        stModel.add("viewsFolder", fModel.getFolder(FolderType.DIAGRAMS)); //$NON-NLS-1$
+        /**
+         * Report progress for tasks that have completed
+         * @return false if cancelled
+         */
+        boolean update() throws IOException {
+            for(Future<Void> future = completionService.poll(); future != null; future = completionService.poll()) {
+                completed(future);
+            }
+            return !monitor.isCanceled();
+        }
         
-        writer.write(stModel.render());
-        writer.close();
+        /**
+         * Wait for all tasks to complete
+         * @return false if cancelled
+         */
+        boolean waitForAll() throws IOException {
+            while(pending > 0) {
+                if(monitor.isCanceled()) {
+                    return false;
+                }
+                
+                try {
+                    // Wake up regularly to check for cancellation
+                    Future<Void> future = completionService.poll(100, TimeUnit.MILLISECONDS);
+                    if(future != null) {
+                        completed(future);
+                    }
+                }
+                catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+            
+            return !monitor.isCanceled();
+        }
         
-        return indexFile;
+        private void completed(Future<Void> future) throws IOException {
+            pending--;
+            
+            try {
+                future.get();
+            }
+            catch(InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+            // Re-throw the task's exception
+            catch(ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if(cause instanceof IOException) {
+                    throw (IOException)cause;
+                }
+                if(cause instanceof RuntimeException) {
+                    throw (RuntimeException)cause;
+                }
+                if(cause instanceof Error) {
+                    throw (Error)cause;
+                }
+                throw new IOException(cause);
+            }
+            
+            monitor.worked(1);
+        }
     }
     
     /**
@@ -192,7 +540,7 @@ public class HTMLReportExporter extends AbstractUIPlugin {
      */
     private void copyHTMLSkeleton(File targetFolder) throws IOException {
         File srcDir = new File(ArchiReportsPlugin.INSTANCE.getTemplatesFolder(), "html"); //$NON-NLS-1$
-        FileUtils.copyFolder(srcDir, targetFolder);
+        copyFolder(srcDir, targetFolder);
     }
     
     /**
@@ -202,131 +550,138 @@ public class HTMLReportExporter extends AbstractUIPlugin {
     private void copyHintsFiles(File targetFolder) throws IOException {
         Bundle bundle = Platform.getBundle("com.archimatetool.help"); //$NON-NLS-1$
         URL url = FileLocator.resolve(bundle.getEntry("hints")); //$NON-NLS-1$
-        FileUtils.copyFolder(new File(url.getPath()), new File(targetFolder, "hints")); //$NON-NLS-1$
-    }
-
-    /**
-     * Write all folders
-     */
-    private void writeFolders(File elementsFolder, ST stFrame, EList<IFolder> folders) throws IOException {
-    	for(IFolder folder : folders) {
-    		writeFolder(elementsFolder, stFrame, folder);
-    	}
+        copyFolder(new File(url.getPath()), new File(targetFolder, "hints")); //$NON-NLS-1$
     }
     
     /**
-     * Write a single folder
+     * Copy a folder. In incremental mode files that have already been copied and not changed since are skipped.
      */
-    private void writeFolder(File elementsFolder, ST stFrame, IFolder folder) throws IOException {
-    	writeElements(elementsFolder, stFrame, folder.getElements());
-    	writeFolders(elementsFolder, stFrame, folder.getFolders());
+    private void copyFolder(File srcFolder, File destFolder) throws IOException {
+        if(!fIncremental) {
+            FileUtils.copyFolder(srcFolder, destFolder);
+            return;
+        }
+        
+        destFolder.mkdirs();
+        
+        for(File srcFile : srcFolder.listFiles()) {
+            File destFile = new File(destFolder, srcFile.getName());
+            if(srcFile.isDirectory()) {
+                copyFolder(srcFile, destFile);
+            }
+            // The copy's modification time is the time it was copied
+            else if(!destFile.exists() || destFile.length() != srcFile.length() || destFile.lastModified() < srcFile.lastModified()) {
+                FileUtils.copyFile(srcFile, destFile, false);
+            }
+        }
     }
-    
+
     /**
-     * Write all elements
+     * Collect all concepts in folders and their sub-folders in the order in which they are written
      */
-    private void writeElements(File elementsFolder, ST stFrame, List<EObject> list) throws IOException {
-        if(!list.isEmpty()) {
-            for(EObject object : list) {
+    private void getConcepts(EList<IFolder> folders, List<IArchimateConcept> concepts) {
+        for(IFolder folder : folders) {
+            for(EObject object : folder.getElements()) {
                 if(object instanceof IArchimateConcept) {
-                	writeElement(new File(elementsFolder, ((IIdentifier) object).getId() + ".html"), stFrame, object); //$NON-NLS-1$
+                    concepts.add((IArchimateConcept)object);
                 }
             }
+            getConcepts(folder.getFolders(), concepts);
         }
     }
     
+    private Callable<Void> createWriteElementTask(final File elementFile, final EObject component) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                writeElement(elementFile, component);
+                return null;
+            }
+        };
+    }
+    
     /**
      * Write a single element
      */
-    private void writeElement(File elementFile, ST stFrame, EObject component) throws IOException {
-        OutputStreamWriter elementW = new OutputStreamWriter(new FileOutputStream(elementFile), "UTF8"); //$NON-NLS-1$
-        stFrame.remove("element"); //$NON-NLS-1$
-        //frame.remove("children");
+    private void writeElement(File elementFile, EObject component) throws IOException {
+        ST stFrame = fGroupFile.get().getInstanceOf("frame"); //$NON-NLS-1$
         stFrame.add("element", component); //$NON-NLS-1$
-        elementW.write(stFrame.render());
-        elementW.close();
+        writeTemplate(elementFile, stFrame);
     }
     
     /**
-     * Write diagrams
+     * Write a diagram's view page
+     * @param offset The offset of the top-left element(s) in the diagram's image
      */
-    private void writeDiagrams(File imagesFolder, File viewsFolder, ST stFrame) throws IOException {
-        if(fModel.getDiagramModels().isEmpty()) {
-            return;
+    private void writeDiagram(File viewsFolder, IDiagramModel dmOrig, Rectangle offset) throws IOException {
+        // we need to add the necessary offsets in order to get correct absolute coordinates
+        // for the elements in the generated image
+        // we create a copy of the Model: (children will not be copied!)
+        IDiagramModel dmCopy = (IDiagramModel) dmOrig.getCopy();
+        // FIX THE ID WHICH IS NOT COPIED
+        dmCopy.setId(dmOrig.getId());
+        // process the children
+        for (IDiagramModelObject dmoOrig: dmOrig.getChildren() ) {
+            IDiagramModelObject dmoCopy = getOffsetCopy(dmoOrig, offset.x*-1, offset.y*-1);
+            // add copy of child to copy of model
+            dmCopy.getChildren().add(dmoCopy);
         }
 
-        Hashtable<IDiagramModel, Rectangle> offsetsTable = saveImages(imagesFolder);
-
-        for(IDiagramModel dmOrig : fModel.getDiagramModels()) {
-            // we need to add the necessary offsets in order to get correct absolute coordinates
-            // for the elements in the generated image
-            Rectangle offset = offsetsTable.get(dmOrig);
-            // we create a copy of the Model: (children will not be copied!)
-            IDiagramModel dmCopy = (IDiagramModel) dmOrig.getCopy();
-            // FIX THE ID WHICH IS NOT COPIED
-            dmCopy.setId(dmOrig.getId());
-            // process the children
-            for (IDiagramModelObject dmoOrig: dmOrig.getChildren() ) {
-                IDiagramModelObject dmoCopy = getOffsetCopy(dmoOrig, offset.x*-1, offset.y*-1);
-                // add copy of child to copy of model
-                dmCopy.getChildren().add(dmoCopy);
-            }
-
-            File viewF = new File(viewsFolder, dmCopy.getId() + ".html"); //$NON-NLS-1$
-            OutputStreamWriter viewW = new OutputStreamWriter(new FileOutputStream(viewF), "UTF8"); //$NON-NLS-1$
-            stFrame.remove("element"); //$NON-NLS-1$
-            stFrame.add("element", dmCopy); //$NON-NLS-1$
-            viewW.write(stFrame.render());
-            viewW.close();
+        File viewF = new File(viewsFolder, dmCopy.getId() + ".html"); //$NON-NLS-1$
+        writeElement(viewF, dmCopy);
+    }
+    
+    /**
+     * Render a template to a file through a buffered writer
+     */
+    private void writeTemplate(File file, ST st) throws IOException {
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF8"))) { //$NON-NLS-1$
+            st.write(new AutoIndentWriter(writer));
         }
     }
     
     /**
-     * Save diagram images
-     * return the offsets of the top-left element(s) in each image
+     * A diagram's image data and the offset of the top-left element(s) in the image
+     */
+    private static class DiagramImage {
+        ImageData imageData;
+        Rectangle offset;
+    }
+    
+    /**
+     * Create a diagram's image in the display thread
      */
-    private Hashtable<IDiagramModel, Rectangle> saveImages(File imagesFolder) {
-        Hashtable<IDiagramModel, String> table = new Hashtable<IDiagramModel, String>();
-        // we store the offsets of the top-left element(s) in each image
-        Hashtable<IDiagramModel, Rectangle> offsetsTable = new Hashtable<>();
-        int i = 1;
+    private DiagramImage createDiagramImage(final IDiagramModel dm) {
+        final DiagramImage diagramImage = new DiagramImage();
         
-        for(IDiagramModel dm : fModel.getDiagramModels()) {
-            ModelReferencedImage geoImage = DiagramUtils.createModelReferencedImage(dm, 1, 10);
-            Image image = geoImage.getImage();
-            String diagramName = dm.getId();
-            if(StringUtils.isSet(diagramName)) {
-                // removed this because ids can have hyphens in them (when imported from TOG format)
-                // Let's hope that ids are filename friendly...
-                //diagramName = FileUtils.getValidFileName(diagramName);
-                
-                int j = 2;
-                String s = diagramName + ".png";  //$NON-NLS-1$
-                while(table.containsValue(s)) {
-                    s = diagramName + "_" + j++ + ".png"; //$NON-NLS-1$ //$NON-NLS-2$
+        Display.getDefault().syncExec(new Runnable() {
+            @Override
+            public void run() {
+                ModelReferencedImage geoImage = DiagramUtils.createModelReferencedImage(dm, 1, 10);
+                Image image = geoImage.getImage();
+                try {
+                    diagramImage.imageData = image.getImageData();
+                    diagramImage.offset = geoImage.getOffset();
+                }
+                finally {
+                    image.dispose();
                 }
-                diagramName = s;
-            }
-            else {
-                diagramName = Messages.HTMLReportExporter_1 + " " + i++ + ".png";  //$NON-NLS-1$//$NON-NLS-2$
-            }
-
-            table.put(dm, diagramName);
-
-            // Get and store the offset of the top-left element in the figure
-            offsetsTable.put(dm,  geoImage.getOffset());
-
-            try {
-                ImageLoader loader = new ImageLoader();
-                loader.data = new ImageData[] { image.getImageData() };
-                File file = new File(imagesFolder, diagramName);
-                loader.save(file.getAbsolutePath(), SWT.IMAGE_PNG);
-            }
-            finally {
-                image.dispose();
             }
+        });
+        
+        return diagramImage;
+    }
+    
+    /**
+     * Save image data as a PNG file
+     */
+    private void saveImage(ImageData imageData, File file) throws IOException {
+        ImageLoader loader = new ImageLoader();
+        loader.data = new ImageData[] { imageData };
+        
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+            loader.save(out, SWT.IMAGE_PNG);
         }
-        return offsetsTable;
     }
     
     private File askSaveFolder() {
@@ -5,11 +5,8 @@
  */
 package com.archimatetool.reports.html;
 
-import java.io.IOException;
-
 import org.eclipse.core.commands.ExecutionEvent;
 import org.eclipse.core.commands.ExecutionException;
-import org.eclipse.jface.dialogs.MessageDialog;
 
 import com.archimatetool.editor.actions.AbstractModelSelectionHandler;
 import com.archimatetool.model.IArchimateModel;
@@ -27,14 +24,8 @@ public class HTMLReportHandler extends AbstractModelSelectionHandler {
     public Object execute(ExecutionEvent event) throws ExecutionException {
         IArchimateModel model = getActiveArchimateModel();
         if(model != null) {
-            try {
-                HTMLReportExporter exporter = new HTMLReportExporter(model);
-                exporter.export();
-            }
-            catch(IOException ex) {
-                MessageDialog.openError(workbenchWindow.getShell(), Messages.HTMLReportAction_0, ex.getMessage());
-                ex.printStackTrace();
-            }
+            HTMLReportExporter exporter = new HTMLReportExporter(model);
+            exporter.export();
         }
 
         return null;
@@ -25,6 +25,8 @@ public class Messages extends NLS {
 
     public static String HTMLReportExporter_5;
 
+    public static String HTMLReportExporter_6;
+
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -0,0 +1,217 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.reports.html;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+
+import com.archimatetool.model.IArchimatePackage;
+
+
+/**
+ * Manifest of the content hashes of the pages and images in a report folder.
+ *
+ * Each entry maps the path of a generated file, relative to the model's report folder, to a hash of the model objects
+ * that the file was created from. When a report is created again in the same folder only the files whose hash has changed
+ * need to be written again.
+ *
+ * @author Phillip Beauvoir
+ */
+class ReportManifest {
+
+    static final String MANIFEST_FILE = "report.manifest"; //$NON-NLS-1$
+
+    /**
+     * Key for the hash of the templates and the plug-in version. If this changes all files are written again.
+     */
+    static final String GENERATOR_KEY = "generator"; //$NON-NLS-1$
+
+    private File fFolder;
+    private Properties fOldEntries = new Properties();
+    private Properties fNewEntries = new Properties();
+
+    /**
+     * @param folder The model's report folder
+     * @param generatorHash Hash of the templates and the plug-in version
+     */
+    ReportManifest(File folder, String generatorHash) throws IOException {
+        fFolder = folder;
+
+        File file = new File(folder, MANIFEST_FILE);
+        if(file.exists()) {
+            try(InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+                fOldEntries.load(in);
+            }
+
+            // Manifest was created by a different version of the templates so it can't be used
+            if(!generatorHash.equals(fOldEntries.getProperty(GENERATOR_KEY))) {
+                fOldEntries.clear();
+            }
+
+            // Remove the manifest until the report is complete so that a failed or cancelled report is written in full next time
+            file.delete();
+        }
+
+        fNewEntries.setProperty(GENERATOR_KEY, generatorHash);
+    }
+
+    /**
+     * Add an entry
+     * @param path The path of the file relative to the model's report folder
+     * @param hash The hash of the file's source objects
+     * @return true if the file has to be written because its source objects have changed or the file does not exist
+     */
+    boolean update(String path, String hash) {
+        fNewEntries.setProperty(path, hash);
+        return !hash.equals(fOldEntries.getProperty(path)) || !new File(fFolder, path).exists();
+    }
+
+    /**
+     * Delete the files that were in the previous report but are not in this one
+     */
+    void deleteRemovedFiles() {
+        Set<Object> removed = new HashSet<Object>(fOldEntries.keySet());
+        removed.removeAll(fNewEntries.keySet());
+
+        for(Object path : removed) {
+            new File(fFolder, (String)path).delete();
+        }
+    }
+
+    /**
+     * Save the manifest when the report has been created
+     */
+    void save() throws IOException {
+        try(OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(fFolder, MANIFEST_FILE)))) {
+            fNewEntries.store(out, null);
+        }
+    }
+
+    /**
+     * Create a hash of an object's attributes and child objects and the attributes of the objects that it references.
+     * Folders are not included as these have their own pages.
+     */
+    static String getHash(EObject eObject) {
+        Hasher hasher = new Hasher();
+        hasher.add(eObject, true);
+        return hasher.getHash();
+    }
+
+    /**
+     * Create a hash of the contents of files
+     */
+    static String getHash(File[] files, String version) throws IOException {
+        Hasher hasher = new Hasher();
+        hasher.add(version);
+
+        Arrays.sort(files);
+        byte[] buf = new byte[8192];
+
+        for(File file : files) {
+            if(file.isFile()) {
+                hasher.add(file.getName());
+                try(InputStream in = new FileInputStream(file)) {
+                    int size;
+                    while((size = in.read(buf)) != -1) {
+                        hasher.digest.update(buf, 0, size);
+                    }
+                }
+            }
+        }
+
+        return hasher.getHash();
+    }
+
+    private static class Hasher {
+        MessageDigest digest;
+
+        Hasher() {
+            try {
+                digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+            }
+            catch(NoSuchAlgorithmException ex) {
+                // Every Java platform supports SHA-1
+                throw new RuntimeException(ex);
+            }
+        }
+
+        void add(String s) {
+            if(s == null) {
+                digest.update((byte)1);
+            }
+            else {
+                digest.update(s.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte)0);
+            }
+        }
+
+        /**
+         * @param deep If true add child objects and the referenced objects, else only add the object's attributes
+         */
+        void add(EObject eObject, boolean deep) {
+            add(eObject.eClass().getName());
+
+            for(EAttribute attribute : eObject.eClass().getEAllAttributes()) {
+                if(!attribute.isTransient()) {
+                    add(attribute.getName());
+                    add(String.valueOf(eObject.eGet(attribute)));
+                }
+            }
+
+            if(!deep) {
+                return;
+            }
+
+            for(EReference reference : eObject.eClass().getEAllReferences()) {
+                if(reference.isTransient() || reference.isDerived() || reference.getEReferenceType() == IArchimatePackage.Literals.FOLDER) {
+                    continue;
+                }
+
+                add(reference.getName());
+
+                Object value = eObject.eGet(reference);
+                if(value instanceof List<?>) {
+                    for(Object o : (List<?>)value) {
+                        add((EObject)o, reference.isContainment());
+                    }
+                }
+                else if(value instanceof EObject) {
+                    add((EObject)value, reference.isContainment());
+                }
+                else {
+                    add((String)null);
+                }
+            }
+        }
+
+        String getHash() {
+            StringBuilder sb = new StringBuilder();
+            for(byte b : digest.digest()) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -91,7 +91,11 @@ public class NewArchimateModelFromTemplateWizard extends Wizard {
                         else {
                             fErrorMessage = Messages.NewArchimateModelFromTemplateWizard_2;
                         }
-                        tmp.delete();
+                        
+                        // Don't delete the temp file until exit as the model's images are read from it when they are needed
+                        if(fErrorMessage != null) {
+                            tmp.delete();
+                        }
                     }
                     catch(IOException ex) {
                         ex.printStackTrace();
@@ -7,21 +7,27 @@ package com.archimatetool.csv.export;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 
 import junit.framework.JUnit4TestAdapter;
 
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.archimatetool.csv.export.CSVExporter;
+import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimateRelationship;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.tests.TestUtils;
 
 
 @SuppressWarnings("nls")
@@ -31,11 +37,12 @@ public class CSVExporterTests {
         return new JUnit4TestAdapter(CSVExporterTests.class);
     }
     
+    private IArchimateModel model;
     private CSVExporter exporter;
     
     @Before
     public void runOnceBeforeEachTest() {
-        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
         model.setId("0a9d34ab");
         model.setName("The Main Model");
         model.setPurpose("This is the Documentation");
@@ -43,6 +50,61 @@ public class CSVExporterTests {
         exporter = new CSVExporter(model);
     }
     
+    @After
+    public void runOnceAfterEachTest() throws Exception {
+        FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
+    }
+    
+    @Test
+    public void testExport() throws Exception {
+        model.setDefaults();
+        
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey("Model key");
+        property.setValue("Model value");
+        model.getProperties().add(property);
+        
+        IArchimateElement element1 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element1.setId("id1");
+        element1.setName("Actor");
+        property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey("Key");
+        property.setValue("Value \"quoted\"");
+        element1.getProperties().add(property);
+        model.getDefaultFolderForObject(element1).getElements().add(element1);
+        
+        IArchimateElement element2 = IArchimateFactory.eINSTANCE.createApplicationComponent();
+        element2.setId("id2");
+        element2.setName("Component");
+        element2.setDocumentation("Line 1\r\nLine 2");
+        model.getDefaultFolderForObject(element2).getElements().add(element2);
+        
+        IArchimateRelationship relation = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+        relation.setId("id3");
+        relation.connect(element1, element2);
+        model.getDefaultFolderForObject(relation).getElements().add(relation);
+        
+        File folder = TestUtils.createTempFolder("csv");
+        exporter.setStripNewLines(true);
+        exporter.export(folder);
+        
+        List<String> lines = Files.readAllLines(new File(folder, "elements.csv").toPath(), StandardCharsets.UTF_8);
+        assertEquals(4, lines.size());
+        assertEquals(exporter.createHeader(CSVExporter.MODEL_ELEMENTS_HEADER), lines.get(0));
+        assertEquals("\"0a9d34ab\",\"ArchimateModel\",\"The Main Model\",\"This is the Documentation\"", lines.get(1));
+        assertEquals("\"id1\",\"BusinessActor\",\"Actor\",\"\"", lines.get(2));
+        assertEquals("\"id2\",\"ApplicationComponent\",\"Component\",\"Line 1 Line 2\"", lines.get(3));
+        
+        lines = Files.readAllLines(new File(folder, "relations.csv").toPath(), StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertEquals("\"id3\",\"AssociationRelationship\",\"\",\"\",\"id1\",\"id2\"", lines.get(1));
+        
+        lines = Files.readAllLines(new File(folder, "properties.csv").toPath(), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertEquals("\"0a9d34ab\",\"Model key\",\"Model value\"", lines.get(1));
+        assertEquals("\"id1\",\"Key\",\"Value \"\"quoted\"\"\"", lines.get(2));
+    }
+    
     @Test
     public void testCreateHeader() {
         String[] elements = { "One", "Two", "Three" };
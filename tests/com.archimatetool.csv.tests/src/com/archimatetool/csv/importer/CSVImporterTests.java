@@ -57,6 +57,8 @@ public class CSVImporterTests {
     File elements3File = new File(testFolder, "test3-elements.csv");
     File relations3File = new File(testFolder, "test3-relations.csv");
     
+    File elements4File = new File(testFolder, "test4-elements.csv");
+    
     private IArchimateModel model;
     private CSVImporter importer;
     
@@ -186,6 +188,38 @@ public class CSVImporterTests {
         assertEquals("Some more docs\r\nHere\r\n", concept.getDocumentation());
     }
 
+    @Test
+    public void testImportElementsWithSemicolonDelimiter() throws Exception {
+        importer.importElements(elements4File);
+        
+        assertEquals(2, importer.newConcepts.size());
+        
+        IArchimateConcept concept = importer.newConcepts.get("f00aa5b4");
+        assertEquals(IArchimatePackage.eINSTANCE.getBusinessActor(), concept.eClass());
+        assertEquals("Business Actor", concept.getName());
+        assertEquals("Documentation, with; some delimiters", concept.getDocumentation());
+    }
+    
+    @Test
+    public void testSniffDelimiter() throws Exception {
+        assertEquals(',', importer.sniffDelimiter(elements1File));
+        assertEquals(';', importer.sniffDelimiter(elements4File));
+        
+        assertEquals(',', sniffDelimiter(""));
+        assertEquals(',', sniffDelimiter("\"ID\""));
+        assertEquals(',', sniffDelimiter("\"ID\",\"Key\",\"Value\""));
+        assertEquals(';', sniffDelimiter("\"ID\";\"Key\";\"Value\""));
+        assertEquals('\t', sniffDelimiter("\"ID\"\t\"Key\"\t\"Value\""));
+        
+        // Delimiters in quotes and in later records are ignored
+        assertEquals(';', sniffDelimiter("\"I,D\";\"K,e,y\";\"Value\"\r\n\"1\",\"2\",\"3\",\"4\""));
+        assertEquals(';', sniffDelimiter("\"I\"\",D\";\"Key\""));
+    }
+    
+    private char sniffDelimiter(String s) {
+        return importer.sniffDelimiter(s.toCharArray(), s.length());
+    }
+    
     @Test
     public void testImportElementsAndRelationsWithNoIDsHaveIDsGenerated() throws Exception {
         importer.importElements(elements3File);
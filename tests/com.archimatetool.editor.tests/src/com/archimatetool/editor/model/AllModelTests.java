@@ -12,6 +12,7 @@ import com.archimatetool.editor.model.compatibility.handlers.FixDefaultSizesHand
 import com.archimatetool.editor.model.impl.ArchiveManagerTests;
 import com.archimatetool.editor.model.impl.ByteArrayStorageTests;
 import com.archimatetool.editor.model.impl.EditorModelManagerTests;
+import com.archimatetool.editor.model.impl.ModelCacheTests;
 
 import junit.framework.TestSuite;
 
@@ -25,6 +26,7 @@ public class AllModelTests {
         suite.addTest(DiagramModelUtilsTests.suite());
         suite.addTest(DiagramModelUtilsNestedRelationsTests.suite());
         suite.addTest(IArchiveManagerTests.suite());
+        suite.addTest(ModelChangeSetTests.suite());
         suite.addTest(ModelCheckerTests.suite());
 
         // model.commands
@@ -41,6 +43,7 @@ public class AllModelTests {
         suite.addTest(ArchiveManagerTests.suite());
         suite.addTest(ByteArrayStorageTests.suite());
 		suite.addTest(EditorModelManagerTests.suite());
+        suite.addTest(ModelCacheTests.suite());
 		
 		return suite;
 	}
@@ -0,0 +1,113 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.impl.ENotificationImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IFolder;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+@SuppressWarnings("nls")
+public class ModelChangeSetTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelChangeSetTests.class);
+    }
+    
+    private IArchimateModel model;
+    private ModelChangeSet changeSet;
+    private IArchimateElement element;
+    
+    @Before
+    public void runOnceBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        changeSet = new ModelChangeSet(model);
+        element = IArchimateFactory.eINSTANCE.createBusinessActor();
+    }
+    
+    @Test
+    public void testNew() {
+        assertSame(model, changeSet.getModel());
+        assertTrue(changeSet.isEmpty());
+        assertTrue(changeSet.getNotifications().isEmpty());
+        assertTrue(changeSet.getChangedObjects().isEmpty());
+    }
+    
+    @Test
+    public void testAdd_AttributeSetTwice() {
+        Notification msg1 = createSet(element, IArchimatePackage.Literals.NAMEABLE__NAME, null, "A");
+        Notification msg2 = createSet(element, IArchimatePackage.Literals.DOCUMENTABLE__DOCUMENTATION, null, "Doc");
+        Notification msg3 = createSet(element, IArchimatePackage.Literals.NAMEABLE__NAME, "A", "B");
+        
+        changeSet.add(msg1);
+        changeSet.add(msg2);
+        changeSet.add(msg3);
+        
+        assertFalse(changeSet.isEmpty());
+        assertEquals(2, changeSet.getNotifications().size());
+        assertSame(msg3, changeSet.getNotifications().get(0));
+        assertSame(msg2, changeSet.getNotifications().get(1));
+        
+        assertEquals(1, changeSet.getChangedObjects().size());
+        assertTrue(changeSet.getChangedObjects().contains(element));
+    }
+    
+    @Test
+    public void testAdd_ReferenceSetTwice() {
+        IArchimateRelationship relation = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+        IArchimateElement element2 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        
+        // Old values of references are kept
+        changeSet.add(createSet(relation, IArchimatePackage.Literals.ARCHIMATE_RELATIONSHIP__SOURCE, null, element));
+        changeSet.add(createSet(relation, IArchimatePackage.Literals.ARCHIMATE_RELATIONSHIP__SOURCE, element, element2));
+        
+        assertEquals(2, changeSet.getNotifications().size());
+    }
+    
+    @Test
+    public void testAdd_AddedAndRemovedObjects() {
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        IArchimateElement element2 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        
+        changeSet.add(new ENotificationImpl((InternalEObject)folder, Notification.ADD, IArchimatePackage.Literals.FOLDER__ELEMENTS, null, element));
+        changeSet.add(new ENotificationImpl((InternalEObject)folder, Notification.REMOVE, IArchimatePackage.Literals.FOLDER__ELEMENTS, element2, null));
+        
+        assertEquals(2, changeSet.getNotifications().size());
+        assertEquals(3, changeSet.getChangedObjects().size());
+        assertTrue(changeSet.getChangedObjects().contains(folder));
+        assertTrue(changeSet.getChangedObjects().contains(element));
+        assertTrue(changeSet.getChangedObjects().contains(element2));
+    }
+    
+    @Test
+    public void testAdd_TouchIgnored() {
+        changeSet.add(createSet(element, IArchimatePackage.Literals.NAMEABLE__NAME, "A", "A"));
+        assertTrue(changeSet.isEmpty());
+    }
+    
+    private Notification createSet(EObject notifier, EStructuralFeature feature, Object oldValue, Object newValue) {
+        return new ENotificationImpl((InternalEObject)notifier, Notification.SET, feature, oldValue, newValue);
+    }
+}
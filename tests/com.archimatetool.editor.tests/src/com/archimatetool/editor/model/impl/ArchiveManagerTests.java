@@ -5,18 +5,24 @@
  */
 package com.archimatetool.editor.model.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.swt.graphics.Image;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -24,10 +30,12 @@ import org.junit.rules.ExpectedException;
 
 import com.archimatetool.editor.TestSupport;
 import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelImage;
+import com.archimatetool.model.util.IModelChangeListener;
 import com.archimatetool.testingtools.ArchimateTestModel;
 import com.archimatetool.tests.TestData;
 import com.archimatetool.tests.TestUtils;
@@ -59,16 +67,17 @@ public class ArchiveManagerTests {
     public void testCreateArchiveManager() throws Exception {
         assertNotNull(archiveManager);
         
-        // Should have an ID Adapter and an extra EContentAdapter adapter
-        assertEquals(2, model.eAdapters().size());
-        assertEquals(TestUtils.getPrivateField(archiveManager, "fModelAdapter"), model.eAdapters().get(1));
+        // Should have only the model's change dispatcher with a listener added to it
+        assertEquals(1, model.eAdapters().size());
+        assertSame(model.getChangeDispatcher(), model.eAdapters().get(0));
+        assertTrue(model.getChangeDispatcher().hasListener((IModelChangeListener)TestUtils.getPrivateField(archiveManager, "fModelListener")));
         
         assertTrue(archiveManager.getImagePaths().isEmpty());
         assertFalse(archiveManager.hasImages());
     }
     
     @Test
-    public void testEContentAdapter() throws Exception {
+    public void testModelListener() throws Exception {
         assertTrue(archiveManager.getImagePaths().isEmpty());
         
         IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
@@ -167,6 +176,9 @@ public class ArchiveManagerTests {
         
         archiveManager.loadImages();
         assertFalse(archiveManager.getLoadedImagePaths().isEmpty());
+        
+        // Image bytes are read from the model file when needed
+        assertNotNull(archiveManager.getBytesFromEntry(archiveManager.getLoadedImagePaths().get(0)));
     }
     
     @Test
@@ -219,6 +231,170 @@ public class ArchiveManagerTests {
         file.delete();
     }
     
+    @Test
+    public void testSaveModel_ReplacesFile() throws IOException {
+        // Use a new storage so that the image is not already held in memory from other tests
+        ByteArrayStorage storage = ArchiveManager.BYTE_ARRAY_STORAGE;
+        ArchiveManager.BYTE_ARRAY_STORAGE = new ByteArrayStorage();
+        
+        File folder = TestUtils.createTempFolder("save");
+        
+        try {
+            File file = new File(folder, "test.archimate");
+            FileUtils.copyFile(TestSupport.TEST_MODEL_FILE_ZIPPED, file, false);
+            model.setFile(file);
+            
+            // Images are read from the model's file when they are used
+            archiveManager.loadImages();
+            String imagePath = archiveManager.getLoadedImagePaths().get(0);
+            
+            IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+            dm.getChildren().add(dmImage);
+            dmImage.setImagePath(imagePath);
+            
+            // The image is copied from the model's file while it is replaced
+            archiveManager.saveModel();
+            
+            // Only the model's file is left in the folder
+            assertEquals(1, folder.listFiles().length);
+            assertTrue(IArchiveManager.FACTORY.isArchiveFile(file));
+            
+            byte[] bytes;
+            try(ZipFile zipFile = new ZipFile(TestSupport.TEST_MODEL_FILE_ZIPPED)) {
+                bytes = ArchiveManager.BYTE_ARRAY_STORAGE.getBytesFromStream(zipFile.getInputStream(zipFile.getEntry(imagePath)));
+            }
+            
+            try(ZipFile zipFile = new ZipFile(file)) {
+                assertNotNull(zipFile.getEntry("model.xml"));
+                assertEquals(bytes.length, zipFile.getEntry(imagePath).getSize());
+            }
+            
+            assertArrayEquals(bytes, archiveManager.getBytesFromEntry(imagePath));
+        }
+        finally {
+            ArchiveManager.BYTE_ARRAY_STORAGE = storage;
+            FileUtils.deleteFolder(folder);
+        }
+    }
+    
+    @Test
+    public void testSaveModel_ReplacesLinkedFile() throws IOException {
+        File linkFolder = TestUtils.createTempFolder("link");
+        File targetFolder = TestUtils.createTempFolder("target");
+        
+        try {
+            File targetFile = new File(targetFolder, "test.archimate");
+            FileUtils.copyFile(TestData.TEST_MODEL_FILE_ARCHISURANCE, targetFile, false);
+            
+            File linkFile = new File(linkFolder, "test.archimate");
+            try {
+                Files.createSymbolicLink(linkFile.toPath(), targetFile.toPath());
+            }
+            catch(UnsupportedOperationException | IOException ex) {
+                // Links are not supported on this platform
+                Assume.assumeNoException(ex);
+            }
+            
+            model.setFile(linkFile);
+            archiveManager.saveModel();
+            
+            // The link is kept and the file that it links to is replaced from the same folder
+            assertTrue(Files.isSymbolicLink(linkFile.toPath()));
+            assertEquals(1, linkFolder.listFiles().length);
+            assertEquals(1, targetFolder.listFiles().length);
+            assertTrue(new String(Files.readAllBytes(targetFile.toPath()), "UTF-8").contains(model.getId()));
+        }
+        finally {
+            FileUtils.deleteFolder(linkFolder);
+            FileUtils.deleteFolder(targetFolder);
+        }
+    }
+    
+    @Test
+    public void testSaveModel_ImageNotFound() throws IOException {
+        File folder = TestUtils.createTempFolder("save");
+        
+        try {
+            File file = new File(folder, "test.archimate");
+            FileUtils.copyFile(TestSupport.TEST_MODEL_FILE_ZIPPED, file, false);
+            byte[] contents = Files.readAllBytes(file.toPath());
+            model.setFile(file);
+            
+            IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+            dm.getChildren().add(dmImage);
+            dmImage.setImagePath("images/missing.png");
+            
+            try {
+                archiveManager.saveModel();
+                fail("Should have thrown an IOException");
+            }
+            catch(IOException ex) {
+                assertTrue(ex.getMessage().contains("images/missing.png"));
+            }
+            
+            // The model's file is kept and the saved file is removed
+            assertArrayEquals(contents, Files.readAllBytes(file.toPath()));
+            assertEquals(1, folder.listFiles().length);
+        }
+        finally {
+            FileUtils.deleteFolder(folder);
+        }
+    }
+    
+    @Test
+    public void testSaveModel_ReadsImagesNotSaved() throws IOException {
+        ByteArrayStorage storage = ArchiveManager.BYTE_ARRAY_STORAGE;
+        ArchiveManager.BYTE_ARRAY_STORAGE = new ByteArrayStorage();
+        
+        File folder = TestUtils.createTempFolder("save");
+        
+        try {
+            File file = new File(folder, "test.archimate");
+            FileUtils.copyFile(TestSupport.TEST_MODEL_FILE_ZIPPED, file, false);
+            model.setFile(file);
+            
+            archiveManager.loadImages();
+            String imagePath = archiveManager.getLoadedImagePaths().get(0);
+            
+            // The image is used in another model but not in this one so it is not saved
+            ArchiveManager.BYTE_ARRAY_STORAGE.addReference(imagePath);
+            archiveManager.saveModel();
+            
+            try(ZipFile zipFile = new ZipFile(file)) {
+                assertNull(zipFile.getEntry(imagePath));
+            }
+            
+            // So it was read in before the model's file was replaced
+            assertNull(ArchiveManager.BYTE_ARRAY_STORAGE.getArchiveFile(imagePath));
+            assertNotNull(archiveManager.getBytesFromEntry(imagePath));
+        }
+        finally {
+            ArchiveManager.BYTE_ARRAY_STORAGE = storage;
+            FileUtils.deleteFolder(folder);
+        }
+    }
+    
+    @Test
+    public void testSaveModel_CompressedImagesStored() throws IOException {
+        IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage);
+        
+        File file = TestUtils.createTempFile(".archimate");
+        model.setFile(file);
+        
+        String imagePath = archiveManager.addImageFromFile(new File(TestSupport.getTestDataFolder(), "img/img1.png"));
+        dmImage.setImagePath(imagePath);
+        
+        archiveManager.saveModel();
+        
+        try(ZipFile zipFile = new ZipFile(file)) {
+            assertEquals(ZipEntry.STORED, zipFile.getEntry(imagePath).getMethod());
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("model.xml").getMethod());
+        }
+        
+        file.delete();
+    }
+    
     @Test
     public void testSaveModel_ResourceSame() throws IOException {
         File file = TestUtils.createTempFile(".archimate");
@@ -246,12 +422,72 @@ public class ArchiveManagerTests {
         archiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
         dmImage.setImagePath(archiveManager.getLoadedImagePaths().get(0));
         
-        assertEquals(2, model.eAdapters().size());
+        IModelChangeListener listener = (IModelChangeListener)TestUtils.getPrivateField(archiveManager, "fModelListener");
+        assertTrue(model.getChangeDispatcher().hasListener(listener));
         assertFalse(archiveManager.getLoadedImagePaths().isEmpty());
         
         archiveManager.dispose();
         
+        assertFalse(model.getChangeDispatcher().hasListener(listener));
         assertEquals(1, model.eAdapters().size());
         assertTrue(archiveManager.getLoadedImagePaths().isEmpty());
     }
+    
+    @Test
+    public void testDispose_ReleasesImageReferences() throws IOException {
+        archiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        String imagePath = archiveManager.getLoadedImagePaths().get(0);
+        
+        // Images are shared with other models
+        int count = ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath);
+        
+        IArchimateModel model2 = tm.createNewModel();
+        ArchiveManager archiveManager2 = (ArchiveManager)model2.getAdapter(IArchiveManager.class);
+        archiveManager2.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        assertEquals(count + 1, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+        
+        // Still used by the second model
+        archiveManager.dispose();
+        assertEquals(count, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+        assertNotNull(archiveManager2.getBytesFromEntry(imagePath));
+        
+        archiveManager2.dispose();
+        assertEquals(count - 1, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+    }
+    
+    @Test
+    public void testDispose_ReadsImagesStillUsed() throws IOException {
+        ByteArrayStorage storage = ArchiveManager.BYTE_ARRAY_STORAGE;
+        ArchiveManager.BYTE_ARRAY_STORAGE = new ByteArrayStorage();
+        
+        File folder = TestUtils.createTempFolder("dispose");
+        
+        try {
+            File file = new File(folder, "test.archimate");
+            FileUtils.copyFile(TestSupport.TEST_MODEL_FILE_ZIPPED, file, false);
+            model.setFile(file);
+            
+            archiveManager.loadImages();
+            String imagePath = archiveManager.getLoadedImagePaths().get(0);
+            assertEquals(file.getAbsoluteFile(), ArchiveManager.BYTE_ARRAY_STORAGE.getArchiveFile(imagePath));
+            
+            // Used in another model
+            IArchimateModel model2 = tm.createNewModel();
+            ArchiveManager archiveManager2 = (ArchiveManager)model2.getAdapter(IArchiveManager.class);
+            IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+            model2.getDefaultDiagramModel().getChildren().add(dmImage);
+            dmImage.setImagePath(imagePath);
+            
+            // The model's file is no longer used so the image is read in
+            archiveManager.dispose();
+            assertNull(ArchiveManager.BYTE_ARRAY_STORAGE.getArchiveFile(imagePath));
+            
+            file.delete();
+            assertNotNull(archiveManager2.getBytesFromEntry(imagePath));
+        }
+        finally {
+            ArchiveManager.BYTE_ARRAY_STORAGE = storage;
+            FileUtils.deleteFolder(folder);
+        }
+    }
 }
\ No newline at end of file
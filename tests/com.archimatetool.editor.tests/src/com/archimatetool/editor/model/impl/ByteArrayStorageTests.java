@@ -10,11 +10,19 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -22,6 +30,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.archimatetool.editor.TestSupport;
+import com.archimatetool.tests.TestUtils;
 
 
 @SuppressWarnings("nls")
@@ -151,6 +160,274 @@ public class ByteArrayStorageTests {
         
         // entry2 should reference original bytes1
         assertEquals(bytes1, storage.getEntry(entry2));
+        
+        // Removing entry1 still leaves entry2 as a key for the bytes
+        storage.removeEntry(entry1);
+        assertEquals(entry2, storage.getKey(bytes2));
+        
+        storage.removeEntry(entry2);
+        assertNull(storage.getKey(bytes2));
+    }
+    
+    @Test
+    public void getKey_NotFound() throws Exception {
+        assertNull(storage.getKey(storage.getBytesFromFile(img1File)));
+        assertNull(storage.getKey(null));
+        
+        storage.addByteContentEntry(entry1, new byte[] { 1, 2, 3 });
+        assertNull(storage.getKey(storage.getBytesFromFile(img1File)));
+        assertEquals(entry1, storage.getKey(new byte[] { 1, 2, 3 }));
+    }
+    
+    @Test
+    public void archiveEntry() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile = createArchiveFile(entryName);
+        
+        storage.addArchiveEntry(entryName, archiveFile, -1, -1);
+        assertTrue(storage.hasEntry(entryName));
+        
+        // Not read yet
+        assertEquals(0, storage.getArchiveCacheSize());
+        
+        byte[] bytes = storage.getEntry(entryName);
+        assertEquals(imgfileByteSize, bytes.length);
+        assertEquals(imgfileByteSize, storage.getArchiveCacheSize());
+        assertEquals(imgfileByteSize, storage.getEntrySize(entryName));
+        
+        // Removed from the cache and read again
+        storage.setArchiveCacheLimit(0);
+        assertEquals(0, storage.getArchiveCacheSize());
+        assertEquals(imgfileByteSize, storage.getEntry(entryName).length);
+        
+        storage.removeEntry(entryName);
+        assertFalse(storage.hasEntry(entryName));
+        
+        archiveFile.delete();
+    }
+    
+    @Test(expected=IOException.class)
+    public void archiveEntry_ArchiveFileDeleted() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile = createArchiveFile(entryName);
+        
+        storage.addArchiveEntry(entryName, archiveFile, -1, -1);
+        archiveFile.delete();
+        
+        // Still an entry but it can't be read
+        assertTrue(storage.hasEntry(entryName));
+        storage.getEntry(entryName);
+    }
+    
+    @Test
+    public void archiveEntry_ArchiveFileChanged() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile = createArchiveFile(entryName);
+        
+        storage.addArchiveEntry(entryName, archiveFile, -1, -1);
+        
+        // Overwrite the archive file with a different one
+        try(ZipOutputStream zOut = new ZipOutputStream(new FileOutputStream(archiveFile))) {
+            zOut.putNextEntry(new ZipEntry(entryName));
+            zOut.write(new byte[] { 1, 2, 3 });
+            zOut.closeEntry();
+        }
+        
+        assertNull(storage.getArchiveFile(entryName));
+        
+        try {
+            storage.getEntry(entryName);
+            fail("Should have thrown an IOException");
+        }
+        catch(IOException ex) {
+        }
+        
+        archiveFile.delete();
+    }
+    
+    @Test(expected=IOException.class)
+    public void archiveEntry_CrcChecked() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile = createArchiveFile(entryName);
+        
+        // Not the CRC of the entry that is in the archive file
+        storage.addArchiveEntry(entryName, archiveFile, imgfileByteSize, getCrc(new byte[] { 1, 2, 3 }));
+        
+        try {
+            storage.getEntry(entryName);
+        }
+        finally {
+            archiveFile.delete();
+        }
+    }
+    
+    @Test
+    public void archiveEntry_MostRecentArchiveFirst() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile1 = createArchiveFile(entryName);
+        File archiveFile2 = createArchiveFile(entryName);
+        
+        storage.addArchiveEntry(entryName, archiveFile1, -1, -1);
+        storage.addArchiveEntry(entryName, archiveFile2, -1, -1);
+        storage.setArchiveCacheLimit(0);
+        
+        // Falls back to the first archive file
+        archiveFile2.delete();
+        assertEquals(imgfileByteSize, storage.getEntry(entryName).length);
+        
+        archiveFile1.delete();
+    }
+    
+    @Test
+    public void getArchiveFile() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile = createArchiveFile(entryName);
+        
+        assertNull(storage.getArchiveFile(entryName));
+        
+        storage.addArchiveEntry(entryName, archiveFile, -1, -1);
+        assertEquals(archiveFile, storage.getArchiveFile(entryName));
+        
+        // Bytes are held in memory now
+        storage.getEntry(entryName);
+        assertNull(storage.getArchiveFile(entryName));
+        
+        storage.setArchiveCacheLimit(0);
+        assertEquals(archiveFile, storage.getArchiveFile(entryName));
+        
+        archiveFile.delete();
+        assertNull(storage.getArchiveFile(entryName));
+        
+        // Not an archive entry
+        storage.addFileContentEntry(entry1, img1File);
+        assertNull(storage.getArchiveFile(entry1));
+    }
+    
+    @Test
+    public void archiveFileUsers() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile = createArchiveFile(entryName);
+        
+        storage.addArchiveEntry(entryName, archiveFile, -1, -1);
+        storage.addReference(entryName);
+        
+        storage.addArchiveFileUser(archiveFile);
+        storage.addArchiveFileUser(archiveFile);
+        assertEquals(2, storage.getArchiveFileUserCount(archiveFile));
+        
+        // Still used
+        storage.removeArchiveFileUser(archiveFile);
+        assertEquals(1, storage.getArchiveFileUserCount(archiveFile));
+        assertEquals(archiveFile, storage.getArchiveFile(entryName));
+        assertEquals(0, storage.getArchiveCacheSize());
+        
+        // Last user removed so the bytes are read in
+        storage.removeArchiveFileUser(archiveFile);
+        assertEquals(0, storage.getArchiveFileUserCount(archiveFile));
+        assertNull(storage.getArchiveFile(entryName));
+        
+        archiveFile.delete();
+        assertEquals(imgfileByteSize, storage.getEntry(entryName).length);
+        assertEquals(1, storage.getReferenceCount(entryName));
+        
+        // And can be found by their content
+        assertEquals(entryName, storage.getKey(storage.getBytesFromFile(img1File)));
+    }
+    
+    @Test
+    public void archiveFileUsers_OtherArchiveFile() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile1 = createArchiveFile(entryName);
+        File archiveFile2 = createArchiveFile(entryName);
+        
+        storage.addArchiveEntry(entryName, archiveFile1, -1, -1);
+        storage.addArchiveEntry(entryName, archiveFile2, -1, -1);
+        storage.addArchiveFileUser(archiveFile2);
+        
+        // Can still be read from the other archive file so the bytes are not read in
+        storage.removeArchiveFileUser(archiveFile2);
+        assertEquals(archiveFile1, storage.getArchiveFile(entryName));
+        assertEquals(0, storage.getArchiveCacheSize());
+        
+        archiveFile1.delete();
+        archiveFile2.delete();
+    }
+    
+    @Test
+    public void readArchiveEntries() throws Exception {
+        String entryName1 = "images/img1.png";
+        String entryName2 = "images/img2.png";
+        File archiveFile = createArchiveFile(entryName1, entryName2);
+        
+        storage.addArchiveEntry(entryName1, archiveFile, -1, -1);
+        storage.addArchiveEntry(entryName2, archiveFile, -1, -1);
+        
+        // The archive file is replaced and entryName2 will be added again from it
+        storage.readArchiveEntries(archiveFile, Collections.singleton(entryName2));
+        assertNull(storage.getArchiveFile(entryName1));
+        assertEquals(archiveFile, storage.getArchiveFile(entryName2));
+        
+        archiveFile.delete();
+        assertEquals(imgfileByteSize, storage.getEntry(entryName1).length);
+    }
+    
+    @Test
+    public void getKey_ArchiveEntry() throws Exception {
+        String entryName = "images/img1.png";
+        File archiveFile = createArchiveFile(entryName);
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        
+        storage.addArchiveEntry(entryName, archiveFile, bytes.length, getCrc(bytes));
+        
+        // Found without adding the bytes again
+        assertEquals(entryName, storage.getKey(bytes));
+        assertEquals(0, storage.getEntrySet().size());
+        
+        // Different bytes
+        assertNull(storage.getKey(new byte[] { 1, 2, 3 }));
+        
+        // Can't be read
+        storage.setArchiveCacheLimit(0);
+        archiveFile.delete();
+        assertNull(storage.getKey(bytes));
+    }
+    
+    private File createArchiveFile(String... entryNames) throws Exception {
+        File file = TestUtils.createTempFile(".archimate");
+        try(ZipOutputStream zOut = new ZipOutputStream(new FileOutputStream(file))) {
+            for(String entryName : entryNames) {
+                zOut.putNextEntry(new ZipEntry(entryName));
+                zOut.write(Files.readAllBytes(img1File.toPath()));
+                zOut.closeEntry();
+            }
+        }
+        return file;
+    }
+    
+    private long getCrc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+    
+    @Test
+    public void referenceCounts() throws Exception {
+        storage.addFileContentEntry(entry1, img1File);
+        assertEquals(0, storage.getReferenceCount(entry1));
+        
+        storage.addReference(entry1);
+        storage.addReference(entry1);
+        assertEquals(2, storage.getReferenceCount(entry1));
+        
+        storage.removeReference(entry1);
+        assertEquals(1, storage.getReferenceCount(entry1));
+        assertTrue(storage.hasEntry(entry1));
+        
+        // Last reference removed
+        storage.removeReference(entry1);
+        assertEquals(0, storage.getReferenceCount(entry1));
+        assertFalse(storage.hasEntry(entry1));
+        assertNull(storage.getKey(storage.getBytesFromFile(img1File)));
     }
 
     
@@ -8,27 +8,36 @@ package com.archimatetool.editor.model.impl;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.eclipse.emf.common.notify.Adapter;
 import org.eclipse.gef.commands.Command;
 import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.gef.commands.CompoundCommand;
 import org.junit.Before;
 import org.junit.Test;
 
 import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.model.IEditorModelManager;
+import com.archimatetool.editor.model.ModelChangeSet;
 import com.archimatetool.editor.model.commands.EObjectFeatureCommand;
 import com.archimatetool.editor.preferences.IPreferenceConstants;
 import com.archimatetool.editor.preferences.Preferences;
 import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.util.IModelChangeListener;
 import com.archimatetool.tests.TestData;
 import com.archimatetool.tests.TestUtils;
 
@@ -61,7 +70,7 @@ public class EditorModelManagerTests {
     }
 
     @Test
-    public void createNewModel_IsValid() {
+    public void createNewModel_IsValid() throws Exception {
         IArchimateModel model = editorModelManager.createNewModel();
         assertNotNull(model);
         
@@ -77,8 +86,8 @@ public class EditorModelManagerTests {
         // Has an Archive Manager
         assertTrue(model.getAdapter(IArchiveManager.class) instanceof IArchiveManager);
         
-        // Has an ECore Adapter
-        assertTrue(hasECoreAdapter(model));
+        // Has the ECore Listener
+        assertTrue(hasECoreListener(model));
     }
     
     @Test
@@ -108,7 +117,7 @@ public class EditorModelManagerTests {
     }
     
     @Test
-    public void openModel_Model() {
+    public void openModel_Model() throws Exception {
         IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
         model.setDefaults();
         model.setName("Test");
@@ -121,8 +130,8 @@ public class EditorModelManagerTests {
         // Has an Archive Manager
         assertTrue(model.getAdapter(IArchiveManager.class) instanceof IArchiveManager);
         
-        // Has an ECore Adapter
-        assertTrue(hasECoreAdapter(model));
+        // Has the ECore Listener
+        assertTrue(hasECoreListener(model));
         
         // Is registered
         assertEquals(1, editorModelManager.getModels().size());
@@ -140,7 +149,7 @@ public class EditorModelManagerTests {
     }
         
     @Test
-    public void loadModel_File() {
+    public void loadModel_File() throws Exception {
         File file = TestData.TEST_MODEL_FILE_ARCHISURANCE;
         
         IArchimateModel model = editorModelManager.loadModel(file);
@@ -155,8 +164,8 @@ public class EditorModelManagerTests {
         // Has an Archive Manager
         assertTrue(model.getAdapter(IArchiveManager.class) instanceof IArchiveManager);
         
-        // Has an ECore Adapter
-        assertTrue(hasECoreAdapter(model));
+        // Has the ECore Listener
+        assertTrue(hasECoreListener(model));
         
         // Is registered
         assertEquals(1, editorModelManager.getModels().size());
@@ -195,6 +204,65 @@ public class EditorModelManagerTests {
         stack.flush();
     }
 
+    @Test
+    public void commandChanges_FiredAsOneChangeSet() {
+        IArchimateModel model = editorModelManager.createNewModel();
+        
+        List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        for(int i = 0; i < 10; i++) {
+            IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+            model.getDefaultFolderForObject(element).getElements().add(element);
+            elements.add(element);
+        }
+        
+        final List<PropertyChangeEvent> events = new ArrayList<PropertyChangeEvent>();
+        editorModelManager.addPropertyChangeListener(new PropertyChangeListener() {
+            @Override
+            public void propertyChange(PropertyChangeEvent evt) {
+                if(evt.getPropertyName() == IEditorModelManager.PROPERTY_ECORE_EVENT
+                        || evt.getPropertyName() == IEditorModelManager.PROPERTY_ECORE_CHANGE_SET) {
+                    events.add(evt);
+                }
+            }
+        });
+        
+        // Each element's name is set twice
+        CompoundCommand cmd = new CompoundCommand();
+        for(IArchimateElement element : elements) {
+            cmd.add(new EObjectFeatureCommand("", element, IArchimatePackage.Literals.NAMEABLE__NAME, "A"));
+        }
+        for(IArchimateElement element : elements) {
+            cmd.add(new EObjectFeatureCommand("", element, IArchimatePackage.Literals.NAMEABLE__NAME, "B"));
+        }
+        
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        stack.execute(cmd);
+        
+        assertEquals(1, events.size());
+        assertSame(IEditorModelManager.PROPERTY_ECORE_CHANGE_SET, events.get(0).getPropertyName());
+        
+        ModelChangeSet changeSet = (ModelChangeSet)events.get(0).getNewValue();
+        assertSame(model, changeSet.getModel());
+        assertEquals(10, changeSet.getNotifications().size());
+        assertEquals("B", changeSet.getNotifications().get(0).getNewValue());
+        assertEquals(10, changeSet.getChangedObjects().size());
+        assertTrue(changeSet.getChangedObjects().containsAll(elements));
+        
+        // Undo
+        events.clear();
+        stack.undo();
+        assertEquals(1, events.size());
+        assertEquals(10, ((ModelChangeSet)events.get(0).getNewValue()).getNotifications().size());
+        
+        // Changes not made by a command are sent one by one
+        events.clear();
+        elements.get(0).setName("C");
+        assertEquals(1, events.size());
+        assertSame(IEditorModelManager.PROPERTY_ECORE_EVENT, events.get(0).getPropertyName());
+        
+        stack.flush();
+    }
+
     @Test
     public void createNewArchiveManager_Created() throws Exception {
         IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
@@ -222,19 +290,121 @@ public class EditorModelManagerTests {
         assertTrue(result);
     }
     
+    @Test
+    public void loadModelInBackground_RegisteredWhenLoaded() throws Exception {
+        EditorModelManager editorModelManager = new EditorModelManager();
+        File file = TestData.TEST_MODEL_FILE_ARCHISURANCE;
+        
+        TestUtils.invokePrivateMethod(editorModelManager, "loadModelInBackground", new Class[] { File.class }, new Object[] { file });
+        
+        // Placeholder until loaded
+        assertEquals(1, editorModelManager.getLoadingModelFiles().size());
+        assertEquals(file, editorModelManager.getLoadingModelFiles().get(0));
+        assertFalse(editorModelManager.isModelLoaded(file));
+        
+        // Loading the same file waits for the background load
+        IArchimateModel model = editorModelManager.loadModel(file);
+        assertNotNull(model);
+        assertEquals(file, model.getFile());
+        assertTrue(editorModelManager.getModels().contains(model));
+        assertTrue(editorModelManager.getLoadingModelFiles().isEmpty());
+        
+        assertTrue(model.getAdapter(CommandStack.class) instanceof CommandStack);
+        assertTrue(model.getAdapter(IArchiveManager.class) instanceof IArchiveManager);
+        
+        // Already registered
+        assertEquals(model, editorModelManager.waitForLoad(file));
+        assertEquals(1, editorModelManager.getModels().size());
+    }
+    
+    @Test
+    public void saveModel_InBackground() throws Exception {
+        EditorModelManager editorModelManager = new EditorModelManager();
+        IArchimateModel model = editorModelManager.loadModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        
+        File tmpFile = TestUtils.createTempFile(".archimate");
+        tmpFile.delete();
+        model.setFile(tmpFile);
+        
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Hello"));
+        
+        Preferences.STORE.setValue(IPreferenceConstants.BACKUP_ON_SAVE, false);
+        Preferences.STORE.setValue(IPreferenceConstants.BACKGROUND_SAVE, true);
+        
+        assertTrue(editorModelManager.saveModel(model));
+        editorModelManager.waitForSave(model);
+        
+        assertTrue(tmpFile.exists());
+        assertFalse(editorModelManager.isModelDirty(model));
+        
+        // Saved name is the snapshot's
+        IArchimateModel savedModel = new EditorModelManager().loadModel(tmpFile);
+        assertEquals("Hello", savedModel.getName());
+    }
+    
+    @Test
+    public void saveModel_InBackground_ChangedWhileSaving() throws Exception {
+        EditorModelManager editorModelManager = new EditorModelManager();
+        IArchimateModel model = editorModelManager.loadModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        model.setFile(TestUtils.createTempFile(".archimate"));
+        
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Hello"));
+        
+        Preferences.STORE.setValue(IPreferenceConstants.BACKUP_ON_SAVE, false);
+        Preferences.STORE.setValue(IPreferenceConstants.BACKGROUND_SAVE, true);
+        
+        assertTrue(editorModelManager.saveModel(model));
+        
+        // Changed after the snapshot was taken
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Hello again"));
+        
+        editorModelManager.waitForSave(model);
+        assertTrue(editorModelManager.isModelDirty(model));
+    }
+    
+    @Test
+    public void createRecoverySnapshots() throws Exception {
+        EditorModelManager editorModelManager = new EditorModelManager();
+        IArchimateModel model = editorModelManager.loadModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        model.setFile(TestUtils.createTempFile(".archimate"));
+        
+        // Not changed
+        assertTrue(editorModelManager.createRecoverySnapshots().isEmpty());
+        
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Hello"));
+        
+        List<IArchimateModel> snapshots = editorModelManager.createRecoverySnapshots();
+        assertEquals(1, snapshots.size());
+        
+        IArchimateModel snapshot = snapshots.get(0);
+        assertNotSame(model, snapshot);
+        assertEquals("Hello", snapshot.getName());
+        assertEquals(model.getId(), snapshot.getId());
+        
+        File recoveryFile = snapshot.getFile();
+        SaveModelJob.saveSnapshot(snapshot);
+        assertTrue(recoveryFile.exists());
+        
+        // Not changed since it was saved for recovery
+        assertTrue(editorModelManager.createRecoverySnapshots().isEmpty());
+        
+        // Recovery file is deleted when the model is saved
+        Preferences.STORE.setValue(IPreferenceConstants.BACKUP_ON_SAVE, false);
+        Preferences.STORE.setValue(IPreferenceConstants.BACKGROUND_SAVE, false);
+        assertTrue(editorModelManager.saveModel(model));
+        assertFalse(recoveryFile.exists());
+    }
+    
     // ---------------------------------------------------------------------------------------------
     
     /**
-     * Determine if model has an ECoreAdapter added
+     * Determine if model has the ECoreListener added
      */
-    private boolean hasECoreAdapter(IArchimateModel model) {
-        Class<?> clazz = TestUtils.getMemberClass(EditorModelManager.class, "com.archimatetool.editor.model.impl.EditorModelManager$ECoreAdapter");
-        for(Adapter a : model.eAdapters()) {
-            if(clazz.isInstance(a)) {
-                return true;
-            }
-        }
-        
-        return false;
+    private boolean hasECoreListener(IArchimateModel model) throws Exception {
+        IModelChangeListener listener = (IModelChangeListener)TestUtils.getPrivateField(editorModelManager, "fECoreListener");
+        return model.eAdapters().contains(model.getChangeDispatcher()) && model.getChangeDispatcher().hasListener(listener);
     }
 }
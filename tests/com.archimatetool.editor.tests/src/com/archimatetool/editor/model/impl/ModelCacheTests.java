@@ -0,0 +1,104 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.editor.preferences.IPreferenceConstants;
+import com.archimatetool.editor.preferences.Preferences;
+import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IIdentifier;
+import com.archimatetool.tests.TestData;
+import com.archimatetool.tests.TestUtils;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+@SuppressWarnings("nls")
+public class ModelCacheTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelCacheTests.class);
+    }
+    
+    private File cacheFolder;
+    private File file;
+    private IArchimateModel model;
+    
+    @Before
+    public void runBeforeEachTest() throws Exception {
+        cacheFolder = ModelCache.CACHE_FOLDER;
+        ModelCache.CACHE_FOLDER = TestUtils.createTempFolder("model-cache");
+        
+        // Don't cache the model in the background when it's loaded
+        Preferences.STORE.setValue(IPreferenceConstants.MODEL_CACHE, false);
+        
+        file = TestUtils.createTempFile(".archimate");
+        FileUtils.copyFile(TestData.TEST_MODEL_FILE_ARCHISURANCE, file, false);
+        model = new EditorModelManager().loadModel(file);
+    }
+    
+    @After
+    public void runAfterEachTest() throws Exception {
+        FileUtils.deleteFolder(ModelCache.CACHE_FOLDER);
+        ModelCache.CACHE_FOLDER = cacheFolder;
+        Preferences.STORE.setToDefault(IPreferenceConstants.MODEL_CACHE);
+    }
+    
+    @Test
+    public void load_NoCacheFile() {
+        assertFalse(ModelCache.getCacheFile(file).exists());
+        assertNull(ModelCache.load(file));
+    }
+    
+    @Test
+    public void save_Load() throws Exception {
+        ModelCache.save(SaveModelJob.createSnapshot(model, file), file, ModelCache.getKey(file));
+        assertTrue(ModelCache.getCacheFile(file).exists());
+        
+        IArchimateModel cachedModel = ModelCache.load(file);
+        assertNotNull(cachedModel);
+        assertNotSame(model, cachedModel);
+        
+        assertEquals(model.getName(), cachedModel.getName());
+        assertEquals(model.getId(), cachedModel.getId());
+        assertEquals(model.getFolders().size(), cachedModel.getFolders().size());
+        
+        // Resource is for the model file
+        assertEquals(file.getAbsolutePath(), cachedModel.eResource().getURI().toFileString());
+        
+        // IDs are registered
+        IIdentifier element = (IIdentifier)cachedModel.getFolders().get(0).getElements().get(0);
+        assertSame(element, cachedModel.getIDAdapter().getObject(element.getId()));
+    }
+    
+    @Test
+    public void load_FileChanged() throws Exception {
+        ModelCache.save(SaveModelJob.createSnapshot(model, file), file, ModelCache.getKey(file));
+        assertTrue(file.setLastModified(file.lastModified() - 10000));
+        assertNull(ModelCache.load(file));
+    }
+    
+    @Test
+    public void getCacheFile_IsSameForSameFile() {
+        assertEquals(ModelCache.getCacheFile(file), ModelCache.getCacheFile(new File(file.getPath())));
+        assertFalse(ModelCache.getCacheFile(file).equals(ModelCache.getCacheFile(TestData.TEST_MODEL_FILE_ARCHISURANCE)));
+    }
+}
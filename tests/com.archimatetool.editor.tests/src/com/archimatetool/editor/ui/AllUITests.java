@@ -17,6 +17,7 @@ public class AllUITests {
 
         // ui
         suite.addTest(ArchiLabelProviderTests.suite());
+        suite.addTest(ArchiveImageCacheTests.suite());
         suite.addTest(ColorFactoryTests.suite());
         suite.addTest(FigureImagePreviewFactoryTests.suite());
         
@@ -0,0 +1,135 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.editor.TestSupport;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+@SuppressWarnings("nls")
+public class ArchiveImageCacheTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ArchiveImageCacheTests.class);
+    }
+
+    private IArchiveManager archiveManager;
+    private String imagePath;
+
+    @Before
+    public void runOnceBeforeEachTest() throws Exception {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        archiveManager = IArchiveManager.FACTORY.createArchiveManager(model);
+
+        // 268 x 268
+        File file = new File(TestSupport.getTestDataFolder().getPath(), "img/img3.png");
+        imagePath = archiveManager.addImageFromFile(file);
+    }
+
+    @Test
+    public void testGetImage_NullPath() {
+        assertNull(ArchiveImageCache.getImage(archiveManager, null));
+        assertNull(ArchiveImageCache.getScaledImage(archiveManager, null, 10, 10));
+        assertNull(ArchiveImageCache.getScaledImage(archiveManager, null, 10));
+    }
+
+    @Test
+    public void testGetImage_IsShared() {
+        Image image1 = ArchiveImageCache.getImage(archiveManager, imagePath);
+        Image image2 = ArchiveImageCache.getImage(archiveManager, imagePath);
+
+        assertSame(image1, image2);
+        assertEquals(new Rectangle(0, 0, 268, 268), image1.getBounds());
+        assertEquals(2, ArchiveImageCache.getUseCount(image1));
+
+        ArchiveImageCache.releaseImage(image1);
+        assertFalse(image1.isDisposed());
+        assertEquals(1, ArchiveImageCache.getUseCount(image1));
+
+        ArchiveImageCache.releaseImage(image2);
+        assertTrue(image1.isDisposed());
+        assertEquals(0, ArchiveImageCache.getUseCount(image1));
+    }
+
+    @Test
+    public void testGetScaledImage_IsShared() {
+        Image image1 = ArchiveImageCache.getScaledImage(archiveManager, imagePath, 100, 50);
+        Image image2 = ArchiveImageCache.getScaledImage(archiveManager, imagePath, 100, 50);
+
+        assertSame(image1, image2);
+        assertEquals(new Rectangle(0, 0, 100, 50), image1.getBounds());
+
+        Image image3 = ArchiveImageCache.getScaledImage(archiveManager, imagePath, 50, 50);
+        assertNotSame(image1, image3);
+        assertEquals(new Rectangle(0, 0, 50, 50), image3.getBounds());
+
+        ArchiveImageCache.releaseImage(image1);
+        ArchiveImageCache.releaseImage(image2);
+        ArchiveImageCache.releaseImage(image3);
+        assertTrue(image1.isDisposed());
+        assertTrue(image3.isDisposed());
+    }
+
+    @Test
+    public void testGetScaledImage_SameSizeIsOriginal() {
+        Image original = ArchiveImageCache.getImage(archiveManager, imagePath);
+        Image image = ArchiveImageCache.getScaledImage(archiveManager, imagePath, 268, 268);
+
+        assertSame(original, image);
+        assertEquals(2, ArchiveImageCache.getUseCount(original));
+
+        ArchiveImageCache.releaseImage(original);
+        ArchiveImageCache.releaseImage(image);
+        assertTrue(original.isDisposed());
+    }
+
+    @Test
+    public void testGetScaledImage_MaxSize() {
+        Image image = ArchiveImageCache.getScaledImage(archiveManager, imagePath, 64);
+        assertEquals(new Rectangle(0, 0, 64, 64), image.getBounds());
+
+        // Original image is not kept
+        Image original = ArchiveImageCache.getImage(archiveManager, imagePath);
+        assertEquals(1, ArchiveImageCache.getUseCount(original));
+
+        // Image that fits is the original
+        Image image2 = ArchiveImageCache.getScaledImage(archiveManager, imagePath, 500);
+        assertSame(original, image2);
+
+        ArchiveImageCache.releaseImage(image);
+        ArchiveImageCache.releaseImage(original);
+        ArchiveImageCache.releaseImage(image2);
+        assertTrue(image.isDisposed());
+        assertTrue(original.isDisposed());
+    }
+
+    @Test
+    public void testReleaseImage_NotInCache() {
+        Image image = new Image(null, 10, 10);
+        ArchiveImageCache.releaseImage(image);
+        assertFalse(image.isDisposed());
+        image.dispose();
+    }
+}
@@ -64,6 +64,23 @@ public class ColorFactoryTests {
         assertSame(color1, color2);
     }
     
+    @Test
+    public void testColorIsCached_String() {
+        Color color1 = ColorFactory.get(new String("#0b1621"));
+        Color color2 = ColorFactory.get(new String("#0b1621"));
+        assertSame(color1, color2);
+        assertSame(color1, ColorFactory.get(new RGB(11, 22, 33)));
+    }
+    
+    @Test
+    public void testGetRGB_ChangedAfterwards() {
+        RGB rgb = new RGB(4, 5, 6);
+        Color color = ColorFactory.get(rgb);
+        rgb.red = 7;
+        assertSame(color, ColorFactory.get(new RGB(4, 5, 6)));
+        assertEquals(7, ColorFactory.get(rgb).getRed());
+    }
+    
     @Test
     public void testGetUserDefaultFillColor() {
         IBusinessActor actor = IArchimateFactory.eINSTANCE.createBusinessActor();
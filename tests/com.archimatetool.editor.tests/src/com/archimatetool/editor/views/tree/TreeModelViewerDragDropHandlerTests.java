@@ -14,6 +14,9 @@ import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+
+import java.io.File;
+
 import junit.framework.JUnit4TestAdapter;
 
 import org.eclipse.jface.util.LocalSelectionTransfer;
@@ -123,6 +126,13 @@ public class TreeModelViewerDragDropHandlerTests {
         
         selection = new StructuredSelection( new Object[] { e1, e3 } );
         assertFalse(dragHandler.isValidTreeSelection(selection));
+        
+        // Can't DnD the placeholder of a model being loaded
+        selection = new StructuredSelection( new Object[] { new File("test.archimate") } );
+        assertFalse(dragHandler.isValidTreeSelection(selection));
+        
+        selection = new StructuredSelection( new Object[] { e1, new File("test.archimate") } );
+        assertFalse(dragHandler.isValidTreeSelection(selection));
     }
     
     @Test
@@ -305,6 +315,11 @@ public class TreeModelViewerDragDropHandlerTests {
         // And not something else
         event = createMockDropTargetEvent(childElement);
         assertFalse(dragHandler.isValidDropTarget(event));
+        
+        // The placeholder of a model being loaded can't be dropped onto a folder
+        LocalSelectionTransfer.getTransfer().setSelection(new StructuredSelection(new Object[] { new File("test.archimate") }));
+        event = createMockDropTargetEvent(folder);
+        assertFalse(dragHandler.isValidDropTarget(event));
     }
 
     @Test
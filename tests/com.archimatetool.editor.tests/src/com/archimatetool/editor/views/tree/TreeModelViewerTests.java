@@ -0,0 +1,146 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.views.tree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.eclipse.jface.viewers.ILazyTreeContentProvider;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TreeItem;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IFolder;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class TreeModelViewerTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(TreeModelViewerTests.class);
+    }
+
+    private Shell shell;
+    private IArchimateModel model;
+    private IFolder businessFolder, userFolder;
+    private IArchimateElement alpha, beta, gamma;
+
+    @Before
+    public void runOnceBeforeEachTest() {
+        shell = new Shell();
+
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+
+        businessFolder = model.getFolder(FolderType.BUSINESS);
+
+        gamma = createElement("Gamma");
+        alpha = createElement("Alpha");
+        beta = createElement("Beta");
+
+        userFolder = IArchimateFactory.eINSTANCE.createFolder();
+        userFolder.setName("Zeta");
+        businessFolder.getFolders().add(userFolder);
+    }
+
+    @After
+    public void runOnceAfterEachTest() {
+        shell.dispose();
+    }
+
+    @Test
+    public void testGetSortedChildren() {
+        TreeModelViewer viewer = createViewer(SWT.NONE);
+
+        // Folders first, then elements sorted by name
+        assertArrayEquals(new Object[] { userFolder, alpha, beta, gamma }, viewer.getSortedChildren(businessFolder));
+
+        // Top level folders are not sorted
+        assertArrayEquals(model.getFolders().toArray(), viewer.getSortedChildren(model));
+    }
+
+    @Test
+    public void testGetSortedChildren_CachedUntilRefresh() {
+        TreeModelViewer viewer = createViewer(SWT.NONE);
+        viewer.getSortedChildren(businessFolder);
+
+        gamma.setName("Aardvark");
+        assertArrayEquals(new Object[] { userFolder, alpha, beta, gamma }, viewer.getSortedChildren(businessFolder));
+
+        viewer.refresh(businessFolder);
+        assertArrayEquals(new Object[] { userFolder, gamma, alpha, beta }, viewer.getSortedChildren(businessFolder));
+    }
+
+    @Test
+    public void testGetSortedChildren_RefreshParentClearsChildren() {
+        TreeModelViewer viewer = createViewer(SWT.NONE);
+        viewer.getSortedChildren(businessFolder);
+
+        IArchimateElement delta = createElement("Delta");
+
+        viewer.refresh(model);
+        assertArrayEquals(new Object[] { userFolder, alpha, beta, delta, gamma }, viewer.getSortedChildren(businessFolder));
+    }
+
+    @Test
+    public void testLazyTree_ItemsCreatedWhenShown() {
+        for(int i = 0; i < 1000; i++) {
+            createElement("Element " + i);
+        }
+
+        TreeModelViewer viewer = createViewer(SWT.VIRTUAL);
+        assertTrue(viewer.getContentProvider() instanceof ILazyTreeContentProvider);
+
+        // Top level folders are counted but not created
+        assertEquals(model.getFolders().size(), viewer.getTree().getItemCount());
+
+        TreeItem folderItem = null;
+        for(TreeItem item : viewer.getTree().getItems()) {
+            item.getText(); // create it
+            if(item.getData() == businessFolder) {
+                folderItem = item;
+            }
+        }
+
+        assertNotNull(folderItem);
+
+        // The folder's children are counted but not created until they are shown
+        assertEquals(1004, folderItem.getItemCount());
+        assertNull(folderItem.getItem(500).getData());
+
+        folderItem.getItem(0).getText();
+        assertSame(userFolder, folderItem.getItem(0).getData());
+
+        // Find/Replace can still get all the children
+        assertEquals(1004, viewer.getSortedChildren(businessFolder).length);
+    }
+
+    private TreeModelViewer createViewer(int style) {
+        TreeModelViewer viewer = new TreeModelViewer(shell, style);
+        viewer.setInput(model);
+        return viewer;
+    }
+
+    private IArchimateElement createElement(String name) {
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setName(name);
+        businessFolder.getElements().add(element);
+        return element;
+    }
+}
@@ -0,0 +1,193 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.views.tree.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.editor.views.tree.search.SearchFilter.SearchQuery;
+import com.archimatetool.editor.views.tree.search.SearchFilter.SearchResult;
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.ModelTextIndex;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class SearchFilterTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(SearchFilterTests.class);
+    }
+    
+    private IArchimateModel model;
+    private IFolder businessFolder, subFolder;
+    private IArchimateElement actor, role;
+    
+    @Before
+    public void runOnceBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        model.setName("Model");
+        
+        businessFolder = model.getFolder(FolderType.BUSINESS);
+        subFolder = IArchimateFactory.eINSTANCE.createFolder();
+        subFolder.setName("Sub Folder");
+        businessFolder.getFolders().add(subFolder);
+        
+        actor = IArchimateFactory.eINSTANCE.createBusinessActor();
+        actor.setName("Customer Actor");
+        actor.setDocumentation("Buys things");
+        subFolder.getElements().add(actor);
+        
+        role = IArchimateFactory.eINSTANCE.createBusinessRole();
+        role.setName("Seller");
+        businessFolder.getElements().add(role);
+    }
+    
+    @Test
+    public void testFindMatches_Name() {
+        SearchResult result = findMatches(createQuery("customer", true, false));
+        
+        assertEquals(1, result.matches.size());
+        assertTrue(result.matches.contains(actor));
+        
+        // The element and its folders and model are shown
+        assertTrue(result.visible.contains(actor));
+        assertTrue(result.visible.contains(subFolder));
+        assertTrue(result.visible.contains(businessFolder));
+        assertTrue(result.visible.contains(model));
+        
+        assertFalse(result.visible.contains(role));
+        assertFalse(result.visible.contains(model.getFolder(FolderType.APPLICATION)));
+    }
+    
+    @Test
+    public void testFindMatches_Documentation() {
+        assertTrue(findMatches(createQuery("things", false, true)).matches.contains(actor));
+        assertTrue(findMatches(createQuery("things", true, false)).matches.isEmpty());
+    }
+    
+    @Test
+    public void testFindMatches_FolderName() {
+        SearchResult result = findMatches(createQuery("sub", true, false));
+        
+        assertTrue(result.matches.contains(subFolder));
+        assertTrue(result.visible.contains(subFolder));
+        assertFalse(result.visible.contains(actor));
+    }
+    
+    @Test
+    public void testFindMatches_ShowAllFolders() {
+        SearchQuery query = new SearchQuery("seller", true, false, Collections.<EClass>emptySet(), Collections.<String>emptySet(), true);
+        SearchResult result = findMatches(query);
+        
+        assertEquals(1, result.matches.size());
+        assertTrue(result.visible.contains(role));
+        assertTrue(result.visible.contains(model.getFolder(FolderType.APPLICATION)));
+        assertFalse(result.visible.contains(actor));
+    }
+    
+    @Test
+    public void testFindMatches_ObjectFilter() {
+        Set<EClass> objectFilter = new HashSet<EClass>();
+        objectFilter.add(IArchimatePackage.Literals.BUSINESS_ROLE);
+        SearchQuery query = new SearchQuery("", false, false, objectFilter, Collections.<String>emptySet(), false);
+        SearchResult result = findMatches(query);
+        
+        assertEquals(1, result.matches.size());
+        assertTrue(result.matches.contains(role));
+        assertFalse(result.visible.contains(subFolder));
+    }
+    
+    @Test
+    public void testFindMatches_PropertiesFilter() {
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey("cost");
+        property.setValue("High");
+        role.getProperties().add(property);
+        
+        Set<String> propertiesFilter = new HashSet<String>();
+        propertiesFilter.add("cost");
+        
+        SearchResult result = findMatches(new SearchQuery("", false, false, Collections.<EClass>emptySet(), propertiesFilter, false));
+        assertEquals(1, result.matches.size());
+        assertTrue(result.matches.contains(role));
+        
+        // Search text in the property value
+        result = findMatches(new SearchQuery("HIGH", false, false, Collections.<EClass>emptySet(), propertiesFilter, false));
+        assertTrue(result.matches.contains(role));
+        
+        result = findMatches(new SearchQuery("low", false, false, Collections.<EClass>emptySet(), propertiesFilter, false));
+        assertTrue(result.matches.isEmpty());
+    }
+    
+    @Test
+    public void testSearchIndexes_NotIndexed() {
+        Set<EClass> objectFilter = Collections.singleton(IArchimatePackage.Literals.BUSINESS_ROLE);
+        SearchQuery query = new SearchQuery("", false, false, objectFilter, Collections.<String>emptySet(), false);
+        assertNull(SearchFilter.searchIndexes(query, getIndexes(), new NullProgressMonitor()));
+    }
+    
+    @Test
+    public void testCreateResult_ObjectFilterAppliedToIndexMatches() {
+        Set<EClass> objectFilter = Collections.singleton(IArchimatePackage.Literals.BUSINESS_ROLE);
+        SearchQuery query = new SearchQuery("e", true, false, objectFilter, Collections.<String>emptySet(), false);
+        
+        Set<EObject> indexMatches = SearchFilter.searchIndexes(query, getIndexes(), new NullProgressMonitor());
+        assertTrue(indexMatches.contains(actor));
+        assertTrue(indexMatches.contains(role));
+        
+        SearchResult result = SearchFilter.createResult(query, Collections.singletonList(model), indexMatches);
+        assertEquals(1, result.matches.size());
+        assertTrue(result.matches.contains(role));
+        assertFalse(result.visible.contains(subFolder));
+    }
+    
+    @Test(expected=OperationCanceledException.class)
+    public void testSearchIndexes_Cancelled() {
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        SearchFilter.searchIndexes(createQuery("customer", true, false), getIndexes(), monitor);
+    }
+    
+    private SearchQuery createQuery(String text, boolean filterName, boolean filterDocumentation) {
+        return new SearchQuery(text, filterName, filterDocumentation, Collections.<EClass>emptySet(), Collections.<String>emptySet(), false);
+    }
+    
+    private List<ModelTextIndex> getIndexes() {
+        List<ModelTextIndex> indexes = new ArrayList<ModelTextIndex>();
+        indexes.add(ModelTextIndex.getIndex(model));
+        return indexes;
+    }
+    
+    private SearchResult findMatches(SearchQuery query) {
+        List<IArchimateModel> models = Collections.singletonList(model);
+        Set<EObject> indexMatches = SearchFilter.searchIndexes(query, getIndexes(), new NullProgressMonitor());
+        return SearchFilter.createResult(query, models, indexMatches);
+    }
+}
@@ -8,16 +8,30 @@ package com.archimatetool.hammer.validation;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.archimatetool.hammer.validation.checkers.IChecker;
+import com.archimatetool.hammer.validation.issues.IIssue;
 import com.archimatetool.hammer.validation.issues.IIssueCategory;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.testingtools.ArchimateTestModel;
 import com.archimatetool.tests.TestData;
@@ -61,6 +75,165 @@ public class ValidatorTests {
         }
     }
     
+    @Test
+    public void testValidate_Listener() {
+        final List<IChecker> checkers = Collections.synchronizedList(new ArrayList<IChecker>());
+        final List<IIssue> issues = Collections.synchronizedList(new ArrayList<IIssue>());
+        
+        List<Object> list = validator.validate(new NullProgressMonitor(), new IValidatorListener() {
+            @Override
+            public void checkerFinished(IChecker checker, List<IIssue> checkerIssues) {
+                checkers.add(checker);
+                issues.addAll(checkerIssues);
+            }
+        });
+        
+        assertFalse(checkers.isEmpty());
+        
+        // All issues streamed to the listener are in the result
+        int count = 0;
+        for(Object object : list) {
+            count += ((IIssueCategory)object).getIssues().size();
+        }
+        assertEquals(count, issues.size());
+    }
+    
+    @Test
+    public void testValidate_IssuesHaveModelObjects() {
+        List<Object> list = new Validator(model).validate();
+        
+        for(Object object : list) {
+            for(IIssue issue : ((IIssueCategory)object).getIssues()) {
+                if(issue.getObject() instanceof EObject) {
+                    assertSame(model, EcoreUtil.getRootContainer((EObject)issue.getObject()));
+                }
+            }
+        }
+    }
+    
+    @Test
+    public void testValidate_Snapshot() throws IOException {
+        IArchimateModel model = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE).loadModel();
+        Validator validator = new Validator(model);
+        
+        // The snapshot is taken when validating, not when the Validator is created
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setName("Unused Test Actor");
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        
+        validator.validate();
+        assertTrue(validator.getArchimateElements().contains(element));
+        assertEquals(121, validator.getArchimateElements().size());
+        
+        // Added after the snapshot was taken
+        IArchimateElement element2 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element2).getElements().add(element2);
+        assertFalse(validator.getArchimateElements().contains(element2));
+        
+        // Validating again takes a new snapshot
+        validator.validate();
+        assertTrue(validator.getArchimateElements().contains(element2));
+    }
+    
+    @Test
+    public void testValidate_SnapshotTakenAgainIfModelChanged() throws IOException {
+        final IArchimateModel model = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE).loadModel();
+        final IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        final List<IArchimateModel> copies = new ArrayList<IArchimateModel>();
+        
+        Validator validator = new Validator(model) {
+            @Override
+            IArchimateModel copyModel(EcoreUtil.Copier copier) {
+                IArchimateModel snapshot = super.copyModel(copier);
+                
+                // The model is changed while the first copy is taken
+                if(copies.isEmpty()) {
+                    model.getDefaultFolderForObject(element).getElements().add(element);
+                }
+                
+                copies.add(snapshot);
+                return snapshot;
+            }
+        };
+        
+        validator.validate();
+        
+        // The second copy has the element
+        assertEquals(2, copies.size());
+        assertTrue(validator.getArchimateElements().contains(element));
+    }
+    
+    @Test
+    public void testValidate_Cancelled() {
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        assertNull(validator.validate(monitor, null));
+    }
+    
+    @Test
+    public void testCreateIssueCategories() {
+        List<Object> list = Validator.createIssueCategories(new ArrayList<IIssue>(), false);
+        assertTrue(list.isEmpty());
+        
+        list = Validator.createIssueCategories(new ArrayList<IIssue>(), true);
+        assertEquals(1, list.size());
+    }
+    
+    @Test
+    public void testRevalidate() throws IOException {
+        IArchimateModel model = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE).loadModel();
+        Validator validator = new Validator(model);
+        int count = getIssueCount(validator.validate());
+        
+        final Set<EObject> changedObjects = new HashSet<EObject>();
+        model.eAdapters().add(new EContentAdapter() {
+            @Override
+            public void notifyChanged(Notification msg) {
+                super.notifyChanged(msg);
+                Validator.collectChangedObjects(msg, changedObjects);
+            }
+        });
+        
+        // Add an unused element
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setName("Unused Test Actor");
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        assertTrue(changedObjects.contains(element));
+        
+        List<Object> list = validator.revalidate(changedObjects);
+        assertEquals(count + 1, getIssueCount(list));
+        assertEquals(getIssueCount(new Validator(model).validate()), getIssueCount(list));
+        assertTrue(validator.getArchimateElements().contains(element));
+        
+        // And remove it
+        changedObjects.clear();
+        model.getDefaultFolderForObject(element).getElements().remove(element);
+        
+        list = validator.revalidate(changedObjects);
+        assertEquals(count, getIssueCount(list));
+        assertFalse(validator.getArchimateElements().contains(element));
+    }
+    
+    @Test
+    public void testRevalidate_NotValidated() throws IOException {
+        IArchimateModel model = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE).loadModel();
+        Validator validator = new Validator(model);
+        
+        // Full validation
+        List<Object> list = validator.revalidate(new HashSet<EObject>());
+        assertEquals(getIssueCount(new Validator(model).validate()), getIssueCount(list));
+    }
+    
+    private int getIssueCount(List<Object> list) {
+        int count = 0;
+        for(Object object : list) {
+            if(object instanceof IIssueCategory) {
+                count += ((IIssueCategory)object).getIssues().size();
+            }
+        }
+        return count;
+    }
+    
     @Test
     public void testGetArchimateElements() {
         assertEquals(120, validator.getArchimateElements().size());
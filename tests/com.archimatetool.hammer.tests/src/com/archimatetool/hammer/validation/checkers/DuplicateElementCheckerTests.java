@@ -56,5 +56,42 @@ public class DuplicateElementCheckerTests {
         assertSame(e2, issues.get(1).getObject());
     }
     
+    @Test
+    public void testGetIssues_Grouped() {
+        List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        
+        IArchimateElement e1 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        e1.setName("fido");
+        elements.add(e1);
+        
+        // Same name, different type
+        IArchimateElement e2 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        e2.setName("fido");
+        elements.add(e2);
+        
+        // No name
+        IArchimateElement e3 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        elements.add(e3);
+        
+        IArchimateElement e4 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        e4.setName("fido");
+        elements.add(e4);
+        
+        // Empty name is the same as no name
+        IArchimateElement e5 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        e5.setName("");
+        elements.add(e5);
+        
+        DuplicateElementChecker checker = new DuplicateElementChecker(elements);
+        List<IIssue> issues = checker.getIssues();
+        
+        // Duplicates are grouped in the order first found
+        assertEquals(4, issues.size());
+        assertSame(e1, issues.get(0).getObject());
+        assertSame(e4, issues.get(1).getObject());
+        assertSame(e3, issues.get(2).getObject());
+        assertSame(e5, issues.get(3).getObject());
+    }
+    
     
 }
@@ -6,6 +6,7 @@
 package com.archimatetool.jasperreports;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -25,6 +26,7 @@ import com.archimatetool.tests.TestUtils;
 import junit.framework.JUnit4TestAdapter;
 import net.sf.jasperreports.engine.JRException;
 import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
 
 
 @SuppressWarnings("nls")
@@ -119,6 +121,41 @@ public class JasperReportsExporterTests {
         assertTrue(file.exists());
     }
 
+    @Test
+    public void testExportFormats() throws Exception {
+        File folder = new File(exportFolder, "formats");
+        folder.mkdirs();
+        
+        JasperReportsExporter formatsExporter = new JasperReportsExporter(model, folder, exportFileName, mainTemplateFile, reportTitle,
+                JasperReportsExporter.EXPORT_PDF | JasperReportsExporter.EXPORT_RTF | JasperReportsExporter.EXPORT_ODT);
+        formatsExporter.exportFormats(jasperPrint, null);
+        
+        assertTrue(new File(folder, exportFileName + ".pdf").exists());
+        assertTrue(new File(folder, exportFileName + ".rtf").exists());
+        assertTrue(new File(folder, exportFileName + ".odt").exists());
+        assertFalse(new File(folder, exportFileName + ".html").exists());
+    }
+    
+    @Test
+    public void testCompileReport_Cached() throws JRException {
+        // Compiled when the Jasper Print was created
+        File compiledFile = exporter.getCompiledReportFile(mainTemplateFile);
+        assertTrue(compiledFile.exists());
+        
+        long lastModified = compiledFile.lastModified();
+        
+        // Loaded from the cache
+        JasperReport report = exporter.compileReport(mainTemplateFile);
+        assertEquals("main_report", report.getName());
+        assertEquals(lastModified, compiledFile.lastModified());
+        
+        // Compiled again if the cached file is not valid
+        compiledFile.delete();
+        report = exporter.compileReport(mainTemplateFile);
+        assertEquals("main_report", report.getName());
+        assertTrue(compiledFile.exists());
+    }
+    
     @Test
     public void testDiagramsHaveBeenWritten() {
         File[] imageFiles = tmpFolder.listFiles();
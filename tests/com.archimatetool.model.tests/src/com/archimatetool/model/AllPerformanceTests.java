@@ -0,0 +1,31 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model;
+
+import junit.framework.TestSuite;
+
+import com.archimatetool.model.impl.ModelHeapTests;
+import com.archimatetool.model.util.ArchimateResourcePerformanceTests;
+
+/**
+ * Benchmarks that take too long to be part of AllTests
+ */
+@SuppressWarnings("nls")
+public class AllPerformanceTests {
+
+    public static junit.framework.Test suite() {
+        TestSuite suite = new TestSuite("com.archimatetool.model.performance");
+
+        // impl
+        suite.addTest(ModelHeapTests.suite());
+
+        // util
+        suite.addTest(ArchimateResourcePerformanceTests.suite());
+
+        return suite;
+    }
+
+}
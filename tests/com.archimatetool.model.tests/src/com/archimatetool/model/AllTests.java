@@ -31,7 +31,10 @@ import com.archimatetool.model.impl.SketchModelTests;
 import com.archimatetool.model.util.ArchimateModelUtilsTests;
 import com.archimatetool.model.util.ArchimateResourceFactoryTests;
 import com.archimatetool.model.util.IDAdapterTests;
+import com.archimatetool.model.util.ModelChangeDispatcherTests;
+import com.archimatetool.model.util.ModelTextIndexTests;
 import com.archimatetool.model.util.RelationshipsMatrixTests;
+import com.archimatetool.model.util.StringPoolTests;
 import com.archimatetool.model.viewpoints.ViewpointManagerTests;
 import com.archimatetool.model.viewpoints.ViewpointTests;
 
@@ -72,7 +75,10 @@ public class AllTests {
         suite.addTest(ArchimateModelUtilsTests.suite());
         suite.addTest(ArchimateResourceFactoryTests.suite());
         suite.addTest(IDAdapterTests.suite());
+        suite.addTest(ModelChangeDispatcherTests.suite());
+        suite.addTest(ModelTextIndexTests.suite());
         suite.addTest(RelationshipsMatrixTests.suite());
+        suite.addTest(StringPoolTests.suite());
 
         // viewpoints
         suite.addTest(ViewpointTests.suite());
@@ -40,6 +40,18 @@ public abstract class ArchimateConceptTests {
     public void testGetAdapter() {
         CommonTests.testGetAdapter(concept);
     }
+    
+    @Test
+    public void testGetAdapter_FromModel() {
+        model.getDefaultFolderForObject(concept).getElements().add(concept);
+        model.setAdapter(String.class, "model");
+        assertEquals("model", concept.getAdapter(String.class));
+        
+        // Own adapter is used first
+        concept.setAdapter(String.class, "concept");
+        assertEquals("concept", concept.getAdapter(String.class));
+        assertEquals("model", model.getAdapter(String.class));
+    }
         
     @Test
     public void testGetArchimateModel() {
@@ -167,6 +167,40 @@ public class ArchimateModelTests {
         assertEquals(FolderType.DIAGRAMS, model.getFolder(FolderType.DIAGRAMS).getType());
     }
     
+    @Test
+    public void testGetFolder_CacheUpdated() {
+        model.setDefaults();
+        
+        IFolder folder = model.getFolder(FolderType.BUSINESS);
+        assertSame(folder, model.getFolder(FolderType.BUSINESS));
+        
+        // Type changed
+        folder.setType(FolderType.USER);
+        assertNull(model.getFolder(FolderType.BUSINESS));
+        
+        // Type changed back
+        folder.setType(FolderType.BUSINESS);
+        assertSame(folder, model.getFolder(FolderType.BUSINESS));
+        
+        // Removed
+        model.getFolders().remove(folder);
+        assertNull(model.getFolder(FolderType.BUSINESS));
+        
+        // Added as a sub-folder
+        model.getFolder(FolderType.OTHER).getFolders().add(folder);
+        assertSame(folder, model.getFolder(FolderType.BUSINESS));
+    }
+    
+    @Test
+    public void testGetFolder_AdaptersRemoved() {
+        model.setDefaults();
+        model.eAdapters().clear();
+        
+        IFolder folder = model.getFolder(FolderType.BUSINESS);
+        model.getFolders().remove(folder);
+        assertNull(model.getFolder(FolderType.BUSINESS));
+    }
+    
     @Test
     public void testGetAdapter() {
         CommonTests.testGetAdapter(model);
@@ -199,6 +233,41 @@ public class ArchimateModelTests {
         assertEquals(2, list.size());
     }
     
+    @Test
+    public void testGetDiagramModels_CacheUpdated() {
+        IDiagramModel dm1 = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        model.getDefaultFolderForObject(dm1).getElements().add(dm1);
+        
+        EList<IDiagramModel> list = model.getDiagramModels();
+        assertSame(list, model.getDiagramModels());
+        
+        // Added to a sub-folder
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        model.getFolder(FolderType.DIAGRAMS).getFolders().add(folder);
+        IDiagramModel dm2 = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        folder.getElements().add(dm2);
+        
+        // Previous list is not changed
+        assertEquals(1, list.size());
+        
+        // Sub-folder diagram models come first
+        list = model.getDiagramModels();
+        assertEquals(2, list.size());
+        assertSame(dm2, list.get(0));
+        assertSame(dm1, list.get(1));
+        
+        // Removed
+        folder.getElements().remove(dm2);
+        list = model.getDiagramModels();
+        assertEquals(1, list.size());
+        assertSame(dm1, list.get(0));
+    }
+    
+    @Test(expected=UnsupportedOperationException.class)
+    public void testGetDiagramModels_Unmodifiable() {
+        model.getDiagramModels().add(IArchimateFactory.eINSTANCE.createArchimateDiagramModel());
+    }
+    
     @Test
     public void testGetName() {
         CommonTests.testGetName(model);
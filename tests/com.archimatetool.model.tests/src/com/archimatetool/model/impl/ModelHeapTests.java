@@ -0,0 +1,122 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Iterator;
+
+import org.eclipse.emf.ecore.EObject;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IProperty;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+/**
+ * Measures the heap used by a generated model of about 500,000 objects.
+ * This is not part of AllTests - run AllPerformanceTests.
+ * 
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+public class ModelHeapTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelHeapTests.class);
+    }
+    
+    /**
+     * Generous upper limit so that a large regression in the size of model objects fails this test
+     */
+    private static final long MAX_BYTES_PER_OBJECT = 512;
+    
+    @Test
+    public void testHeapPerObject() {
+        long before = usedHeap();
+        
+        // 100000 groups of an element, a diagram object and its bounds, and two properties or a relationship and its connection
+        IArchimateModel model = createModel(100000);
+        
+        long after = usedHeap();
+        
+        int count = 1;
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            iter.next();
+            count++;
+        }
+        
+        // Model, folders and diagram model
+        assertEquals(100000 * 5 + 1 + model.getFolders().size() + 1, count);
+        
+        long bytesPerObject = (after - before) / count;
+        assertTrue("Heap per object: " + bytesPerObject + " bytes", bytesPerObject < MAX_BYTES_PER_OBJECT);
+    }
+    
+    private IArchimateModel createModel(int count) {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        model.getDefaultFolderForObject(dm).getElements().add(dm);
+        
+        IArchimateElement previousElement = null;
+        IDiagramModelArchimateObject previousDmo = null;
+        
+        for(int i = 0; i < count; i++) {
+            // Element
+            IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+            model.getDefaultFolderForObject(element).getElements().add(element);
+            
+            // Diagram object and its bounds
+            IDiagramModelArchimateObject dmo = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+            dmo.setArchimateElement(element);
+            dmo.setBounds(i, i, 120, 55);
+            dm.getChildren().add(dmo);
+            
+            // Property or relationship and connection
+            if(previousElement == null) {
+                IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+                element.getProperties().add(property);
+                IProperty property2 = IArchimateFactory.eINSTANCE.createProperty();
+                element.getProperties().add(property2);
+            }
+            else {
+                IArchimateRelationship relationship = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+                relationship.connect(previousElement, element);
+                model.getDefaultFolderForObject(relationship).getElements().add(relationship);
+                
+                IDiagramModelArchimateConnection connection = IArchimateFactory.eINSTANCE.createDiagramModelArchimateConnection();
+                connection.setArchimateRelationship(relationship);
+                connection.connect(previousDmo, dmo);
+            }
+            
+            // Alternate so that every group has five objects
+            previousElement = previousElement == null ? element : null;
+            previousDmo = dmo;
+        }
+        
+        return model;
+    }
+    
+    private long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 4; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
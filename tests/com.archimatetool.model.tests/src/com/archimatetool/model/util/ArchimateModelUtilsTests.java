@@ -17,6 +17,8 @@ import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelArchimateObject;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -145,6 +147,56 @@ public class ArchimateModelUtilsTests {
         assertSame(newElement2, element);
     }
     
+    @Test
+    public void testGetObjectByID_IndexKeptCurrent() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        String id = element.getId();
+        assertSame(element, ArchimateModelUtils.getObjectByID(model, id));
+        
+        // ID changed
+        element.setId("newID");
+        assertNull(ArchimateModelUtils.getObjectByID(model, id));
+        assertSame(element, ArchimateModelUtils.getObjectByID(model, "newID"));
+        
+        // Removed
+        model.getDefaultFolderForObject(element).getElements().remove(element);
+        assertNull(ArchimateModelUtils.getObjectByID(model, "newID"));
+    }
+    
+    @Test
+    public void testGetConceptByID() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        IDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        model.getDefaultFolderForObject(dm).getElements().add(dm);
+        
+        assertSame(element, ArchimateModelUtils.getConceptByID(model, element.getId()));
+        assertNull(ArchimateModelUtils.getConceptByID(model, dm.getId()));
+        assertNull(ArchimateModelUtils.getConceptByID(model, "unknown"));
+    }
+    
+    @Test
+    public void testGetDiagramComponentByID() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        IDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        model.getDefaultFolderForObject(dm).getElements().add(dm);
+        IDiagramModelArchimateObject dmo = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+        dmo.setArchimateElement(element);
+        dm.getChildren().add(dmo);
+        
+        assertSame(dm, ArchimateModelUtils.getDiagramComponentByID(model, dm.getId()));
+        assertSame(dmo, ArchimateModelUtils.getDiagramComponentByID(model, dmo.getId()));
+        assertNull(ArchimateModelUtils.getDiagramComponentByID(model, element.getId()));
+    }
+    
     @Test
     public void testGetStrategyClasses() {
         EClass[] classes = ArchimateModelUtils.getStrategyClasses();
@@ -8,18 +8,35 @@ package com.archimatetool.model.util;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 import junit.framework.JUnit4TestAdapter;
 
+import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceImpl;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.junit.Test;
 
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IIdentifier;
 import com.archimatetool.model.TestSupport;
 
 
@@ -80,4 +97,90 @@ public class ArchimateResourceFactoryTests {
         assertNull(resource.getResourceSet());
         assertTrue(resource.getContents().isEmpty());
     }
+    
+    @Test
+    public void testCreateResource_PerformanceOptions() {
+        ArchimateResourceFactory factory = new ArchimateResourceFactory();
+        
+        XMLResource resource1 = (XMLResource)factory.createResource(URI.createFileURI("1"));
+        XMLResource resource2 = (XMLResource)factory.createResource(URI.createFileURI("2"));
+        
+        Map<Object, Object> loadOptions = resource1.getDefaultLoadOptions();
+        
+        // Shared between Resources
+        assertNotNull(loadOptions.get(XMLResource.OPTION_USE_PARSER_POOL));
+        assertSame(loadOptions.get(XMLResource.OPTION_USE_PARSER_POOL), resource2.getDefaultLoadOptions().get(XMLResource.OPTION_USE_PARSER_POOL));
+        assertNotNull(loadOptions.get(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP));
+        assertSame(loadOptions.get(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP), resource2.getDefaultLoadOptions().get(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP));
+        
+        assertEquals(Boolean.TRUE, loadOptions.get(XMLResource.OPTION_DEFER_IDREF_RESOLUTION));
+        
+        // The model is attached to the Resource while it is read so that the IDAdapter knows it is loading
+        assertNull(loadOptions.get(XMLResource.OPTION_DEFER_ATTACHMENT));
+        
+        // Lookup table is not shared between Resources
+        Map<Object, Object> saveOptions = resource1.getDefaultSaveOptions();
+        assertEquals(Boolean.TRUE, saveOptions.get(XMLResource.OPTION_CONFIGURATION_CACHE));
+        assertNotNull(saveOptions.get(XMLResource.OPTION_USE_CACHED_LOOKUP_TABLE));
+        assertNotSame(saveOptions.get(XMLResource.OPTION_USE_CACHED_LOOKUP_TABLE), resource2.getDefaultSaveOptions().get(XMLResource.OPTION_USE_CACHED_LOOKUP_TABLE));
+    }
+    
+    @Test
+    public void testLoad_IDsMapped() throws Exception {
+        IArchimateModel model = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        
+        // The IDAdapter is the only index of IDs once the model is loaded
+        assertNull(((ResourceImpl)model.eResource()).getIntrinsicIDToEObjectMap());
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IIdentifier) {
+                String id = ((IIdentifier)eObject).getId();
+                assertSame(eObject, model.getIDAdapter().getObject(id));
+            }
+        }
+    }
+    
+    @Test
+    public void testLoad_NoIDsAllocated() throws Exception {
+        final List<Notification> idChanges = new ArrayList<Notification>();
+        
+        Resource resource = ArchimateResourceFactory.createNewResource(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        resource.eAdapters().add(new EContentAdapter() {
+            @Override
+            public void notifyChanged(Notification msg) {
+                super.notifyChanged(msg);
+                
+                // An ID is replaced if one was allocated before the ID in the file was read
+                if(msg.getFeature() == IArchimatePackage.Literals.IDENTIFIER__ID && msg.getOldValue() != null) {
+                    idChanges.add(msg);
+                }
+            }
+        });
+        
+        resource.load(null);
+        
+        assertFalse(resource.getContents().isEmpty());
+        assertTrue(idChanges.isEmpty());
+    }
+    
+    @Test
+    public void testLoad_ReferencesResolved() throws Exception {
+        IArchimateModel model = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IArchimateRelationship) {
+                IArchimateRelationship relationship = (IArchimateRelationship)eObject;
+                assertSame(model, relationship.getSource().getArchimateModel());
+                assertSame(model, relationship.getTarget().getArchimateModel());
+            }
+            else if(eObject instanceof IDiagramModelArchimateObject) {
+                assertSame(model, ((IDiagramModelArchimateObject)eObject).getArchimateElement().getArchimateModel());
+            }
+            else if(eObject instanceof IDiagramModelArchimateConnection) {
+                assertSame(model, ((IDiagramModelArchimateConnection)eObject).getArchimateRelationship().getArchimateModel());
+            }
+        }
+    }
 } 
@@ -0,0 +1,219 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimateRelationship;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.TestSupport;
+import com.archimatetool.tests.TestUtils;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+/**
+ * Load and save benchmarks of the Archisurance model and a generated large model
+ * with the tuned Resource options and with EMF's default options.
+ * Compare the times of the tuned and default tests in the JUnit results.
+ * These are not part of AllTests - run AllPerformanceTests.
+ * 
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+public class ArchimateResourcePerformanceTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ArchimateResourcePerformanceTests.class);
+    }
+    
+    private static final int RUNS = 3;
+    
+    private static IArchimateModel largeModel;
+    private static int largeModelCount;
+    private static File largeModelFile;
+    
+    private static int archisuranceCount;
+    
+    @BeforeClass
+    public static void runOnceBeforeAllTests() throws IOException {
+        // 25000 each of elements, relationships, diagram objects and connections, plus bounds
+        largeModel = createLargeModel(25000);
+        largeModelCount = countObjects(largeModel);
+        largeModelFile = TestUtils.createTempFile(".archimate");
+        save(largeModel, largeModelFile, null);
+        
+        archisuranceCount = countObjects(TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE));
+    }
+    
+    @AfterClass
+    public static void runOnceAfterAllTests() {
+        largeModel = null;
+    }
+    
+    @Test
+    public void testLoad_Archisurance_Tuned() throws IOException {
+        load(TestSupport.TEST_MODEL_FILE_ARCHISURANCE, null, archisuranceCount);
+    }
+    
+    @Test
+    public void testLoad_Archisurance_Default() throws IOException {
+        load(TestSupport.TEST_MODEL_FILE_ARCHISURANCE, getDefaultLoadOptions(), archisuranceCount);
+    }
+    
+    @Test
+    public void testLoad_LargeModel_Tuned() throws IOException {
+        load(largeModelFile, null, largeModelCount);
+    }
+    
+    @Test
+    public void testLoad_LargeModel_Default() throws IOException {
+        load(largeModelFile, getDefaultLoadOptions(), largeModelCount);
+    }
+    
+    @Test
+    public void testSave_LargeModel_Tuned() throws IOException {
+        for(int i = 0; i < RUNS; i++) {
+            save(largeModel, TestUtils.createTempFile(".archimate"), null);
+        }
+    }
+    
+    @Test
+    public void testSave_LargeModel_Default() throws IOException {
+        for(int i = 0; i < RUNS; i++) {
+            save(largeModel, TestUtils.createTempFile(".archimate"), getDefaultSaveOptions());
+        }
+    }
+    
+    private static void save(IArchimateModel model, File file, Map<Object, Object> options) throws IOException {
+        // Save a copy so that the model stays in its own Resource
+        IArchimateModel copy = EcoreUtil.copy(model);
+        Resource resource = ArchimateResourceFactory.createNewResource(file);
+        resource.getContents().add(copy);
+        resource.save(options);
+    }
+    
+    private void load(File file, Map<Object, Object> options, int objectCount) throws IOException {
+        for(int i = 0; i < RUNS; i++) {
+            Resource resource = ArchimateResourceFactory.createNewResource(file);
+            resource.load(options);
+            
+            IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
+            assertEquals(objectCount, countObjects(model));
+            checkReferences(model);
+        }
+    }
+    
+    /**
+     * Options that override the tuned options with EMF's defaults
+     */
+    private Map<Object, Object> getDefaultLoadOptions() {
+        Map<Object, Object> options = new HashMap<Object, Object>();
+        options.put(XMLResource.OPTION_USE_PARSER_POOL, null);
+        options.put(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP, null);
+        options.put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.TRUE);
+        options.put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.FALSE);
+        return options;
+    }
+    
+    /**
+     * Options that override the tuned options with EMF's defaults
+     */
+    private Map<Object, Object> getDefaultSaveOptions() {
+        Map<Object, Object> options = new HashMap<Object, Object>();
+        options.put(XMLResource.OPTION_CONFIGURATION_CACHE, Boolean.FALSE);
+        options.put(XMLResource.OPTION_USE_CACHED_LOOKUP_TABLE, null);
+        return options;
+    }
+    
+    private static int countObjects(IArchimateModel model) {
+        int count = 1;
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            iter.next();
+            count++;
+        }
+        return count;
+    }
+    
+    /**
+     * Check that ID references were resolved to objects in the same model
+     */
+    private void checkReferences(IArchimateModel model) {
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IArchimateRelationship) {
+                IArchimateRelationship relationship = (IArchimateRelationship)eObject;
+                assertNotNull(relationship.getSource());
+                assertSame(model, relationship.getSource().getArchimateModel());
+                assertSame(model, relationship.getTarget().getArchimateModel());
+            }
+            else if(eObject instanceof IDiagramModelArchimateObject) {
+                assertSame(model, ((IDiagramModelArchimateObject)eObject).getArchimateElement().getArchimateModel());
+            }
+        }
+    }
+    
+    private static IArchimateModel createLargeModel(int count) {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        model.setName("Large model");
+        
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        model.getDefaultFolderForObject(dm).getElements().add(dm);
+        
+        IArchimateElement[] elements = new IArchimateElement[count];
+        IDiagramModelArchimateObject[] dmos = new IDiagramModelArchimateObject[count];
+        
+        for(int i = 0; i < count; i++) {
+            IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+            element.setName("Actor " + i);
+            model.getDefaultFolderForObject(element).getElements().add(element);
+            elements[i] = element;
+            
+            IDiagramModelArchimateObject dmo = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+            dmo.setArchimateElement(element);
+            dmo.setBounds((i % 100) * 150, (i / 100) * 80, 120, 55);
+            dm.getChildren().add(dmo);
+            dmos[i] = dmo;
+        }
+        
+        for(int i = 0; i < count; i++) {
+            int next = (i + 1) % count;
+            
+            IArchimateRelationship relationship = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+            relationship.connect(elements[i], elements[next]);
+            model.getDefaultFolderForObject(relationship).getElements().add(relationship);
+            
+            IDiagramModelArchimateConnection connection = IArchimateFactory.eINSTANCE.createDiagramModelArchimateConnection();
+            connection.setArchimateRelationship(relationship);
+            connection.connect(dmos[i], dmos[next]);
+        }
+        
+        return model;
+    }
+}
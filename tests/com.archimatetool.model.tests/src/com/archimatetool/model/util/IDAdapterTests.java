@@ -6,20 +6,31 @@
 package com.archimatetool.model.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
-import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
 
 import junit.framework.JUnit4TestAdapter;
 
 import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
 import org.junit.Test;
 
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IIdentifier;
+import com.archimatetool.model.TestSupport;
 import com.archimatetool.model.impl.Folder;
 import com.archimatetool.tests.TestUtils;
 
@@ -51,7 +62,7 @@ public class IDAdapterTests {
         
         String id = "someID";
         adapter.registerID(null);
-        List<String> usedIDs = getPrivateIDList(adapter);
+        Set<String> usedIDs = getPrivateIDList(adapter);
         assertTrue(usedIDs.isEmpty());
         
         adapter.registerID(id);
@@ -70,12 +81,131 @@ public class IDAdapterTests {
         String id = adapter.getNewID();
         assertEquals(36, id.length());
         
-        List<String> usedIDs = getPrivateIDList(adapter);
+        Set<String> usedIDs = getPrivateIDList(adapter);
         assertTrue(usedIDs.contains(id));
     }
 
+    @Test
+    public void testUnregisterID() throws Exception {
+        IDAdapter adapter = new IDAdapter();
+        
+        String id = "someID";
+        adapter.registerID(id);
+        adapter.unregisterID(null);
+        assertTrue(getPrivateIDList(adapter).contains(id));
+        
+        adapter.unregisterID(id);
+        assertTrue(getPrivateIDList(adapter).isEmpty());
+    }
+    
+    @Test
+    public void testIDsRegisteredAndUnregisteredWhenElementsAddedAndRemoved() throws Exception {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        IDAdapter adapter = model.getIDAdapter();
+        Set<String> usedIDs = getPrivateIDList(adapter);
+        
+        IFolder parent = model.getFolder(FolderType.BUSINESS);
+        
+        // Sub-folder with a child element added in one go
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setId("elementID");
+        folder.getElements().add(element);
+        parent.getFolders().add(folder);
+        
+        assertNotNull(folder.getId());
+        assertTrue(usedIDs.contains(folder.getId()));
+        assertTrue(usedIDs.contains("elementID"));
+        
+        // Change the ID
+        element.setId("newID");
+        assertFalse(usedIDs.contains("elementID"));
+        assertTrue(usedIDs.contains("newID"));
+        
+        // Remove it
+        parent.getFolders().remove(folder);
+        assertFalse(usedIDs.contains(folder.getId()));
+        assertFalse(usedIDs.contains("newID"));
+        
+        // Undo
+        parent.getFolders().add(folder);
+        assertTrue(usedIDs.contains(folder.getId()));
+        assertTrue(usedIDs.contains("newID"));
+    }
+    
+    @Test
+    public void testIDsRegisteredWhenModelLoaded() throws Exception {
+        IArchimateModel model = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        Set<String> usedIDs = getPrivateIDList(model.getIDAdapter());
+        
+        int count = 1;
+        assertTrue(usedIDs.contains(model.getId()));
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IIdentifier) {
+                assertTrue(usedIDs.contains(((IIdentifier)eObject).getId()));
+                count++;
+            }
+        }
+        
+        // No IDs other than those in the model
+        assertTrue(usedIDs.size() <= count);
+    }
+    
+    @Test
+    public void testRegisterIDsScalesLinearly() {
+        // Warm up
+        timeRegisterIDs(10000);
+        
+        long small = Long.MAX_VALUE, large = Long.MAX_VALUE;
+        for(int i = 0; i < 3; i++) {
+            small = Math.min(small, timeRegisterIDs(25000));
+            large = Math.min(large, timeRegisterIDs(100000));
+        }
+        
+        // Four times the number of objects should take about four times as long, not sixteen times
+        assertTrue("Registering IDs does not scale linearly: " + small + "ns / " + large + "ns", large < Math.max(small, 1000000) * 8);
+    }
+    
+    private long timeRegisterIDs(int count) {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.setType(FolderType.BUSINESS);
+        model.getFolders().add(folder);
+        
+        for(int i = 0; i < count; i++) {
+            IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+            element.setId("id" + i);
+            folder.getElements().add(element);
+        }
+        
+        IDAdapter adapter = new IDAdapter();
+        long start = System.nanoTime();
+        adapter.registerIDs(model);
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void testGetObject() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        IDAdapter adapter = model.getIDAdapter();
+        
+        assertNull(adapter.getObject(null));
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(element).getElements().add(element);
+        assertSame(element, adapter.getObject(element.getId()));
+        
+        // Reserved but not used
+        String id = adapter.getNewID();
+        assertNull(adapter.getObject(id));
+    }
+
     @SuppressWarnings("unchecked")
-    private List<String> getPrivateIDList(IDAdapter adapter) throws Exception {
-        return (List<String>)TestUtils.getPrivateField(adapter, "fUsedIDs");
+    private Set<String> getPrivateIDList(IDAdapter adapter) throws Exception {
+        return ((Map<String, IIdentifier>)TestUtils.getPrivateField(adapter, "fUsedIDs")).keySet();
     }
 } 
@@ -0,0 +1,160 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IFolder;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+@SuppressWarnings("nls")
+public class ModelChangeDispatcherTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelChangeDispatcherTests.class);
+    }
+    
+    private IArchimateModel model;
+    private ModelChangeDispatcher dispatcher;
+    private List<Notification> notifications;
+    
+    private IModelChangeListener listener = new IModelChangeListener() {
+        @Override
+        public void notifyChanged(Notification msg) {
+            notifications.add(msg);
+        }
+    };
+    
+    @Before
+    public void runOnceBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        dispatcher = model.getChangeDispatcher();
+        notifications = new ArrayList<Notification>();
+    }
+    
+    @Test
+    public void testOneAdapterPerObject() {
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getFolder(FolderType.BUSINESS).getElements().add(element);
+        
+        assertEquals(1, model.eAdapters().size());
+        assertSame(dispatcher, model.eAdapters().get(0));
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            assertEquals(1, eObject.eAdapters().size());
+            assertSame(dispatcher, eObject.eAdapters().get(0));
+        }
+    }
+    
+    @Test
+    public void testAddListener() {
+        dispatcher.addListener(listener);
+        assertTrue(dispatcher.hasListener(listener));
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setId("id1");
+        model.getFolder(FolderType.BUSINESS).getElements().add(element);
+        element.setName("Name");
+        
+        assertEquals(2, notifications.size());
+        assertSame(IArchimatePackage.Literals.FOLDER__ELEMENTS, notifications.get(0).getFeature());
+        assertSame(IArchimatePackage.Literals.NAMEABLE__NAME, notifications.get(1).getFeature());
+    }
+    
+    @Test
+    public void testIDAllocatedBeforeListenersNotified() {
+        final List<String> ids = new ArrayList<String>();
+        
+        dispatcher.addListener(new IModelChangeListener() {
+            @Override
+            public void notifyChanged(Notification msg) {
+                ids.add(((IArchimateElement)msg.getNewValue()).getId());
+            }
+        }, IArchimatePackage.Literals.FOLDER__ELEMENTS);
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getFolder(FolderType.BUSINESS).getElements().add(element);
+        
+        assertEquals(1, ids.size());
+        assertNotNull(ids.get(0));
+    }
+    
+    @Test
+    public void testAddListener_NotAddedTwice() {
+        dispatcher.addListener(listener);
+        dispatcher.addListener(listener);
+        
+        model.setName("Name");
+        assertEquals(1, notifications.size());
+    }
+    
+    @Test
+    public void testAddListener_Features() {
+        dispatcher.addListener(listener, IArchimatePackage.Literals.NAMEABLE__NAME);
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getFolder(FolderType.BUSINESS).getElements().add(element);
+        element.setDocumentation("Documentation");
+        element.setName("Name");
+        
+        assertEquals(1, notifications.size());
+        assertSame(element, notifications.get(0).getNotifier());
+    }
+    
+    @Test
+    public void testRemoveListener() {
+        dispatcher.addListener(listener);
+        dispatcher.removeListener(listener);
+        assertFalse(dispatcher.hasListener(listener));
+        
+        model.setName("Name");
+        assertTrue(notifications.isEmpty());
+    }
+    
+    @Test
+    public void testRemovedObjectNotAdapted() {
+        dispatcher.addListener(listener);
+        
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        model.getFolder(FolderType.BUSINESS).getFolders().remove(folder);
+        assertTrue(folder.eAdapters().isEmpty());
+        
+        notifications.clear();
+        folder.setName("Name");
+        assertTrue(notifications.isEmpty());
+    }
+    
+    @Test
+    public void testAdapterRemovedNotForwarded() {
+        dispatcher.addListener(listener);
+        model.eAdapters().clear();
+        assertTrue(notifications.isEmpty());
+    }
+}
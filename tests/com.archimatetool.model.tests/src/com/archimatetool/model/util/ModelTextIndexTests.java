@@ -0,0 +1,244 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModelGroup;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.ModelTextIndex.Match;
+import com.archimatetool.model.util.ModelTextIndex.Query;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+@SuppressWarnings("nls")
+public class ModelTextIndexTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelTextIndexTests.class);
+    }
+
+    private IArchimateModel model;
+    private ModelTextIndex index;
+    private IFolder businessFolder;
+    private IArchimateElement actor, role;
+
+    @Before
+    public void runOnceBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+
+        businessFolder = model.getFolder(FolderType.BUSINESS);
+
+        actor = IArchimateFactory.eINSTANCE.createBusinessActor();
+        actor.setName("Customer Service Actor");
+        actor.setDocumentation("Handles the orders of customers");
+        businessFolder.getElements().add(actor);
+
+        role = IArchimateFactory.eINSTANCE.createBusinessRole();
+        role.setName("Service Desk");
+        businessFolder.getElements().add(role);
+
+        index = ModelTextIndex.getIndex(model);
+    }
+
+    @Test
+    public void testGetIndex() {
+        assertSame(index, ModelTextIndex.getIndex(model));
+        assertTrue(model.getChangeDispatcher().hasListener(index));
+    }
+
+    @Test
+    public void testTokenize() {
+        assertArrayEquals(new String[] { "customer", "service", "v2" }, ModelTextIndex.tokenize("customer-service (v2)"));
+        assertEquals(0, ModelTextIndex.tokenize(" - ").length);
+    }
+
+    @Test
+    public void testSearch_Contains() {
+        assertResult(search("SERV", Match.CONTAINS, ModelTextIndex.NAME), actor, role);
+        assertResult(search("mer serv", Match.CONTAINS, ModelTextIndex.NAME), actor);
+        assertResult(search("business", Match.CONTAINS, ModelTextIndex.NAME), businessFolder);
+        assertResult(search("order", Match.CONTAINS, ModelTextIndex.NAME));
+    }
+
+    @Test
+    public void testSearch_Contains_NoWords() {
+        role.setName("Service - Desk");
+        assertResult(search(" - ", Match.CONTAINS, ModelTextIndex.NAME), role);
+    }
+
+    @Test
+    public void testSearch_Prefix() {
+        assertResult(search("serv", Match.PREFIX, ModelTextIndex.NAME), actor, role);
+        assertResult(search("desk serv", Match.PREFIX, ModelTextIndex.NAME), role);
+        assertResult(search("ervice", Match.PREFIX, ModelTextIndex.NAME));
+    }
+
+    @Test
+    public void testSearch_Phrase() {
+        assertResult(search("customer service", Match.PHRASE, ModelTextIndex.NAME), actor);
+        assertResult(search("service customer", Match.PHRASE, ModelTextIndex.NAME));
+        assertResult(search("service", Match.PHRASE, ModelTextIndex.NAME), actor, role);
+        assertResult(search("serv", Match.PHRASE, ModelTextIndex.NAME));
+    }
+
+    @Test
+    public void testSearch_Documentation() {
+        assertResult(search("orders", Match.CONTAINS, ModelTextIndex.DOCUMENTATION), actor);
+        assertResult(search("orders", Match.CONTAINS, ModelTextIndex.NAME | ModelTextIndex.DOCUMENTATION), actor);
+        assertResult(search("desk", Match.CONTAINS, ModelTextIndex.NAME | ModelTextIndex.DOCUMENTATION), role);
+    }
+
+    @Test
+    public void testSearch_Properties() {
+        addProperty(actor, "cost", "High cost");
+        addProperty(role, "owner", "High Street");
+
+        // Any property value
+        assertResult(search("high", Match.PREFIX, ModelTextIndex.PROPERTY_VALUES), actor, role);
+
+        // Property values of given keys
+        Query query = new Query("high", Match.PREFIX, ModelTextIndex.PROPERTY_VALUES, Collections.singleton("cost"));
+        assertResult(index.search(query), actor);
+
+        // Objects that have a property key
+        query = new Query("", Match.CONTAINS, 0, Collections.singleton("owner"));
+        assertResult(index.search(query), role);
+    }
+
+    @Test
+    public void testSearch_PropertyKeysDoNotRestrictNameAndDocumentation() {
+        addProperty(actor, "cost", "Service charge");
+
+        // The role has no "cost" property but its name matches
+        Query query = new Query("service", Match.PREFIX, ModelTextIndex.NAME | ModelTextIndex.PROPERTY_VALUES, Collections.singleton("cost"));
+        assertResult(index.search(query), actor, role);
+
+        // Property values are only searched in properties with the given keys
+        query = new Query("charge", Match.PREFIX, ModelTextIndex.NAME | ModelTextIndex.PROPERTY_VALUES, Collections.singleton("owner"));
+        assertResult(index.search(query));
+    }
+
+    @Test
+    public void testGetIndex_Built() {
+        // Objects are indexed when the index is created, not when it is first searched
+        assertEquals(model.getFolders().size() + 1 + 2, index.size());
+    }
+
+    @Test
+    public void testSearch_NoText() {
+        assertResult(search("", Match.CONTAINS, ModelTextIndex.NAME));
+    }
+
+    @Test
+    public void testNameChanged() {
+        role.setName("Help Desk");
+        assertResult(search("serv", Match.CONTAINS, ModelTextIndex.NAME), actor);
+        assertResult(search("help", Match.PREFIX, ModelTextIndex.NAME), role);
+    }
+
+    @Test
+    public void testPropertyChanged() {
+        IProperty property = addProperty(role, "owner", "Sales");
+        assertResult(search("sales", Match.PHRASE, ModelTextIndex.PROPERTY_VALUES), role);
+
+        property.setValue("Marketing");
+        assertResult(search("sales", Match.PHRASE, ModelTextIndex.PROPERTY_VALUES));
+        assertResult(search("marketing", Match.PHRASE, ModelTextIndex.PROPERTY_VALUES), role);
+
+        property.setKey("manager");
+        assertResult(index.search(new Query("", Match.CONTAINS, 0, Collections.singleton("owner"))));
+        assertResult(index.search(new Query("", Match.CONTAINS, 0, Collections.singleton("manager"))), role);
+
+        role.getProperties().remove(property);
+        assertResult(search("marketing", Match.PHRASE, ModelTextIndex.PROPERTY_VALUES));
+    }
+
+    @Test
+    public void testObjectsAddedAndRemoved() {
+        int size = index.size();
+
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.setName("Services");
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessService();
+        element.setName("Online Service");
+        folder.getElements().add(element);
+
+        businessFolder.getFolders().add(folder);
+        assertEquals(size + 2, index.size());
+        assertResult(search("service", Match.PREFIX, ModelTextIndex.NAME), actor, role, folder, element);
+
+        businessFolder.getFolders().remove(folder);
+        assertEquals(size, index.size());
+        assertResult(search("service", Match.PREFIX, ModelTextIndex.NAME), actor, role);
+    }
+
+    @Test
+    public void testObjectMoved() {
+        IFolder folder = model.getFolder(FolderType.OTHER);
+
+        folder.getElements().add(role);
+        assertResult(search("desk", Match.CONTAINS, ModelTextIndex.NAME), role);
+    }
+
+    @Test
+    public void testDiagramObjectsNotIndexed() {
+        int size = index.size();
+
+        IArchimateDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        dm.setName("Overview");
+        IDiagramModelGroup group = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        group.setName("Group");
+        dm.getChildren().add(group);
+        model.getFolder(FolderType.DIAGRAMS).getElements().add(dm);
+
+        // The diagram model is in a folder but its children are not
+        assertEquals(size + 1, index.size());
+        assertResult(search("overview", Match.CONTAINS, ModelTextIndex.NAME), dm);
+        assertResult(search("group", Match.CONTAINS, ModelTextIndex.NAME));
+
+        group.setName("Group 2");
+        assertResult(search("group", Match.CONTAINS, ModelTextIndex.NAME));
+    }
+
+    private Set<EObject> search(String text, Match match, int fields) {
+        return index.search(new Query(text, match, fields));
+    }
+
+    private IProperty addProperty(IArchimateElement element, String key, String value) {
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey(key);
+        property.setValue(value);
+        element.getProperties().add(property);
+        return property;
+    }
+
+    private void assertResult(Set<EObject> result, EObject... expected) {
+        assertEquals(expected.length, result.size());
+        for(EObject eObject : expected) {
+            assertTrue(result.contains(eObject));
+        }
+    }
+}
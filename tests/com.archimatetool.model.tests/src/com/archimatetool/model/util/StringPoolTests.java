@@ -0,0 +1,70 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IDiagramModelNote;
+import com.archimatetool.model.IProperty;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+@SuppressWarnings("nls")
+public class StringPoolTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(StringPoolTests.class);
+    }
+    
+    @Test
+    public void testIntern_Null() {
+        assertNull(StringPool.intern(null));
+    }
+    
+    @Test
+    public void testIntern_SharesEqualValues() {
+        String value1 = new String("#ff0000");
+        String value2 = new String("#ff0000");
+        
+        String shared = StringPool.intern(value1);
+        assertSame(shared, StringPool.intern(value2));
+        assertEquals("#ff0000", shared);
+    }
+    
+    @Test
+    public void testSetters_ShareValues() {
+        IDiagramModelArchimateObject dmo = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+        IDiagramModelNote note = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        
+        dmo.setFillColor(new String("#c0c0c0"));
+        note.setFillColor(new String("#c0c0c0"));
+        assertSame(dmo.getFillColor(), note.getFillColor());
+        
+        dmo.setLineColor(new String("#c0c0c0"));
+        assertSame(dmo.getFillColor(), dmo.getLineColor());
+        
+        dmo.setFontColor(new String("#c0c0c0"));
+        assertSame(dmo.getFillColor(), dmo.getFontColor());
+        
+        dmo.setFont(new String("1|Arial|9.0|0|WINDOWS|1|0|0|0|0|0|0|0|0|1|0|0|0|0|Arial"));
+        note.setFont(new String("1|Arial|9.0|0|WINDOWS|1|0|0|0|0|0|0|0|0|1|0|0|0|0|Arial"));
+        assertSame(dmo.getFont(), note.getFont());
+        
+        IProperty property1 = IArchimateFactory.eINSTANCE.createProperty();
+        IProperty property2 = IArchimateFactory.eINSTANCE.createProperty();
+        property1.setKey(new String("Owner"));
+        property2.setKey(new String("Owner"));
+        assertSame(property1.getKey(), property2.getKey());
+    }
+}
@@ -5,17 +5,29 @@
  */
 package com.archimatetool.reports.html;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.Iterator;
 
+import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.emf.ecore.EObject;
 import org.junit.Test;
 
+import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateConcept;
 import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.testingtools.ArchimateTestModel;
 import com.archimatetool.tests.TestData;
@@ -89,5 +101,95 @@ public class HTMLReportExporterTests {
         // Clean up
         FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
     }
+    
+    @Test
+    public void testCreateReport_Snapshot() throws Exception {
+        ArchimateTestModel tm = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        IArchimateModel model = tm.loadModel();
+        
+        IArchimateModel snapshot = HTMLReportExporter.createSnapshot(model);
+        assertNotSame(model, snapshot);
+        assertEquals(model.getId(), snapshot.getId());
+        assertSame(model.getAdapter(IArchiveManager.class), snapshot.getAdapter(IArchiveManager.class));
+        
+        // Changes made to the model after the snapshot was taken are not in the report
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getFolders().get(0).getElements().get(0);
+        String name = element.getName();
+        element.setName("Changed Name");
+        
+        File targetFolder = TestUtils.createTempFolder("archi-html-report");
+        new HTMLReportExporter(snapshot).createReport(targetFolder, "index.html");
+        
+        File elementFile = new File(new File(new File(targetFolder, model.getId()), "elements"), element.getId() + ".html");
+        String page = new String(Files.readAllBytes(elementFile.toPath()), StandardCharsets.UTF_8);
+        assertTrue(page.contains(name));
+        assertFalse(page.contains("Changed Name"));
+        
+        // Clean up
+        FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
+    }
+    
+    @Test
+    public void testCreateReport_Cancelled() throws Exception {
+        ArchimateTestModel tm = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        IArchimateModel model = tm.loadModel();
+        
+        HTMLReportExporter exporter = new HTMLReportExporter(model);
+        
+        File targetFolder = TestUtils.createTempFolder("archi-html-report");
+        
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        
+        assertNull(exporter.createReport(targetFolder, "index.html", monitor));
+        assertFalse(new File(targetFolder, "index.html").exists());
+        
+        // Clean up
+        FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
+    }
+
+    @Test
+    public void testCreateReport_Incremental() throws Exception {
+        ArchimateTestModel tm = new ArchimateTestModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        IArchimateModel model = tm.loadModel();
+        
+        IArchimateElement newElement = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForObject(newElement).getElements().add(newElement);
+        
+        HTMLReportExporter exporter = new HTMLReportExporter(model);
+        exporter.setIncremental(true);
+        
+        File targetFolder = TestUtils.createTempFolder("archi-html-report");
+        exporter.createReport(targetFolder, "index.html");
+        
+        File modelFolder = new File(targetFolder, model.getId());
+        assertTrue(new File(modelFolder, ReportManifest.MANIFEST_FILE).exists());
+        
+        File elementsFolder = new File(modelFolder, "elements");
+        File newElementFile = new File(elementsFolder, newElement.getId() + ".html");
+        assertTrue(newElementFile.exists());
+        
+        IArchimateElement element = (IArchimateElement)model.getFolder(FolderType.BUSINESS).getFolders().get(0).getElements().get(0);
+        File elementFile = new File(elementsFolder, element.getId() + ".html");
+        File modelFile = new File(elementsFolder, "model.html");
+        
+        // Mark the pages so that we know if they are written again
+        elementFile.setLastModified(1000);
+        modelFile.setLastModified(1000);
+        
+        // Change one element and remove another
+        element.setName("Changed Name");
+        model.getDefaultFolderForObject(newElement).getElements().remove(newElement);
+        
+        exporter.createReport(targetFolder, "index.html");
+        
+        assertTrue(elementFile.lastModified() != 1000);
+        assertTrue(new String(Files.readAllBytes(elementFile.toPath()), StandardCharsets.UTF_8).contains("Changed Name"));
+        assertEquals(1000, modelFile.lastModified());
+        assertFalse(newElementFile.exists());
+        
+        // Clean up
+        FileUtils.deleteFolder(TestUtils.TMP_FOLDER);
+    }
 
 }